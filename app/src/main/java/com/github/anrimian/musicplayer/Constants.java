@@ -4,6 +4,8 @@ public interface Constants {
 
     String PLAYLIST_MIME_TYPE = "audio/x-mpegurl";
     long EDIT_DIALOG_DELAY_MILLIS = 600;
+    //seek bar position is updated each frame of 60 fps display
+    long SEEK_BAR_UPDATE_INTERVAL_MILLIS = 16;
 
     interface Actions {
         int PLAY = 1;
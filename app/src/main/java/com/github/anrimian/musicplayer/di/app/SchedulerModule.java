@@ -27,6 +27,10 @@ public class SchedulerModule {
     //+play queue skipTo
     public static final String DB_SCHEDULER = "db_scheduler";
     public static final String SLOW_BG_SCHEDULER = "slow_bg_scheduler";
+    //storage scans apply changes and move media store watermark, they must not overlap
+    public static final String STORAGE_SCAN_SCHEDULER = "storage_scan_scheduler";
+    //long cpu bound background work which should not compete with playback and ui
+    public static final String LOW_PRIORITY_BG_SCHEDULER = "low_priority_bg_scheduler";
 
     @Provides
     @NonNull
@@ -67,4 +71,24 @@ public class SchedulerModule {
     Scheduler provideSlowBgScheduler() {
         return Schedulers.from(Executors.newSingleThreadExecutor());
     }
+
+    @Provides
+    @NonNull
+    @Named(STORAGE_SCAN_SCHEDULER)
+    @Singleton
+    Scheduler provideStorageScanScheduler() {
+        return Schedulers.from(Executors.newSingleThreadExecutor());
+    }
+
+    @Provides
+    @NonNull
+    @Named(LOW_PRIORITY_BG_SCHEDULER)
+    @Singleton
+    Scheduler provideLowPriorityBgScheduler() {
+        return Schedulers.from(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "low_priority_bg");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }));
+    }
 }
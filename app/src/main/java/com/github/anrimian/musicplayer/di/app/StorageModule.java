@@ -1,10 +1,14 @@
 package com.github.anrimian.musicplayer.di.app;
 
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.COMPUTATION_SCHEDULER;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.DB_SCHEDULER;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.IO_SCHEDULER;
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.LOW_PRIORITY_BG_SCHEDULER;
 import static com.github.anrimian.musicplayer.di.app.SchedulerModule.SLOW_BG_SCHEDULER;
+import static com.github.anrimian.musicplayer.di.app.SchedulerModule.STORAGE_SCAN_SCHEDULER;
 
 import android.content.Context;
+import android.media.AudioManager;
 import android.os.Build;
 import android.os.Environment;
 
@@ -28,6 +32,8 @@ import com.github.anrimian.musicplayer.data.repositories.player.ExternalMediaSou
 import com.github.anrimian.musicplayer.data.repositories.scanner.MediaScannerRepositoryImpl;
 import com.github.anrimian.musicplayer.data.repositories.scanner.StorageCompositionAnalyzer;
 import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanner;
+import com.github.anrimian.musicplayer.data.repositories.scanner.loudness.LoudnessAnalyzer;
+import com.github.anrimian.musicplayer.data.repositories.scanner.loudness.LoudnessScanner;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.PlaylistFilesStorage;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.StoragePlaylistsAnalyzer;
 import com.github.anrimian.musicplayer.data.storage.files.StorageFilesDataSource;
@@ -163,17 +169,44 @@ public class StorageModule {
     @Provides
     @Nonnull
     @Singleton
-    FileScanner fileScanner(CompositionsDaoWrapper compositionsDao,
+    FileScanner fileScanner(Context context,
+                            CompositionsDaoWrapper compositionsDao,
                             CompositionSourceEditor compositionSourceEditor,
                             StateRepository stateRepository,
                             StorageSourceRepository storageSourceRepository,
                             Analytics analytics,
+                            @Named(IO_SCHEDULER) Scheduler ioScheduler,
                             @Named(SLOW_BG_SCHEDULER) Scheduler scheduler) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         return new FileScanner(compositionsDao,
                 compositionSourceEditor,
                 stateRepository,
                 storageSourceRepository,
                 analytics,
+                audioManager::isMusicActive,
+                ioScheduler,
+                scheduler,
+                FileScanner.getDefaultWorkersCount());
+    }
+
+    @Provides
+    @Nonnull
+    @Singleton
+    LoudnessScanner loudnessScanner(Context context,
+                                    CompositionsDaoWrapper compositionsDao,
+                                    StorageSourceRepository storageSourceRepository,
+                                    SettingsRepository settingsRepository,
+                                    Analytics analytics,
+                                    FileScanner fileScanner,
+                                    @Named(LOW_PRIORITY_BG_SCHEDULER) Scheduler scheduler) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        return new LoudnessScanner(compositionsDao,
+                storageSourceRepository,
+                new LoudnessAnalyzer(context),
+                settingsRepository,
+                analytics,
+                fileScanner.getStateObservable(),
+                audioManager::isMusicActive,
                 scheduler);
     }
 
@@ -188,9 +221,11 @@ public class StorageModule {
                                                   StorageCompositionAnalyzer compositionAnalyzer,
                                                   StoragePlaylistsAnalyzer storagePlaylistAnalyzer,
                                                   FileScanner fileScanner,
+                                                  LoudnessScanner loudnessScanner,
                                                   LoggerRepository loggerRepository,
                                                   Analytics analytics,
-                                                  @Named(IO_SCHEDULER) Scheduler scheduler) {
+                                                  @Named(STORAGE_SCAN_SCHEDULER) Scheduler scheduler,
+                                                  @Named(COMPUTATION_SCHEDULER) Scheduler timerScheduler) {
         return new MediaScannerRepositoryImpl(musicProvider,
                 playListsProvider,
                 compositionsDao,
@@ -199,9 +234,11 @@ public class StorageModule {
                 compositionAnalyzer,
                 storagePlaylistAnalyzer,
                 fileScanner,
+                loudnessScanner,
                 loggerRepository,
                 analytics,
-                scheduler);
+                scheduler,
+                timerScheduler);
     }
 
     @Provides
@@ -241,18 +278,14 @@ public class StorageModule {
                                                      CompositionsDaoWrapper compositionsDaoWrapper,
                                                      FoldersDaoWrapper foldersDao,
                                                      ArtistsDao artistsDao,
-                                                     ArtistsDaoWrapper artistsDaoWrapper,
                                                      AlbumsDao albumsDao,
-                                                     AlbumsDaoWrapper albumsDaoWrapper,
                                                      GenreDao genreDao) {
         return new StorageCompositionsInserter(libraryDatabase,
                 compositionsDao,
                 compositionsDaoWrapper,
                 foldersDao,
                 artistsDao,
-                artistsDaoWrapper,
                 albumsDao,
-                albumsDaoWrapper,
                 genreDao);
     }
 
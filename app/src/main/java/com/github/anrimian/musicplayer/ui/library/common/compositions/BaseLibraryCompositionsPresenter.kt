@@ -321,7 +321,7 @@ abstract class BaseLibraryCompositionsPresenter<C : Composition, V : BaseLibrary
             .subscribeOnUi(viewState::showRandomMode, errorParser::logError)
     }
 
-    protected abstract fun getCompositionsObservable(searchText: String?): Observable<List<C>>
+    protected abstract fun getCompositionsObservable(searchText: String?): Observable<out List<C>>
     protected abstract fun getSavedListPosition(): ListPosition?
     protected abstract fun saveListPosition(listPosition: ListPosition)
 
@@ -9,6 +9,7 @@ import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.order.Order
 import com.github.anrimian.musicplayer.domain.models.sync.FileKey
 import com.github.anrimian.musicplayer.domain.models.utils.ListPosition
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import com.github.anrimian.musicplayer.ui.common.error.parser.ErrorParser
 import com.github.anrimian.musicplayer.ui.library.common.compositions.BaseLibraryCompositionsPresenter
 import io.reactivex.rxjava3.core.Observable
@@ -30,8 +31,10 @@ class LibraryCompositionsPresenter(
     errorParser,
     uiScheduler
 ) {
-    override fun getCompositionsObservable(searchText: String?): Observable<List<Composition>> {
-        return interactor.getCompositionsObservable(searchText)
+    override fun getCompositionsObservable(
+        searchText: String?
+    ): Observable<WindowedList<Composition>> {
+        return interactor.getCompositionsWindowedObservable(searchText)
     }
 
     override fun getSavedListPosition(): ListPosition? {
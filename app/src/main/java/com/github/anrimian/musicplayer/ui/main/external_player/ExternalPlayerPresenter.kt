@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.ui.main.external_player
 
+import com.github.anrimian.musicplayer.Constants
 import com.github.anrimian.musicplayer.data.models.composition.source.ExternalCompositionSource
 import com.github.anrimian.musicplayer.domain.interactors.player.ExternalPlayerInteractor
 import com.github.anrimian.musicplayer.domain.models.composition.source.CompositionSource
@@ -32,7 +33,8 @@ class ExternalPlayerPresenter(
             .unsafeSubscribeOnUi(this::onCompositionSourceReceived)
 
         interactor.getIsPlayingStateObservable().unsafeSubscribeOnUi(viewState::showPlayerState)
-        interactor.getTrackPositionObservable().unsafeSubscribeOnUi(this::onTrackPositionChanged)
+        interactor.getTrackPositionObservable(Constants.SEEK_BAR_UPDATE_INTERVAL_MILLIS)
+            .unsafeSubscribeOnUi(this::onTrackPositionChanged)
         interactor.getExternalPlayerRepeatModeObservable().unsafeSubscribeOnUi(viewState::showRepeatMode)
         interactor.getPlayerStateObservable().unsafeSubscribeOnUi(this::onPlayerStateReceived)
         interactor.getSpeedChangeAvailableObservable().unsafeSubscribeOnUi(viewState::showSpeedVisible)
@@ -3,6 +3,7 @@ package com.github.anrimian.musicplayer.ui.player_screen
 import com.github.anrimian.fsync.SyncInteractor
 import com.github.anrimian.fsync.models.Optional
 import com.github.anrimian.fsync.models.state.file.FileSyncState
+import com.github.anrimian.musicplayer.Constants
 import com.github.anrimian.musicplayer.data.storage.exceptions.UnavailableMediaStoreException
 import com.github.anrimian.musicplayer.domain.interactors.player.ActionState
 import com.github.anrimian.musicplayer.domain.interactors.player.LibraryPlayerInteractor
@@ -288,7 +289,7 @@ class PlayerPresenter(
     }
 
     private fun subscribeOnTrackPositionChanging() {
-        playerInteractor.getTrackPositionObservable()
+        playerInteractor.getTrackPositionObservable(Constants.SEEK_BAR_UPDATE_INTERVAL_MILLIS)
             .unsafeSubscribeOnUi(this::onTrackPositionChanged)
     }
 
@@ -15,6 +15,7 @@ import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.github.anrimian.musicplayer.domain.utils.WindowedList;
 import com.github.anrimian.musicplayer.ui.utils.views.recycler_view.RecyclerViewUtils;
 
 import java.util.Collections;
@@ -22,6 +23,8 @@ import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 
+import kotlin.ranges.IntRange;
+
 /**
  * Helper for computing the difference between two lists via {@link DiffUtil} on a background
  * thread.
@@ -300,13 +303,30 @@ public class CustomAsyncListDiffer<T> {
         // fast simple first insert
         if (mList == null) {
             mList = newList;
-            mReadOnlyList = Collections.unmodifiableList(newList);
+            mReadOnlyList = readOnlyList(newList);
             // notify last, after list is updated
             mUpdateCallback.onInserted(0, newList.size());
             onCurrentListChanged(previousList, commitCallback);
             return;
         }
 
+        // windowed list with the same positions knows its changed items, skip the diff
+        if (newList instanceof WindowedList) {
+            List<IntRange> changedRanges = ((WindowedList<?>) newList).getChangedRanges(mList);
+            if (changedRanges != null) {
+                mList = newList;
+                mReadOnlyList = readOnlyList(newList);
+                // notify last, after list is updated
+                for (IntRange range : changedRanges) {
+                    mUpdateCallback.onChanged(range.getFirst(),
+                            range.getLast() - range.getFirst() + 1,
+                            null);
+                }
+                onCurrentListChanged(previousList, commitCallback);
+                return;
+            }
+        }
+
         //fixes freeze for large lists
         boolean detectMovesGentle = mList.size() < 100 && newList.size() < 100;
         final List<T> oldList = mList;
@@ -388,7 +408,7 @@ public class CustomAsyncListDiffer<T> {
         final List<T> previousList = mReadOnlyList;
         mList = newList;
         // notify last, after list is updated
-        mReadOnlyList = Collections.unmodifiableList(newList);
+        mReadOnlyList = readOnlyList(newList);
 
         //if we are on 0 position and list size had changed, scroll bar after update
         RecyclerView.LayoutManager lm = recyclerView.getLayoutManager();
@@ -414,6 +434,15 @@ public class CustomAsyncListDiffer<T> {
         }
     }
 
+    //windowed list is read-only already and is kept to request its windows
+    @NonNull
+    private static <T> List<T> readOnlyList(@NonNull List<T> list) {
+        if (list instanceof WindowedList) {
+            return list;
+        }
+        return Collections.unmodifiableList(list);
+    }
+
     private void onCurrentListChanged(@NonNull List<T> previousList,
                                       @Nullable Runnable commitCallback) {
         // current list is always mReadOnlyList
@@ -6,6 +6,7 @@ import androidx.lifecycle.DefaultLifecycleObserver
 import androidx.lifecycle.LifecycleOwner
 import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import com.github.anrimian.musicplayer.ui.utils.views.recycler_view.diff_utils.adapter.DiffListAdapter
 
 abstract class MvpDiffAdapter<T, VH : MvpDiffAdapter.MvpViewHolder>(
@@ -31,6 +32,7 @@ abstract class MvpDiffAdapter<T, VH : MvpDiffAdapter.MvpViewHolder>(
             holder.release()
         }
         viewHolders.add(holder)
+        (currentList as? WindowedList<*>)?.loadAround(position)
     }
 
     @CallSuper
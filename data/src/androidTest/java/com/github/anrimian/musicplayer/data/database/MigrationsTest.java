@@ -1,6 +1,7 @@
 package com.github.anrimian.musicplayer.data.database;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import android.app.Instrumentation;
 import android.content.ContentValues;
@@ -30,6 +31,245 @@ public class MigrationsTest {
                     LibraryDatabase.class.getCanonicalName()
     );
 
+    @Test
+    public void testMigrationFrom25To26() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 25);
+        db.execSQL("INSERT INTO compositions (id, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                26,
+                false,
+                Migrations.MIGRATION_25_26);
+
+        try (Cursor c = db.query("SELECT trackGain, albumGain, analyzedGain FROM compositions WHERE id = 1")) {
+            c.moveToFirst();
+            assertTrue(c.isNull(0));
+            assertTrue(c.isNull(1));
+            assertTrue(c.isNull(2));
+        }
+        db.execSQL("UPDATE compositions SET trackGain = -6.5, analyzedGain = 1.5 WHERE id = 1");
+    }
+
+    @Test
+    public void testMigrationFrom24To25() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 24);
+        db.execSQL("INSERT INTO compositions (id, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+        db.execSQL("INSERT INTO play_queue (id, audioId, position, shuffledPosition) VALUES (1, 1, 0, 1024)");
+        db.execSQL("INSERT INTO play_queue (id, audioId, position, shuffledPosition) VALUES (2, 1, 1024, 0)");
+        db.execSQL("INSERT INTO track_positions (queueItemId, trackPosition, writeTime) VALUES (2, 500, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                25,
+                false,
+                Migrations.MIGRATION_24_25);
+
+        try (Cursor c = db.query("SELECT id FROM play_queue ORDER BY shuffledPosition")) {
+            c.moveToNext();
+            assertEquals(2, c.getLong(0));
+            c.moveToNext();
+            assertEquals(1, c.getLong(0));
+        }
+        try (Cursor c = db.query("SELECT trackPosition FROM track_positions WHERE queueItemId = 2")) {
+            c.moveToFirst();
+            assertEquals(500, c.getLong(0));
+        }
+        db.execSQL("INSERT INTO play_queue (audioId, position, shuffledPosition) VALUES (1, 2048, NULL)");
+    }
+
+    @Test
+    public void testMigrationFrom23To24() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 23);
+        db.execSQL("INSERT INTO compositions (id, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+        db.execSQL("INSERT INTO play_queue (id, audioId, position, shuffledPosition) VALUES (1, 1, 0, 2)");
+        db.execSQL("INSERT INTO play_queue (id, audioId, position, shuffledPosition) VALUES (2, 1, 1, 0)");
+        db.execSQL("INSERT INTO play_queue (id, audioId, position, shuffledPosition) VALUES (3, 1, 5, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                24,
+                false,
+                Migrations.MIGRATION_23_24);
+
+        try (Cursor c = db.query("SELECT position, shuffledPosition FROM play_queue ORDER BY id")) {
+            c.moveToNext();
+            assertEquals(0, c.getInt(0));
+            assertEquals(2048, c.getInt(1));
+            c.moveToNext();
+            assertEquals(1024, c.getInt(0));
+            assertEquals(0, c.getInt(1));
+            c.moveToNext();
+            assertEquals(2048, c.getInt(0));
+            assertEquals(1024, c.getInt(1));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom22To23() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 22);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'artist')");
+        db.execSQL("INSERT INTO albums (id, artistId, name) VALUES (1, 1, 'album')");
+        db.execSQL("INSERT INTO genres (id, name) VALUES (1, 'genre')");
+        db.execSQL("INSERT INTO compositions (id, artistId, albumId, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+        db.execSQL("INSERT INTO genre_entries (genreId, compositionId, position) VALUES (1, 1, 0)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                23,
+                false,
+                Migrations.MIGRATION_22_23);
+
+        try (Cursor c = db.query("SELECT compositionsCount, albumsCount FROM artists")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+            assertEquals(1, c.getInt(1));
+        }
+        try (Cursor c = db.query("SELECT compositionsCount FROM genres")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+        }
+        //foreign keys are off in test database, so genre entry is not deleted by cascade
+        db.execSQL("DELETE FROM genre_entries WHERE compositionId = 1");
+        db.execSQL("DELETE FROM compositions WHERE id = 1");
+        db.execSQL("DELETE FROM albums WHERE compositionsCount = 0");
+        try (Cursor c = db.query("SELECT compositionsCount, albumsCount FROM artists")) {
+            c.moveToFirst();
+            assertEquals(0, c.getInt(0));
+            assertEquals(0, c.getInt(1));
+        }
+        try (Cursor c = db.query("SELECT compositionsCount FROM genres")) {
+            c.moveToFirst();
+            assertEquals(0, c.getInt(0));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom21To22() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 21);
+        db.execSQL("INSERT INTO compositions (id, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                22,
+                false,
+                Migrations.MIGRATION_21_22);
+
+        db.execSQL("UPDATE compositions SET title = 'title' WHERE id = 1");
+        db.execSQL("DELETE FROM compositions WHERE id = 1");
+        try (Cursor c = db.query("SELECT compositionId FROM composition_changes ORDER BY seq")) {
+            assertEquals(2, c.getCount());
+            c.moveToFirst();
+            assertEquals(1, c.getLong(0));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom20To21() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 20);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'artist')");
+        db.execSQL("INSERT INTO artists (id, name) VALUES (2, 'album artist')");
+        db.execSQL("INSERT INTO albums (id, artistId, name) VALUES (1, 2, 'album')");
+        db.execSQL("INSERT INTO compositions (artistId, albumId, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                21,
+                false,
+                Migrations.MIGRATION_20_21);
+
+        try (Cursor c = db.query("SELECT artistName, albumName, albumArtistName FROM compositions")) {
+            c.moveToFirst();
+            assertEquals("artist", c.getString(0));
+            assertEquals("album", c.getString(1));
+            assertEquals("album artist", c.getString(2));
+        }
+        db.execSQL("UPDATE artists SET name = 'renamed' WHERE id = 2");
+        db.execSQL("UPDATE compositions SET artistId = 2");
+        try (Cursor c = db.query("SELECT artistName, albumArtistName FROM compositions")) {
+            c.moveToFirst();
+            assertEquals("renamed", c.getString(0));
+            assertEquals("renamed", c.getString(1));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom19To20() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 19);
+        db.execSQL("INSERT INTO artists (id, name) VALUES (1, 'Beyoncé')");
+        db.execSQL("INSERT INTO folders (id, parentId, name, filesCount, storageFilesCount, totalDuration, totalSize, lastAddTime) VALUES (1, NULL, 'music', 0, 0, 0, 0, 0)");
+        db.execSQL("INSERT INTO compositions (artistId, folderId, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                20,
+                false,
+                Migrations.MIGRATION_19_20);
+
+        try (Cursor c = db.query("SELECT count() FROM compositions_fts WHERE compositions_fts MATCH '\"beyon*\" \"mus*\"'")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+        }
+        db.execSQL("UPDATE artists SET name = 'Other' WHERE id = 1");
+        try (Cursor c = db.query("SELECT count() FROM compositions_fts WHERE compositions_fts MATCH '\"beyon*\"'")) {
+            c.moveToFirst();
+            assertEquals(0, c.getInt(0));
+        }
+        try (Cursor c = db.query("SELECT docid FROM artists_fts WHERE artists_fts MATCH '\"oth*\"'")) {
+            assertEquals(1, c.getCount());
+        }
+    }
+
+    @Test
+    public void testMigrationFrom18To19() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 18);
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (1, NULL, 'music')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (2, 1, 'rock')");
+        //test database is created without triggers, so closure table is filled here
+        db.execSQL("INSERT INTO folder_tree (ancestorId, descendantId, depth) VALUES (1, 1, 0), (2, 2, 0), (1, 2, 1)");
+        db.execSQL("INSERT INTO compositions (folderId, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (1, 1, 'a.mp3', 100, 10, 5, 0, 0, 1)");
+        db.execSQL("INSERT INTO compositions (folderId, storageId, fileName, duration, size, dateAdded, lastScanDate, coverModifyTime, initialSource) VALUES (2, NULL, 'b.mp3', 200, 20, 7, 0, 0, 1)");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                19,
+                false,
+                Migrations.MIGRATION_18_19);
+
+        try (Cursor c = db.query("SELECT filesCount, storageFilesCount, totalDuration, totalSize, lastAddTime FROM folders WHERE id = 1")) {
+            c.moveToFirst();
+            assertEquals(2, c.getInt(0));
+            assertEquals(1, c.getInt(1));
+            assertEquals(300, c.getLong(2));
+            assertEquals(30, c.getLong(3));
+            assertEquals(7, c.getLong(4));
+        }
+        db.execSQL("UPDATE folders SET parentId = NULL WHERE id = 2");
+        try (Cursor c = db.query("SELECT filesCount, totalDuration, lastAddTime FROM folders WHERE id = 1")) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+            assertEquals(100, c.getLong(1));
+            assertEquals(5, c.getLong(2));
+        }
+    }
+
+    @Test
+    public void testMigrationFrom17To18() throws Exception {
+        SupportSQLiteDatabase db = testHelper.createDatabase(TEST_DB_NAME, 17);
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (1, NULL, 'music')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (2, 1, 'rock')");
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (3, 2, 'album')");
+
+        db = testHelper.runMigrationsAndValidate(TEST_DB_NAME,
+                18,
+                false,
+                Migrations.MIGRATION_17_18);
+
+        try (Cursor c = db.query("SELECT count() FROM folder_tree")) {
+            c.moveToFirst();
+            assertEquals(6, c.getInt(0));
+        }
+        db.execSQL("INSERT INTO folders (id, parentId, name) VALUES (4, 3, 'cd1')");
+        db.execSQL("UPDATE folders SET parentId = NULL WHERE id = 3");
+        try (Cursor c = db.query("SELECT ancestorId FROM folder_tree WHERE descendantId = 4 ORDER BY depth DESC")) {
+            assertEquals(2, c.getCount());
+            c.moveToFirst();
+            assertEquals(3, c.getLong(0));
+        }
+    }
+
     @Test
     public void testMigrationFrom16To17() throws Exception {
         testHelper.createDatabase(TEST_DB_NAME, 16);
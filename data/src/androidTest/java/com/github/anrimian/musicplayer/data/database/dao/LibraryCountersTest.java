@@ -0,0 +1,83 @@
+package com.github.anrimian.musicplayer.data.database.dao;
+
+import static com.github.anrimian.musicplayer.data.database.dao.play_list.DbTestUtils.insert;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
+import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+//counter columns are not set by inserts, so a fresh database must create them with defaults
+public class LibraryCountersTest {
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private ArtistsDao artistsDao;
+    private AlbumsDao albumsDao;
+    private GenreDao genreDao;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class).build();
+        compositionsDao = db.compositionsDao();
+        artistsDao = db.artistsDao();
+        albumsDao = db.albumsDao();
+        genreDao = db.genreDao();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void insertArtistAlbumAndGenreInFreshDatabase() {
+        long artistId = artistsDao.insertArtist("test artist");
+        long albumId = albumsDao.insertAlbum(artistId, "test album");
+        long genreId = genreDao.insertGenre("test genre");
+
+        assertTrue(artistId > 0);
+        assertTrue(albumId > 0);
+        assertTrue(genreId > 0);
+        assertEquals(0, selectCount("SELECT compositionsCount FROM artists WHERE id = ?", artistId));
+        assertEquals(1, selectCount("SELECT albumsCount FROM artists WHERE id = ?", artistId));
+        assertEquals(0, selectCount("SELECT compositionsCount FROM albums WHERE id = ?", albumId));
+        assertEquals(0, selectCount("SELECT compositionsCount FROM genres WHERE id = ?", genreId));
+    }
+
+    @Test
+    public void countInsertedCompositions() {
+        long artistId = artistsDao.insertArtist("test artist");
+        long albumId = albumsDao.insertAlbum(artistId, "test album");
+        long genreId = genreDao.insertGenre("test genre");
+
+        long compositionId = insert(compositionsDao, artistId, albumId, "test title");
+        insert(compositionsDao, artistId, null, "test title 2");
+        genreDao.insertGenreEntry(compositionId, genreId);
+
+        assertEquals(2, selectCount("SELECT compositionsCount FROM artists WHERE id = ?", artistId));
+        assertEquals(1, selectCount("SELECT compositionsCount FROM albums WHERE id = ?", albumId));
+        assertEquals(1, selectCount("SELECT compositionsCount FROM genres WHERE id = ?", genreId));
+    }
+
+    private int selectCount(String query, long id) {
+        try (Cursor c = db.query(query, new Object[] { id })) {
+            assertTrue(c.moveToFirst());
+            return c.getInt(0);
+        }
+    }
+}
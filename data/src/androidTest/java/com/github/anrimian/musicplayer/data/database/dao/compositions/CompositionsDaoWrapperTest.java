@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static java.util.Collections.singletonList;
 
 import android.content.Context;
 
@@ -20,6 +21,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Date;
+
 public class CompositionsDaoWrapperTest {
 
     private LibraryDatabase db;
@@ -293,4 +296,17 @@ public class CompositionsDaoWrapperTest {
         assertEquals(newAlbumId, compositionsDao.getAlbumId(compositionId));
     }
 
+    @Test
+    public void logOnlyDisplayedColumnsChanges() {
+        long compositionId = insert(compositionsDao, null, null, "test title");
+        long seq = compositionsDao.getLastChangeSeq();
+
+        compositionsDao.setCompositionLastFileScanTime(compositionId, new Date());
+        compositionsDao.updateTitle(compositionId, "test title");
+        assertEquals(seq, compositionsDao.getLastChangeSeq());
+
+        compositionsDao.updateTitle(compositionId, "test title2");
+        assertEquals(singletonList(compositionId), compositionsDao.getChangedCompositionIds(seq));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
+import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper;
+import com.github.anrimian.musicplayer.data.storage.providers.albums.StorageAlbum;
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition;
+import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType;
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+public class StorageCompositionsInserterTest {
+
+    private LibraryDatabase db;
+    private CompositionsDao compositionsDao;
+    private ArtistsDao artistsDao;
+    private AlbumsDao albumsDao;
+    private FoldersDaoWrapper foldersDaoWrapper;
+
+    private StorageCompositionsInserter inserter;
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class).build();
+        compositionsDao = db.compositionsDao();
+        artistsDao = db.artistsDao();
+        albumsDao = db.albumsDao();
+
+        CompositionsDaoWrapper compositionsDaoWrapper = new CompositionsDaoWrapper(db,
+                artistsDao,
+                compositionsDao,
+                albumsDao,
+                db.genreDao(),
+                db.foldersDao());
+        foldersDaoWrapper = new FoldersDaoWrapper(db, db.foldersDao(), compositionsDaoWrapper);
+
+        inserter = new StorageCompositionsInserter(db,
+                compositionsDao,
+                compositionsDaoWrapper,
+                foldersDaoWrapper,
+                artistsDao,
+                albumsDao,
+                db.genreDao());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void relinkNotFoundCompositionWithSameFile() {
+        long folderId = foldersDaoWrapper.createFolder(null, "music");
+        long id = insertComposition(folderId, "a.mp3", null, CorruptionType.NOT_FOUND);
+
+        inserter.applyChanges(singletonList(storageComposition(5, "music", "a.mp3", null)),
+                emptyList(),
+                emptyList(),
+                null);
+
+        assertEquals(1, compositionsDao.getCompositionsCount());
+        assertEquals(5, compositionsDao.selectStorageId(id));
+        assertNull(compositionsDao.selectCorruptionType(id));
+    }
+
+    @Test
+    public void keepCorruptionTypeOnStorageIdChange() {
+        long folderId = foldersDaoWrapper.createFolder(null, "music");
+        long id = insertComposition(folderId, "a.mp3", 3L, CorruptionType.NOT_FOUND);
+
+        inserter.applyChanges(singletonList(storageComposition(5, "music", "a.mp3", null)),
+                emptyList(),
+                emptyList(),
+                null);
+
+        assertEquals(1, compositionsDao.getCompositionsCount());
+        assertEquals(5, compositionsDao.selectStorageId(id));
+        assertEquals(CorruptionType.NOT_FOUND, compositionsDao.selectCorruptionType(id));
+    }
+
+    @Test
+    public void insertCompositionsByChunks() {
+        List<StorageFullComposition> compositions = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            compositions.add(storageComposition(i + 1, "music/rock", "file" + i + ".mp3", "artist"));
+        }
+        List<Integer> progress = new ArrayList<>();
+
+        inserter.applyChanges(compositions,
+                emptyList(),
+                emptyList(),
+                (processedCount, totalCount) -> {
+                    assertEquals(2500, totalCount);
+                    progress.add(processedCount);
+                });
+
+        assertEquals(Arrays.asList(1000, 2000, 2500), progress);
+        assertEquals(2500, compositionsDao.getCompositionsCount());
+        assertNotNull(artistsDao.findArtistIdByName("artist"));
+        assertEquals(2, foldersDaoWrapper.selectAllStorageFolders().size());
+    }
+
+    @Test
+    public void resolveExistingArtistAndAlbum() {
+        long folderId = foldersDaoWrapper.createFolder(null, "music");
+        long artistId = artistsDao.insertArtist("artist");
+        long albumId = albumsDao.insertAlbum(artistId, "album");
+
+        inserter.applyChanges(singletonList(storageComposition(1, "music", "a.mp3", "artist")),
+                emptyList(),
+                emptyList(),
+                null);
+
+        Long id = compositionsDao.findCompositionByFileName("a.mp3", folderId);
+        assertNotNull(id);
+        assertEquals(artistId, compositionsDao.getArtistId(id));
+        assertEquals(albumId, compositionsDao.getAlbumId(id));
+    }
+
+    private long insertComposition(Long folderId,
+                                   String fileName,
+                                   Long storageId,
+                                   CorruptionType corruptionType) {
+        return compositionsDao.insert(null,
+                null,
+                folderId,
+                "title",
+                null,
+                null,
+                null,
+                null,
+                fileName,
+                100L,
+                100L,
+                storageId,
+                new Date(),
+                new Date(),
+                new Date(),
+                new Date(),
+                corruptionType,
+                InitialSource.LOCAL);
+    }
+
+    private StorageFullComposition storageComposition(long storageId,
+                                                      String relativePath,
+                                                      String fileName,
+                                                      String artist) {
+        StorageAlbum album = artist == null ? null : new StorageAlbum(1, "album", artist);
+        return new StorageFullComposition(artist,
+                "title",
+                fileName,
+                relativePath,
+                100L,
+                100L,
+                storageId,
+                new Date(),
+                new Date(),
+                album);
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.anrimian.musicplayer.data.database.dao.play_queue;
+
+import static com.github.anrimian.musicplayer.data.database.dao.play_list.DbTestUtils.insert;
+import static com.github.anrimian.musicplayer.data.utils.TestDataProvider.fakeComposition;
+import static com.github.anrimian.musicplayer.domain.utils.ListUtils.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity;
+import com.github.anrimian.musicplayer.domain.models.composition.Composition;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PlayQueueDaoWrapperTest {
+
+    private static final int QUEUE_SIZE = 50000;
+
+    private LibraryDatabase db;
+    private PlayQueueDao playQueueDao;
+
+    private PlayQueueDaoWrapper daoWrapper;
+
+    private final List<Long> compositionIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        db = Room.inMemoryDatabaseBuilder(context, LibraryDatabase.class).build();
+        playQueueDao = db.playQueueDao();
+        daoWrapper = new PlayQueueDaoWrapper(db, playQueueDao);
+
+        CompositionsDao compositionsDao = db.compositionsDao();
+        db.runInTransaction(() -> {
+            for (int i = 0; i < QUEUE_SIZE; i++) {
+                compositionIds.add(insert(compositionsDao, null, null, String.valueOf(i)));
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void addCompositionsToPlayNextInLargeQueue() {
+        long currentItemId = daoWrapper.insertNewPlayQueue(compositionIds, false, 100);
+        List<PlayQueueEntity> queue = getQueue(false);
+        List<PlayQueueEntity> shuffledQueue = getQueue(true);
+
+        List<Composition> compositions = getCompositions(3);
+        daoWrapper.addCompositionsToQueue(compositions, currentItemId);
+
+        assertEquals(0, getChangedItemsCount(queue));
+        assertInsertedAfter(currentItemId, queue, compositions, false);
+        assertInsertedAfter(currentItemId, shuffledQueue, compositions, true);
+    }
+
+    @Test
+    public void addCompositionsToPlayNextRepeatedly() {
+        long currentItemId = daoWrapper.insertNewPlayQueue(compositionIds, false, 0);
+        List<PlayQueueEntity> queue = getQueue(false);
+
+        List<Composition> insertedCompositions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Composition composition = fakeComposition(compositionIds.get(i));
+            daoWrapper.addCompositionsToQueue(asList(composition), currentItemId);
+            insertedCompositions.add(0, composition);
+        }
+
+        assertInsertedAfter(currentItemId, queue, insertedCompositions, false);
+    }
+
+    @Test
+    public void addCompositionsToEndOfLargeQueue() {
+        daoWrapper.insertNewPlayQueue(compositionIds, false, 0);
+        List<PlayQueueEntity> queue = getQueue(false);
+        long lastItemId = queue.get(queue.size() - 1).getId();
+
+        List<Composition> compositions = getCompositions(QUEUE_SIZE);
+        daoWrapper.addCompositionsToEndQueue(compositions);
+
+        assertEquals(0, getChangedItemsCount(queue));
+        assertInsertedAfter(lastItemId, queue, compositions, false);
+    }
+
+    @Test
+    public void reshuffleLargeQueue() {
+        long currentItemId = daoWrapper.insertNewPlayQueue(compositionIds, false, 100);
+        List<PlayQueueEntity> shuffledQueue = getQueue(true);
+
+        daoWrapper.reshuffleQueue(currentItemId);
+
+        List<PlayQueueEntity> newShuffledQueue = getQueue(true);
+        assertEquals(currentItemId, newShuffledQueue.get(0).getId());
+        assertEquals(QUEUE_SIZE, newShuffledQueue.size());
+        assertNotEquals(getIds(shuffledQueue), getIds(newShuffledQueue));
+        //only current item has own shuffled position
+        try (Cursor c = db.query("SELECT count() FROM play_queue WHERE shuffledPosition IS NOT NULL", null)) {
+            c.moveToFirst();
+            assertEquals(1, c.getInt(0));
+        }
+    }
+
+    @Test
+    public void swapItemsInLargeQueue() {
+        daoWrapper.insertNewPlayQueue(compositionIds, false, 0);
+        List<PlayQueueEntity> queue = getQueue(false);
+
+        Map<Long, Integer> positions = new HashMap<>();
+        positions.put(queue.get(10).getId(), queue.get(20000).getPosition());
+        positions.put(queue.get(20000).getId(), queue.get(10).getPosition());
+        daoWrapper.updatePositions(positions, false);
+
+        assertEquals(2, getChangedItemsCount(queue));
+        List<PlayQueueEntity> newQueue = getQueue(false);
+        assertEquals(queue.get(20000).getId(), newQueue.get(10).getId());
+        assertEquals(queue.get(10).getId(), newQueue.get(20000).getId());
+    }
+
+    private void assertInsertedAfter(long itemId,
+                                     List<PlayQueueEntity> oldQueue,
+                                     List<Composition> insertedCompositions,
+                                     boolean isShuffled) {
+        List<Long> expected = new ArrayList<>();
+        for (PlayQueueEntity entity : oldQueue) {
+            expected.add(entity.getAudioId());
+            if (entity.getId() == itemId) {
+                for (Composition composition : insertedCompositions) {
+                    expected.add(composition.getId());
+                }
+            }
+        }
+        List<Long> actual = new ArrayList<>();
+        for (PlayQueueEntity entity : getQueue(isShuffled)) {
+            actual.add(entity.getAudioId());
+        }
+        assertEquals(expected, actual);
+    }
+
+    private int getChangedItemsCount(List<PlayQueueEntity> oldQueue) {
+        Map<Long, PlayQueueEntity> newItems = new HashMap<>();
+        for (PlayQueueEntity entity : getQueue(false)) {
+            newItems.put(entity.getId(), entity);
+        }
+        int count = 0;
+        for (PlayQueueEntity entity : oldQueue) {
+            PlayQueueEntity newEntity = newItems.get(entity.getId());
+            if (newEntity.getPosition() != entity.getPosition()
+                    || !newEntity.getShuffledPosition().equals(entity.getShuffledPosition())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private List<PlayQueueEntity> getQueue(boolean isShuffled) {
+        List<PlayQueueEntity> queue = playQueueDao.getPlayQueue();
+        if (isShuffled) {
+            Collections.sort(queue, (first, second) ->
+                    first.getShuffledPosition().compareTo(second.getShuffledPosition()));
+        }
+        return queue;
+    }
+
+    private List<Long> getIds(List<PlayQueueEntity> queue) {
+        List<Long> ids = new ArrayList<>(queue.size());
+        for (PlayQueueEntity entity : queue) {
+            ids.add(entity.getId());
+        }
+        return ids;
+    }
+
+    private List<Composition> getCompositions(int count) {
+        List<Composition> compositions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            compositions.add(fakeComposition(compositionIds.get(i)));
+        }
+        return compositions;
+    }
+}
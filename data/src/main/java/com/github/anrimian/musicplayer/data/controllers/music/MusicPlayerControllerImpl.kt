@@ -45,7 +45,9 @@ class MusicPlayerControllerImpl(
                             context,
                             uiScheduler,
                             equalizerController,
-                            exoPlayerMediaItemBuilder
+                            exoPlayerMediaItemBuilder,
+                            settingsRepository::getCrossfadeTime,
+                            settingsRepository::getLoudnessNormalizationMode
                         )
                     }
                 }
@@ -67,6 +69,10 @@ class MusicPlayerControllerImpl(
         return mediaPlayer.prepareToPlay(source)
     }
 
+    override fun setNextSource(source: CompositionContentSource?) {
+        mediaPlayer.setNextSource(source)
+    }
+
     override fun stop() {
         mediaPlayer.stop()
     }
@@ -104,8 +110,8 @@ class MusicPlayerControllerImpl(
         currentSpeedSubject.onNext(speed)
     }
 
-    override fun getTrackPositionObservable(): Observable<Long> {
-        return mediaPlayer.getTrackPositionObservable()
+    override fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return mediaPlayer.getTrackPositionObservable(intervalMillis)
     }
 
     override fun getPlayerEventsObservable(): Observable<MediaPlayerEvent> {
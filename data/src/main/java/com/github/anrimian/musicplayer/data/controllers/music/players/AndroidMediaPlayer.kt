@@ -6,6 +6,7 @@ import android.media.MediaPlayer
 import android.os.Build
 import com.github.anrimian.musicplayer.data.controllers.music.equalizer.EqualizerController
 import com.github.anrimian.musicplayer.data.controllers.music.players.utils.MediaPlayerDataSourceBuilder
+import com.github.anrimian.musicplayer.data.controllers.music.players.utils.TrackPositionClock
 import com.github.anrimian.musicplayer.data.models.composition.source.UriContentSource
 import com.github.anrimian.musicplayer.data.utils.hasPersistedReadPermission
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
@@ -21,7 +22,6 @@ import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.subjects.PublishSubject
 import java.io.IOException
-import java.util.concurrent.TimeUnit
 
 class AndroidMediaPlayer(
     private val context: Context,
@@ -31,10 +31,12 @@ class AndroidMediaPlayer(
 ) : AppMediaPlayer {
 
     private val playerEventsSubject = PublishSubject.create<MediaPlayerEvent>()
+    private val positionClock = TrackPositionClock(ioScheduler)
 
     private val mediaPlayer = MediaPlayer().apply {
         //problem with error case(file not found), multiple error events
         setOnCompletionListener {
+            positionClock.update(readPosition(), 0L, false, playbackSpeed)
             isSourcePrepared = false
             playerEventsSubject.onNext(MediaPlayerEvent.Finished)
         }
@@ -56,6 +58,7 @@ class AndroidMediaPlayer(
     private var volume = 1f
     private var leftVolume = 1f
     private var rightVolume = 1f
+    private var playbackSpeed = 1f
 
     override fun prepareToPlay(
         source: CompositionContentSource,
@@ -68,12 +71,17 @@ class AndroidMediaPlayer(
             .doOnSubscribe { isSourcePrepared = false }
             .doOnComplete {
                 isSourcePrepared = true
+                positionClock.update(0L, readDuration(), false, playbackSpeed)
                 postponedPosition?.let(this::seekTo)
             }
             .onErrorResumeNext { t -> Completable.error(mapPrepareException(t, source)) }
             .subscribeOn(ioScheduler)
     }
 
+    override fun setNextSource(source: CompositionContentSource?) {
+        //not supported, next source is prepared after the end of the current one
+    }
+
     override fun stop() {
         if (!isPlaying) {
             return
@@ -85,6 +93,7 @@ class AndroidMediaPlayer(
             pausePlayer()
         }
         isPlaying = false
+        updatePositionClock()
     }
 
     override fun resume() {
@@ -102,6 +111,7 @@ class AndroidMediaPlayer(
         }
         pausePlayer()
         isPlaying = false
+        updatePositionClock()
     }
 
     override fun seekTo(position: Long) {
@@ -110,6 +120,8 @@ class AndroidMediaPlayer(
                 synchronized(mediaPlayer) {
                     mediaPlayer.seekTo(position.toInt())
                 }
+                //seek is applied asynchronously, so target position is reported
+                positionClock.update(position, readDuration(), isPlaying, playbackSpeed)
             } else if (currentSource != null) {
                 postponedPosition = position
             }
@@ -128,40 +140,16 @@ class AndroidMediaPlayer(
         applyVolume()
     }
 
-    override fun getTrackPositionObservable(): Observable<Long> {
-        return Observable.interval(0, 1, TimeUnit.SECONDS)
-            .observeOn(ioScheduler)
-            .flatMapSingle { getTrackPosition() }
+    override fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return positionClock.getPositionObservable(intervalMillis)
     }
 
     override fun getTrackPosition(): Single<Long> {
-        return Single.fromCallable {
-            if (!isSourcePrepared) {
-                return@fromCallable 0L
-            }
-            try {
-                synchronized(mediaPlayer) {
-                    return@fromCallable mediaPlayer.currentPosition.toLong()
-                }
-            } catch (e: IllegalStateException) {
-                return@fromCallable 0L
-            }
-        }
+        return Single.fromCallable(this::readPosition)
     }
 
     override fun getDuration(): Single<Long> {
-        return Single.fromCallable {
-            if (!isSourcePrepared) {
-                return@fromCallable 0L
-            }
-            try {
-                synchronized(mediaPlayer) {
-                    return@fromCallable mediaPlayer.duration.toLong()
-                }
-            } catch (e: IllegalStateException) {
-                return@fromCallable 0L
-            }
-        }
+        return Single.fromCallable(this::readDuration)
     }
 
     override fun setPlaybackSpeed(speed: Float) {
@@ -174,6 +162,8 @@ class AndroidMediaPlayer(
                         mediaPlayer.pause()
                     }
                 }
+                playbackSpeed = speed
+                updatePositionClock()
             } catch (ignored: IllegalStateException) {
             } //IllegalArgumentException - handle unsupported case
         }
@@ -273,6 +263,36 @@ class AndroidMediaPlayer(
         }
     }
 
+    private fun readPosition(): Long {
+        if (!isSourcePrepared) {
+            return 0L
+        }
+        try {
+            synchronized(mediaPlayer) {
+                return mediaPlayer.currentPosition.toLong()
+            }
+        } catch (e: IllegalStateException) {
+            return 0L
+        }
+    }
+
+    private fun readDuration(): Long {
+        if (!isSourcePrepared) {
+            return 0L
+        }
+        try {
+            synchronized(mediaPlayer) {
+                return mediaPlayer.duration.toLong()
+            }
+        } catch (e: IllegalStateException) {
+            return 0L
+        }
+    }
+
+    private fun updatePositionClock() {
+        positionClock.update(readPosition(), readDuration(), isPlaying, playbackSpeed)
+    }
+
     private fun pausePlayer() {
         try {
             synchronized(mediaPlayer) {
@@ -292,6 +312,7 @@ class AndroidMediaPlayer(
             } catch (ignored: IllegalStateException) {}
             isPlaying = true
         }
+        updatePositionClock()
     }
 
 }
\ No newline at end of file
@@ -14,6 +14,13 @@ interface AppMediaPlayer {
         previousException: Exception? = null
     ): Completable
 
+    /**
+     * Source to start right after the end of the current one, kept until it is started
+     * or replaced. Player emits [MediaPlayerEvent.NextSourceStarted] when it moves to it.
+     * Null removes it.
+     */
+    fun setNextSource(source: CompositionContentSource?)
+
     fun stop()
 
     fun resume()
@@ -34,7 +41,10 @@ interface AppMediaPlayer {
 
     fun setPlaybackSpeed(speed: Float)
 
-    fun getTrackPositionObservable(): Observable<Long>
+    /**
+     * Emits position with given interval while playing and only its changes while paused.
+     */
+    fun getTrackPositionObservable(intervalMillis: Long): Observable<Long>
 
     fun getPlayerEventsObservable(): Observable<MediaPlayerEvent>
 
@@ -28,6 +28,7 @@ class CompositeMediaPlayer(
     private val currentPlayerSubject = BehaviorSubject.createDefault(currentPlayer)
 
     private var currentSource: CompositionContentSource? = null
+    private var nextSource: CompositionContentSource? = null
     private var previousPlayerException: Exception? = null
 
     override fun prepareToPlay(
@@ -65,6 +66,11 @@ class CompositeMediaPlayer(
         }.retry(this::prepareRelaunchOnError)
     }
 
+    override fun setNextSource(source: CompositionContentSource?) {
+        nextSource = source
+        currentPlayer.setNextSource(source)
+    }
+
     override fun stop() {
         currentSource = null
         currentPlayer.stop()
@@ -86,8 +92,10 @@ class CompositeMediaPlayer(
         currentPlayer.setVolume(volume)
     }
 
-    override fun getTrackPositionObservable(): Observable<Long> {
-        return currentPlayerSubject.switchMap(AppMediaPlayer::getTrackPositionObservable)
+    override fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return currentPlayerSubject.switchMap { player ->
+            player.getTrackPositionObservable(intervalMillis)
+        }
     }
 
     override fun getTrackPosition(): Single<Long> {
@@ -124,6 +132,7 @@ class CompositeMediaPlayer(
     private fun setPlayer(index: Int) {
         currentPlayer.release()
         currentPlayer = createNewPlayerInstance(index)
+        currentPlayer.setNextSource(nextSource)
         currentPlayerSubject.onNext(currentPlayer)
     }
 
@@ -140,6 +149,10 @@ class CompositeMediaPlayer(
     }
 
     private fun onPlayerEventReceived(event: MediaPlayerEvent) {
+        if (event == MediaPlayerEvent.NextSourceStarted) {
+            currentSource = nextSource
+            nextSource = null
+        }
         val eventToEmit = if (
             event is MediaPlayerEvent.Error && prepareRelaunchOnError(event.throwable)
         ) {
@@ -3,9 +3,11 @@ package com.github.anrimian.musicplayer.data.controllers.music.players
 import android.annotation.SuppressLint
 import android.content.Context
 import android.net.Uri
+import androidx.media3.common.C
 import androidx.media3.common.MediaItem
 import androidx.media3.common.PlaybackException
 import androidx.media3.common.PlaybackParameters
+import androidx.media3.common.Player
 import androidx.media3.common.audio.AudioProcessor
 import androidx.media3.datasource.DefaultDataSource
 import androidx.media3.exoplayer.DefaultRenderersFactory
@@ -13,26 +15,35 @@ import androidx.media3.exoplayer.ExoPlayer
 import androidx.media3.exoplayer.RenderersFactory
 import androidx.media3.exoplayer.audio.AudioSink
 import androidx.media3.exoplayer.audio.DefaultAudioSink
+import androidx.media3.exoplayer.audio.ForwardingAudioSink
 import androidx.media3.exoplayer.source.MediaSource
 import androidx.media3.exoplayer.source.ProgressiveMediaSource
 import androidx.media3.exoplayer.source.UnrecognizedInputFormatException
 import androidx.media3.exoplayer.upstream.Loader
 import com.github.anrimian.musicplayer.data.controllers.music.equalizer.EqualizerController
 import com.github.anrimian.musicplayer.data.controllers.music.players.exceptions.PlayerOutOfMemoryException
+import com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer.CrossfadeProcessor
+import com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer.LoudnessNormalizationProcessor
 import com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer.StereoVolumeProcessor
 import com.github.anrimian.musicplayer.data.controllers.music.players.utils.ExoPlayerMediaItemBuilder
+import com.github.anrimian.musicplayer.data.controllers.music.players.utils.TrackPositionClock
+import com.github.anrimian.musicplayer.data.models.composition.file.StorageCompositionSource
 import com.github.anrimian.musicplayer.data.utils.exo_player.PlayerEventListener
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
 import com.github.anrimian.musicplayer.domain.models.composition.content.NoReadPermissionException
 import com.github.anrimian.musicplayer.domain.models.composition.content.UnsupportedSourceException
 import com.github.anrimian.musicplayer.domain.models.player.SoundBalance
 import com.github.anrimian.musicplayer.domain.models.player.events.MediaPlayerEvent
+import com.github.anrimian.musicplayer.domain.models.player.modes.LoudnessNormalizationMode
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.disposables.Disposable
 import io.reactivex.rxjava3.subjects.PublishSubject
+import java.nio.ByteBuffer
 import java.util.concurrent.TimeUnit
+import kotlin.math.max
 
 @SuppressLint("UnsafeOptInUsageError")
 class ExoMediaPlayer(
@@ -40,29 +51,32 @@ class ExoMediaPlayer(
     private val uiScheduler: Scheduler,
     private val equalizerController: EqualizerController,
     private val exoPlayerMediaItemBuilder: ExoPlayerMediaItemBuilder,
+    private val crossfadeTimeProvider: () -> Long,
+    private val loudnessNormalizationModeProvider: () -> Int,
 ) : AppMediaPlayer {
 
     private val playerEventsSubject = PublishSubject.create<MediaPlayerEvent>()
-    private val stereoVolumeProcessor = StereoVolumeProcessor().apply {
-        setChannelMap(intArrayOf(0, 1))
-    }
+    private val positionClock = TrackPositionClock(uiScheduler)
 
-    private val player by lazy {
-        val factory = createSimpleRenderersFactory(context, stereoVolumeProcessor)
-        val player = ExoPlayer.Builder(context, factory).build()
-        val playerEventListener = PlayerEventListener(
-            { playerEventsSubject.onNext(MediaPlayerEvent.Finished) },
-            { t -> playerEventsSubject.onNext(MediaPlayerEvent.Error(mapPlayerException(t)))})
-        player.addListener(playerEventListener)
-//      equalizerController.attachEqualizer(player.getAudioSessionId());
-//          player.addAnalyticsListener(new AnalyticsListener() {
-//              @Override
-//              public void onAudioSessionIdChanged(@NonNull EventTime eventTime, int audioSessionId) {
-//                  equalizerController.attachEqualizer(audioSessionId);
-//              }
-//      });
-        return@lazy player
-    }
+    @Volatile
+    private var soundBalance: SoundBalance? = null
+    private var volume = 1f
+    private var playbackSpeed = 1f
+
+    @Volatile
+    private var output = PlayerOutput()
+    //buffers next source to crossfade with, then fades out previous source
+    @Volatile
+    private var crossfadeOutput: PlayerOutput? = null
+    private var crossfadeSource: CompositionContentSource? = null
+    private var isFadingOut = false
+    private var crossfadeCheckDisposable: Disposable? = null
+
+    //source started after the current one, accessed only on ui thread
+    private var nextSource: CompositionContentSource? = null
+
+    private val player: ExoPlayer
+        get() = output.player
 
     override fun getPlayerEventsObservable(): Observable<MediaPlayerEvent> {
         return playerEventsSubject
@@ -72,17 +86,30 @@ class ExoMediaPlayer(
         source: CompositionContentSource,
         previousException: Exception?,
     ): Completable {
-        return Single.just(exoPlayerMediaItemBuilder.createUri(source))
-            .flatMap(this::createMediaSource)
-            .observeOn(uiScheduler)
-            .doOnSuccess { mediaSource ->
-                player.setMediaSource(mediaSource)
-                player.prepare()
+        return Single.fromCallable { startNextSource(source) }
+            .subscribeOn(uiScheduler)
+            .flatMapCompletable { isStarted ->
+                if (isStarted) Completable.complete() else prepareMediaSource(source)
             }
-            .ignoreElement()
             .onErrorResumeNext { t -> Completable.error(mapPlayerException(t)) }
     }
 
+    override fun setNextSource(source: CompositionContentSource?) {
+        usePlayer { player ->
+            if (source == nextSource) {
+                return@usePlayer
+            }
+            removeNextSource(player)
+            if (source == null) {
+                return@usePlayer
+            }
+            nextSource = source
+            if (player.mediaItemCount > 0) {
+                attachNextSource(source)
+            }
+        }
+    }
+
     override fun stop() {
         Completable.fromRunnable {
             seekTo(0)
@@ -103,6 +130,7 @@ class ExoMediaPlayer(
     override fun seekTo(position: Long) {
         Completable.fromRunnable {
             try {
+                cancelCrossfade()
                 player.seekTo(position)
             } catch (ignored: IndexOutOfBoundsException) { //crash inside exoplayer
                 return@fromRunnable
@@ -111,15 +139,15 @@ class ExoMediaPlayer(
     }
 
     override fun setVolume(volume: Float) {
-        Completable.fromRunnable { player.volume = volume }
-            .subscribeOn(uiScheduler)
-            .subscribe()
+        usePlayer { player ->
+            this.volume = volume
+            player.volume = volume
+            crossfadeOutput?.player?.volume = volume
+        }
     }
 
-    override fun getTrackPositionObservable(): Observable<Long> {
-        return Observable.interval(0, 1, TimeUnit.SECONDS)
-            .observeOn(uiScheduler)
-            .map { player.currentPosition }
+    override fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return positionClock.getPositionObservable(intervalMillis)
     }
 
     override fun getTrackPosition(): Single<Long> {
@@ -133,14 +161,20 @@ class ExoMediaPlayer(
     }
 
     override fun setPlaybackSpeed(speed: Float) {
-        usePlayer { player -> player.playbackParameters = PlaybackParameters(speed) }
+        usePlayer { player ->
+            playbackSpeed = speed
+            player.playbackParameters = PlaybackParameters(speed)
+            crossfadeOutput?.player?.playbackParameters = PlaybackParameters(speed)
+        }
     }
 
     override fun release() {
         usePlayer { player ->
 //            equalizerController.detachEqualizer();
             pausePlayer()
+            crossfadeCheckDisposable?.dispose()
             player.release()
+            crossfadeOutput?.player?.release()
         }
     }
 
@@ -149,7 +183,9 @@ class ExoMediaPlayer(
     }
 
     override fun setSoundBalance(soundBalance: SoundBalance) {
-        stereoVolumeProcessor.setVolume(soundBalance.left, soundBalance.right)
+        this.soundBalance = soundBalance
+        output.stereoVolumeProcessor.setVolume(soundBalance.left, soundBalance.right)
+        crossfadeOutput?.stereoVolumeProcessor?.setVolume(soundBalance.left, soundBalance.right)
     }
 
     private fun startPlayWhenReady() {
@@ -160,10 +196,288 @@ class ExoMediaPlayer(
     }
 
     private fun pausePlayer() {
+        cancelCrossfade()
         player.playWhenReady = false
         equalizerController.detachEqualizer()
     }
 
+    private fun prepareMediaSource(source: CompositionContentSource): Completable {
+        return Single.fromCallable { exoPlayerMediaItemBuilder.createUri(source) }
+            .flatMap(this::createMediaSource)
+            .observeOn(uiScheduler)
+            .doOnSuccess { mediaSource ->
+                cancelCrossfade()
+                output.normalizationProcessor.setGain(getLoudnessGain(source))
+                output.crossfadeProcessor.setCrossfadeEnabled(crossfadeTimeProvider() > 0)
+                player.setMediaSource(mediaSource)
+                appendNextSource(source)
+                player.prepare()
+            }
+            .ignoreElement()
+    }
+
+    /**
+     * Moves to already buffered next source instead of its preparation,
+     * e.g. when user skips to the next item.
+     */
+    private fun startNextSource(source: CompositionContentSource): Boolean {
+        if (source == crossfadeSource) {
+            switchToCrossfadeOutput()
+            return true
+        }
+        if (source != nextSource
+            || player.playbackState == Player.STATE_IDLE
+            || !player.hasNextMediaItem()
+        ) {
+            return false
+        }
+        output.normalizationProcessor.setGain(getLoudnessGain(source))
+        player.seekTo(player.nextMediaItemIndex, 0)
+        removePreviousItems()
+        return true
+    }
+
+    //playlist was replaced, so keep next source after the new current one
+    private fun appendNextSource(currentSource: CompositionContentSource) {
+        val source = nextSource ?: return
+        if (source == currentSource) {
+            removeNextSource(player)
+            return
+        }
+        if (source != crossfadeSource) {
+            attachNextSource(source)
+        }
+    }
+
+    //with crossfade next source is buffered by the second output, otherwise it is appended to playlist
+    private fun attachNextSource(source: CompositionContentSource) {
+        val mediaSource = try {
+            buildMediaSource(exoPlayerMediaItemBuilder.createUri(source))
+        } catch (e: Exception) {
+            //next source will be prepared after the end of the current one and report error
+            nextSource = null
+            return
+        }
+        val crossfadeTime = crossfadeTimeProvider()
+        if (crossfadeTime > 0) {
+            prepareCrossfade(source, mediaSource, crossfadeTime)
+        } else {
+            output.normalizationProcessor.addNextStreamGain(getLoudnessGain(source))
+            player.addMediaSource(mediaSource)
+        }
+    }
+
+    private fun prepareCrossfade(
+        source: CompositionContentSource,
+        mediaSource: MediaSource,
+        crossfadeTime: Long,
+    ) {
+        //second output is needed, so previous source is not faded out till the end
+        finishFadeOut()
+        val nextOutput = getCrossfadeOutput()
+        nextOutput.normalizationProcessor.setGain(getLoudnessGain(source))
+        //fade is counted in media time, playback speed is applied after processors
+        nextOutput.crossfadeProcessor.setCrossfadeEnabled(true)
+        nextOutput.crossfadeProcessor.fadeIn((crossfadeTime * 1000 * playbackSpeed).toLong())
+        nextOutput.player.playWhenReady = false
+        nextOutput.player.setMediaSource(mediaSource)
+        nextOutput.player.prepare()
+        crossfadeSource = source
+
+        crossfadeCheckDisposable?.dispose()
+        crossfadeCheckDisposable = Observable.interval(
+            CROSSFADE_CHECK_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS,
+            uiScheduler
+        ).subscribe { checkCrossfadeStart(crossfadeTime) }
+    }
+
+    private fun checkCrossfadeStart(crossfadeTime: Long) {
+        val player = player
+        val nextPlayer = crossfadeOutput?.player ?: return
+        val duration = player.duration
+        if (!player.isPlaying
+            || duration == C.TIME_UNSET
+            || nextPlayer.playbackState != Player.STATE_READY
+        ) {
+            return
+        }
+        val remainingTime = duration - player.currentPosition
+        if (remainingTime <= crossfadeTime * playbackSpeed) {
+            startCrossfade(remainingTime)
+        }
+    }
+
+    private fun startCrossfade(fadeOutTime: Long) {
+        val nextOutput = crossfadeOutput ?: return
+        crossfadeCheckDisposable?.dispose()
+        val previousOutput = output
+        //fade starts from the next processed frame, which is ahead of playback by sink buffer
+        val fadeOutTimeUs = fadeOutTime * 1000 - previousOutput.sinkBufferedDurationUs
+        previousOutput.crossfadeProcessor.fadeOut(max(0L, fadeOutTimeUs))
+        nextOutput.player.playWhenReady = true
+        output = nextOutput
+        crossfadeOutput = previousOutput
+        crossfadeSource = null
+        nextSource = null
+        isFadingOut = true
+        updatePositionClock()
+        playerEventsSubject.onNext(MediaPlayerEvent.NextSourceStarted)
+    }
+
+    //moves to buffered crossfade source without fading
+    private fun switchToCrossfadeOutput() {
+        val nextOutput = crossfadeOutput ?: return
+        crossfadeCheckDisposable?.dispose()
+        val previousOutput = output
+        nextOutput.crossfadeProcessor.cancelFade()
+        nextOutput.player.playWhenReady = previousOutput.player.playWhenReady
+        previousOutput.player.stop()
+        previousOutput.player.clearMediaItems()
+        output = nextOutput
+        crossfadeOutput = previousOutput
+        crossfadeSource = null
+        nextSource = null
+        updatePositionClock()
+    }
+
+    private fun finishFadeOut() {
+        if (!isFadingOut) {
+            return
+        }
+        isFadingOut = false
+        crossfadeOutput?.let { fadedOutput ->
+            fadedOutput.player.stop()
+            fadedOutput.player.clearMediaItems()
+            fadedOutput.crossfadeProcessor.cancelFade()
+        }
+    }
+
+    //pause, seek or new source stop overlapping and return full volume
+    private fun cancelCrossfade() {
+        if (!isFadingOut) {
+            return
+        }
+        finishFadeOut()
+        output.crossfadeProcessor.cancelFade()
+    }
+
+    private fun releaseCrossfadeSource() {
+        crossfadeCheckDisposable?.dispose()
+        if (crossfadeSource == null) {
+            return
+        }
+        crossfadeSource = null
+        crossfadeOutput?.player?.let { nextPlayer ->
+            nextPlayer.stop()
+            nextPlayer.clearMediaItems()
+        }
+    }
+
+    private fun getCrossfadeOutput(): PlayerOutput {
+        return crossfadeOutput ?: PlayerOutput().also { newOutput ->
+            //the same audio session, so equalizer is applied to both outputs
+            newOutput.player.audioSessionId = player.audioSessionId
+            newOutput.player.volume = volume
+            newOutput.player.playbackParameters = PlaybackParameters(playbackSpeed)
+            crossfadeOutput = newOutput
+        }
+    }
+
+    private fun removeNextSource(player: ExoPlayer) {
+        nextSource = null
+        releaseCrossfadeSource()
+        output.normalizationProcessor.clearNextStreamGains()
+        val nextIndex = player.currentMediaItemIndex + 1
+        if (nextIndex < player.mediaItemCount) {
+            player.removeMediaItems(nextIndex, player.mediaItemCount)
+        }
+    }
+
+    private fun removePreviousItems() {
+        nextSource = null
+        if (player.currentMediaItemIndex > 0) {
+            player.removeMediaItems(0, player.currentMediaItemIndex)
+        }
+    }
+
+    private fun onPlayerEnded(source: PlayerOutput) {
+        if (source === output) {
+            playerEventsSubject.onNext(MediaPlayerEvent.Finished)
+        } else {
+            finishFadeOut()
+        }
+    }
+
+    private fun onNextItemStarted(source: PlayerOutput) {
+        if (source !== output) {
+            return
+        }
+        //gain of the next item is already applied by normalization processor at its stream start
+        removePreviousItems()
+        playerEventsSubject.onNext(MediaPlayerEvent.NextSourceStarted)
+    }
+
+    private fun onPositionStateChanged(source: PlayerOutput) {
+        if (source === output) {
+            updatePositionClock()
+        }
+    }
+
+    private fun updatePositionClock() {
+        val player = player
+        positionClock.update(
+            player.currentPosition,
+            player.duration,
+            player.isPlaying,
+            player.playbackParameters.speed
+        )
+    }
+
+    private fun onPlayerError(source: PlayerOutput, error: PlaybackException) {
+        if (source !== output) {
+            if (isFadingOut) {
+                finishFadeOut()
+            } else {
+                //next source will be prepared in usual way and report error for itself
+                nextSource = null
+                releaseCrossfadeSource()
+            }
+            return
+        }
+        //exo player reports preparation error of the next item at the end of the current one
+        if (nextSource != null && isCurrentItemEnded()) {
+            //drop next item, it will be prepared in usual way and report error for itself
+            removeNextSource(player)
+            playerEventsSubject.onNext(MediaPlayerEvent.Finished)
+            return
+        }
+        playerEventsSubject.onNext(MediaPlayerEvent.Error(mapPlayerException(error)))
+    }
+
+    //replay gain of library files, other sources are played as is
+    private fun getLoudnessGain(source: CompositionContentSource): Float {
+        if (source !is StorageCompositionSource) {
+            return 0f
+        }
+        val gain = when (loudnessNormalizationModeProvider()) {
+            LoudnessNormalizationMode.TRACK -> {
+                source.trackGain ?: source.analyzedGain ?: source.albumGain
+            }
+            LoudnessNormalizationMode.ALBUM -> {
+                source.albumGain ?: source.trackGain ?: source.analyzedGain
+            }
+            else -> null
+        }
+        return gain ?: 0f
+    }
+
+    private fun isCurrentItemEnded(): Boolean {
+        val duration = player.duration
+        return duration != C.TIME_UNSET
+                && player.currentPosition >= duration - ITEM_END_TOLERANCE_MILLIS
+    }
+
     private fun mapPlayerException(throwable: Throwable): Throwable {
         //logic is duplicated in PlayerErrorParserImpl
         //likely all exo player error parsing logic should be here
@@ -184,11 +498,14 @@ class ExoMediaPlayer(
     }
 
     private fun createMediaSource(uri: Uri): Single<MediaSource> {
-        return Single.fromCallable<MediaSource> {
-            val dataSourceFactory = DefaultDataSource.Factory(context)
-            val mediaItem = MediaItem.fromUri(uri)
-            ProgressiveMediaSource.Factory(dataSourceFactory).createMediaSource(mediaItem)
-        }.timeout(6, TimeUnit.SECONDS) //read from uri can be freeze for some reason, check
+        return Single.fromCallable { buildMediaSource(uri) }
+            .timeout(6, TimeUnit.SECONDS) //read from uri can be freeze for some reason, check
+    }
+
+    private fun buildMediaSource(uri: Uri): MediaSource {
+        val dataSourceFactory = DefaultDataSource.Factory(context)
+        val mediaItem = MediaItem.fromUri(uri)
+        return ProgressiveMediaSource.Factory(dataSourceFactory).createMediaSource(mediaItem)
     }
 
     private fun usePlayer(function: (ExoPlayer) -> Unit) {
@@ -199,6 +516,8 @@ class ExoMediaPlayer(
 
     private fun createSimpleRenderersFactory(
         context: Context,
+        normalizationProcessor: LoudnessNormalizationProcessor,
+        onSinkBufferedDurationChanged: (Long) -> Unit,
         vararg audioProcessors: AudioProcessor,
     ): RenderersFactory {
         return object : DefaultRenderersFactory(context) {
@@ -207,13 +526,87 @@ class ExoMediaPlayer(
                 enableFloatOutput: Boolean,
                 enableAudioTrackPlaybackParams: Boolean,
             ): AudioSink {
-                return DefaultAudioSink.Builder(context)
-                    .setAudioProcessors(audioProcessors)
+                val audioSink = DefaultAudioSink.Builder(context)
+                    .setAudioProcessors(arrayOf(normalizationProcessor, *audioProcessors))
                     .setEnableFloatOutput(enableFloatOutput)
                     .setEnableAudioTrackPlaybackParams(enableAudioTrackPlaybackParams)
                     .build()
+                //offset is changed right before the first buffer of the next gapless item
+                return object : ForwardingAudioSink(audioSink) {
+                    override fun setOutputStreamOffsetUs(outputStreamOffsetUs: Long) {
+                        super.setOutputStreamOffsetUs(outputStreamOffsetUs)
+                        normalizationProcessor.onOutputStreamStarted(outputStreamOffsetUs)
+                    }
+
+                    //buffers are processed when they are handled, position is what is heard
+                    override fun handleBuffer(
+                        buffer: ByteBuffer,
+                        presentationTimeUs: Long,
+                        encodedAccessUnitCount: Int,
+                    ): Boolean {
+                        val isHandled = super.handleBuffer(
+                            buffer,
+                            presentationTimeUs,
+                            encodedAccessUnitCount
+                        )
+                        val positionUs = getCurrentPositionUs(false)
+                        if (positionUs != AudioSink.CURRENT_POSITION_NOT_SET) {
+                            onSinkBufferedDurationChanged(max(0L, presentationTimeUs - positionUs))
+                        }
+                        return isHandled
+                    }
+
+                    override fun flush() {
+                        super.flush()
+                        onSinkBufferedDurationChanged(0)
+                    }
+                }
             }
         }
     }
 
-}
\ No newline at end of file
+    private inner class PlayerOutput {
+
+        val normalizationProcessor = LoudnessNormalizationProcessor()
+        val stereoVolumeProcessor = StereoVolumeProcessor().apply {
+            setChannelMap(intArrayOf(0, 1))
+            soundBalance?.let { balance -> setVolume(balance.left, balance.right) }
+        }
+        val crossfadeProcessor = CrossfadeProcessor()
+
+        //media time between the last processed buffer and playback position
+        @Volatile
+        var sinkBufferedDurationUs = 0L
+
+        val player by lazy {
+            val factory = createSimpleRenderersFactory(
+                context,
+                normalizationProcessor,
+                { bufferedDurationUs -> sinkBufferedDurationUs = bufferedDurationUs },
+                stereoVolumeProcessor,
+                crossfadeProcessor
+            )
+            val player = ExoPlayer.Builder(context, factory).build()
+            val playerEventListener = PlayerEventListener(
+                { onPlayerEnded(this) },
+                { onNextItemStarted(this) },
+                { onPositionStateChanged(this) },
+                { error -> onPlayerError(this, error) })
+            player.addListener(playerEventListener)
+//      equalizerController.attachEqualizer(player.getAudioSessionId());
+//          player.addAnalyticsListener(new AnalyticsListener() {
+//              @Override
+//              public void onAudioSessionIdChanged(@NonNull EventTime eventTime, int audioSessionId) {
+//                  equalizerController.attachEqualizer(audioSessionId);
+//              }
+//      });
+            return@lazy player
+        }
+    }
+
+    companion object {
+        private const val ITEM_END_TOLERANCE_MILLIS = 1000L
+        private const val CROSSFADE_CHECK_INTERVAL_MILLIS = 100L
+    }
+
+}
@@ -0,0 +1,327 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer;
+
+import androidx.annotation.NonNull;
+import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.audio.AudioProcessor;
+import androidx.media3.common.util.UnstableApi;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Applies equal-power fade in or fade out to 16, 24, 32-bit and float pcm audio.
+ *
+ * Fades are counted in processed frames, so they follow media time and stay in sync with
+ * playback speed which is applied after processors. Fade commands come from any thread and are
+ * picked up by the next input. Processor is active only when it is configured with a pending
+ * fade or with enabled crossfade, audio sink checks activity on configure and flush only,
+ * so a fade out during playback needs crossfade to be enabled before that.
+ * Output buffer is allocated on configure and grows only for a larger input, gains are taken
+ * from a precomputed curve.
+ */
+@UnstableApi public class CrossfadeProcessor implements AudioProcessor {
+
+    private static final int FADE_NONE = 0;
+    private static final int FADE_IN = 1;
+    private static final int FADE_OUT = 2;
+
+    private static final int CURVE_SIZE = 1024;
+    //sin for fade in and cos for fade out, so squared gains of crossfaded tracks sum to one
+    private static final float[] EQUAL_POWER_CURVE = new float[CURVE_SIZE];
+    static {
+        for (int i = 0; i < CURVE_SIZE; i++) {
+            EQUAL_POWER_CURVE[i] = (float) Math.sin(i * Math.PI / 2 / (CURVE_SIZE - 1));
+        }
+    }
+
+    //initial output buffer size, ~100ms of stereo audio at 48kHz
+    private static final int INITIAL_BUFFER_FRAMES = 4800;
+
+    private int encoding;
+    private int channelCount;
+    private int sampleRateHz;
+    private int bytesPerFrame;
+
+    private volatile boolean crossfadeEnabled;
+
+    private boolean active;
+    private ByteBuffer buffer;
+    private ShortBuffer shortOutput;
+    private IntBuffer intOutput;
+    private FloatBuffer floatOutput;
+    private ByteBuffer outputBuffer;
+    private boolean inputEnded;
+
+    private boolean hasPendingFade;
+    private int pendingFadeType;
+    private long pendingFadeDurationUs;
+
+    private int fadeType = FADE_NONE;
+    private long fadeFrames;
+    private long fadeFrame;
+
+    public CrossfadeProcessor() {
+        buffer = EMPTY_BUFFER;
+        outputBuffer = EMPTY_BUFFER;
+        encoding = Format.NO_VALUE;
+        channelCount = Format.NO_VALUE;
+        sampleRateHz = Format.NO_VALUE;
+    }
+
+    /**
+     * Keeps processor active from the next configuration, so a fade out can be started during
+     * playback. Without it processor is active only for a fade pending on configure.
+     */
+    public void setCrossfadeEnabled(boolean enabled) {
+        crossfadeEnabled = enabled;
+    }
+
+    /**
+     * Starts from silence and raises volume to full during given media time.
+     */
+    public void fadeIn(long durationUs) {
+        setPendingFade(FADE_IN, durationUs);
+    }
+
+    /**
+     * Lowers volume to silence during given media time, silence is kept after that.
+     */
+    public void fadeOut(long durationUs) {
+        setPendingFade(FADE_OUT, durationUs);
+    }
+
+    /**
+     * Returns to full volume immediately.
+     */
+    public void cancelFade() {
+        setPendingFade(FADE_NONE, 0);
+    }
+
+    @NonNull
+    @Override
+    public AudioFormat configure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
+        int sampleRateHz = inputAudioFormat.sampleRate;
+        int channelCount = inputAudioFormat.channelCount;
+        @C.Encoding int encoding = inputAudioFormat.encoding;
+
+        int bytesPerSample = getBytesPerSample(encoding);
+        if (bytesPerSample == 0) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        active = crossfadeEnabled || hasFade();
+        if (!active) {
+            return inputAudioFormat;
+        }
+        if (this.encoding == encoding
+                && this.sampleRateHz == sampleRateHz
+                && this.channelCount == channelCount) {
+            return inputAudioFormat;
+        }
+        this.encoding = encoding;
+        this.sampleRateHz = sampleRateHz;
+        this.channelCount = channelCount;
+        bytesPerFrame = channelCount * bytesPerSample;
+        allocateBuffer(INITIAL_BUFFER_FRAMES * bytesPerFrame);
+        return inputAudioFormat;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        applyPendingFade();
+
+        int position = inputBuffer.position();
+        int limit = inputBuffer.limit();
+        int frames = (limit - position) / bytesPerFrame;
+        int size = frames * bytesPerFrame;
+
+        if (buffer.capacity() < size) {
+            allocateBuffer(size);
+        } else {
+            buffer.clear();
+        }
+
+        int frame = 0;
+        if (fadeType != FADE_NONE && fadeFrame < fadeFrames) {
+            frame = (int) Math.min(frames, fadeFrames - fadeFrame);
+            processFadeFrames(getInputView(inputBuffer), frame);
+        }
+        if (fadeType == FADE_OUT && fadeFrame >= fadeFrames) {
+            //zero bytes are silence for all encodings
+            for (int i = frame * bytesPerFrame; i < size; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        } else {
+            if (fadeType == FADE_IN && fadeFrame >= fadeFrames) {
+                fadeType = FADE_NONE;
+            }
+            inputBuffer.position(position + frame * bytesPerFrame);
+            inputBuffer.limit(position + size);
+            buffer.position(frame * bytesPerFrame);
+            buffer.put(inputBuffer);
+        }
+
+        inputBuffer.limit(limit);
+        inputBuffer.position(limit);
+        buffer.position(0);
+        buffer.limit(size);
+        outputBuffer = buffer;
+    }
+
+    @Override
+    public void queueEndOfStream() {
+        inputEnded = true;
+    }
+
+    @NonNull
+    @Override
+    public ByteBuffer getOutput() {
+        ByteBuffer outputBuffer = this.outputBuffer;
+        this.outputBuffer = EMPTY_BUFFER;
+        return outputBuffer;
+    }
+
+    @SuppressWarnings("ReferenceEquality")
+    @Override
+    public boolean isEnded() {
+        return inputEnded && outputBuffer == EMPTY_BUFFER;
+    }
+
+    @Override
+    public void flush() {
+        outputBuffer = EMPTY_BUFFER;
+        inputEnded = false;
+    }
+
+    @Override
+    public void reset() {
+        flush();
+        buffer = EMPTY_BUFFER;
+        shortOutput = null;
+        intOutput = null;
+        floatOutput = null;
+        encoding = Format.NO_VALUE;
+        channelCount = Format.NO_VALUE;
+        sampleRateHz = Format.NO_VALUE;
+        active = false;
+        //pending fade is kept, it can be set before player resets its audio sink
+        fadeType = FADE_NONE;
+    }
+
+    private synchronized void setPendingFade(int type, long durationUs) {
+        pendingFadeType = type;
+        pendingFadeDurationUs = durationUs;
+        hasPendingFade = true;
+    }
+
+    private synchronized boolean hasFade() {
+        return hasPendingFade ? pendingFadeType != FADE_NONE : fadeType != FADE_NONE;
+    }
+
+    private synchronized void applyPendingFade() {
+        if (!hasPendingFade) {
+            return;
+        }
+        hasPendingFade = false;
+        fadeType = pendingFadeType;
+        fadeFrames = Math.max(1, pendingFadeDurationUs * sampleRateHz / C.MICROS_PER_SECOND);
+        fadeFrame = 0;
+    }
+
+    private float getFadeGain() {
+        int index = (int) (fadeFrame * (CURVE_SIZE - 1) / fadeFrames);
+        if (fadeType == FADE_OUT) {
+            index = CURVE_SIZE - 1 - index;
+        }
+        return EQUAL_POWER_CURVE[index];
+    }
+
+    //typed view starts at input position, 24-bit samples are read from input as is
+    private Buffer getInputView(ByteBuffer input) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: return input.asShortBuffer();
+            case C.ENCODING_PCM_32BIT: return input.asIntBuffer();
+            case C.ENCODING_PCM_FLOAT: return input.asFloatBuffer();
+            default: return input;
+        }
+    }
+
+    //applies gain of the current fade frame to the first frames of input
+    private void processFadeFrames(Buffer input, int frames) {
+        for (int frame = 0; frame < frames; frame++) {
+            float gain = getFadeGain();
+            int start = frame * channelCount;
+            int end = start + channelCount;
+            switch (encoding) {
+                case C.ENCODING_PCM_16BIT: {
+                    ShortBuffer shortInput = (ShortBuffer) input;
+                    for (int i = start; i < end; i++) {
+                        shortOutput.put(i, (short) (shortInput.get(i) * gain));
+                    }
+                    break;
+                }
+                case C.ENCODING_PCM_24BIT: {
+                    process24Bit((ByteBuffer) input, start, end, gain);
+                    break;
+                }
+                case C.ENCODING_PCM_32BIT: {
+                    IntBuffer intInput = (IntBuffer) input;
+                    for (int i = start; i < end; i++) {
+                        intOutput.put(i, (int) (intInput.get(i) * (double) gain));
+                    }
+                    break;
+                }
+                case C.ENCODING_PCM_FLOAT: {
+                    FloatBuffer floatInput = (FloatBuffer) input;
+                    for (int i = start; i < end; i++) {
+                        floatOutput.put(i, floatInput.get(i) * gain);
+                    }
+                    break;
+                }
+            }
+            fadeFrame++;
+        }
+    }
+
+    private void process24Bit(ByteBuffer input, int start, int end, float gain) {
+        int offset = input.position();
+        for (int i = start; i < end; i++) {
+            int index = i * 3;
+            int inputIndex = offset + index;
+            int sample = (input.get(inputIndex) & 0xff)
+                    | (input.get(inputIndex + 1) & 0xff) << 8
+                    | input.get(inputIndex + 2) << 16;
+            //gain is not above one, so sample stays in range
+            sample = (int) (sample * gain);
+            buffer.put(index, (byte) sample);
+            buffer.put(index + 1, (byte) (sample >> 8));
+            buffer.put(index + 2, (byte) (sample >> 16));
+        }
+    }
+
+    private void allocateBuffer(int size) {
+        buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        shortOutput = buffer.asShortBuffer();
+        intOutput = buffer.asIntBuffer();
+        floatOutput = buffer.asFloatBuffer();
+    }
+
+    private static int getBytesPerSample(int encoding) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: return 2;
+            case C.ENCODING_PCM_24BIT: return 3;
+            case C.ENCODING_PCM_32BIT:
+            case C.ENCODING_PCM_FLOAT: return 4;
+            default: return 0;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer;
+
+import androidx.annotation.NonNull;
+import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.audio.AudioProcessor;
+import androidx.media3.common.util.UnstableApi;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Applies loudness normalization gain to 16, 24, 32-bit and float pcm audio.
+ *
+ * Integer samples are clipped at full scale, float samples are kept as is and clipped by the
+ * audio sink. Gain change is spread over a short ramp to avoid clicks, it is set from any thread
+ * and picked up by the next input. Output buffer is allocated on configure and grows only
+ * for a larger input.
+ *
+ * Gapless items are played as one continuous stream, so gains of the queued items are kept
+ * in order and each one is applied when the audio sink reports the start of the next item
+ * output stream, see {@link #onOutputStreamStarted(long)}.
+ */
+@UnstableApi public class LoudnessNormalizationProcessor implements AudioProcessor {
+
+    private static final int RAMP_DURATION_MILLIS = 20;
+
+    //initial output buffer size, ~100ms of stereo audio at 48kHz
+    private static final int INITIAL_BUFFER_FRAMES = 4800;
+
+    private static final int PCM_24BIT_MAX = 0x7fffff;
+    private static final int PCM_24BIT_MIN = -0x800000;
+
+    private int encoding;
+    private int channelCount;
+    private int sampleRateHz;
+    private int bytesPerFrame;
+    private int rampFrames;
+
+    private boolean active;
+    private ByteBuffer buffer;
+    private ByteBuffer outputBuffer;
+    private boolean inputEnded;
+
+    private volatile float targetGain = 1f;
+    private final ArrayDeque<Float> nextStreamGains = new ArrayDeque<>();
+    private long outputStreamOffsetUs = C.TIME_UNSET;
+    private float gain = 1f;
+    private float rampTarget = 1f;
+    private float rampStep;
+
+    public LoudnessNormalizationProcessor() {
+        buffer = EMPTY_BUFFER;
+        outputBuffer = EMPTY_BUFFER;
+        encoding = Format.NO_VALUE;
+        channelCount = Format.NO_VALUE;
+        sampleRateHz = Format.NO_VALUE;
+    }
+
+    /**
+     * Sets gain of the current item, gains of the queued items are dropped.
+     *
+     * @param gainDb replay gain in dB, 0 keeps audio unchanged
+     */
+    public synchronized void setGain(float gainDb) {
+        nextStreamGains.clear();
+        outputStreamOffsetUs = C.TIME_UNSET;
+        targetGain = toLinearGain(gainDb);
+    }
+
+    /**
+     * Queues gain of the item which is appended to the player after the current one.
+     *
+     * @param gainDb replay gain in dB, 0 keeps audio unchanged
+     */
+    public synchronized void addNextStreamGain(float gainDb) {
+        nextStreamGains.add(toLinearGain(gainDb));
+    }
+
+    public synchronized void clearNextStreamGains() {
+        nextStreamGains.clear();
+    }
+
+    /**
+     * Called by the audio sink before the first buffer of an item is queued.
+     * Offset is unique for each item of the playlist, the same offset is reported again when
+     * renderers are re-enabled for the current item, e.g. on seek after the next item was read.
+     */
+    public synchronized void onOutputStreamStarted(long outputStreamOffsetUs) {
+        long previousOffsetUs = this.outputStreamOffsetUs;
+        this.outputStreamOffsetUs = outputStreamOffsetUs;
+        if (previousOffsetUs == C.TIME_UNSET || previousOffsetUs == outputStreamOffsetUs) {
+            return;
+        }
+        Float gain = nextStreamGains.poll();
+        if (gain != null) {
+            targetGain = gain;
+        }
+    }
+
+    @NonNull
+    @Override
+    public AudioFormat configure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
+        int bytesPerSample = getBytesPerSample(inputAudioFormat.encoding);
+        if (bytesPerSample == 0) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        if (this.encoding == inputAudioFormat.encoding
+                && this.sampleRateHz == inputAudioFormat.sampleRate
+                && this.channelCount == inputAudioFormat.channelCount) {
+            return inputAudioFormat;
+        }
+        encoding = inputAudioFormat.encoding;
+        sampleRateHz = inputAudioFormat.sampleRate;
+        channelCount = inputAudioFormat.channelCount;
+        bytesPerFrame = channelCount * bytesPerSample;
+        rampFrames = Math.max(1, sampleRateHz * RAMP_DURATION_MILLIS / 1000);
+        buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_FRAMES * bytesPerFrame)
+                .order(ByteOrder.nativeOrder());
+        active = true;
+        return inputAudioFormat;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        int position = inputBuffer.position();
+        int limit = inputBuffer.limit();
+        int size = limit - position;
+
+        if (buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        } else {
+            buffer.clear();
+        }
+
+        float target = targetGain;
+        if (target != rampTarget) {
+            rampTarget = target;
+            rampStep = (target - gain) / rampFrames;
+        }
+        int i = position;
+        int end = position + size / bytesPerFrame * bytesPerFrame;
+        while (i < end && gain != target) {
+            gain += rampStep;
+            if (rampStep > 0 ? gain >= target : gain <= target) {
+                gain = target;
+            }
+            applyGain(inputBuffer, i, i + bytesPerFrame, gain);
+            i += bytesPerFrame;
+        }
+        if (gain == 1f) {
+            inputBuffer.position(i);
+            buffer.put(inputBuffer);
+        } else {
+            applyGain(inputBuffer, i, limit, gain);
+        }
+
+        inputBuffer.position(limit);
+        buffer.flip();
+        outputBuffer = buffer;
+    }
+
+    @Override
+    public void queueEndOfStream() {
+        inputEnded = true;
+    }
+
+    @NonNull
+    @Override
+    public ByteBuffer getOutput() {
+        ByteBuffer outputBuffer = this.outputBuffer;
+        this.outputBuffer = EMPTY_BUFFER;
+        return outputBuffer;
+    }
+
+    @SuppressWarnings("ReferenceEquality")
+    @Override
+    public boolean isEnded() {
+        return inputEnded && outputBuffer == EMPTY_BUFFER;
+    }
+
+    @Override
+    public void flush() {
+        outputBuffer = EMPTY_BUFFER;
+        inputEnded = false;
+        //stream is interrupted anyway, no need to ramp
+        gain = targetGain;
+        rampTarget = gain;
+    }
+
+    @Override
+    public void reset() {
+        flush();
+        buffer = EMPTY_BUFFER;
+        encoding = Format.NO_VALUE;
+        channelCount = Format.NO_VALUE;
+        sampleRateHz = Format.NO_VALUE;
+        active = false;
+    }
+
+    private void applyGain(ByteBuffer input, int start, int end, float gain) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: {
+                for (int i = start; i < end; i += 2) {
+                    int sample = (int) (input.getShort(i) * gain);
+                    buffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample)));
+                }
+                break;
+            }
+            case C.ENCODING_PCM_24BIT: {
+                for (int i = start; i < end; i += 3) {
+                    int sample = (input.get(i) & 0xff)
+                            | (input.get(i + 1) & 0xff) << 8
+                            | input.get(i + 2) << 16;
+                    sample = (int) (sample * gain);
+                    sample = Math.max(PCM_24BIT_MIN, Math.min(PCM_24BIT_MAX, sample));
+                    buffer.put((byte) sample);
+                    buffer.put((byte) (sample >> 8));
+                    buffer.put((byte) (sample >> 16));
+                }
+                break;
+            }
+            case C.ENCODING_PCM_32BIT: {
+                for (int i = start; i < end; i += 4) {
+                    //double to int cast is saturated, so it is clipped too
+                    buffer.putInt((int) (input.getInt(i) * (double) gain));
+                }
+                break;
+            }
+            case C.ENCODING_PCM_FLOAT: {
+                for (int i = start; i < end; i += 4) {
+                    buffer.putFloat(input.getFloat(i) * gain);
+                }
+                break;
+            }
+        }
+    }
+
+    private static float toLinearGain(float gainDb) {
+        return (float) Math.pow(10, gainDb / 20);
+    }
+
+    private static int getBytesPerSample(int encoding) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: return 2;
+            case C.ENCODING_PCM_24BIT: return 3;
+            case C.ENCODING_PCM_32BIT:
+            case C.ENCODING_PCM_FLOAT: return 4;
+            default: return 0;
+        }
+    }
+}
@@ -6,30 +6,79 @@ import androidx.media3.common.Format;
 import androidx.media3.common.audio.AudioProcessor;
 import androidx.media3.common.util.UnstableApi;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 
+/**
+ * Applies left and right volume of sound balance to 16, 24, 32-bit and float pcm audio.
+ *
+ * Left side channels take left volume, right side channels take right volume and center
+ * channels take their average. Volume is set from any thread without locks and is picked up
+ * by the next input, its change is spread over a short ramp to avoid zipper noise.
+ * Samples are processed in bulk through typed buffer views, output buffer is allocated on
+ * configure and grows only for a larger input.
+ */
 @UnstableApi public class StereoVolumeProcessor implements AudioProcessor {
 
+    private static final int RAMP_DURATION_MILLIS = 10;
+
+    //initial output buffer size, ~100ms of stereo audio at 48kHz
+    private static final int INITIAL_BUFFER_FRAMES = 4800;
+
+    private static final int PCM_24BIT_MAX = 0x7fffff;
+    private static final int PCM_24BIT_MIN = -0x800000;
+
+    private static final int CENTER = 0;
+    private static final int LEFT = 1;
+    private static final int RIGHT = 2;
+    //android channel masks order: FL, FR, FC, LFE, BL, BR, BC, SL, SR
+    private static final int[][] CHANNEL_SIDES = {
+            {CENTER},
+            {LEFT, RIGHT},
+            {LEFT, RIGHT, CENTER},
+            {LEFT, RIGHT, LEFT, RIGHT},
+            {LEFT, RIGHT, CENTER, LEFT, RIGHT},
+            {LEFT, RIGHT, CENTER, CENTER, LEFT, RIGHT},
+            {LEFT, RIGHT, CENTER, CENTER, LEFT, RIGHT, CENTER},
+            {LEFT, RIGHT, CENTER, CENTER, LEFT, RIGHT, LEFT, RIGHT},
+    };
+
+    private int encoding;
     private int channelCount;
     private int sampleRateHz;
+    private int bytesPerFrame;
+    private int rampFrames;
     private int[] pendingOutputChannels;
 
     private boolean active;
     private int[] outputChannels;
+    private int[] channelSides;
+    private float[] channelVolumes;
     private ByteBuffer buffer;
+    private ShortBuffer shortOutput;
+    private IntBuffer intOutput;
+    private FloatBuffer floatOutput;
     private ByteBuffer outputBuffer;
     private boolean inputEnded;
 
-    private float[] volume;
-
-    private static final int LEFT_SPEAKER = 0;
-    private static final int RIGHT_SPEAKER = 1;
+    //left and right volume bits in one value, so they are always read together
+    private volatile long targetVolume = packVolume(1f, 1f);
+    private long appliedTargetVolume = targetVolume;
+    private float left = 1f;
+    private float right = 1f;
+    private float leftStep;
+    private float rightStep;
+    private int rampFramesLeft;
 
     public StereoVolumeProcessor() {
         buffer = EMPTY_BUFFER;
         outputBuffer = EMPTY_BUFFER;
+        encoding = Format.NO_VALUE;
         channelCount = Format.NO_VALUE;
         sampleRateHz = Format.NO_VALUE;
     }
@@ -45,25 +94,31 @@ import java.util.Arrays;
         int channelCount = inputAudioFormat.channelCount;
         @C.Encoding int encoding = inputAudioFormat.encoding;
 
-        if (volume == null) {
-            throw new IllegalStateException("volume has not been set! Call setVolume(float left,float right)");
-        }
-
         boolean outputChannelsChanged = !Arrays.equals(pendingOutputChannels, outputChannels);
         outputChannels = pendingOutputChannels;
         if (outputChannels == null) {
             active = false;
             return inputAudioFormat;
         }
-        if (encoding != C.ENCODING_PCM_16BIT) {
+        int bytesPerSample = getBytesPerSample(encoding);
+        if (bytesPerSample == 0) {
             throw new UnhandledAudioFormatException(inputAudioFormat);
         }
-        if (!outputChannelsChanged && this.sampleRateHz == sampleRateHz
+        if (!outputChannelsChanged
+                && this.encoding == encoding
+                && this.sampleRateHz == sampleRateHz
                 && this.channelCount == channelCount) {
             return inputAudioFormat;
         }
+        this.encoding = encoding;
         this.sampleRateHz = sampleRateHz;
         this.channelCount = channelCount;
+        bytesPerFrame = channelCount * bytesPerSample;
+        rampFrames = Math.max(1, sampleRateHz * RAMP_DURATION_MILLIS / 1000);
+        channelSides = getChannelSides(channelCount);
+        channelVolumes = new float[channelCount];
+        updateChannelVolumes();
+        allocateBuffer(INITIAL_BUFFER_FRAMES * bytesPerFrame);
 
         active = true;
 
@@ -79,27 +134,46 @@ import java.util.Arrays;
     public void queueInput(ByteBuffer inputBuffer) {
         int position = inputBuffer.position();
         int limit = inputBuffer.limit();
-        int size = limit - position;
+        int frames = (limit - position) / bytesPerFrame;
+        int size = frames * bytesPerFrame;
 
         if (buffer.capacity() < size) {
-            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            allocateBuffer(size);
         } else {
             buffer.clear();
         }
 
-        if (isActive()) {
-            int ch = 0;
-            for (int i = position; i < limit; i += 2) {
-                short sample = (short) (inputBuffer.getShort(i) * volume[ch++]);
-                buffer.putShort(sample);
-                ch %= channelCount;
+        applyTargetVolume();
+        Buffer input = getInputView(inputBuffer);
+        int frame = 0;
+        if (rampFramesLeft > 0) {
+            int rampEnd = Math.min(frames, rampFramesLeft);
+            for (; frame < rampEnd; frame++) {
+                left += leftStep;
+                right += rightStep;
+                updateChannelVolumes();
+                processFrames(input, frame, frame + 1);
+            }
+            rampFramesLeft -= rampEnd;
+            if (rampFramesLeft == 0) {
+                left = unpackLeft(appliedTargetVolume);
+                right = unpackRight(appliedTargetVolume);
+                updateChannelVolumes();
             }
+        }
+        if (left == 1f && right == 1f) {
+            inputBuffer.position(position + frame * bytesPerFrame);
+            inputBuffer.limit(position + size);
+            buffer.position(frame * bytesPerFrame);
+            buffer.put(inputBuffer);
         } else {
-            throw new IllegalStateException();
+            processFrames(input, frame, frames);
         }
 
+        inputBuffer.limit(limit);
         inputBuffer.position(limit);
-        buffer.flip();
+        buffer.position(0);
+        buffer.limit(size);
         outputBuffer = buffer;
     }
 
@@ -109,15 +183,15 @@ import java.util.Arrays;
     }
 
     public void setVolume(float left, float right) {
-        volume = new float[]{left, right};
+        targetVolume = packVolume(left, right);
     }
 
     public float getLeftVolume() {
-        return volume[LEFT_SPEAKER];
+        return unpackLeft(targetVolume);
     }
 
     public float getRightVolume() {
-        return volume[RIGHT_SPEAKER];
+        return unpackRight(targetVolume);
     }
 
     @NonNull
@@ -138,15 +212,205 @@ import java.util.Arrays;
     public void flush() {
         outputBuffer = EMPTY_BUFFER;
         inputEnded = false;
+        //stream is interrupted anyway, no need to ramp
+        appliedTargetVolume = targetVolume;
+        left = unpackLeft(appliedTargetVolume);
+        right = unpackRight(appliedTargetVolume);
+        rampFramesLeft = 0;
+        if (channelVolumes != null) {
+            updateChannelVolumes();
+        }
     }
 
     @Override
     public void reset() {
         flush();
         buffer = EMPTY_BUFFER;
+        shortOutput = null;
+        intOutput = null;
+        floatOutput = null;
+        encoding = Format.NO_VALUE;
         channelCount = Format.NO_VALUE;
         sampleRateHz = Format.NO_VALUE;
         outputChannels = null;
+        channelVolumes = null;
         active = false;
     }
-}
\ No newline at end of file
+
+    private void applyTargetVolume() {
+        long target = targetVolume;
+        if (target == appliedTargetVolume) {
+            return;
+        }
+        appliedTargetVolume = target;
+        rampFramesLeft = rampFrames;
+        leftStep = (unpackLeft(target) - left) / rampFrames;
+        rightStep = (unpackRight(target) - right) / rampFrames;
+    }
+
+    private void updateChannelVolumes() {
+        for (int i = 0; i < channelCount; i++) {
+            switch (channelSides[i]) {
+                case LEFT: {
+                    channelVolumes[i] = left;
+                    break;
+                }
+                case RIGHT: {
+                    channelVolumes[i] = right;
+                    break;
+                }
+                default: {
+                    channelVolumes[i] = (left + right) / 2;
+                }
+            }
+        }
+    }
+
+    //typed view starts at input position, 24-bit samples are read from input as is
+    private Buffer getInputView(ByteBuffer input) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: return input.asShortBuffer();
+            case C.ENCODING_PCM_32BIT: return input.asIntBuffer();
+            case C.ENCODING_PCM_FLOAT: return input.asFloatBuffer();
+            default: return input;
+        }
+    }
+
+    private void processFrames(Buffer input, int startFrame, int endFrame) {
+        int start = startFrame * channelCount;
+        int end = endFrame * channelCount;
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: {
+                processShorts((ShortBuffer) input, start, end);
+                break;
+            }
+            case C.ENCODING_PCM_24BIT: {
+                process24Bit((ByteBuffer) input, start, end);
+                break;
+            }
+            case C.ENCODING_PCM_32BIT: {
+                processInts((IntBuffer) input, start, end);
+                break;
+            }
+            case C.ENCODING_PCM_FLOAT: {
+                processFloats((FloatBuffer) input, start, end);
+                break;
+            }
+        }
+    }
+
+    private void processShorts(ShortBuffer input, int start, int end) {
+        ShortBuffer output = shortOutput;
+        if (channelCount == 2) {
+            float left = this.left;
+            float right = this.right;
+            for (int i = start; i < end; i += 2) {
+                output.put(i, (short) (input.get(i) * left));
+                output.put(i + 1, (short) (input.get(i + 1) * right));
+            }
+            return;
+        }
+        float[] volumes = channelVolumes;
+        for (int i = start; i < end; i += channelCount) {
+            for (int ch = 0; ch < channelCount; ch++) {
+                output.put(i + ch, (short) (input.get(i + ch) * volumes[ch]));
+            }
+        }
+    }
+
+    private void process24Bit(ByteBuffer input, int start, int end) {
+        float[] volumes = channelVolumes;
+        int offset = input.position();
+        for (int i = start; i < end; i += channelCount) {
+            for (int ch = 0; ch < channelCount; ch++) {
+                int index = (i + ch) * 3;
+                int inputIndex = offset + index;
+                int sample = (input.get(inputIndex) & 0xff)
+                        | (input.get(inputIndex + 1) & 0xff) << 8
+                        | input.get(inputIndex + 2) << 16;
+                sample = (int) (sample * volumes[ch]);
+                sample = Math.max(PCM_24BIT_MIN, Math.min(PCM_24BIT_MAX, sample));
+                buffer.put(index, (byte) sample);
+                buffer.put(index + 1, (byte) (sample >> 8));
+                buffer.put(index + 2, (byte) (sample >> 16));
+            }
+        }
+    }
+
+    private void processInts(IntBuffer input, int start, int end) {
+        IntBuffer output = intOutput;
+        //double to int cast is saturated, so samples are clipped too
+        if (channelCount == 2) {
+            double left = this.left;
+            double right = this.right;
+            for (int i = start; i < end; i += 2) {
+                output.put(i, (int) (input.get(i) * left));
+                output.put(i + 1, (int) (input.get(i + 1) * right));
+            }
+            return;
+        }
+        float[] volumes = channelVolumes;
+        for (int i = start; i < end; i += channelCount) {
+            for (int ch = 0; ch < channelCount; ch++) {
+                output.put(i + ch, (int) (input.get(i + ch) * (double) volumes[ch]));
+            }
+        }
+    }
+
+    private void processFloats(FloatBuffer input, int start, int end) {
+        FloatBuffer output = floatOutput;
+        if (channelCount == 2) {
+            float left = this.left;
+            float right = this.right;
+            for (int i = start; i < end; i += 2) {
+                output.put(i, input.get(i) * left);
+                output.put(i + 1, input.get(i + 1) * right);
+            }
+            return;
+        }
+        float[] volumes = channelVolumes;
+        for (int i = start; i < end; i += channelCount) {
+            for (int ch = 0; ch < channelCount; ch++) {
+                output.put(i + ch, input.get(i + ch) * volumes[ch]);
+            }
+        }
+    }
+
+    private void allocateBuffer(int size) {
+        buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+        shortOutput = buffer.asShortBuffer();
+        intOutput = buffer.asIntBuffer();
+        floatOutput = buffer.asFloatBuffer();
+    }
+
+    private static int[] getChannelSides(int channelCount) {
+        if (channelCount <= CHANNEL_SIDES.length) {
+            return CHANNEL_SIDES[channelCount - 1];
+        }
+        int[] sides = new int[channelCount];
+        Arrays.fill(sides, CENTER);
+        return sides;
+    }
+
+    private static int getBytesPerSample(int encoding) {
+        switch (encoding) {
+            case C.ENCODING_PCM_16BIT: return 2;
+            case C.ENCODING_PCM_24BIT: return 3;
+            case C.ENCODING_PCM_32BIT:
+            case C.ENCODING_PCM_FLOAT: return 4;
+            default: return 0;
+        }
+    }
+
+    private static long packVolume(float left, float right) {
+        return (long) Float.floatToIntBits(left) << 32 | (Float.floatToIntBits(right) & 0xffffffffL);
+    }
+
+    private static float unpackLeft(long volume) {
+        return Float.intBitsToFloat((int) (volume >>> 32));
+    }
+
+    private static float unpackRight(long volume) {
+        return Float.intBitsToFloat((int) volume);
+    }
+}
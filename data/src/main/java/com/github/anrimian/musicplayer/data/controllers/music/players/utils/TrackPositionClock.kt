@@ -0,0 +1,60 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.utils
+
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.subjects.BehaviorSubject
+import java.util.concurrent.TimeUnit
+
+/**
+ * Track position driven by player state instead of polling the player.
+ *
+ * Player reports its position on each state change, like start, pause, seek, speed or item
+ * change. While playing, position is interpolated from the last report by elapsed time and speed,
+ * each subscriber gets it with its own interval. While paused nothing is scheduled and subscribers
+ * get only reported changes. Without subscribers the clock does not run at all.
+ */
+class TrackPositionClock(private val scheduler: Scheduler) {
+
+    private val stateSubject = BehaviorSubject.createDefault(State(0L, 0L, false, 1f, now()))
+
+    /**
+     * @param duration duration of the current item, not positive if it is not known
+     */
+    @Synchronized
+    fun update(position: Long, duration: Long, isPlaying: Boolean, speed: Float) {
+        stateSubject.onNext(State(position, duration, isPlaying, speed, now()))
+    }
+
+    fun getPosition(): Long = stateSubject.value!!.getPosition(now())
+
+    fun getPositionObservable(intervalMillis: Long): Observable<Long> {
+        return stateSubject.switchMap { state ->
+            if (state.isPlaying) {
+                Observable.interval(0, intervalMillis, TimeUnit.MILLISECONDS, scheduler)
+                    .map { state.getPosition(now()) }
+            } else {
+                Observable.just(state.position)
+            }
+        }.distinctUntilChanged()
+    }
+
+    private fun now() = scheduler.now(TimeUnit.MILLISECONDS)
+
+    private class State(
+        val position: Long,
+        val duration: Long,
+        val isPlaying: Boolean,
+        val speed: Float,
+        val updateTime: Long,
+    ) {
+
+        fun getPosition(time: Long): Long {
+            if (!isPlaying) {
+                return position
+            }
+            val interpolatedPosition = position + ((time - updateTime) * speed).toLong()
+            //player reports the end itself, interpolation should not run past it
+            return if (duration > 0) interpolatedPosition.coerceAtMost(duration) else interpolatedPosition
+        }
+    }
+}
@@ -2,7 +2,12 @@ package com.github.anrimian.musicplayer.data.database;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates;
 
 /**
  * Created on 18.11.2017.
@@ -36,7 +41,24 @@ public class DatabaseManager {
                         Migrations.getMigration13_14(context),
                         Migrations.MIGRATION_14_15,
                         Migrations.getMigration15_16(context),
-                        Migrations.MIGRATION_16_17)
+                        Migrations.MIGRATION_16_17,
+                        Migrations.MIGRATION_17_18,
+                        Migrations.MIGRATION_18_19,
+                        Migrations.MIGRATION_19_20,
+                        Migrations.MIGRATION_20_21,
+                        Migrations.MIGRATION_21_22,
+                        Migrations.MIGRATION_22_23,
+                        Migrations.MIGRATION_23_24,
+                        Migrations.MIGRATION_24_25,
+                        Migrations.MIGRATION_25_26)
+                .addCallback(new LibraryDatabaseTriggers())
+                .addCallback(new RoomDatabase.Callback() {
+                    @Override
+                    public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                        //dynamic queries are reused by QueryTemplates, keep more of them compiled
+                        db.setMaxSqlCacheSize(QueryTemplates.STATEMENT_CACHE_SIZE);
+                    }
+                })
                 .build();
     }
 
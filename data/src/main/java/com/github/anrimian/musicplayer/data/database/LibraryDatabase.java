@@ -14,15 +14,24 @@ import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_list.PlayListDao;
 import com.github.anrimian.musicplayer.data.database.dao.play_queue.PlayQueueDao;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
+import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumFtsEntity;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
+import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistFtsEntity;
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionChangeEntity;
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionFtsEntity;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderFtsEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.FolderTreeEntity;
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntity;
 import com.github.anrimian.musicplayer.data.database.entities.genres.GenreEntryEntity;
+import com.github.anrimian.musicplayer.data.database.entities.genres.GenreFtsEntity;
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity;
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueShuffleEntity;
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.TrackPositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntity;
 import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListEntryEntity;
+import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListFtsEntity;
 
 /**
  * Created on 18.11.2017.
@@ -38,8 +47,17 @@ import com.github.anrimian.musicplayer.data.database.entities.playlist.PlayListE
         GenreEntity.class,
         GenreEntryEntity.class,
         FolderEntity.class,
-        TrackPositionEntity.class
-}, version = 17)
+        TrackPositionEntity.class,
+        FolderTreeEntity.class,
+        CompositionFtsEntity.class,
+        ArtistFtsEntity.class,
+        AlbumFtsEntity.class,
+        GenreFtsEntity.class,
+        FolderFtsEntity.class,
+        PlayListFtsEntity.class,
+        CompositionChangeEntity.class,
+        PlayQueueShuffleEntity.class
+}, version = 26)
 @TypeConverters({
         DateConverter.class,
         EnumConverter.class
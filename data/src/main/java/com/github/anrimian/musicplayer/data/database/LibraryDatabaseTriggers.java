@@ -0,0 +1,378 @@
+package com.github.anrimian.musicplayer.data.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers which keep derived tables and columns consistent. Room doesn't declare triggers,
+ * so they are created here for a new database and from migrations for existing ones.
+ */
+class LibraryDatabaseTriggers extends RoomDatabase.Callback {
+
+    private static final String ANCESTORS_OF_NEW_FOLDER = "(SELECT ancestorId FROM folder_tree WHERE descendantId = NEW.folderId)";
+    private static final String ANCESTORS_OF_OLD_FOLDER = "(SELECT ancestorId FROM folder_tree WHERE descendantId = OLD.folderId)";
+    private static final String LAST_ADD_TIME_QUERY = "(SELECT IFNULL(max(dateAdded), 0) FROM compositions WHERE folderId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = folders.id))";
+
+    private static final String ADD_NEW_COMPOSITION = "UPDATE folders SET " +
+            "filesCount = filesCount + 1, " +
+            "storageFilesCount = storageFilesCount + (NEW.storageId IS NOT NULL AND NEW.initialSource = 1), " +
+            "totalDuration = totalDuration + NEW.duration, " +
+            "totalSize = totalSize + NEW.size, " +
+            "lastAddTime = max(lastAddTime, IFNULL(NEW.dateAdded, 0)) " +
+            "WHERE id IN " + ANCESTORS_OF_NEW_FOLDER + "; ";
+    //max add time can't be decremented, so it is selected again only when the latest item is removed
+    private static final String REMOVE_OLD_COMPOSITION = "UPDATE folders SET " +
+            "filesCount = filesCount - 1, " +
+            "storageFilesCount = storageFilesCount - (OLD.storageId IS NOT NULL AND OLD.initialSource = 1), " +
+            "totalDuration = totalDuration - OLD.duration, " +
+            "totalSize = totalSize - OLD.size, " +
+            "lastAddTime = CASE WHEN IFNULL(OLD.dateAdded, 0) < lastAddTime THEN lastAddTime ELSE " + LAST_ADD_TIME_QUERY + " END " +
+            "WHERE id IN " + ANCESTORS_OF_OLD_FOLDER + "; ";
+
+    private static final String COMPOSITION_SEARCH_COLUMNS = "title, fileName, artist, album, albumArtist, genres, folder";
+    private static final String COMPOSITION_SEARCH_VALUES = "title, " +
+            "fileName, " +
+            "(SELECT name FROM artists WHERE artists.id = compositions.artistId), " +
+            "(SELECT name FROM albums WHERE albums.id = compositions.albumId), " +
+            "(SELECT artists.name FROM albums INNER JOIN artists ON artists.id = albums.artistId WHERE albums.id = compositions.albumId), " +
+            "(SELECT group_concat(name, ' ') FROM genres WHERE id IN (SELECT genreId FROM genre_entries WHERE compositionId = compositions.id)), " +
+            "(SELECT name FROM folders WHERE folders.id = compositions.folderId)";
+
+    private static final String UPDATE_NEW_COMPOSITION_NAMES = "UPDATE compositions SET " +
+            "artistName = (SELECT name FROM artists WHERE id = NEW.artistId), " +
+            "albumName = (SELECT name FROM albums WHERE id = NEW.albumId), " +
+            "albumArtistName = (SELECT name FROM artists WHERE id = (SELECT artistId FROM albums WHERE id = NEW.albumId)) " +
+            "WHERE id = NEW.id; ";
+
+    //log keeps at least this count of the latest changes, older ones are removed by batches
+    private static final int COMPOSITION_CHANGES_LOG_SIZE = 10000;
+    private static final int COMPOSITION_CHANGES_PRUNE_BATCH = 1000;
+    //columns which are shown in composition lists or used by their filters and orders,
+    //updates of other columns (like lastScanDate) are not logged
+    private static final String[] COMPOSITION_CHANGES_COLUMNS = {
+            "folderId",
+            "storageId",
+            "title",
+            "fileName",
+            "artistName",
+            "albumName",
+            "albumArtistName",
+            "duration",
+            "size",
+            "comment",
+            "dateAdded",
+            "dateModified",
+            "coverModifyTime",
+            "corruptionType",
+            "initialSource"
+    };
+
+    @Override
+    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+        createFolderTreeTriggers(db);
+        createFolderAggregatesTriggers(db);
+        createSearchTriggers(db);
+        createCompositionNamesTriggers(db);
+        createCompositionChangesTriggers(db);
+        createLibraryCountersTriggers(db);
+    }
+
+    static void createFolderTreeTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_tree_insert` " +
+                "AFTER INSERT ON `folders` " +
+                "BEGIN " +
+                "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                "SELECT ancestorId, NEW.id, depth + 1 FROM folder_tree WHERE descendantId = NEW.parentId; " +
+                "INSERT INTO folder_tree (ancestorId, descendantId, depth) VALUES (NEW.id, NEW.id, 0); " +
+                "END");
+        //rename doesn't change the tree, on move relink the whole subtree to the new parents.
+        //Moved subtree aggregates are taken from the moved folder itself
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_tree_move` " +
+                "AFTER UPDATE OF parentId ON `folders` " +
+                "WHEN OLD.parentId IS NOT NEW.parentId " +
+                "BEGIN " +
+                "UPDATE folders SET " +
+                "filesCount = filesCount - NEW.filesCount, " +
+                "storageFilesCount = storageFilesCount - NEW.storageFilesCount, " +
+                "totalDuration = totalDuration - NEW.totalDuration, " +
+                "totalSize = totalSize - NEW.totalSize " +
+                "WHERE id IN (SELECT ancestorId FROM folder_tree WHERE descendantId = OLD.parentId); " +
+                "DELETE FROM folder_tree " +
+                "WHERE descendantId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = NEW.id) " +
+                "AND ancestorId IN (SELECT ancestorId FROM folder_tree WHERE descendantId = NEW.id AND ancestorId != NEW.id); " +
+                "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                "SELECT parents.ancestorId, children.descendantId, parents.depth + children.depth + 1 " +
+                "FROM folder_tree AS parents, folder_tree AS children " +
+                "WHERE parents.descendantId = NEW.parentId AND children.ancestorId = NEW.id; " +
+                "UPDATE folders SET lastAddTime = " + LAST_ADD_TIME_QUERY + " " +
+                "WHERE lastAddTime <= NEW.lastAddTime " +
+                "AND id IN (SELECT ancestorId FROM folder_tree WHERE descendantId = OLD.parentId); " +
+                "UPDATE folders SET " +
+                "filesCount = filesCount + NEW.filesCount, " +
+                "storageFilesCount = storageFilesCount + NEW.storageFilesCount, " +
+                "totalDuration = totalDuration + NEW.totalDuration, " +
+                "totalSize = totalSize + NEW.totalSize, " +
+                "lastAddTime = max(lastAddTime, NEW.lastAddTime) " +
+                "WHERE id IN (SELECT ancestorId FROM folder_tree WHERE descendantId = NEW.parentId); " +
+                "END");
+    }
+
+    static void createFolderAggregatesTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_aggregates_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "WHEN NEW.folderId IS NOT NULL " +
+                "BEGIN " +
+                ADD_NEW_COMPOSITION +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_aggregates_delete` " +
+                "AFTER DELETE ON `compositions` " +
+                "WHEN OLD.folderId IS NOT NULL " +
+                "BEGIN " +
+                REMOVE_OLD_COMPOSITION +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_aggregates_update` " +
+                "AFTER UPDATE OF folderId, storageId, initialSource, duration, size, dateAdded ON `compositions` " +
+                "WHEN OLD.folderId IS NOT NEW.folderId " +
+                "OR OLD.storageId IS NOT NEW.storageId " +
+                "OR OLD.initialSource != NEW.initialSource " +
+                "OR OLD.duration != NEW.duration " +
+                "OR OLD.size != NEW.size " +
+                "OR OLD.dateAdded IS NOT NEW.dateAdded " +
+                "BEGIN " +
+                REMOVE_OLD_COMPOSITION +
+                ADD_NEW_COMPOSITION +
+                "END");
+    }
+
+    static void createSearchTriggers(SupportSQLiteDatabase db) {
+        createNameSearchTriggers(db, "artists", "artists_fts");
+        createNameSearchTriggers(db, "albums", "albums_fts");
+        createNameSearchTriggers(db, "genres", "genres_fts");
+        createNameSearchTriggers(db, "folders", "folders_fts");
+        createNameSearchTriggers(db, "play_lists", "play_lists_fts");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "BEGIN " +
+                getCompositionSearchInsertQuery("id = NEW.id") + "; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_update` " +
+                "AFTER UPDATE OF title, fileName, artistId, albumId, folderId ON `compositions` " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("id = NEW.id") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_delete` " +
+                "AFTER DELETE ON `compositions` " +
+                "BEGIN " +
+                "DELETE FROM compositions_fts WHERE docid = OLD.id; " +
+                "END");
+        //names of related entities are copied into the composition index
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_artist_update` " +
+                "AFTER UPDATE OF name ON `artists` " +
+                "WHEN OLD.name IS NOT NEW.name " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("artistId = NEW.id OR albumId IN (SELECT id FROM albums WHERE artistId = NEW.id)") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_album_update` " +
+                "AFTER UPDATE OF name, artistId ON `albums` " +
+                "WHEN OLD.name IS NOT NEW.name OR OLD.artistId IS NOT NEW.artistId " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("albumId = NEW.id") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_genre_update` " +
+                "AFTER UPDATE OF name ON `genres` " +
+                "WHEN OLD.name IS NOT NEW.name " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("id IN (SELECT compositionId FROM genre_entries WHERE genreId = NEW.id)") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_genre_entry_insert` " +
+                "AFTER INSERT ON `genre_entries` " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("id = NEW.compositionId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_genre_entry_delete` " +
+                "AFTER DELETE ON `genre_entries` " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("id = OLD.compositionId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_genre_entry_update` " +
+                "AFTER UPDATE OF genreId ON `genre_entries` " +
+                "WHEN OLD.genreId IS NOT NEW.genreId " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("id = NEW.compositionId") +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `compositions_fts_folder_update` " +
+                "AFTER UPDATE OF name ON `folders` " +
+                "WHEN OLD.name IS NOT NEW.name " +
+                "BEGIN " +
+                getCompositionSearchRefreshQuery("folderId = NEW.id") +
+                "END");
+    }
+
+    static void createCompositionNamesTriggers(SupportSQLiteDatabase db) {
+        //storage inserts bind names, other inserts leave them to the trigger
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_names_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "WHEN (NEW.artistName IS NULL AND NEW.artistId IS NOT NULL) " +
+                "OR (NEW.albumName IS NULL AND NEW.albumId IS NOT NULL) " +
+                "BEGIN " +
+                UPDATE_NEW_COMPOSITION_NAMES +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_names_update` " +
+                "AFTER UPDATE OF artistId, albumId ON `compositions` " +
+                "WHEN OLD.artistId IS NOT NEW.artistId OR OLD.albumId IS NOT NEW.albumId " +
+                "BEGIN " +
+                UPDATE_NEW_COMPOSITION_NAMES +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_names_artist_update` " +
+                "AFTER UPDATE OF name ON `artists` " +
+                "WHEN OLD.name IS NOT NEW.name " +
+                "BEGIN " +
+                "UPDATE compositions SET artistName = NEW.name WHERE artistId = NEW.id; " +
+                "UPDATE compositions SET albumArtistName = NEW.name " +
+                "WHERE albumId IN (SELECT id FROM albums WHERE artistId = NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_names_album_update` " +
+                "AFTER UPDATE OF name, artistId ON `albums` " +
+                "WHEN OLD.name IS NOT NEW.name OR OLD.artistId IS NOT NEW.artistId " +
+                "BEGIN " +
+                "UPDATE compositions SET " +
+                "albumName = NEW.name, " +
+                "albumArtistName = (SELECT name FROM artists WHERE id = NEW.artistId) " +
+                "WHERE albumId = NEW.id; " +
+                "END");
+    }
+
+    static void createCompositionChangesTriggers(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_changes_insert` " +
+                "AFTER INSERT ON `compositions` " +
+                "BEGIN " +
+                "INSERT INTO composition_changes (compositionId) VALUES (NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_changes_update` " +
+                getColumnsUpdateCondition("compositions", COMPOSITION_CHANGES_COLUMNS) +
+                "BEGIN " +
+                "INSERT INTO composition_changes (compositionId) VALUES (NEW.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_changes_delete` " +
+                "AFTER DELETE ON `compositions` " +
+                "BEGIN " +
+                "INSERT INTO composition_changes (compositionId) VALUES (OLD.id); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `composition_changes_prune` " +
+                "AFTER INSERT ON `composition_changes` " +
+                "WHEN NEW.seq % " + COMPOSITION_CHANGES_PRUNE_BATCH + " = 0 " +
+                "BEGIN " +
+                "DELETE FROM composition_changes WHERE seq <= NEW.seq - " + COMPOSITION_CHANGES_LOG_SIZE + "; " +
+                "END");
+    }
+
+    static void createLibraryCountersTriggers(SupportSQLiteDatabase db) {
+        createCounterTriggers(db, "artist_compositions_count", "compositions", "artistId", "artists", "compositionsCount");
+        createCounterTriggers(db, "album_compositions_count", "compositions", "albumId", "albums", "compositionsCount");
+        createCounterTriggers(db, "artist_albums_count", "albums", "artistId", "artists", "albumsCount");
+        createCounterTriggers(db, "genre_compositions_count", "genre_entries", "genreId", "genres", "compositionsCount");
+    }
+
+    /**
+     * Builds "AFTER UPDATE OF ... WHEN ..." part of a trigger which fires only when a value of
+     * any of the columns is changed.
+     */
+    private static String getColumnsUpdateCondition(String table, String[] columns) {
+        StringBuilder sb = new StringBuilder("AFTER UPDATE OF ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i]);
+        }
+        sb.append(" ON `").append(table).append("` WHEN ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(" OR ");
+            }
+            sb.append("OLD.").append(columns[i]).append(" IS NOT NEW.").append(columns[i]);
+        }
+        return sb.append(' ').toString();
+    }
+
+    /**
+     * Fills search indexes from existing rows, used for migration of a filled database.
+     */
+    static void fillSearchIndexes(SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO artists_fts (docid, name) SELECT id, name FROM artists");
+        db.execSQL("INSERT INTO albums_fts (docid, name) SELECT id, name FROM albums");
+        db.execSQL("INSERT INTO genres_fts (docid, name) SELECT id, name FROM genres");
+        db.execSQL("INSERT INTO folders_fts (docid, name) SELECT id, name FROM folders");
+        db.execSQL("INSERT INTO play_lists_fts (docid, name) SELECT id, name FROM play_lists");
+        db.execSQL(getCompositionSearchInsertQuery("1"));
+    }
+
+    private static void createNameSearchTriggers(SupportSQLiteDatabase db,
+                                                 String table,
+                                                 String ftsTable) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + ftsTable + "_insert` " +
+                "AFTER INSERT ON `" + table + "` " +
+                "BEGIN " +
+                "INSERT INTO " + ftsTable + " (docid, name) VALUES (NEW.id, NEW.name); " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + ftsTable + "_update` " +
+                "AFTER UPDATE OF name ON `" + table + "` " +
+                "WHEN OLD.name IS NOT NEW.name " +
+                "BEGIN " +
+                "UPDATE " + ftsTable + " SET name = NEW.name WHERE docid = NEW.id; " +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + ftsTable + "_delete` " +
+                "AFTER DELETE ON `" + table + "` " +
+                "BEGIN " +
+                "DELETE FROM " + ftsTable + " WHERE docid = OLD.id; " +
+                "END");
+    }
+
+    /**
+     * Keeps count of child rows in the parent table column. Rows with null parent id are not
+     * counted, updates of deleted parents do nothing.
+     */
+    private static void createCounterTriggers(SupportSQLiteDatabase db,
+                                              String name,
+                                              String childTable,
+                                              String parentIdColumn,
+                                              String parentTable,
+                                              String counterColumn) {
+        String increment = "UPDATE " + parentTable + " SET " + counterColumn + " = " + counterColumn + " + 1 " +
+                "WHERE id = NEW." + parentIdColumn + "; ";
+        String decrement = "UPDATE " + parentTable + " SET " + counterColumn + " = " + counterColumn + " - 1 " +
+                "WHERE id = OLD." + parentIdColumn + "; ";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_insert` " +
+                "AFTER INSERT ON `" + childTable + "` " +
+                "WHEN NEW." + parentIdColumn + " IS NOT NULL " +
+                "BEGIN " +
+                increment +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_delete` " +
+                "AFTER DELETE ON `" + childTable + "` " +
+                "WHEN OLD." + parentIdColumn + " IS NOT NULL " +
+                "BEGIN " +
+                decrement +
+                "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + name + "_update` " +
+                "AFTER UPDATE OF " + parentIdColumn + " ON `" + childTable + "` " +
+                "WHEN OLD." + parentIdColumn + " IS NOT NEW." + parentIdColumn + " " +
+                "BEGIN " +
+                decrement +
+                increment +
+                "END");
+    }
+
+    private static String getCompositionSearchRefreshQuery(String compositionsCondition) {
+        return "DELETE FROM compositions_fts WHERE docid IN (SELECT id FROM compositions WHERE " + compositionsCondition + "); " +
+                getCompositionSearchInsertQuery(compositionsCondition) + "; ";
+    }
+
+    private static String getCompositionSearchInsertQuery(String compositionsCondition) {
+        return "INSERT INTO compositions_fts (docid, " + COMPOSITION_SEARCH_COLUMNS + ") " +
+                "SELECT id, " + COMPOSITION_SEARCH_VALUES + " FROM compositions WHERE " + compositionsCondition;
+    }
+
+}
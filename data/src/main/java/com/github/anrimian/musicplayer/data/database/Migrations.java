@@ -36,6 +36,180 @@ import java.util.Map;
 @SuppressLint("RestrictedApi")
 class Migrations {
 
+    static Migration MIGRATION_25_26 = new Migration(25, 26) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE compositions ADD COLUMN trackGain REAL");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN albumGain REAL");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN analyzedGain REAL");
+        }
+    };
+
+    static Migration MIGRATION_24_25 = new Migration(24, 25) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            //shuffledPosition becomes nullable, current shuffled positions are kept as own positions
+            database.execSQL("CREATE TABLE IF NOT EXISTS `play_queue_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `audioId` INTEGER NOT NULL, `position` INTEGER NOT NULL, `shuffledPosition` INTEGER, FOREIGN KEY(`audioId`) REFERENCES `compositions`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO `play_queue_new` (id, audioId, position, shuffledPosition) " +
+                    "SELECT id, audioId, position, shuffledPosition FROM play_queue");
+            database.execSQL("DROP TABLE play_queue");
+            database.execSQL("ALTER TABLE play_queue_new RENAME TO play_queue");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_play_queue_audioId` ON `play_queue` (`audioId`)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_play_queue_position` ON `play_queue` (`position`)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_play_queue_shuffledPosition` ON `play_queue` (`shuffledPosition`)");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `play_queue_shuffle` (`id` INTEGER NOT NULL, `seed` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+        }
+    };
+
+    static Migration MIGRATION_23_24 = new Migration(23, 24) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            //play queue positions become sparse, inverted positions keep unique indexes valid
+            database.execSQL("UPDATE play_queue SET position = -1 - position, shuffledPosition = -1 - shuffledPosition");
+            setSparsePlayQueuePositions(database, "position");
+            setSparsePlayQueuePositions(database, "shuffledPosition");
+        }
+    };
+
+    private static void setSparsePlayQueuePositions(SupportSQLiteDatabase database, String column) {
+        long[] ids;
+        try (Cursor c = database.query("SELECT id FROM play_queue ORDER BY " + column + " DESC")) {
+            ids = new long[c.getCount()];
+            for (int i = 0; c.moveToNext(); i++) {
+                ids[i] = c.getLong(0);
+            }
+        }
+        ContentValues cv = new ContentValues();
+        for (int i = 0; i < ids.length; i++) {
+            cv.put(column, i * 1024);
+            database.update("play_queue", SQLiteDatabase.CONFLICT_ABORT, cv, "id = ?", new Object[] { ids[i] });
+        }
+    }
+
+    static Migration MIGRATION_22_23 = new Migration(22, 23) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE artists ADD COLUMN compositionsCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE artists ADD COLUMN albumsCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE albums ADD COLUMN compositionsCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE genres ADD COLUMN compositionsCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE artists SET " +
+                    "compositionsCount = (SELECT count() FROM compositions WHERE artistId = artists.id), " +
+                    "albumsCount = (SELECT count() FROM albums WHERE artistId = artists.id)");
+            database.execSQL("UPDATE albums SET " +
+                    "compositionsCount = (SELECT count() FROM compositions WHERE albumId = albums.id)");
+            database.execSQL("UPDATE genres SET " +
+                    "compositionsCount = (SELECT count() FROM genre_entries WHERE genreId = genres.id)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_artists_compositionsCount_albumsCount` ON `artists` (`compositionsCount`, `albumsCount`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_albums_compositionsCount` ON `albums` (`compositionsCount`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_genres_compositionsCount` ON `genres` (`compositionsCount`)");
+
+            LibraryDatabaseTriggers.createLibraryCountersTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_21_22 = new Migration(21, 22) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `composition_changes` (`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `compositionId` INTEGER NOT NULL)");
+            LibraryDatabaseTriggers.createCompositionChangesTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_20_21 = new Migration(20, 21) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE compositions ADD COLUMN artistName TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN albumName TEXT");
+            database.execSQL("ALTER TABLE compositions ADD COLUMN albumArtistName TEXT");
+            database.execSQL("UPDATE compositions SET " +
+                    "artistName = (SELECT name FROM artists WHERE id = compositions.artistId), " +
+                    "albumName = (SELECT name FROM albums WHERE id = compositions.albumId), " +
+                    "albumArtistName = (SELECT name FROM artists WHERE id = (" +
+                    "SELECT artistId FROM albums WHERE id = compositions.albumId" +
+                    ")) " +
+                    "WHERE artistId IS NOT NULL OR albumId IS NOT NULL");
+
+            LibraryDatabaseTriggers.createCompositionNamesTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_19_20 = new Migration(19, 20) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `compositions_fts` USING FTS4(`title` TEXT, `fileName` TEXT, `artist` TEXT, `album` TEXT, `albumArtist` TEXT, `genres` TEXT, `folder` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `artists_fts` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `albums_fts` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `genres_fts` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `folders_fts` USING FTS4(`name` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `play_lists_fts` USING FTS4(`name` TEXT, tokenize=unicode61)");
+
+            LibraryDatabaseTriggers.fillSearchIndexes(database);
+            LibraryDatabaseTriggers.createSearchTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_18_19 = new Migration(18, 19) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE folders ADD COLUMN filesCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE folders ADD COLUMN storageFilesCount INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE folders ADD COLUMN totalDuration INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE folders ADD COLUMN totalSize INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE folders ADD COLUMN lastAddTime INTEGER NOT NULL DEFAULT 0");
+
+            String childCompositions = "FROM compositions WHERE folderId IN (" +
+                    "SELECT descendantId FROM folder_tree WHERE ancestorId = folders.id" +
+                    ")";
+            database.execSQL("UPDATE folders SET " +
+                    "filesCount = (SELECT count() " + childCompositions + "), " +
+                    "storageFilesCount = (SELECT IFNULL(sum(storageId IS NOT NULL AND initialSource = 1), 0) " + childCompositions + "), " +
+                    "totalDuration = (SELECT IFNULL(sum(duration), 0) " + childCompositions + "), " +
+                    "totalSize = (SELECT IFNULL(sum(size), 0) " + childCompositions + "), " +
+                    "lastAddTime = (SELECT IFNULL(max(dateAdded), 0) " + childCompositions + ")");
+
+            database.execSQL("DROP TRIGGER IF EXISTS `folder_tree_move`");
+            LibraryDatabaseTriggers.createFolderTreeTriggers(database);
+            LibraryDatabaseTriggers.createFolderAggregatesTriggers(database);
+        }
+    };
+
+    static Migration MIGRATION_17_18 = new Migration(17, 18) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `folder_tree` (`ancestorId` INTEGER NOT NULL, `descendantId` INTEGER NOT NULL, `depth` INTEGER NOT NULL, PRIMARY KEY(`ancestorId`, `descendantId`), FOREIGN KEY(`ancestorId`) REFERENCES `folders`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , FOREIGN KEY(`descendantId`) REFERENCES `folders`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_folder_tree_descendantId_depth` ON `folder_tree` (`descendantId`, `depth`)");
+            database.execSQL("INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                    "WITH RECURSIVE tree(ancestorId, descendantId, depth) AS (" +
+                    "SELECT id, id, 0 FROM folders " +
+                    "UNION ALL " +
+                    "SELECT tree.ancestorId, folders.id, tree.depth + 1 " +
+                    "FROM folders JOIN tree ON folders.parentId = tree.descendantId" +
+                    ") " +
+                    "SELECT ancestorId, descendantId, depth FROM tree");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_tree_insert` " +
+                    "AFTER INSERT ON `folders` " +
+                    "BEGIN " +
+                    "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                    "SELECT ancestorId, NEW.id, depth + 1 FROM folder_tree WHERE descendantId = NEW.parentId; " +
+                    "INSERT INTO folder_tree (ancestorId, descendantId, depth) VALUES (NEW.id, NEW.id, 0); " +
+                    "END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS `folder_tree_move` " +
+                    "AFTER UPDATE OF parentId ON `folders` " +
+                    "WHEN OLD.parentId IS NOT NEW.parentId " +
+                    "BEGIN " +
+                    "DELETE FROM folder_tree " +
+                    "WHERE descendantId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = NEW.id) " +
+                    "AND ancestorId IN (SELECT ancestorId FROM folder_tree WHERE descendantId = NEW.id AND ancestorId != NEW.id); " +
+                    "INSERT INTO folder_tree (ancestorId, descendantId, depth) " +
+                    "SELECT parents.ancestorId, children.descendantId, parents.depth + children.depth + 1 " +
+                    "FROM folder_tree AS parents, folder_tree AS children " +
+                    "WHERE parents.descendantId = NEW.parentId AND children.ancestorId = NEW.id; " +
+                    "END");
+        }
+    };
+
     static Migration MIGRATION_16_17 = new Migration(16, 17) {
         @Override
         public void migrate(@NonNull SupportSQLiteDatabase database) {
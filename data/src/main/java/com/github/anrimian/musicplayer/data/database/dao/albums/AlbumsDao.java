@@ -8,12 +8,14 @@ import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
+import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumIdEntry;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.domain.models.albums.Album;
 import com.github.anrimian.musicplayer.domain.models.albums.AlbumComposition;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -28,7 +30,7 @@ public interface AlbumsDao {
     @Query("INSERT OR REPLACE INTO albums (artistId, name) VALUES (:artistId, :name)")
     long insertAlbum(@Nullable Long artistId, String name);
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
+    @RawQuery(observedEntities = { ArtistEntity.class, AlbumEntity.class })
     Observable<List<Album>> getAllObservable(SupportSQLiteQuery query);
 
     @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class, AlbumEntity.class })
@@ -44,7 +46,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE albums.artistId = :artistId")
     Observable<List<Album>> getAllAlbumsForArtistObservable(long artistId);
@@ -52,7 +54,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE id = :albumId LIMIT 1")
     Observable<List<Album>> getAlbumObservable(long albumId);
@@ -60,7 +62,7 @@ public interface AlbumsDao {
     @Query("SELECT id as id," +
             "name as name, " +
             "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-            "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
+            "compositionsCount as compositionsCount " +
             "FROM albums " +
             "WHERE id = :albumId LIMIT 1")
     Album getAlbum(long albumId);
@@ -73,6 +75,9 @@ public interface AlbumsDao {
             "AND name = :name")
     Long findAlbum(Long artistId, String name);
 
+    @Query("SELECT id, artistId, name FROM albums WHERE name IN (:names)")
+    List<AlbumIdEntry> selectAlbumIds(Collection<String> names);
+
     @Query("UPDATE albums SET artistId = :artistId WHERE id = :albumId")
     void setAuthorId(long albumId, Long artistId);
 
@@ -80,11 +85,11 @@ public interface AlbumsDao {
     AlbumEntity getAlbumEntity(long id);
 
     @Query("DELETE FROM albums " +
-            "WHERE id = :id AND (SELECT count() FROM compositions WHERE albumId = albums.id) = 0")
+            "WHERE id = :id AND compositionsCount = 0")
     void deleteEmptyAlbum(long id);
 
     @Query("DELETE FROM albums " +
-            "WHERE (SELECT count() FROM compositions WHERE albumId = albums.id) = 0")
+            "WHERE compositionsCount = 0")
     void deleteEmptyAlbums();
 
     @Query("SELECT name FROM albums")
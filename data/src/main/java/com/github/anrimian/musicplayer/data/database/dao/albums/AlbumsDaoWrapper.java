@@ -8,6 +8,7 @@ import androidx.sqlite.db.SimpleSQLiteQuery;
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao;
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates;
 import com.github.anrimian.musicplayer.domain.models.albums.Album;
 import com.github.anrimian.musicplayer.domain.models.albums.AlbumComposition;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
@@ -39,14 +40,17 @@ public class AlbumsDaoWrapper {
     }
 
     public Observable<List<Album>> getAllObservable(Order order, String searchText) {
-        String query = "SELECT id as id," +
-                "name as name, " +
-                "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
-                "(SELECT count() FROM compositions WHERE albumId = albums.id) as compositionsCount " +
-                "FROM albums";
-        query += getSearchQuery();
-        query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 3));
+        SimpleSQLiteQuery sqlQuery = QueryTemplates.query(
+                "albums:" + order,
+                getSearchArgs(searchText, 3),
+                () -> "SELECT id as id," +
+                        "name as name, " +
+                        "(SELECT name FROM artists WHERE artists.id = albums.artistId) as artist, " +
+                        "compositionsCount as compositionsCount " +
+                        "FROM albums" +
+                        getSearchQuery() +
+                        getOrderQuery(order)
+        );
         return albumsDao.getAllObservable(sqlQuery);
     }
 
@@ -165,7 +169,9 @@ public class AlbumsDaoWrapper {
     }
 
     private String getSearchQuery() {
-        return " WHERE (? IS NULL OR (name LIKE ? OR artist NOTNULL AND artist LIKE ?))";
+        return " WHERE (? IS NULL " +
+                "OR id IN (SELECT docid FROM albums_fts WHERE albums_fts MATCH ?) " +
+                "OR artistId IN (SELECT docid FROM artists_fts WHERE artists_fts MATCH ?))";
     }
 
 }
@@ -9,10 +9,12 @@ import androidx.sqlite.db.SupportSQLiteQuery;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao;
 import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity;
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity;
+import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistIdEntry;
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.domain.models.artist.Artist;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -22,13 +24,13 @@ import io.reactivex.rxjava3.core.Single;
 @Dao
 public interface ArtistsDao {
 
-    @RawQuery(observedEntities = { ArtistEntity.class, CompositionEntity.class })
+    @RawQuery(observedEntities = ArtistEntity.class)
     Observable<List<Artist>> getAllObservable(SupportSQLiteQuery query);
 
     @Query("SELECT id as id," +
             "name as name, " +
-            "(SELECT count() FROM compositions WHERE artistId = artists.id) as compositionsCount, " +
-            "(SELECT count() FROM albums WHERE artistId = artists.id) as albumsCount " +
+            "compositionsCount as compositionsCount, " +
+            "albumsCount as albumsCount " +
             "FROM artists " +
             "WHERE id = :artistId LIMIT 1")
     Observable<List<Artist>> getArtistObservable(long artistId);
@@ -58,18 +60,21 @@ public interface ArtistsDao {
     @Query("SELECT id FROM artists WHERE name = :name")
     Long findArtistIdByName(String name);
 
+    @Query("SELECT id, name FROM artists WHERE name IN (:names)")
+    List<ArtistIdEntry> selectArtistIds(Collection<String> names);
+
     @Query("INSERT OR REPLACE INTO artists (name) VALUES (:name)")
     long insertArtist(String name);
 
     @Query("DELETE FROM artists " +
             "WHERE id = :id " +
-            "AND (SELECT count() FROM compositions WHERE artistId = artists.id) = 0 " +
-            "AND (SELECT count() FROM albums WHERE artistId = artists.id) = 0")
+            "AND compositionsCount = 0 " +
+            "AND albumsCount = 0")
     void deleteEmptyArtist(long id);
 
     @Query("DELETE FROM artists " +
-            "WHERE (SELECT count() FROM compositions WHERE artistId = artists.id) = 0 " +
-            "AND (SELECT count() FROM albums WHERE artistId = artists.id) = 0")
+            "WHERE compositionsCount = 0 " +
+            "AND albumsCount = 0")
     void deleteEmptyArtists();
 
     @Query("UPDATE artists SET name = :name WHERE id = :id")
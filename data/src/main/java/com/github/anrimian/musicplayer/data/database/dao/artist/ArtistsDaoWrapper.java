@@ -7,6 +7,7 @@ import androidx.sqlite.db.SimpleSQLiteQuery;
 
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao;
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates;
 import com.github.anrimian.musicplayer.domain.models.artist.Artist;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.order.Order;
@@ -33,14 +34,17 @@ public class ArtistsDaoWrapper {
     }
 
     public Observable<List<Artist>> getAllObservable(Order order, String searchText) {
-        String query = "SELECT id as id," +
-                "name as name, " +
-                "(SELECT count() FROM compositions WHERE artistId = artists.id) as compositionsCount, " +
-                "(SELECT count() FROM albums WHERE artistId = artists.id) as albumsCount " +
-                "FROM artists";
-        query += getSearchQuery();
-        query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 2));
+        SimpleSQLiteQuery sqlQuery = QueryTemplates.query(
+                "artists:" + order,
+                getSearchArgs(searchText, 2),
+                () -> "SELECT id as id," +
+                        "name as name, " +
+                        "compositionsCount as compositionsCount, " +
+                        "albumsCount as albumsCount " +
+                        "FROM artists" +
+                        getSearchQuery() +
+                        getOrderQuery(order)
+        );
         return artistsDao.getAllObservable(sqlQuery);
     }
 
@@ -142,7 +146,7 @@ public class ArtistsDaoWrapper {
     }
 
     private String getSearchQuery() {
-        return " WHERE (? IS NULL OR name LIKE ?)";
+        return " WHERE (? IS NULL OR id IN (SELECT docid FROM artists_fts WHERE artists_fts MATCH ?))";
     }
 
 }
@@ -7,12 +7,11 @@ import androidx.room.RawQuery
 import androidx.room.util.appendPlaceholders
 import androidx.sqlite.db.SimpleSQLiteQuery
 import androidx.sqlite.db.SupportSQLiteQuery
-import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity
-import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity
+import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionFileEntry
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionSourceEntry
 import com.github.anrimian.musicplayer.data.models.composition.ExternalComposition
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData
-import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition
 import com.github.anrimian.musicplayer.domain.Constants
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
@@ -28,13 +27,10 @@ interface CompositionsDao {
     
     @Query("""
         SELECT 
-        (SELECT name FROM artists WHERE id = artistId) AS artist, 
+        artistName AS artist, 
         title AS title, 
-        (SELECT name FROM albums WHERE id = albumId) AS album, 
-        (SELECT name 
-            FROM artists 
-            WHERE id = (SELECT artistId FROM albums WHERE id = albumId)
-        ) AS albumArtist, 
+        albumName AS album, 
+        albumArtistName AS albumArtist, 
         (SELECT group_concat(name, '${Constants.GENRE_DIVIDER}') FROM (    
             SELECT name   
             FROM genres    
@@ -67,13 +63,10 @@ interface CompositionsDao {
 
     @Query("""
         SELECT 
-        (SELECT name FROM artists WHERE id = artistId) AS artist, 
+        artistName AS artist, 
         title AS title, 
-        (SELECT name FROM albums WHERE id = albumId) AS album, 
-        (SELECT name 
-            FROM artists 
-            WHERE id = (SELECT artistId FROM albums WHERE id = albumId)
-        ) AS albumArtist, 
+        albumName AS album, 
+        albumArtistName AS albumArtist, 
         (SELECT group_concat(name, '${Constants.GENRE_DIVIDER}') FROM (    
             SELECT name   
             FROM genres    
@@ -102,19 +95,7 @@ interface CompositionsDao {
     fun getFullComposition(id: Long): FullComposition
 
     @Query("""
-        SELECT (
-            WITH RECURSIVE path(level, name, parentId) AS (                
-                SELECT 0, name, parentId                 
-                FROM folders                 
-                WHERE id = compositions.folderId                 
-                UNION ALL                 
-                SELECT path.level + 1, folders.name, folders.parentId                 
-                FROM folders                 
-                JOIN path ON folders.id = path.parentId             
-            ),             
-            path_from_root AS (SELECT name FROM path ORDER BY level DESC)             
-            SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root
-        ) AS parentPath, 
+        SELECT $FOLDER_PATH_QUERY AS parentPath, 
         compositions.id AS id, 
         compositions.storageId AS storageId, 
         compositions.fileName AS fileName,
@@ -124,54 +105,14 @@ interface CompositionsDao {
     """)
     fun getCompositionMoveData(id: Long): CompositionMoveData
 
-    @RawQuery(observedEntities = [CompositionEntity::class, ArtistEntity::class, AlbumEntity::class])
-    fun getCompositionsObservable(query: SupportSQLiteQuery): Observable<List<Composition>>
-
-    @RawQuery(observedEntities = [CompositionEntity::class, ArtistEntity::class, AlbumEntity::class])
-    fun getCompositionsInFolderObservable(query: SupportSQLiteQuery): Observable<List<Composition>>
-
     @RawQuery
     fun executeQuery(sqlQuery: SimpleSQLiteQuery): List<Composition>
 
     @RawQuery
     fun executeQueryForMove(sqlQuery: SimpleSQLiteQuery): List<CompositionMoveData>
 
-    @Query("""
-        SELECT (
-            WITH RECURSIVE path(level, name, parentId) AS (                
-                SELECT 0, name, parentId                 
-                FROM folders                 
-                WHERE id = compositions.folderId                 
-                UNION ALL                 
-                SELECT path.level + 1, folders.name, folders.parentId                 
-                FROM folders                 
-                JOIN path ON folders.id = path.parentId             
-            ),             
-            path_from_root AS (SELECT name FROM path ORDER BY level DESC)             
-            SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root
-        ) AS parentPath, 
-        (SELECT name FROM artists WHERE id = artistId) AS artist, 
-        title AS title, 
-        (SELECT name FROM albums WHERE id = albumId) AS album, 
-        (SELECT name FROM artists WHERE id = (
-            SELECT artistId FROM albums WHERE id = albumId
-        )) AS albumArtist, 
-        compositions.fileName AS fileName, 
-        compositions.duration AS duration, 
-        compositions.size AS size, 
-        compositions.id AS id, 
-        compositions.initialSource AS initialSource, 
-        compositions.storageId AS storageId, 
-        compositions.folderId AS folderId, 
-        compositions.dateAdded AS dateAdded, 
-        compositions.dateModified AS dateModified, 
-        compositions.lastScanDate AS lastScanDate 
-        FROM compositions 
-        WHERE storageId NOTNULL 
-        LIMIT :pageSize 
-        OFFSET :pageIndex * :pageSize
-    """)
-    fun selectAllAsStorageCompositions(pageSize: Int, pageIndex: Int): List<StorageComposition>
+    @Query("SELECT storageId FROM compositions WHERE storageId NOTNULL ORDER BY storageId")
+    fun selectAllStorageIds(): List<Long>
 
     @Query("""
         INSERT INTO compositions (
@@ -343,6 +284,27 @@ interface CompositionsDao {
     @Query("SELECT storageId FROM compositions WHERE id = :id")
     fun getStorageId(id: Long): Long?
 
+    @Query("SELECT storageId, trackGain, albumGain, analyzedGain FROM compositions WHERE id = :id")
+    fun getSourceEntry(id: Long): CompositionSourceEntry?
+
+    //returns 0 if gain values are the same
+    @Query("""
+        UPDATE compositions SET trackGain = :trackGain, albumGain = :albumGain
+        WHERE id = :id AND (trackGain IS NOT :trackGain OR albumGain IS NOT :albumGain)
+    """)
+    fun updateReplayGain(id: Long, trackGain: Float?, albumGain: Float?): Int
+
+    @Query("UPDATE compositions SET analyzedGain = :gain WHERE id = :id")
+    fun updateAnalyzedGain(id: Long, gain: Float?)
+
+    @Query("""
+        SELECT id FROM compositions
+        WHERE id > :afterId AND storageId IS NOT NULL AND trackGain IS NULL AND analyzedGain IS NULL
+        ORDER BY id
+        LIMIT :count
+    """)
+    fun selectCompositionsToAnalyze(afterId: Long, count: Int): List<Long>
+
     @Query("SELECT corruptionType FROM compositions WHERE id = :id")
     fun selectCorruptionType(id: Long): CorruptionType?
 
@@ -381,12 +343,10 @@ interface CompositionsDao {
 
     @Query("""
         SELECT 
-            (SELECT name FROM artists WHERE id = artistId) AS artist, 
+            artistName AS artist, 
             title AS title, 
-            (SELECT name FROM albums WHERE id = albumId) AS album, 
-            (SELECT name FROM artists WHERE id = (
-                SELECT artistId FROM albums WHERE id = albumId
-            )) AS albumArtist, 
+            albumName AS album, 
+            albumArtistName AS albumArtist, 
             (SELECT group_concat(name, '${Constants.GENRE_DIVIDER}') FROM (    
                 SELECT name   
                 FROM genres    
@@ -419,6 +379,14 @@ interface CompositionsDao {
         filesCount: Int
     ): Single<List<FullComposition>>
 
+    @Query("""
+        SELECT count() 
+        FROM compositions 
+        WHERE (lastScanDate < dateModified OR lastScanDate < :lastCompleteScanTime) 
+            AND storageId IS NOT NULL
+    """)
+    fun selectCompositionsToScanCount(lastCompleteScanTime: Long): Int
+
     @Query("UPDATE compositions SET lastScanDate = :time WHERE id = :id")
     fun setCompositionLastFileScanTime(id: Long, time: Date)
 
@@ -429,36 +397,26 @@ interface CompositionsDao {
     fun getFolderId(compositionId: Long): Long?
 
     @Query("""
-        WITH RECURSIVE allChildFolders(cfId, cfPId, name) AS (
-            SELECT folders.id AS cfId, folders.parentId AS cfPId, folders.name AS name    
-            FROM folders    
-            WHERE parentId = :parentFolderId OR (parentId IS NULL AND :parentFolderId IS NULL)
-            UNION 
-            SELECT folders.id AS cfId, folders.parentId AS cfPId, folders.name AS name    
-            FROM folders    
-            INNER JOIN allChildFolders ON parentId = allChildFolders.cfId
-        ), 
-        entries(genreId, position) AS (SELECT genreId, position FROM genre_entries) 
+        WITH entries(genreId, position) AS (SELECT genreId, position FROM genre_entries) 
         SELECT (
-            WITH RECURSIVE path(level, name, parentId) AS (   
-                SELECT 0, name, cfPId    
-                FROM allChildFolders    
-                WHERE cfId = compositions.folderId    
-                UNION ALL    
-                SELECT path.level + 1, allChildFolders.name, allChildFolders.cfPId    
-                FROM allChildFolders    
-                JOIN path ON allChildFolders.cfId = path.parentId 
-            ), 
-            path_from_root AS (SELECT name FROM path ORDER BY level DESC)    
-            SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root
+            SELECT IFNULL(group_concat(name, '/'), '') FROM (
+                SELECT folders.name AS name 
+                FROM folder_tree 
+                JOIN folders ON folders.id = folder_tree.ancestorId 
+                WHERE folder_tree.descendantId = compositions.folderId 
+                    AND (:parentFolderId IS NULL OR folder_tree.depth < (
+                        SELECT depth 
+                        FROM folder_tree 
+                        WHERE descendantId = compositions.folderId AND ancestorId = :parentFolderId
+                    )) 
+                ORDER BY folder_tree.depth DESC
+            )
         ) AS parentPath, 
         fileName AS fileName, 
         title AS title, 
-        (SELECT name FROM artists WHERE id = artistId) AS artist, 
-        (SELECT name FROM albums WHERE id = albumId) AS album, 
-        (SELECT name FROM artists WHERE id = (
-            SELECT artistId FROM albums WHERE id = albumId
-        )) AS albumArtist, 
+        artistName AS artist, 
+        albumName AS album, 
+        albumArtistName AS albumArtist, 
         (SELECT group_concat(name, '${Constants.GENRE_DIVIDER}') FROM (    
             SELECT name  
             FROM genres    
@@ -478,8 +436,8 @@ interface CompositionsDao {
         coverModifyTime AS coverModifyTime, 
         storageId IS NOT NULL AS isFileExists 
         FROM compositions 
-        WHERE folderId IN (SELECT cfId FROM allChildFolders)   
-            OR (folderId = :parentFolderId OR (folderId IS NULL AND :parentFolderId IS NULL))
+        WHERE :parentFolderId IS NULL 
+            OR folderId IN (SELECT descendantId FROM folder_tree WHERE ancestorId = :parentFolderId)
     """)
     fun getAllAsExternalCompositions(parentFolderId: Long?): List<ExternalComposition>
 
@@ -495,22 +453,17 @@ interface CompositionsDao {
     fun findCompositionByFileName(fileName: String, folderId: Long?): Long?
 
     @Query("""
-        WITH RECURSIVE path(level, name, parentId) AS (    
-            SELECT 0, name, parentId    
-            FROM folders    
-            WHERE id = (SELECT folderId FROM compositions WHERE id = :id)   
-            UNION ALL    
-            SELECT path.level + 1, folders.name, folders.parentId    
-            FROM folders    
-            JOIN path ON folders.id = path.parentId
-        ), 
-        path_from_root AS (    
-            SELECT name    
-            FROM path    
-            ORDER BY level DESC
-        ) 
-        SELECT IFNULL(group_concat(name, '/'), '') 
-        FROM path_from_root
+        SELECT id, fileName, storageId, corruptionType 
+        FROM compositions 
+        WHERE (folderId = :folderId OR (folderId IS NULL AND :folderId IS NULL))
+            AND fileName IN (:fileNames)
+    """)
+    fun selectFileEntries(folderId: Long?, fileNames: List<String>): List<CompositionFileEntry>
+
+    @Query("""
+        SELECT ${FoldersDao.FOLDER_PATH_QUERY_START}(
+            SELECT folderId FROM compositions WHERE id = :id
+        )${FoldersDao.FOLDER_PATH_QUERY_END}
     """)
     fun getCompositionParentPath(id: Long): String
 
@@ -537,8 +490,30 @@ interface CompositionsDao {
     @Query("SELECT exists(SELECT 1 FROM compositions WHERE id = :compositionId)")
     fun isCompositionExists(compositionId: Long): Boolean
 
+    @Query("SELECT IFNULL(max(seq), 0) FROM composition_changes")
+    fun getLastChangeSeq(): Long
+
+    //old log entries are removed, so changes after seq are known only if the log wasn't cut after it
+    @Query("SELECT IFNULL(min(seq), 0) <= :seq + 1 FROM composition_changes")
+    fun isChangesLogComplete(seq: Long): Boolean
+
+    @Query("SELECT DISTINCT compositionId FROM composition_changes WHERE seq > :seq")
+    fun getChangedCompositionIds(seq: Long): List<Long>
+
+    @Query("""
+        SELECT exists(
+            SELECT 1 FROM composition_changes WHERE seq > :seq AND compositionId = :compositionId
+        )
+    """)
+    fun isCompositionChanged(compositionId: Long, seq: Long): Boolean
+
     companion object {
 
+        //relative path of composition folder
+        const val FOLDER_PATH_QUERY = FoldersDao.FOLDER_PATH_QUERY_START +
+                "compositions.folderId" +
+                FoldersDao.FOLDER_PATH_QUERY_END
+
         fun getCompositionQuery(useFileName: Boolean): StringBuilder {
             return StringBuilder().apply {
                 append("SELECT ")
@@ -549,19 +524,7 @@ interface CompositionsDao {
 
         fun getMoveCompositionQuery(): StringBuilder {
             return StringBuilder("""
-                SELECT (
-                    WITH RECURSIVE path(level, name, parentId) AS (                
-                        SELECT 0, name, parentId                 
-                        FROM folders                 
-                        WHERE id = compositions.folderId                 
-                        UNION ALL                 
-                        SELECT path.level + 1, folders.name, folders.parentId                 
-                        FROM folders                 
-                        JOIN path ON folders.id = path.parentId             
-                    ),             
-                    path_from_root AS (SELECT name FROM path ORDER BY level DESC)             
-                    SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root
-                ) AS parentPath, 
+                SELECT $FOLDER_PATH_QUERY AS parentPath, 
                 compositions.id AS id, 
                 compositions.storageId AS storageId, 
                 compositions.fileName AS fileName,
@@ -575,8 +538,8 @@ interface CompositionsDao {
             return """
                 compositions.id AS id, 
                 compositions.storageId AS storageId, 
-                (SELECT name FROM artists WHERE id = artistId) AS artist, 
-                (SELECT name FROM albums WHERE id = albumId) AS album, 
+                compositions.artistName AS artist, 
+                compositions.albumName AS album, 
                 (${if (useFileName) "fileName" else "CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END"}) AS title, 
                 compositions.duration AS duration, 
                 compositions.size AS size, 
@@ -590,28 +553,16 @@ interface CompositionsDao {
             """
         }
 
-        fun getSearchWhereQuery(useFileName: Boolean): StringBuilder {
-            return StringBuilder().apply {
-                append(" WHERE (? IS NULL OR ")
-                if (useFileName) {
-                    append("fileName")
-                } else {
-                    append("CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END")
-                }
-                append(" LIKE ? OR (artist NOTNULL AND artist LIKE ?))")
-            }
+        fun getSearchWhereQuery(): StringBuilder {
+            return StringBuilder(" WHERE").append(getSearchQuery())
         }
 
+        //search index contains title, file name and names of related artist, album, genres and folder
         @JvmStatic
-        fun getSearchQuery(useFileName: Boolean): StringBuilder {
-            return StringBuilder(" (? IS NULL OR ").apply {
-                if (useFileName) {
-                    append("fileName")
-                } else {
-                    append("CASE WHEN title IS NULL OR title = '' THEN fileName ELSE title END")
-                }
-                append(" LIKE ? OR (artist NOTNULL AND artist LIKE ?))")
-            }
+        fun getSearchQuery(): StringBuilder {
+            return StringBuilder(" (? IS NULL OR compositions.id IN (")
+                .append("SELECT docid FROM compositions_fts WHERE compositions_fts MATCH ?")
+                .append(")) ")
         }
 
         @SuppressLint("RestrictedApi")
@@ -620,19 +571,7 @@ interface CompositionsDao {
             compositionsCount: Int
         ): StringBuilder {
             return StringBuilder("""
-                SELECT (
-                    WITH RECURSIVE path(level, name, parentId) AS (                
-                        SELECT 0, name, parentId                 
-                        FROM folders                 
-                        WHERE id = compositions.folderId                 
-                        UNION ALL                 
-                        SELECT path.level + 1, folders.name, folders.parentId                 
-                        FROM folders                 
-                        JOIN path ON folders.id = path.parentId             
-                    ),             
-                    path_from_root AS (SELECT name FROM path ORDER BY level DESC)             
-                    SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root
-                ) AS parentPath, 
+                SELECT $FOLDER_PATH_QUERY AS parentPath, 
                 fileName AS fileName, 
                 compositions.storageId AS storageId, 
             """
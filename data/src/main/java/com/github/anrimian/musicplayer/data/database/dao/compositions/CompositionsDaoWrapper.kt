@@ -1,25 +1,29 @@
 package com.github.anrimian.musicplayer.data.database.dao.compositions
 
-import androidx.collection.LongSparseArray
+import android.database.Cursor
+import androidx.room.rxjava3.RxRoom
 import androidx.sqlite.db.SimpleSQLiteQuery
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDao
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionSourceEntry
+import com.github.anrimian.musicplayer.data.database.entities.folder.StorageFolder
 import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates
 import com.github.anrimian.musicplayer.data.models.composition.ExternalComposition
 import com.github.anrimian.musicplayer.data.models.exceptions.CompositionNotFoundException
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.m3uparser.PlayListEntry
-import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition
-import com.github.anrimian.musicplayer.data.utils.collections.AndroidCollectionUtils
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageCompositionsTable
 import com.github.anrimian.musicplayer.domain.Constants
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
 import com.github.anrimian.musicplayer.domain.models.composition.DeletedComposition
 import com.github.anrimian.musicplayer.domain.models.composition.FullComposition
 import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+import com.github.anrimian.musicplayer.domain.models.composition.fromId
 import com.github.anrimian.musicplayer.domain.models.composition.tags.AudioFileInfo
 import com.github.anrimian.musicplayer.domain.models.order.Order
 import com.github.anrimian.musicplayer.domain.models.order.OrderType
@@ -27,11 +31,13 @@ import com.github.anrimian.musicplayer.domain.models.sync.FileKey
 import com.github.anrimian.musicplayer.domain.models.utils.CompositionHelper
 import com.github.anrimian.musicplayer.domain.utils.FileUtils
 import com.github.anrimian.musicplayer.domain.utils.TextUtils
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import com.github.anrimian.musicplayer.domain.utils.getOrPut
 import com.github.anrimian.musicplayer.domain.utils.rx.firstListItemOrComplete
 import io.reactivex.rxjava3.core.Maybe
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.schedulers.Schedulers
 import io.reactivex.rxjava3.subjects.BehaviorSubject
 import java.util.Date
 
@@ -47,14 +53,28 @@ class CompositionsDaoWrapper(
     private val updateSubject = BehaviorSubject.createDefault(Constants.TRIGGER)
 
     fun getCompositionObservable(id: Long, useFileName: Boolean): Observable<Composition> {
-        val query = CompositionsDao.getCompositionQuery(useFileName)
-        query.append(" WHERE id = ? LIMIT 1")
-        val sqlQuery = SimpleSQLiteQuery(
-            query.toString(),
-            arrayOf(id.toString())
-        )
-        return compositionsDao.getCompositionsObservable(sqlQuery)
-            .firstListItemOrComplete()
+        val sqlQuery = QueryTemplates.query("composition:$useFileName", arrayOf(id)) {
+            CompositionsDao.getCompositionQuery(useFileName)
+                .append(" WHERE id = ? LIMIT 1")
+                .toString()
+        }
+        //requery only when this composition is found in changes log
+        return Observable.defer {
+            var lastChangeSeq = NO_CHANGE_SEQ
+            RxRoom.createObservable(libraryDatabase, "compositions")
+                .observeOn(Schedulers.from(libraryDatabase.queryExecutor))
+                .filter {
+                    lastChangeSeq == NO_CHANGE_SEQ
+                            || !compositionsDao.isChangesLogComplete(lastChangeSeq)
+                            || compositionsDao.isCompositionChanged(id, lastChangeSeq)
+                }
+                .map {
+                    //no transaction, it would take the write lock on each requery. Log position
+                    //is read before the row, so a change made in between is requeried next time
+                    lastChangeSeq = compositionsDao.getLastChangeSeq()
+                    compositionsDao.executeQuery(sqlQuery)
+                }
+        }.firstListItemOrComplete()
     }
 
     fun getFullCompositionObservable(id: Long): Observable<FullComposition> {
@@ -78,19 +98,29 @@ class CompositionsDaoWrapper(
         return ids.map(compositionsDao::getCompositionMoveData)
     }
 
+    /**
+     * @param isAllWindowsLoaded load all compositions instead of windows around displayed
+     * positions, for consumers which read the whole list
+     */
     fun getAllObservable(
         order: Order,
         useFileName: Boolean,
-        searchText: String?
-    ): Observable<List<Composition>> {
-        val query = CompositionsDao.getCompositionQuery(useFileName)
-        query.append(CompositionsDao.getSearchWhereQuery(useFileName))
-        query.append(getOrderQuery(order))
-        val sqlQuery = SimpleSQLiteQuery(
-            query.toString(),
-            DatabaseUtils.getSearchArgs(searchText, 3)
-        )
-        return updateSubject.switchMap { compositionsDao.getCompositionsObservable(sqlQuery) }
+        searchText: String?,
+        isAllWindowsLoaded: Boolean
+    ): Observable<WindowedList<Composition>> {
+        val sqlQuery = QueryTemplates.query(
+            "composition_ids:$order",
+            DatabaseUtils.getSearchArgs(searchText, 2)
+        ) {
+            StringBuilder(IDS_QUERY)
+                .append(CompositionsDao.getSearchWhereQuery())
+                .append(getOrderQuery(order))
+                .append(ID_ORDER)
+                .toString()
+        }
+        return updateSubject.switchMap {
+            getWindowedListObservable(sqlQuery, useFileName, isAllWindowsLoaded)
+        }
     }
 
     fun launchManualUpdate() {
@@ -101,44 +131,50 @@ class CompositionsDaoWrapper(
         folderId: Long?,
         order: Order,
         useFileName: Boolean,
-        searchText: String?
-    ): Observable<List<Composition>> {
-        val query = CompositionsDao.getCompositionQuery(useFileName)
-        query.append(CompositionsDao.getSearchWhereQuery(useFileName))
-        query.append(" AND (? IS NOT NULL OR ")
-        query.append("(folderId = ")
-        query.append(folderId)
-        query.append(" OR (folderId IS NULL AND ")
-        query.append(folderId)
-        query.append(" IS NULL)))")
-        query.append(getOrderQuery(order))
-        val sqlQuery = SimpleSQLiteQuery(
-            query.toString(),
-            DatabaseUtils.getSearchArgs(searchText, 4)
-        )
-        return compositionsDao.getCompositionsInFolderObservable(sqlQuery)
+        searchText: String?,
+        isAllWindowsLoaded: Boolean
+    ): Observable<WindowedList<Composition>> {
+        val searchArg = DatabaseUtils.getSearchArg(searchText)
+        val sqlQuery = QueryTemplates.query(
+            "folder_composition_ids:$order",
+            arrayOf(searchArg, searchArg, searchArg, folderId, folderId)
+        ) {
+            StringBuilder(IDS_QUERY)
+                .append(CompositionsDao.getSearchWhereQuery())
+                .append(" AND (? IS NOT NULL OR ")
+                .append(FOLDER_CONDITION)
+                .append(")")
+                .append(getOrderQuery(order))
+                .append(ID_ORDER)
+                .toString()
+        }
+        return getWindowedListObservable(sqlQuery, useFileName, isAllWindowsLoaded)
     }
 
     fun getAllCompositionsInFolder(
         parentFolderId: Long?,
         useFileName: Boolean
     ): List<Composition> {
-        var query = FoldersDao.getRecursiveFolderQuery(parentFolderId)
-        query += CompositionsDao.getCompositionQuery(useFileName)
-        query += " WHERE folderId IN (SELECT childFolderId FROM allChildFolders) "
-        query += "OR folderId = "
-        query += parentFolderId
-        val sqlQuery = SimpleSQLiteQuery(query)
+        val sqlQuery = QueryTemplates.query(
+            "all_folder_compositions:$useFileName",
+            DatabaseUtils.toArgs(parentFolderId, 3)
+        ) {
+            FoldersDao.getRecursiveFolderQuery() +
+                    CompositionsDao.getCompositionQuery(useFileName) +
+                    ALL_FOLDER_COMPOSITIONS_CONDITION
+        }
         return compositionsDao.executeQuery(sqlQuery)
     }
 
     fun getAllCompositionsInFolder(parentFolderId: Long?): List<CompositionMoveData> {
-        var query = FoldersDao.getRecursiveFolderQuery(parentFolderId)
-        query += CompositionsDao.getMoveCompositionQuery()
-        query += " WHERE folderId IN (SELECT childFolderId FROM allChildFolders) "
-        query += "OR folderId = "
-        query += parentFolderId
-        val sqlQuery = SimpleSQLiteQuery(query)
+        val sqlQuery = QueryTemplates.query(
+            "all_folder_compositions_move_data",
+            DatabaseUtils.toArgs(parentFolderId, 3)
+        ) {
+            FoldersDao.getRecursiveFolderQuery() +
+                    CompositionsDao.getMoveCompositionQuery() +
+                    ALL_FOLDER_COMPOSITIONS_CONDITION
+        }
         return compositionsDao.executeQueryForMove(sqlQuery)
     }
 
@@ -147,31 +183,41 @@ class CompositionsDaoWrapper(
         order: Order,
         useFileName: Boolean
     ): List<Composition> {
-        val query = CompositionsDao.getCompositionQuery(useFileName)
-        query.append(" WHERE folderId = ")
-        query.append(parentFolderId)
-        query.append(" OR (folderId IS NULL AND ")
-        query.append(parentFolderId)
-        query.append(" IS NULL)")
-        query.append(getOrderQuery(order))
-        val sqlQuery = SimpleSQLiteQuery(query.toString())
+        val sqlQuery = QueryTemplates.query(
+            "folder_compositions:$order:$useFileName",
+            DatabaseUtils.toArgs(parentFolderId, 2)
+        ) {
+            CompositionsDao.getCompositionQuery(useFileName)
+                .append(" WHERE ")
+                .append(FOLDER_CONDITION)
+                .append(getOrderQuery(order))
+                .toString()
+        }
         return compositionsDao.executeQuery(sqlQuery)
     }
 
-    fun selectAllAsStorageCompositions(): LongSparseArray<StorageComposition> {
-        val result = LongSparseArray<StorageComposition>()
-        val pageSize = 1000
-        var index = 0
-        var pageResult: LongSparseArray<StorageComposition>
-        do {
-            pageResult = AndroidCollectionUtils.mapToSparseArray(
-                compositionsDao.selectAllAsStorageCompositions(pageSize, index),
-                StorageComposition::getStorageId
-            )
-            result.putAll(pageResult)
-            index++
-        } while (pageResult.size() == pageSize)
-        return result
+    fun selectAllAsStorageCompositions(): StorageCompositionsTable {
+        val query = SimpleSQLiteQuery(
+            "$STORAGE_COMPOSITIONS_QUERY WHERE storageId NOTNULL ORDER BY storageId"
+        )
+        return readStorageCompositions(listOf(query), 0)
+    }
+
+    fun selectStorageCompositions(storageIds: List<Long>): StorageCompositionsTable {
+        val queries = storageIds.sorted()
+            .chunked(DatabaseUtils.MAX_QUERY_ARGS)
+            .map { chunk ->
+                val args = chunk.joinToString(separator = ",") { "?" }
+                SimpleSQLiteQuery(
+                    "$STORAGE_COMPOSITIONS_QUERY WHERE storageId IN ($args) ORDER BY storageId",
+                    chunk.toTypedArray()
+                )
+            }
+        return readStorageCompositions(queries, storageIds.size)
+    }
+
+    fun selectAllStorageIds(): List<Long> {
+        return compositionsDao.selectAllStorageIds()
     }
 
     fun getStorageId(compositionId: Long): Long {
@@ -180,8 +226,22 @@ class CompositionsDaoWrapper(
         return storageId
     }
 
-    fun selectStorageId(compositionId: Long): Maybe<Long> {
-        return Maybe.fromCallable { compositionsDao.getStorageId(compositionId) }
+    /**
+     * Storage id with loudness values, read by primary key in one query on playback start.
+     * Completes if composition is not found or has no storage file.
+     */
+    fun selectSourceEntry(compositionId: Long): Maybe<CompositionSourceEntry> {
+        return Maybe.fromCallable {
+            compositionsDao.getSourceEntry(compositionId)?.takeIf { entry -> entry.storageId != null }
+        }
+    }
+
+    fun selectCompositionsToAnalyze(afterId: Long, count: Int): List<Long> {
+        return compositionsDao.selectCompositionsToAnalyze(afterId, count)
+    }
+
+    fun setAnalyzedGain(compositionId: Long, gain: Float) {
+        compositionsDao.updateAnalyzedGain(compositionId, gain)
     }
 
     fun delete(id: Long) {
@@ -412,6 +472,10 @@ class CompositionsDaoWrapper(
         return compositionsDao.selectNextCompositionsToScan(lastCompleteScanTime, filesCount)
     }
 
+    fun selectCompositionsToScanCount(lastCompleteScanTime: Long): Int {
+        return compositionsDao.selectCompositionsToScanCount(lastCompleteScanTime)
+    }
+
     fun setCompositionLastFileScanTime(composition: FullComposition, time: Date) {
         compositionsDao.setCompositionLastFileScanTime(composition.id, time)
     }
@@ -511,9 +575,15 @@ class CompositionsDaoWrapper(
                 wasChanges = true
             }
 
+            if (compositionsDao.updateReplayGain(id, tags.trackGain, tags.albumGain) > 0) {
+                wasChanges = true
+            }
+
             val fileSize = fileInfo.fileSize
             if (composition.size != fileSize) {
                 compositionsDao.updateFileSize(id, fileSize)
+                //file content is changed, measure loudness again
+                compositionsDao.updateAnalyzedGain(id, null)
                 wasChanges = true
             }
             return@runInTransaction wasChanges
@@ -645,6 +715,83 @@ class CompositionsDaoWrapper(
         return folderId
     }
 
+    /**
+     * Reads compositions with a plain cursor. Artist and album names and folder paths are
+     * resolved once from in-memory dictionaries instead of per-row subqueries.
+     * Reads are not wrapped in a transaction, it would hold the write lock for the whole read.
+     */
+    private fun readStorageCompositions(
+        queries: List<SimpleSQLiteQuery>,
+        expectedSize: Int
+    ): StorageCompositionsTable {
+        var folderPaths = getFolderPaths()
+        var isFolderPathsReloaded = false
+
+        val builder = StorageCompositionsTable.Builder(expectedSize)
+        for (query in queries) {
+            libraryDatabase.query(query).use { c ->
+                while (c.moveToNext()) {
+                    val folderId = c.getLongOrNull(10)
+                    var folderPath = if (folderId == null) "" else folderPaths[folderId]
+                    if (folderId != null && folderPath == null && !isFolderPathsReloaded) {
+                        //folder was created after paths were read
+                        folderPaths = getFolderPaths()
+                        isFolderPathsReloaded = true
+                        folderPath = folderPaths[folderId]
+                    }
+                    builder.add(
+                        c.getLong(0),
+                        c.getLong(1),
+                        c.getString(2),
+                        c.getString(3),
+                        folderPath ?: "",
+                        c.getString(4),
+                        c.getString(5),
+                        c.getString(6),
+                        c.getLong(7),
+                        c.getLong(8),
+                        fromId(c.getInt(9)),
+                        folderId,
+                        c.getLong(11),
+                        c.getLong(12),
+                        c.getLong(13)
+                    )
+                }
+            }
+        }
+        return builder.build()
+    }
+
+    /**
+     * @return relative paths of all folders, each path is built once from parent path
+     */
+    private fun getFolderPaths(): Map<Long, String> {
+        val folders = HashMap<Long, StorageFolder>()
+        for (folder in foldersDao.selectAllStorageFolders()) {
+            folders[folder.id] = folder
+        }
+        val result = HashMap<Long, String>(folders.size)
+        val stack = ArrayList<StorageFolder>()
+        for (folder in folders.values) {
+            var current: StorageFolder? = folder
+            while (current != null && !result.containsKey(current.id)) {
+                stack.add(current)
+                current = current.parentId?.let(folders::get)
+            }
+            for (i in stack.indices.reversed()) {
+                val item = stack[i]
+                val parentPath = item.parentId?.let(result::get)
+                result[item.id] = if (parentPath == null) item.name else "$parentPath/${item.name}"
+            }
+            stack.clear()
+        }
+        return result
+    }
+
+    private fun Cursor.getLongOrNull(index: Int): Long? {
+        return if (isNull(index)) null else getLong(index)
+    }
+
     private fun getOrderQuery(order: Order): String {
         val orderQuery = StringBuilder(" ORDER BY ")
         when (order.orderType) {
@@ -662,4 +809,47 @@ class CompositionsDaoWrapper(
         return orderQuery.toString()
     }
 
+    //artist and album names are copied to compositions, so only compositions table is observed
+    private fun getWindowedListObservable(
+        idsQuery: SimpleSQLiteQuery,
+        useFileName: Boolean,
+        isAllWindowsLoaded: Boolean
+    ): Observable<WindowedList<Composition>> {
+        return Observable.defer {
+            val list = CompositionsWindowedList(
+                libraryDatabase,
+                compositionsDao,
+                idsQuery,
+                useFileName,
+                isAllWindowsLoaded
+            )
+            Observable.merge(
+                RxRoom.createObservable(libraryDatabase, "compositions"),
+                list.getWindowRequestObservable()
+            )
+                .observeOn(Schedulers.from(libraryDatabase.queryExecutor))
+                .map { list.load() }
+                .distinctUntilChanged { previous, current -> previous === current }
+        }
+    }
+
+    private companion object {
+        const val IDS_QUERY = "SELECT compositions.id FROM compositions"
+        //keeps order of equal keys stable between requeries, so unchanged windows are reused
+        const val ID_ORDER = ", compositions.id"
+
+        const val NO_CHANGE_SEQ = -1L
+
+        //folder id is bound twice, null means root folder
+        const val FOLDER_CONDITION = "(folderId = ? OR (folderId IS NULL AND ? IS NULL))"
+        //folder id is bound once after recursive folder query arguments
+        const val ALL_FOLDER_COMPOSITIONS_CONDITION =
+            " WHERE folderId IN (SELECT childFolderId FROM allChildFolders) OR folderId = ?"
+
+        //column order is used by readStorageCompositions()
+        const val STORAGE_COMPOSITIONS_QUERY = "SELECT storageId, id, title, fileName, " +
+                "artistName, albumName, albumArtistName, duration, size, initialSource, folderId, " +
+                "dateAdded, dateModified, lastScanDate FROM compositions"
+    }
+
 }
@@ -0,0 +1,314 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+import androidx.sqlite.db.SimpleSQLiteQuery
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils
+import com.github.anrimian.musicplayer.domain.Constants
+import com.github.anrimian.musicplayer.domain.models.composition.Composition
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.subjects.PublishSubject
+import java.util.Date
+
+/**
+ * Ordered composition list which is read by windows.
+ *
+ * Filter and order are applied once to a light query of ids, then compositions are read by
+ * primary key in windows of [WINDOW_SIZE] ids. Only windows requested by
+ * [WindowedList.loadAround] of emitted snapshots are loaded, at most [MAX_ACTIVE_WINDOWS]
+ * most recently requested ones, other positions are placeholders with id only.
+ * Loaded compositions are kept between loads until they appear in composition_changes log,
+ * so a requery reads only changed and newly requested compositions. Without any changes
+ * the previous snapshot is returned.
+ *
+ * Loads are not wrapped in a transaction, it would take the write lock for every requery.
+ * Changes log position is read before the rows, so changes made during a load are applied
+ * by the next one.
+ */
+class CompositionsWindowedList(
+    private val libraryDatabase: LibraryDatabase,
+    private val compositionsDao: CompositionsDao,
+    private val idsQuery: SimpleSQLiteQuery,
+    private val useFileName: Boolean,
+    private val isAllWindowsLoaded: Boolean = false
+) {
+
+    private val windowRequestSubject = PublishSubject.create<Any>()
+
+    //guarded by itself, accessed from ui thread
+    private val requestedWindows = LinkedHashSet<Int>().apply { add(0) }
+    private val pendingWindows = HashSet<Int>()
+
+    private var ids = LongArray(0)
+    private val compositions = HashMap<Long, Composition>()
+    private var lastChangeSeq = NO_CHANGE_SEQ
+    private var result: Snapshot? = null
+
+    fun getWindowRequestObservable(): Observable<Any> = windowRequestSubject
+
+    @Synchronized
+    fun load(): WindowedList<Composition> {
+        val previousResult = result
+        val changeSeq = compositionsDao.getLastChangeSeq()
+        val hasChanges = applyChanges()
+        lastChangeSeq = changeSeq
+
+        var newIds = ids
+        if (previousResult == null || hasChanges) {
+            newIds = readIds()
+            if (newIds.contentEquals(ids)) {
+                newIds = ids
+            }
+        }
+        val windows = getActiveWindows(newIds.size)
+        val activeIds = HashSet<Long>()
+        for (window in windows) {
+            forEachWindowIndex(window, newIds.size) { i -> activeIds.add(newIds[i]) }
+        }
+        compositions.keys.retainAll(activeIds)
+        val deletedIds = readCompositions(activeIds.filter { id -> !compositions.containsKey(id) })
+        if (deletedIds.isNotEmpty()) {
+            //row deleted after ids were read is skipped, its deletion invalidates the list again
+            newIds = newIds.filter { id -> !deletedIds.contains(id) }.toLongArray()
+        }
+
+        var changedRanges: List<IntRange>? = null
+        if (previousResult != null && newIds === previousResult.ids) {
+            changedRanges = getChangedRanges(previousResult, newIds, windows)
+            if (changedRanges.isEmpty()) {
+                return previousResult
+            }
+        }
+        val snapshot = Snapshot(
+            newIds,
+            HashMap(compositions),
+            windows,
+            getLoadedWindows(newIds, windows),
+            (previousResult?.version ?: 0) + 1,
+            changedRanges
+        )
+        ids = newIds
+        result = snapshot
+        return snapshot
+    }
+
+    /**
+     * Removes changed compositions from loaded ones.
+     *
+     * @return false if there were no changes since the previous load
+     */
+    private fun applyChanges(): Boolean {
+        if (lastChangeSeq == NO_CHANGE_SEQ) {
+            return true
+        }
+        if (!compositionsDao.isChangesLogComplete(lastChangeSeq)) {
+            compositions.clear()
+            return true
+        }
+        val changedIds = compositionsDao.getChangedCompositionIds(lastChangeSeq)
+        if (changedIds.isEmpty()) {
+            return false
+        }
+        compositions.keys.removeAll(changedIds.toHashSet())
+        return true
+    }
+
+    private fun getActiveWindows(size: Int): List<Int> {
+        val windowsCount = (size + WINDOW_SIZE - 1) / WINDOW_SIZE
+        if (isAllWindowsLoaded) {
+            return (0 until windowsCount).toList()
+        }
+        synchronized(requestedWindows) {
+            pendingWindows.clear()
+            return requestedWindows.filter { window -> window < windowsCount }
+        }
+    }
+
+    private fun onWindowRequested(window: Int, isLoaded: Boolean) {
+        synchronized(requestedWindows) {
+            if (requestedWindows.remove(window) || requestedWindows.size < MAX_ACTIVE_WINDOWS) {
+                requestedWindows.add(window)
+            } else {
+                val iterator = requestedWindows.iterator()
+                iterator.next()
+                iterator.remove()
+                requestedWindows.add(window)
+            }
+            if (isLoaded || !pendingWindows.add(window)) {
+                return
+            }
+        }
+        windowRequestSubject.onNext(Constants.TRIGGER)
+    }
+
+    private fun getChangedRanges(
+        previous: Snapshot,
+        ids: LongArray,
+        windows: List<Int>
+    ): List<IntRange> {
+        val positions = sortedSetOf<Int>()
+        for (window in windows + previous.windows) {
+            forEachWindowIndex(window, ids.size) { i ->
+                val id = ids[i]
+                if (previous.items[id] !== compositions[id]) {
+                    positions.add(i)
+                }
+            }
+        }
+        val ranges = ArrayList<IntRange>()
+        var start = -1
+        var end = -1
+        for (position in positions) {
+            if (position != end + 1) {
+                if (start != -1) {
+                    ranges.add(start..end)
+                }
+                start = position
+            }
+            end = position
+        }
+        if (start != -1) {
+            ranges.add(start..end)
+        }
+        return ranges
+    }
+
+    private fun getLoadedWindows(ids: LongArray, windows: List<Int>): Set<Int> {
+        val result = HashSet<Int>()
+        for (window in windows) {
+            var isLoaded = true
+            forEachWindowIndex(window, ids.size) { i ->
+                if (!compositions.containsKey(ids[i])) {
+                    isLoaded = false
+                }
+            }
+            if (isLoaded) {
+                result.add(window)
+            }
+        }
+        return result
+    }
+
+    private fun readIds(): LongArray {
+        libraryDatabase.query(idsQuery).use { c ->
+            val result = LongArray(c.count)
+            var i = 0
+            while (c.moveToNext()) {
+                result[i++] = c.getLong(0)
+            }
+            return result
+        }
+    }
+
+    /**
+     * @return ids which were not found
+     */
+    private fun readCompositions(ids: List<Long>): Set<Long> {
+        val notFoundIds = HashSet<Long>()
+        for (from in ids.indices step WINDOW_SIZE) {
+            val to = minOf(from + WINDOW_SIZE, ids.size)
+            val query = CompositionsDao.getCompositionQuery(useFileName)
+            query.append(" WHERE id IN (")
+            val args = arrayOfNulls<Any>(to - from)
+            for (i in from until to) {
+                if (i > from) {
+                    query.append(',')
+                }
+                query.append('?')
+                args[i - from] = ids[i]
+            }
+            query.append(')')
+            val rows = compositionsDao.executeQuery(SimpleSQLiteQuery(query.toString(), args))
+            for (composition in rows) {
+                compositions[composition.id] = composition
+            }
+            for (i in from until to) {
+                if (!compositions.containsKey(ids[i])) {
+                    notFoundIds.add(ids[i])
+                }
+            }
+        }
+        return notFoundIds
+    }
+
+    private inline fun forEachWindowIndex(window: Int, size: Int, action: (Int) -> Unit) {
+        val from = window * WINDOW_SIZE
+        val to = minOf(from + WINDOW_SIZE, size)
+        for (i in from until to) {
+            action(i)
+        }
+    }
+
+    private inner class Snapshot(
+        val ids: LongArray,
+        val items: Map<Long, Composition>,
+        val windows: List<Int>,
+        private val loadedWindows: Set<Int>,
+        val version: Long,
+        private val changedRanges: List<IntRange>?
+    ) : WindowedList<Composition>() {
+
+        private val source = this@CompositionsWindowedList
+
+        override val size: Int
+            get() = ids.size
+
+        override fun get(index: Int): Composition {
+            val id = ids[index]
+            return items[id] ?: createPlaceholder(id)
+        }
+
+        override fun loadAround(index: Int) {
+            val window = index / WINDOW_SIZE
+            onWindowRequested(window, loadedWindows.contains(window))
+            //prefetch neighbour window when position is close to its edge
+            val offset = index % WINDOW_SIZE
+            if (offset < PREFETCH_DISTANCE && window > 0) {
+                onWindowRequested(window - 1, loadedWindows.contains(window - 1))
+            } else if (offset >= WINDOW_SIZE - PREFETCH_DISTANCE
+                && (window + 1) * WINDOW_SIZE < ids.size) {
+                onWindowRequested(window + 1, loadedWindows.contains(window + 1))
+            }
+        }
+
+        override fun getChangedRanges(previous: List<*>): List<IntRange>? {
+            if (previous === this) {
+                return emptyList()
+            }
+            if (previous !is Snapshot
+                || previous.source !== source
+                || previous.version != version - 1) {
+                return null
+            }
+            return changedRanges
+        }
+    }
+
+    companion object {
+        const val WINDOW_SIZE = DatabaseUtils.MAX_QUERY_ARGS
+        const val MAX_ACTIVE_WINDOWS = 6
+
+        private const val PREFETCH_DISTANCE = WINDOW_SIZE / 5
+        private const val NO_CHANGE_SEQ = -1L
+
+        private val PLACEHOLDER_DATE = Date(0)
+
+        private fun createPlaceholder(id: Long) = Composition(
+            id,
+            "",
+            null,
+            null,
+            0,
+            0,
+            null,
+            null,
+            PLACEHOLDER_DATE,
+            PLACEHOLDER_DATE,
+            PLACEHOLDER_DATE,
+            null,
+            true,
+            InitialSource.LOCAL
+        )
+    }
+}
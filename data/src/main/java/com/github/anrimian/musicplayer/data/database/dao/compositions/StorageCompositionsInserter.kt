@@ -1,19 +1,20 @@
 package com.github.anrimian.musicplayer.data.database.dao.compositions
 
+import androidx.sqlite.db.SupportSQLiteStatement
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
 import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDao
-import com.github.anrimian.musicplayer.data.database.dao.albums.AlbumsDaoWrapper
 import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDao
-import com.github.anrimian.musicplayer.data.database.dao.artist.ArtistsDaoWrapper
 import com.github.anrimian.musicplayer.data.database.dao.folders.FoldersDaoWrapper
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao
+import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionFileEntry
 import com.github.anrimian.musicplayer.data.database.mappers.CompositionCorruptionDetector
+import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils
 import com.github.anrimian.musicplayer.data.models.changes.Change
+import com.github.anrimian.musicplayer.data.storage.providers.albums.StorageAlbum
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
 import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
 import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
-import java.util.Date
 
 class StorageCompositionsInserter(
     private val libraryDatabase: LibraryDatabase,
@@ -21,21 +22,29 @@ class StorageCompositionsInserter(
     private val compositionsDaoWrapper: CompositionsDaoWrapper,
     private val foldersDaoWrapper: FoldersDaoWrapper,
     private val artistsDao: ArtistsDao,
-    private val artistsDaoWrapper: ArtistsDaoWrapper,
     private val albumsDao: AlbumsDao,
-    private val albumsDaoWrapper: AlbumsDaoWrapper,
     private val genresDao: GenreDao
 ) {
 
+    /**
+     * Applies all changes in one transaction, so a failed scan doesn't leave them half-applied.
+     * Added compositions are inserted by chunks which share lookup queries and one compiled
+     * statement.
+     *
+     * @param progressListener receives count of processed added compositions after each
+     * inserted chunk
+     */
     fun applyChanges(
         addedCompositions: List<StorageFullComposition>,
         deletedCompositions: List<StorageComposition>,
         changedCompositions: List<Change<StorageComposition, StorageFullComposition>>,
+        progressListener: ProgressListener? = null,
     ) {
         val previousCount = compositionsDao.getCompositionsCount()
 
         libraryDatabase.runInTransaction {
-            applyCompositionChanges(addedCompositions, deletedCompositions, changedCompositions)
+            insertCompositions(addedCompositions, progressListener)
+            applyCompositionChanges(deletedCompositions, changedCompositions)
         }
 
         if (previousCount == 0L) {
@@ -45,11 +54,9 @@ class StorageCompositionsInserter(
     }
 
     private fun applyCompositionChanges(
-        compositionsToAdd: List<StorageFullComposition>,
         deletedCompositions: List<StorageComposition>,
         changedCompositions: List<Change<StorageComposition, StorageFullComposition>>,
     ) {
-        insertCompositions(compositionsToAdd)
         for (composition in deletedCompositions) {
             compositionsDao.delete(composition.id)
         }
@@ -62,67 +69,241 @@ class StorageCompositionsInserter(
         genresDao.deleteEmptyGenres()
     }
 
-    private fun insertCompositions(compositionsToAdd: List<StorageFullComposition>) {
-        //optimization with cache, ~33% faster
-        val artistsCache = HashMap<String, Long>()
-        val albumsCache = HashMap<String, Long>()
-        val foldersCache = HashMap<String, Long>()
-
-        for (composition in compositionsToAdd) {
-            val artist = composition.artist
-            val artistId = artistsDaoWrapper.getOrInsertArtist(artist, artistsCache)
-
-            var albumId: Long? = null
-            val storageAlbum = composition.storageAlbum
-            if (storageAlbum != null) {
-                albumId = albumsDaoWrapper.getOrInsertAlbum(
-                    storageAlbum.album,
-                    storageAlbum.artist,
-                    artistsCache,
-                    albumsCache
-                )
+    private fun insertCompositions(
+        compositionsToAdd: List<StorageFullComposition>,
+        progressListener: ProgressListener?,
+    ) {
+        if (compositionsToAdd.isEmpty()) {
+            return
+        }
+        //read once for all chunks in the same transaction, created folders are added to it
+        val folders = selectStorageFolders()
+        libraryDatabase.compileStatement(INSERT_COMPOSITION_QUERY).use { statement ->
+            var processedCount = 0
+            for (chunk in compositionsToAdd.chunked(INSERT_CHUNK_SIZE)) {
+                insertCompositionsChunk(chunk, folders, statement)
+                processedCount += chunk.size
+                progressListener?.onProgress(processedCount, compositionsToAdd.size)
             }
+        }
+    }
+
+    private fun insertCompositionsChunk(
+        compositions: List<StorageFullComposition>,
+        folders: MutableMap<Pair<Long?, String>, Long>,
+        statement: SupportSQLiteStatement,
+    ) {
+        val artistIds = selectOrInsertArtists(compositions)
+        val albumIds = selectOrInsertAlbums(compositions, artistIds)
+        val createdFolderIds = HashSet<Long>()
+        val folderIds = selectOrCreateFolders(compositions, folders, createdFolderIds)
+        val fileEntries = selectFileEntries(compositions, folderIds, createdFolderIds)
 
-            val folderId = foldersDaoWrapper.getOrCreateFolder(composition.relativePath, foldersCache)
+        for (composition in compositions) {
+            val folderId = folderIds[composition.relativePath]
 
             //if we have not found composition - just remove not_found mark
-            val id = compositionsDao.findCompositionByFileName(composition.fileName, folderId)
-            if (id != null) {
-                val storageId = compositionsDao.selectStorageId(id)
+            val fileKey = Pair(folderId, composition.fileName)
+            val fileEntry = fileEntries[fileKey]
+            if (fileEntry != null) {
+                val storageId = fileEntry.storageId ?: 0L
                 val actualStorageId = composition.storageId
                 if (storageId != actualStorageId) {
-                    compositionsDao.updateStorageId(id, actualStorageId)
-                    if (storageId == 0L) {
-                        val corruptionType = compositionsDao.selectCorruptionType(id)
-                        if (corruptionType == CorruptionType.NOT_FOUND || corruptionType == CorruptionType.SOURCE_NOT_FOUND) {
-                            compositionsDao.setCorruptionType(null, id)
-                        }
+                    compositionsDao.updateStorageId(fileEntry.id, actualStorageId)
+                    var corruptionType = fileEntry.corruptionType
+                    if (storageId == 0L
+                        && (corruptionType == CorruptionType.NOT_FOUND || corruptionType == CorruptionType.SOURCE_NOT_FOUND)) {
+                        compositionsDao.setCorruptionType(null, fileEntry.id)
+                        corruptionType = null
                     }
+                    fileEntries[fileKey] = fileEntry.copy(
+                        storageId = actualStorageId,
+                        corruptionType = corruptionType
+                    )
                     continue
                 }
             }
 
-            compositionsDao.insert(
-                artistId,
-                albumId,
-                folderId,
-                composition.title,
-                null,
-                null,
-                null,
-                null,
-                composition.fileName,
-                composition.duration,
-                composition.size,
-                composition.storageId,
-                composition.dateAdded,
-                composition.dateModified,
-                Date(0),
-                Date(0),
-                CompositionCorruptionDetector.getCorruptionType(composition),
-                InitialSource.LOCAL
-            )
+            val artistId = composition.artist?.let(artistIds::get)
+            var albumId: Long? = null
+            val storageAlbum = composition.storageAlbum
+            if (storageAlbum?.album != null) {
+                albumId = albumIds[getAlbumKey(storageAlbum, artistIds)]
+            }
+            val albumName = if (albumId == null) null else storageAlbum?.album
+            val albumArtistName = if (albumId == null) null else storageAlbum?.artist
+            val corruptionType = CompositionCorruptionDetector.getCorruptionType(composition)
+
+            statement.clearBindings()
+            statement.bindNullableLong(1, artistId)
+            statement.bindNullableLong(2, albumId)
+            statement.bindNullableLong(3, folderId)
+            statement.bindNullableString(4, composition.title)
+            statement.bindNull(5)
+            statement.bindNull(6)
+            statement.bindNull(7)
+            statement.bindNull(8)
+            statement.bindString(9, composition.fileName)
+            statement.bindLong(10, composition.duration)
+            statement.bindLong(11, composition.size)
+            statement.bindLong(12, composition.storageId)
+            statement.bindLong(13, composition.dateAdded.time)
+            statement.bindLong(14, composition.dateModified.time)
+            statement.bindLong(15, 0L)//lastScanDate
+            statement.bindLong(16, 0L)//coverModifyTime
+            statement.bindNullableString(17, corruptionType?.name)
+            statement.bindLong(18, InitialSource.LOCAL.id.toLong())
+            //names are bound here, so names trigger doesn't update each inserted row again
+            statement.bindNullableString(19, if (artistId == null) null else composition.artist)
+            statement.bindNullableString(20, albumName)
+            statement.bindNullableString(21, albumArtistName)
+            val id = statement.executeInsert()
+
+            if (fileEntry == null) {
+                fileEntries[fileKey] = CompositionFileEntry(
+                    id,
+                    composition.fileName,
+                    composition.storageId,
+                    corruptionType
+                )
+            }
+        }
+    }
+
+    private fun selectOrInsertArtists(compositions: List<StorageFullComposition>): Map<String, Long> {
+        val names = HashSet<String>()
+        for (composition in compositions) {
+            composition.artist?.let(names::add)
+            val storageAlbum = composition.storageAlbum
+            if (storageAlbum?.album != null) {
+                storageAlbum.artist?.let(names::add)
+            }
+        }
+        val result = HashMap<String, Long>(names.size)
+        for (chunk in names.chunked(DatabaseUtils.MAX_QUERY_ARGS)) {
+            for (entry in artistsDao.selectArtistIds(chunk)) {
+                result[entry.name] = entry.id
+            }
+        }
+        for (name in names) {
+            if (!result.containsKey(name)) {
+                result[name] = artistsDao.insertArtist(name)
+            }
+        }
+        return result
+    }
+
+    private fun selectOrInsertAlbums(
+        compositions: List<StorageFullComposition>,
+        artistIds: Map<String, Long>,
+    ): Map<Pair<Long?, String>, Long> {
+        val keys = HashSet<Pair<Long?, String>>()
+        for (composition in compositions) {
+            val storageAlbum = composition.storageAlbum ?: continue
+            if (storageAlbum.album != null) {
+                keys.add(getAlbumKey(storageAlbum, artistIds))
+            }
+        }
+        val result = HashMap<Pair<Long?, String>, Long>(keys.size)
+        val names = keys.mapTo(HashSet<String>()) { key -> key.second }
+        for (chunk in names.chunked(DatabaseUtils.MAX_QUERY_ARGS)) {
+            for (entry in albumsDao.selectAlbumIds(chunk)) {
+                val key = Pair(entry.artistId, entry.name)
+                if (keys.contains(key)) {
+                    result[key] = entry.id
+                }
+            }
+        }
+        for (key in keys) {
+            if (!result.containsKey(key)) {
+                result[key] = albumsDao.insertAlbum(key.first, key.second)
+            }
+        }
+        return result
+    }
+
+    private fun getAlbumKey(storageAlbum: StorageAlbum, artistIds: Map<String, Long>): Pair<Long?, String> {
+        return Pair(storageAlbum.artist?.let(artistIds::get), storageAlbum.album)
+    }
+
+    private fun selectStorageFolders(): MutableMap<Pair<Long?, String>, Long> {
+        val folders = HashMap<Pair<Long?, String>, Long>()
+        for (folder in foldersDaoWrapper.selectAllStorageFolders()) {
+            folders.getOrPut(Pair(folder.parentId, folder.name)) { folder.id }
         }
+        return folders
+    }
+
+    private fun selectOrCreateFolders(
+        compositions: List<StorageFullComposition>,
+        folders: MutableMap<Pair<Long?, String>, Long>,
+        createdFolderIds: MutableSet<Long>,
+    ): Map<String, Long?> {
+        val result = HashMap<String, Long?>()
+        for (composition in compositions) {
+            val path = composition.relativePath
+            if (!result.containsKey(path)) {
+                result[path] = getOrCreateFolder(path, folders, createdFolderIds)
+            }
+        }
+        return result
+    }
+
+    private fun getOrCreateFolder(
+        path: String,
+        folders: MutableMap<Pair<Long?, String>, Long>,
+        createdFolderIds: MutableSet<Long>,
+    ): Long? {
+        var parentId: Long? = null
+        var start = 0
+        while (start < path.length) {
+            var end = path.indexOf('/', start)
+            if (end == -1) {
+                end = path.length
+            }
+            val name = path.substring(start, end)
+            val parentIdToFind = parentId
+            parentId = folders.getOrPut(Pair(parentIdToFind, name)) {
+                val folderId = foldersDaoWrapper.createFolder(parentIdToFind, name)
+                createdFolderIds.add(folderId)
+                folderId
+            }
+            start = end + 1
+        }
+        return parentId
+    }
+
+    private fun selectFileEntries(
+        compositions: List<StorageFullComposition>,
+        folderIds: Map<String, Long?>,
+        createdFolderIds: Set<Long>,
+    ): MutableMap<Pair<Long?, String>, CompositionFileEntry> {
+        val fileNamesByFolder = HashMap<Long?, MutableList<String>>()
+        for (composition in compositions) {
+            val folderId = folderIds[composition.relativePath]
+            if (folderId != null && createdFolderIds.contains(folderId)) {
+                //new folder can't contain compositions yet
+                continue
+            }
+            fileNamesByFolder.getOrPut(folderId, ::ArrayList).add(composition.fileName)
+        }
+        val result = HashMap<Pair<Long?, String>, CompositionFileEntry>()
+        for ((folderId, fileNames) in fileNamesByFolder) {
+            for (chunk in fileNames.chunked(DatabaseUtils.MAX_QUERY_ARGS)) {
+                for (entry in compositionsDao.selectFileEntries(folderId, chunk)) {
+                    result.getOrPut(Pair(folderId, entry.fileName)) { entry }
+                }
+            }
+        }
+        return result
+    }
+
+    private fun SupportSQLiteStatement.bindNullableLong(index: Int, value: Long?) {
+        if (value == null) bindNull(index) else bindLong(index, value)
+    }
+
+    private fun SupportSQLiteStatement.bindNullableString(index: Int, value: String?) {
+        if (value == null) bindNull(index) else bindString(index, value)
     }
 
     private fun handleCompositionUpdate(change: Change<StorageComposition, StorageFullComposition>) {
@@ -163,4 +344,38 @@ class StorageCompositionsInserter(
         )
     }
 
-}
\ No newline at end of file
+    fun interface ProgressListener {
+        fun onProgress(processedCount: Int, totalCount: Int)
+    }
+
+    private companion object {
+        const val INSERT_CHUNK_SIZE = 1000
+
+        const val INSERT_COMPOSITION_QUERY = """
+            INSERT INTO compositions (
+                artistId,
+                albumId,
+                folderId,
+                title,
+                trackNumber,
+                discNumber,
+                comment,
+                lyrics,
+                fileName,
+                duration,
+                size,
+                storageId,
+                dateAdded,
+                dateModified,
+                lastScanDate,
+                coverModifyTime,
+                corruptionType,
+                initialSource,
+                artistName,
+                albumName,
+                albumArtistName
+            ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """
+    }
+
+}
@@ -7,8 +7,8 @@ import androidx.room.Query;
 import androidx.room.RawQuery;
 import androidx.sqlite.db.SupportSQLiteQuery;
 
-import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.StorageFolder;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderFileSource;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderInfo;
 
@@ -19,32 +19,26 @@ import io.reactivex.rxjava3.core.Observable;
 @Dao
 public interface FoldersDao {
 
-    @RawQuery(observedEntities = { CompositionEntity.class, FolderEntity.class })
+    String FOLDER_PATH_QUERY_START = "(SELECT IFNULL(group_concat(name, '/'), '') FROM (" +
+            "SELECT folders.name AS name " +
+            "FROM folder_tree " +
+            "JOIN folders ON folders.id = folder_tree.ancestorId " +
+            "WHERE folder_tree.descendantId = ";
+    String FOLDER_PATH_QUERY_END = " ORDER BY folder_tree.depth DESC))";
+
+    //parent folder id is bound twice, null means root folder
+    String PARENT_FOLDER_CONDITION = "(parentId = ? OR (parentId IS NULL AND ? IS NULL))";
+
+    @RawQuery(observedEntities = { FolderEntity.class })
     Observable<List<FolderFileSource>> getFoldersObservable(SupportSQLiteQuery query);
 
     @RawQuery
     List<Long> getFoldersIds(SupportSQLiteQuery query);
 
-    @Query("WITH RECURSIVE path(level, name, parentId) AS (" +
-            "    SELECT 0, name, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.name," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")," +
-            "path_from_root AS (" +
-            "    SELECT name" +
-            "    FROM path" +
-            "    ORDER BY level DESC" +
-            ")" +
-            "SELECT " +
-            "(SELECT IFNULL(group_concat(name, '/'), '') FROM path_from_root) AS path," +
+    @Query("SELECT " +
+            FOLDER_PATH_QUERY_START + ":folderId" + FOLDER_PATH_QUERY_END + " AS path," +
             "id AS id," +
-            "(SELECT count() < 2 FROM path_from_root) AS isParentOfParentRoot " +
+            "(SELECT count() < 2 FROM folder_tree WHERE descendantId = :folderId) AS isParentOfParentRoot " +
             "FROM folders " +
             "WHERE id = :folderId OR (id IS NULL AND :folderId IS NULL) " +
             "LIMIT 1")
@@ -68,38 +62,10 @@ public interface FoldersDao {
     @Query("UPDATE folders SET parentId = :toFolderId WHERE parentId = :fromParentId")
     void replaceParentId(long fromParentId, Long toFolderId);
 
-    @Query("WITH RECURSIVE path(level, name, parentId) AS (" +
-            "    SELECT 0, name, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.name," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")," +
-            "path_from_root AS (" +
-            "    SELECT name" +
-            "    FROM path" +
-            "    ORDER BY level DESC" +
-            ")" +
-            "SELECT IFNULL(group_concat(name, '/'), '')" +
-            "FROM path_from_root")
+    @Query("SELECT " + FOLDER_PATH_QUERY_START + ":folderId" + FOLDER_PATH_QUERY_END)
     String getFullFolderPath(long folderId);
 
-    @Query("WITH RECURSIVE path(level, id, parentId) AS (" +
-            "    SELECT 0, id, parentId" +
-            "    FROM folders" +
-            "    WHERE id = :folderId OR (id IS NULL AND :folderId IS NULL)" +
-            "    UNION ALL" +
-            "    SELECT path.level + 1," +
-            "           folders.id," +
-            "           folders.parentId" +
-            "    FROM folders" +
-            "    JOIN path ON folders.id = path.parentId" +
-            ")" +
-            "SELECT id FROM path ORDER BY level DESC")
+    @Query("SELECT ancestorId FROM folder_tree WHERE descendantId = :folderId ORDER BY depth DESC")
     List<Long> getAllParentFoldersId(Long folderId);
 
     @Query("SELECT name " +
@@ -127,22 +93,31 @@ public interface FoldersDao {
             "LIMIT 1")
     Long getFolderByName(Long parentId, String name);
 
+    @Query("SELECT id, parentId, name FROM folders")
+    List<StorageFolder> selectAllStorageFolders();
+
     @Query("WITH parentIds AS (SELECT parentId FROM folders)" +
             "DELETE FROM folders " +
             "WHERE (SELECT count() FROM parentIds WHERE parentIds.parentId = folders.id) = 0 " +
             "AND (SELECT count() FROM compositions WHERE folderId = folders.id) = 0")
     int deleteFoldersWithoutContainment();
 
-    static String getRecursiveFolderQuery(Long parentFolderId) {
-        return getRecursiveFolderQuery(parentFolderId, false);
-    }
-    static String getRecursiveFolderQuery(Long parentFolderId, boolean selectAll) {
-        return "WITH RECURSIVE allChildFolders(childFolderId, rootFolderId) AS (" +
-                "SELECT id as childFolderId, id as rootFolderId FROM folders " +
-                    (!selectAll? "WHERE parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)": "") +
-                "UNION " +
-                "SELECT id as childFolderId, allChildFolders.rootFolderId as rootFolderId FROM folders INNER JOIN allChildFolders ON parentId = allChildFolders.childFolderId" +
+    /**
+     * @return query with parent folder id argument bound twice
+     */
+    static String getRecursiveFolderQuery() {
+        return "WITH allChildFolders(childFolderId, rootFolderId) AS (" +
+                "SELECT descendantId as childFolderId, ancestorId as rootFolderId FROM folder_tree " +
+                "WHERE ancestorId IN (SELECT id FROM folders WHERE " + PARENT_FOLDER_CONDITION + ")" +
                 ")";
     }
 
+    /**
+     * @param folderIdExpression column or argument with folder id
+     * @return subquery which selects relative path of the folder, empty for root folder
+     */
+    static String getFolderPathQuery(String folderIdExpression) {
+        return FOLDER_PATH_QUERY_START + folderIdExpression + FOLDER_PATH_QUERY_END;
+    }
+
 }
@@ -1,7 +1,8 @@
 package com.github.anrimian.musicplayer.data.database.dao.folders;
 
 
-import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArgs;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.getSearchArg;
+import static com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils.toArgs;
 import static com.github.anrimian.musicplayer.domain.utils.ListUtils.mapList;
 
 import androidx.annotation.NonNull;
@@ -11,6 +12,8 @@ import androidx.sqlite.db.SimpleSQLiteQuery;
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase;
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
 import com.github.anrimian.musicplayer.data.database.entities.folder.FolderEntity;
+import com.github.anrimian.musicplayer.data.database.entities.folder.StorageFolder;
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates;
 import com.github.anrimian.musicplayer.data.repositories.library.edit.models.CompositionMoveData;
 import com.github.anrimian.musicplayer.domain.models.composition.Composition;
 import com.github.anrimian.musicplayer.domain.models.folders.CompositionFileSource;
@@ -19,7 +22,7 @@ import com.github.anrimian.musicplayer.domain.models.folders.FolderFileSource;
 import com.github.anrimian.musicplayer.domain.models.folders.FolderInfo;
 import com.github.anrimian.musicplayer.domain.models.order.Order;
 import com.github.anrimian.musicplayer.domain.utils.ListUtils;
-import com.github.anrimian.musicplayer.domain.utils.TextUtils;
+import com.github.anrimian.musicplayer.domain.utils.WindowedList;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -58,7 +61,8 @@ public class FoldersDaoWrapper {
                         parentFolderId,
                         order,
                         useFileName,
-                        searchText
+                        searchText,
+                        true
                 ).map(list -> mapList(list, CompositionFileSource::new));
 
         return Observable.combineLatest(folderObservable,
@@ -71,6 +75,29 @@ public class FoldersDaoWrapper {
                 });
     }
 
+    public Observable<WindowedList<FileSource>> getFilesWindowedObservable(Long parentFolderId,
+                                                                           Order order,
+                                                                           boolean useFileName,
+                                                                           @Nullable String searchText) {
+        Observable<List<FolderFileSource>> folderObservable = getFoldersObservable(
+                parentFolderId,
+                order,
+                searchText);
+
+        Observable<WindowedList<FileSource>> compositionsObservable =
+                compositionsDao.getCompositionsInFolderObservable(
+                        parentFolderId,
+                        order,
+                        useFileName,
+                        searchText,
+                        false
+                ).map(list -> list.<FileSource>mapItems(CompositionFileSource::new));
+
+        return Observable.combineLatest(folderObservable,
+                compositionsObservable,
+                (folders, compositions) -> compositions.withHeader(folders));
+    }
+
     public Observable<FolderInfo> getFolderObservable(long folderId) {
         return foldersDao.getFolderObservable(folderId)
                 .takeWhile(list -> !list.isEmpty())
@@ -93,12 +120,14 @@ public class FoldersDaoWrapper {
     public List<Composition> getAllCompositionsInFolder(Long parentFolderId, Order order, boolean useFileName) {
         List<Composition> result = new LinkedList<>();
 
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId) +
-                "SELECT id " +
-                "FROM folders " +
-                "WHERE parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)";
-        query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query);
+        SimpleSQLiteQuery sqlQuery = QueryTemplates.query(
+                "folder_ids:" + order,
+                toArgs(parentFolderId, 2),
+                () -> "SELECT id " +
+                        "FROM folders " +
+                        "WHERE " + FoldersDao.PARENT_FOLDER_CONDITION +
+                        getOrderQuery(order)
+        );
         List<Long> folders = foldersDao.getFoldersIds(sqlQuery);
         for (Long id: folders) {
             result.addAll(getAllCompositionsInFolder(id, order, useFileName));
@@ -185,6 +214,10 @@ public class FoldersDaoWrapper {
         });
     }
 
+    public List<StorageFolder> selectAllStorageFolders() {
+        return foldersDao.selectAllStorageFolders();
+    }
+
     public long createFolder(Long parentId, String name) {
         return foldersDao.insertFolder(new FolderEntity(parentId, name));
     }
@@ -244,18 +277,18 @@ public class FoldersDaoWrapper {
     private Observable<List<FolderFileSource>> getFoldersObservable(Long parentFolderId,
                                                                     Order order,
                                                                     @Nullable String searchText) {
-        boolean selectAllFolders = !TextUtils.isEmpty(searchText);
-        String query = FoldersDao.getRecursiveFolderQuery(parentFolderId, selectAllFolders) +
-                ", childCompositions(storageId, initialSource) AS (SELECT storageId, initialSource FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))" +
-                "SELECT id, name, " +
-                "(SELECT count() FROM childCompositions) as filesCount, " +
-                "(SELECT exists(SELECT 1 FROM childCompositions WHERE storageId IS NOT NULL AND initialSource = 1 LIMIT 1)) as hasAnyStorageFile " +
-                "FROM folders " +
-                "WHERE (? IS NULL AND (parentId = " + parentFolderId + " OR (parentId IS NULL AND " + parentFolderId + " IS NULL)))";
-
-        query += getSearchQuery();
-        query += getOrderQuery(order);
-        SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, getSearchArgs(searchText, 3));
+        String searchArg = getSearchArg(searchText);
+        Object[] args = { searchArg, parentFolderId, parentFolderId, searchArg, searchArg };
+        SimpleSQLiteQuery sqlQuery = QueryTemplates.query(
+                "folders:" + order,
+                args,
+                () -> "SELECT id, name, filesCount, " +
+                        "storageFilesCount > 0 as hasAnyStorageFile " +
+                        "FROM folders " +
+                        "WHERE (? IS NULL AND " + FoldersDao.PARENT_FOLDER_CONDITION + ")" +
+                        getSearchQuery() +
+                        getOrderQuery(order)
+        );
         return foldersDao.getFoldersObservable(sqlQuery);
     }
 
@@ -268,15 +301,15 @@ public class FoldersDaoWrapper {
                 break;
             }
             case ADD_TIME: {
-                orderQuery.append("(SELECT max(dateAdded) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("lastAddTime");
                 break;
             }
             case DURATION: {
-                orderQuery.append("(SELECT sum(duration) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("totalDuration");
                 break;
             }
             case SIZE: {
-                orderQuery.append("(SELECT sum(size) FROM compositions WHERE folderId IN (SELECT childFolderId FROM allChildFolders WHERE rootFolderId = folders.id))");
+                orderQuery.append("totalSize");
                 break;
             }
             default: throw new IllegalStateException("unknown order type" + order);
@@ -287,7 +320,7 @@ public class FoldersDaoWrapper {
     }
 
     private String getSearchQuery() {
-        return " OR (? IS NOT NULL AND name LIKE ?)";
+        return " OR (? IS NOT NULL AND id IN (SELECT docid FROM folders_fts WHERE folders_fts MATCH ?))";
     }
 
     private Observable<Composition> fileSourceToComposition(FileSource fileSource, Order order, boolean useFileName) {
@@ -79,7 +79,7 @@ interface GenreDao {
         SELECT 
         id AS id,
         name AS name, 
-        (SELECT count() FROM genre_entries WHERE genreId = genres.id) AS compositionsCount, 
+        compositionsCount AS compositionsCount, 
         (SELECT sum(duration) FROM compositions WHERE compositions.id IN (SELECT compositionId FROM genre_entries WHERE genreId = genres.id)) AS totalDuration 
         FROM genres 
         WHERE id = :genreId 
@@ -102,13 +102,13 @@ interface GenreDao {
 
     @Query("""
         DELETE FROM genres 
-        WHERE id = :id AND (SELECT count() FROM genre_entries WHERE genreId = :id) = 0
+        WHERE id = :id AND compositionsCount = 0
     """)
     fun deleteEmptyGenre(id: Long)
 
     @Query("""
         DELETE FROM genres 
-        WHERE (SELECT count() FROM genre_entries WHERE genreId = genres.id) = 0
+        WHERE compositionsCount = 0
     """)
     fun deleteEmptyGenres()
 
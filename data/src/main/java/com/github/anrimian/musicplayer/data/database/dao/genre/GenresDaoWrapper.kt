@@ -5,6 +5,7 @@ import com.github.anrimian.musicplayer.data.database.LibraryDatabase
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDao
 import com.github.anrimian.musicplayer.data.database.dao.genre.GenreDao.Companion.getCompositionsQuery
 import com.github.anrimian.musicplayer.data.database.utils.DatabaseUtils
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.genres.Genre
 import com.github.anrimian.musicplayer.domain.models.order.Order
@@ -20,16 +21,18 @@ class GenresDaoWrapper(
 ) {
 
     fun getAllObservable(order: Order, searchText: String?): Observable<List<Genre>> {
-        var query = """
+        val sqlQuery = QueryTemplates.query(
+            "genres:$order",
+            DatabaseUtils.getSearchArgs(searchText, 2)
+        ) {
+            """
             SELECT id as id,
             name as name, 
-            (SELECT count() FROM genre_entries WHERE genreId = genres.id) as compositionsCount, 
+            compositionsCount as compositionsCount, 
             (SELECT sum(duration) FROM compositions WHERE compositions.id IN (SELECT compositionId FROM genre_entries WHERE genreId = genres.id)) as totalDuration 
             FROM genres
-        """
-        query += getSearchQuery()
-        query += getOrderQuery(order)
-        val sqlQuery = SimpleSQLiteQuery(query, DatabaseUtils.getSearchArgs(searchText, 2))
+            """ + getSearchQuery() + getOrderQuery(order)
+        }
         return genreDao.getAllObservable(sqlQuery)
     }
 
@@ -148,5 +151,5 @@ class GenresDaoWrapper(
         return orderQuery.toString()
     }
 
-    private fun getSearchQuery() = " WHERE (? IS NULL OR name LIKE ?)"
+    private fun getSearchQuery() = " WHERE (? IS NULL OR id IN (SELECT docid FROM genres_fts WHERE genres_fts MATCH ?))"
 }
\ No newline at end of file
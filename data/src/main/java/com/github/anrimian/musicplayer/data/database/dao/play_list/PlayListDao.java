@@ -54,7 +54,7 @@ public interface PlayListDao {
             "(SELECT count() FROM entries WHERE playListId = play_lists.id) as compositionsCount, " +
             "(SELECT sum(duration) FROM entries WHERE playlistId = play_lists.id) as totalDuration " +
             "FROM play_lists " +
-            "WHERE (:searchQuery IS NULL OR name LIKE :searchQuery)" +
+            "WHERE (:searchQuery IS NULL OR id IN (SELECT docid FROM play_lists_fts WHERE play_lists_fts MATCH :searchQuery)) " +
             "ORDER BY dateModified DESC")
     Observable<List<PlayList>> getPlayListsObservable(String searchQuery);
 
@@ -121,24 +121,13 @@ public interface PlayListDao {
 
     @Query("SELECT " +
             "(" +
-            "WITH RECURSIVE path(level, name, parentId) AS (" +
-            "                SELECT 0, name, parentId " +
-            "                FROM folders " +
-            "                WHERE id = compositions.folderId " +
-            "                UNION ALL " +
-            "                SELECT path.level + 1, " +
-            "                       folders.name, " +
-            "                       folders.parentId " +
-            "                FROM folders " +
-            "                JOIN path ON folders.id = path.parentId " +
-            "            ), " +
-            "            path_from_root AS ( " +
-            "                SELECT name " +
-            "                FROM path " +
-            "                ORDER BY level DESC " +
-            "            ) " +
-            "            SELECT ifnull(group_concat(name, '/') || '/' , '') " +
-            "            FROM path_from_root" +
+            "SELECT ifnull(group_concat(name, '/') || '/' , '') FROM (" +
+            "    SELECT folders.name AS name " +
+            "    FROM folder_tree " +
+            "    JOIN folders ON folders.id = folder_tree.ancestorId " +
+            "    WHERE folder_tree.descendantId = compositions.folderId " +
+            "    ORDER BY folder_tree.depth DESC" +
+            ")" +
             ") || fileName AS filePath " +
             "FROM play_lists_entries " +
             "JOIN compositions ON play_lists_entries.audioId = compositions.id " +
@@ -218,7 +207,7 @@ public interface PlayListDao {
                 "FROM play_lists_entries " +
                 "INNER JOIN compositions ON play_lists_entries.audioId = compositions.id " +
                 "WHERE play_lists_entries.playListId = ? AND " +
-                CompositionsDao.getSearchQuery(useFileName) +
+                CompositionsDao.getSearchQuery() +
                 "ORDER BY orderPosition";
     }
 
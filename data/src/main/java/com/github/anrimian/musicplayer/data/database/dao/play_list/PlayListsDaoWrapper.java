@@ -133,10 +133,10 @@ public class PlayListsDaoWrapper {
                                                                      boolean useFileName,
                                                                      @Nullable String searchText) {
         String query = PlayListDao.getPlaylistItemsQuery(useFileName);
-        Object[] args = new Object[4];
+        Object[] args = new Object[3];
         args[0] = playListId;
-        String[] searchArgs = getSearchArgs(searchText, 3);
-        System.arraycopy(searchArgs, 0, args, 1, 3);
+        String[] searchArgs = getSearchArgs(searchText, 2);
+        System.arraycopy(searchArgs, 0, args, 1, 2);
         SimpleSQLiteQuery sqlQuery = new SimpleSQLiteQuery(query, args);
         return playListDao.getPlayListItemsObservable(sqlQuery);
     }
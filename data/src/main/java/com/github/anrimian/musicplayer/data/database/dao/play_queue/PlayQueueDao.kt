@@ -11,29 +11,57 @@ import com.github.anrimian.musicplayer.data.database.entities.albums.AlbumEntity
 import com.github.anrimian.musicplayer.data.database.entities.artist.ArtistEntity
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueuePositionEntry
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueShuffleEntity
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
 import io.reactivex.rxjava3.core.Observable
 
 @Dao
 interface PlayQueueDao {
 
-    @Query("SELECT * FROM play_queue ORDER BY position")
+    @Query("""
+        SELECT id, audioId, position, $SHUFFLED_POSITION AS shuffledPosition 
+        FROM play_queue 
+        ORDER BY position
+    """)
     fun getPlayQueue(): MutableList<PlayQueueEntity>
 
     @RawQuery(observedEntities = [
         PlayQueueEntity::class,
+        PlayQueueShuffleEntity::class,
         ArtistEntity::class,
         CompositionEntity::class,
         AlbumEntity::class
     ])
     fun getPlayQueueObservable(query: SupportSQLiteQuery): Observable<List<PlayQueueItem>>
 
-    @Query("SELECT id FROM play_queue WHERE position >= :position LIMIT 1")
+    @Query("SELECT id FROM play_queue WHERE position >= :position ORDER BY position LIMIT 1")
     fun getItemIdAtPosition(position: Int): Long?
 
-    @Query("SELECT id FROM play_queue WHERE shuffledPosition >= :position LIMIT 1")
+    @Query("""
+        SELECT id 
+        FROM (SELECT id, $SHUFFLED_POSITION AS shuffledPosition FROM play_queue) 
+        WHERE shuffledPosition >= :position 
+        ORDER BY shuffledPosition 
+        LIMIT 1
+    """)
     fun getItemIdAtShuffledPosition(position: Int): Long?
 
+    @Query("SELECT * FROM play_queue WHERE position > :position ORDER BY position LIMIT :limit")
+    fun getItemsAfterPosition(position: Int, limit: Int): List<PlayQueueEntity>
+
+    @Query("""
+        SELECT * 
+        FROM (
+            SELECT id, audioId, position, $SHUFFLED_POSITION AS shuffledPosition 
+            FROM play_queue
+        ) 
+        WHERE shuffledPosition > :position 
+        ORDER BY shuffledPosition 
+        LIMIT :limit
+    """)
+    fun getItemsAfterShuffledPosition(position: Int, limit: Int): List<PlayQueueEntity>
+
     @RawQuery(observedEntities = [
         PlayQueueEntity::class,
         ArtistEntity::class,
@@ -60,167 +88,110 @@ interface PlayQueueDao {
     @Query("SELECT position FROM play_queue WHERE id = :id")
     fun getPosition(id: Long): Int
 
-    @Query("SELECT shuffledPosition FROM play_queue WHERE id = :id")
+    @Query("SELECT $SHUFFLED_POSITION FROM play_queue WHERE id = :id")
     fun getShuffledPosition(id: Long): Int
 
     @Query("SELECT * FROM play_queue WHERE id = :id")
     fun getItem(id: Long): PlayQueueEntity
 
+    @Query("""
+        SELECT play_queue.id AS id, 
+            position AS position, 
+            $SHUFFLED_POSITION AS shuffledPosition, 
+            corruptionType IS NOT NULL AS isCorrupted 
+        FROM play_queue 
+        INNER JOIN compositions ON compositions.id = play_queue.audioId
+    """)
+    fun getPositionEntries(): List<PlayQueuePositionEntry>
+
     @Query("SELECT position FROM play_queue WHERE id = :id")
     fun getPositionObservable(id: Long): Observable<Int>
 
-    @Query("SELECT shuffledPosition FROM play_queue WHERE id = :id")
+    @Query("SELECT $SHUFFLED_POSITION FROM play_queue WHERE id = :id")
     fun getShuffledPositionObservable(id: Long): Observable<Int>
 
-    @Query("""
-        WITH item AS (SELECT position FROM play_queue WHERE id = :id) 
-            SELECT CASE WHEN item.position IS NULL   
-                THEN -1   
-                ELSE (SELECT count() FROM play_queue WHERE position < item.position)
-            END 
-        AS result 
-        FROM play_queue, item 
-        LIMIT 1
-    """)
-    fun getIndexPositionObservable(id: Long): Observable<Int>
-
-    @Query("""
-        WITH item AS (SELECT shuffledPosition FROM play_queue WHERE id = :id) 
-            SELECT CASE WHEN item.shuffledPosition IS NULL   
-                THEN -1   
-                ELSE (SELECT count() FROM play_queue WHERE shuffledPosition < item.shuffledPosition)
-            END 
-        AS result 
-        FROM play_queue, item 
-        LIMIT 1
-    """)
-    fun getShuffledIndexPositionObservable(id: Long): Observable<Int>
-
     @Query("UPDATE play_queue SET shuffledPosition = :shuffledPosition WHERE id = :id")
     fun updateShuffledPosition(id: Long, shuffledPosition: Int)
 
+    @Query("UPDATE play_queue SET shuffledPosition = NULL WHERE shuffledPosition IS NOT NULL")
+    fun clearShuffledPositions()
+
+    @Query("INSERT OR REPLACE INTO play_queue_shuffle (id, seed) VALUES (0, :seed)")
+    fun setShuffleSeed(seed: Int)
+
     @Query("UPDATE play_queue SET position = :position WHERE id = :itemId")
     fun updateItemPosition(itemId: Long, position: Int)
 
-    @Query("UPDATE play_queue SET position = position + :increaseBy WHERE position = :position")
-    fun increasePosition(increaseBy: Int, position: Int)
+    //positions are not negative, so inverted positions are free and keep unique index valid.
+    //Computed shuffled positions are null in table, so they are not inverted and just replaced
+    @Query("""
+        UPDATE play_queue 
+        SET position = -1 - position 
+        WHERE position > :fromPosition AND position <= :toPosition
+    """)
+    fun invertPositions(fromPosition: Int, toPosition: Int)
 
     @Query("""
         UPDATE play_queue 
-        SET shuffledPosition = shuffledPosition + :increaseBy 
-        WHERE shuffledPosition = :position
+        SET shuffledPosition = -1 - shuffledPosition 
+        WHERE shuffledPosition > :fromPosition AND shuffledPosition <= :toPosition
     """)
-    fun increaseShuffledPosition(increaseBy: Int, position: Int)
+    fun invertShuffledPositions(fromPosition: Int, toPosition: Int)
 
     @Query("SELECT MAX(position) FROM play_queue")
     fun getLastPosition(): Int
 
-    @Query("SELECT MAX(shuffledPosition) FROM play_queue")
+    @Query("SELECT MAX($SHUFFLED_POSITION) FROM play_queue")
     fun getLastShuffledPosition(): Int
 
-    @Query("SELECT id FROM play_queue WHERE position = (SELECT MAX(position) FROM play_queue)")
-    fun getLastItem(): Long
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (SELECT MAX(shuffledPosition) FROM play_queue)
-    """)
-    fun getLastShuffledItem(): Long
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE position = (SELECT MIN(position) FROM play_queue)
-    """)
-    fun getFirstItem(): Long
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (SELECT MIN(shuffledPosition) FROM play_queue)
-    """)
-    fun getFirstShuffledItem(): Long
-
     @Update
     fun update(list: List<PlayQueueEntity>)
 
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE position = (
-            SELECT MIN(position)    
-            FROM play_queue    
-            WHERE position > (SELECT position FROM play_queue WHERE id = :currentItemId)
-        )
-    """)
-    fun getNextQueueItemId(currentItemId: Long): Long?
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (
-            SELECT MIN(shuffledPosition)    
-            FROM play_queue    
-            WHERE shuffledPosition > (
-                SELECT shuffledPosition FROM play_queue WHERE id = :currentItemId
-            )
-        )
-    """)
-    fun getNextShuffledQueueItemId(currentItemId: Long): Long?
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE position = (
-            SELECT MAX(position)   
-            FROM play_queue    
-            WHERE position < (SELECT position FROM play_queue WHERE id = :currentItemId) 
-                AND (SELECT corruptionType FROM compositions WHERE id = audioId) IS NULL)
-    """)
-    fun getPreviousQueueItemId(currentItemId: Long): Long?
-
-    @Query("""
-        SELECT id 
-        FROM play_queue 
-        WHERE shuffledPosition = (
-            SELECT MAX(shuffledPosition)    
-            FROM play_queue   
-            WHERE shuffledPosition < (SELECT shuffledPosition FROM play_queue WHERE id = :currentItemId)      
-                AND (SELECT corruptionType FROM compositions WHERE id = audioId) IS NULL)
-    """)
-    fun getPreviousShuffledQueueItemId(currentItemId: Long): Long?
-
     @Query("SELECT count() FROM play_queue")
     fun getPlayQueueSize(): Int
 
-    @Query("SELECT count() FROM play_queue")
-    fun getPlayQueueSizeObservable(): Observable<Int>
-
+    //positions are written with delay, so items could be already removed from queue
     @Query("""
         INSERT OR REPLACE INTO track_positions (
             queueItemId, 
             trackPosition, 
             writeTime
-        ) VALUES (
-            :itemId, 
-            :position, 
-            :time
-        )
+        ) 
+        SELECT :itemId, :position, :time 
+        WHERE EXISTS(SELECT 1 FROM play_queue WHERE id = :itemId)
     """)
     fun insertTrackPosition(itemId: Long, position: Long, time: Long)
 
     @Query("""
         DELETE FROM track_positions 
-        WHERE writeTime = (SELECT min(writeTime) FROM track_positions)
-            AND (SELECT count() FROM track_positions) > 7
+        WHERE queueItemId NOT IN (
+            SELECT queueItemId 
+            FROM track_positions 
+            ORDER BY writeTime DESC 
+            LIMIT :limit
+        )
     """)
-    fun deleteOldestTrackPosition()
+    fun deleteOldTrackPositions(limit: Int)
 
     @Query("SELECT IFNULL(trackPosition, 0) FROM track_positions WHERE queueItemId = :itemId")
     fun getTrackPosition(itemId: Long): Long
 
     companion object {
+
+        private const val SHUFFLE_SEED = "IFNULL((SELECT seed FROM play_queue_shuffle), 0)"
+
+        private const val SHUFFLE_MIX = "((((play_queue.id + $SHUFFLE_SEED) & 1073741823) * 1540483477) & 1073741823)"
+
+        private const val SHUFFLE_MIX_2 = "(((($SHUFFLE_MIX | ($SHUFFLE_MIX >> 15)) - ($SHUFFLE_MIX & ($SHUFFLE_MIX >> 15))) * 73244475) & 1073741823)"
+
+        /**
+         * Own shuffledPosition of item or its position in seeded permutation of item ids.
+         * Permutation is 30 bit multiply-xorshift hash, xor is written as (a | b) - (a & b).
+         * So computed positions are unique for ids below 2^30 and leave key space for items
+         * added to the end of queue.
+         */
+        const val SHUFFLED_POSITION = "IFNULL(shuffledPosition, (($SHUFFLE_MIX_2 | ($SHUFFLE_MIX_2 >> 15)) - ($SHUFFLE_MIX_2 & ($SHUFFLE_MIX_2 >> 15))))"
+
         fun getCompositionQuery(useFileName: Boolean): String {
             return """
                 SELECT play_queue.id AS itemId,
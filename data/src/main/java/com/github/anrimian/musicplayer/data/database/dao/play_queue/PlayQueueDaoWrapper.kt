@@ -1,19 +1,27 @@
 package com.github.anrimian.musicplayer.data.database.dao.play_queue
 
 import android.database.sqlite.SQLiteCantOpenDatabaseException
-import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.room.rxjava3.RxRoom
 import com.github.anrimian.musicplayer.data.database.LibraryDatabase
 import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueueEntity
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.TrackPositionEntity
+import com.github.anrimian.musicplayer.data.database.utils.QueryTemplates
 import com.github.anrimian.musicplayer.data.repositories.state.UiStateRepositoryImpl
 import com.github.anrimian.musicplayer.domain.Constants
 import com.github.anrimian.musicplayer.domain.models.composition.Composition
 import com.github.anrimian.musicplayer.domain.models.play_queue.PlayQueueItem
 import com.github.anrimian.musicplayer.domain.utils.functions.Opt
 import io.reactivex.rxjava3.core.Observable
-import java.util.Random
+import kotlin.math.max
+import kotlin.random.Random
 
 /**
  * Created on 02.07.2018.
+ *
+ * Queue order is kept by sparse position keys with [POSITION_GAP] between neighbours,
+ * so new items take free keys between neighbours and other items are not shifted.
+ * Shuffled keys are computed from seeded permutation of ids unless item has own key,
+ * see [PlayQueueDao.SHUFFLED_POSITION].
  */
 class PlayQueueDaoWrapper(
     private val libraryDatabase: LibraryDatabase,
@@ -26,38 +34,26 @@ class PlayQueueDaoWrapper(
         isRandom: Boolean,
         useFileName: Boolean
     ): Observable<List<PlayQueueItem>> {
-        var query = PlayQueueDao.getCompositionQuery(useFileName)
-        query += if (isRandom) "ORDER BY shuffledPosition" else "ORDER BY position"
-        val sqlQuery = SimpleSQLiteQuery(query)
+        val sqlQuery = QueryTemplates.query("play_queue:$isRandom:$useFileName", null) {
+            val order = if (isRandom) PlayQueueDao.SHUFFLED_POSITION else "position"
+            PlayQueueDao.getCompositionQuery(useFileName) + "ORDER BY " + order
+        }
         return playQueueDao.getPlayQueueObservable(sqlQuery)
     }
 
+    /**
+     * Sets new shuffle seed, so toggling shuffle writes only the seed, own shuffled positions
+     * of previously moved items and position of current item.
+     */
     fun reshuffleQueue(currentItemId: Long) {
         libraryDatabase.runInTransaction {
-            val list = playQueueDao.getPlayQueue()
-            if (list.isEmpty()) {
-                return@runInTransaction
-            }
-
-            list.shuffle()
-
-            val firstItemId = list[0].id
-            var currentItemPosition = -1
-            for (i in list.indices) {
-                val entity = list[i]
-
-                if (entity.id == currentItemId) {
-                    currentItemPosition = i
-                }
-                entity.shuffledPosition = i
-            }
-            if (currentItemPosition != -1 && firstItemId != currentItemId) {
-                list[currentItemPosition].shuffledPosition = 0
-                list[0].shuffledPosition = currentItemPosition
+            playQueueDao.setShuffleSeed(newShuffleSeed())
+            playQueueDao.clearShuffledPositions()
+            if (currentItemId != UiStateRepositoryImpl.NO_ITEM) {
+                //current item is moved to the start of new order
+                val position = allocatePositions(NO_POSITION, 1, true)[0]
+                playQueueDao.updateShuffledPosition(currentItemId, position)
             }
-
-            playQueueDao.deletePlayQueue()
-            playQueueDao.insertItems(list)
         }
     }
 
@@ -67,47 +63,31 @@ class PlayQueueDaoWrapper(
         startPosition: Int
     ): Long {
         return libraryDatabase.runInTransaction<Long> {
-            val shuffledList = ArrayList(compositionIds)
-            val randomSeed = System.nanoTime()
-            shuffledList.shuffle(Random(randomSeed))
-
-            val shuffledPositionList = ArrayList<Int>(compositionIds.size)
-            for (i in compositionIds.indices) {
-                shuffledPositionList.add(i)
-            }
-            shuffledPositionList.shuffle(Random(randomSeed))
-
             val entities = ArrayList<PlayQueueEntity>(compositionIds.size)
-            var shuffledStartPosition = 0
             for (i in compositionIds.indices) {
-                val id = compositionIds[i]
                 val playQueueEntity = PlayQueueEntity()
-                playQueueEntity.audioId = id
-                playQueueEntity.position = i
-                val shuffledPosition = shuffledPositionList[i]
-                playQueueEntity.shuffledPosition = shuffledPosition
-
-                if (startPosition != Constants.NO_POSITION && i == startPosition) {
-                    shuffledStartPosition = shuffledPosition
-                }
-
+                playQueueEntity.audioId = compositionIds[i]
+                playQueueEntity.position = i * POSITION_GAP
                 entities.add(playQueueEntity)
             }
 
             playQueueDao.deletePlayQueue()
-            playQueueDao.insertItems(entities)
-            return@runInTransaction if (randomPlayingEnabled) {
-                playQueueDao.getItemIdAtShuffledPosition(shuffledStartPosition)!!
+            playQueueDao.setShuffleSeed(newShuffleSeed())
+            val ids = playQueueDao.insertItems(entities)
+            return@runInTransaction if (startPosition != Constants.NO_POSITION) {
+                ids[startPosition]
+            } else if (randomPlayingEnabled) {
+                playQueueDao.getItemIdAtShuffledPosition(0)!!
             } else {
-                playQueueDao.getItemIdAtPosition(if (startPosition == Constants.NO_POSITION) 0 else startPosition)!!
+                ids[0]
             }
         }
     }
 
     fun getItemObservable(id: Long, useFileName: Boolean): Observable<Opt<PlayQueueItem>> {
-        var query = PlayQueueDao.getCompositionQuery(useFileName)
-        query += "WHERE itemId = ? LIMIT 1"
-        val sqlQuery = SimpleSQLiteQuery(query, arrayOf<Any>(id))
+        val sqlQuery = QueryTemplates.query("play_queue_item:$useFileName", arrayOf(id)) {
+            PlayQueueDao.getCompositionQuery(useFileName) + "WHERE itemId = ? LIMIT 1"
+        }
         return playQueueDao.getItemObservable(sqlQuery)
             .map { itemArray -> Opt(itemArray.firstOrNull()) }
     }
@@ -124,33 +104,35 @@ class PlayQueueDaoWrapper(
         return null
     }
 
-    fun swapItems(firstItem: PlayQueueItem, secondItem: PlayQueueItem, shuffleMode: Boolean) {
+    /**
+     * Writes new position keys. Keys are first moved to free negative values, so items can
+     * take keys of each other without breaking unique index.
+     */
+    fun updatePositions(positions: Map<Long, Int>, isShuffled: Boolean) {
+        if (positions.isEmpty()) {
+            return
+        }
         libraryDatabase.runInTransaction {
-            val firstId = firstItem.itemId
-            val secondId = secondItem.itemId
-            if (shuffleMode) {
-                val firstPosition = playQueueDao.getShuffledPosition(firstId)
-                val secondPosition = playQueueDao.getShuffledPosition(secondId)
-
-                playQueueDao.updateShuffledPosition(secondId, Int.MIN_VALUE)
-                playQueueDao.updateShuffledPosition(firstId, secondPosition)
-                playQueueDao.updateShuffledPosition(secondId, firstPosition)
-            } else {
-                val firstPosition = playQueueDao.getPosition(firstId)
-                val secondPosition = playQueueDao.getPosition(secondId)
-
-                playQueueDao.updateItemPosition(secondId, Int.MIN_VALUE)
-                playQueueDao.updateItemPosition(firstId, secondPosition)
-                playQueueDao.updateItemPosition(secondId, firstPosition)
+            for ((id, position) in positions) {
+                updatePosition(id, -1 - position, isShuffled)
+            }
+            for ((id, position) in positions) {
+                updatePosition(id, position, isShuffled)
             }
         }
     }
 
     fun addCompositionsToEndQueue(compositions: List<Composition>): Long {
         return libraryDatabase.runInTransaction<Long> {
-            val positionToInsert = playQueueDao.getLastPosition() + 1
-            val shuffledPositionToInsert = playQueueDao.getLastShuffledPosition() + 1
-            val entities = toEntityList(compositions, positionToInsert, shuffledPositionToInsert)
+            var lastPosition = NO_POSITION
+            var lastShuffledPosition = NO_POSITION
+            if (playQueueDao.getPlayQueueSize() > 0) {
+                lastPosition = playQueueDao.getLastPosition()
+                lastShuffledPosition = playQueueDao.getLastShuffledPosition()
+            }
+            val positions = allocatePositions(lastPosition, compositions.size, false)
+            val shuffledPositions = allocatePositions(lastShuffledPosition, compositions.size, true)
+            val entities = toEntityList(compositions, positions, shuffledPositions)
             val ids = playQueueDao.insertItems(entities)
             return@runInTransaction ids[0]
         }
@@ -158,27 +140,15 @@ class PlayQueueDaoWrapper(
 
     fun addCompositionsToQueue(compositions: List<Composition>, currentItemId: Long): Long {
         return libraryDatabase.runInTransaction<Long> {
-            var positionToInsert = 0
-            var shuffledPositionToInsert = 0
+            var currentPosition = NO_POSITION
+            var currentShuffledPosition = NO_POSITION
             if (currentItemId != UiStateRepositoryImpl.NO_ITEM) {
-                val currentPosition = playQueueDao.getPosition(currentItemId)
-                val currentShuffledPosition = playQueueDao.getShuffledPosition(currentItemId)
-
-                val increaseBy = compositions.size
-                val lastPosition = playQueueDao.getLastPosition()
-                for (pos in lastPosition downTo currentPosition + 1) {
-                    playQueueDao.increasePosition(increaseBy, pos)
-                }
-                val lastShuffledPosition = playQueueDao.getLastShuffledPosition()
-                for (pos in lastShuffledPosition downTo currentShuffledPosition + 1) {
-                    playQueueDao.increaseShuffledPosition(increaseBy, pos)
-                }
-
-                positionToInsert = currentPosition + 1
-                shuffledPositionToInsert = currentShuffledPosition + 1
+                currentPosition = playQueueDao.getPosition(currentItemId)
+                currentShuffledPosition = playQueueDao.getShuffledPosition(currentItemId)
             }
-
-            val entities = toEntityList(compositions, positionToInsert, shuffledPositionToInsert)
+            val positions = allocatePositions(currentPosition, compositions.size, false)
+            val shuffledPositions = allocatePositions(currentShuffledPosition, compositions.size, true)
+            val entities = toEntityList(compositions, positions, shuffledPositions)
             val ids = playQueueDao.insertItems(entities)
             return@runInTransaction ids[0]
         }
@@ -192,14 +162,6 @@ class PlayQueueDaoWrapper(
         }
     }
 
-    fun getLastPosition(isShuffled: Boolean): Int {
-        return if (isShuffled) {
-            playQueueDao.getLastShuffledPosition()
-        } else {
-            playQueueDao.getLastPosition()
-        }
-    }
-
     fun getPositionObservable(id: Long, isShuffle: Boolean): Observable<Int> {
         val observable = if (isShuffle) {
             playQueueDao.getShuffledPositionObservable(id)
@@ -214,32 +176,6 @@ class PlayQueueDaoWrapper(
             .distinctUntilChanged()
     }
 
-    fun getIndexPositionObservable(id: Long, isShuffle: Boolean): Observable<Int> {
-        val observable = if (isShuffle) {
-            playQueueDao.getShuffledIndexPositionObservable(id)
-        } else {
-            playQueueDao.getIndexPositionObservable(id)
-        }
-        return observable.filter { pos -> pos >= 0 }
-            .distinctUntilChanged()
-    }
-
-    fun getNextQueueItemId(currentItemId: Long, isShuffled: Boolean): Long {
-        return if (isShuffled) {
-            playQueueDao.getNextShuffledQueueItemId(currentItemId) ?: playQueueDao.getFirstShuffledItem()
-        } else {
-            playQueueDao.getNextQueueItemId(currentItemId) ?: playQueueDao.getFirstItem()
-        }
-    }
-
-    fun getPreviousQueueItemId(currentItemId: Long, isShuffled: Boolean): Long {
-        return if (isShuffled) {
-            playQueueDao.getPreviousShuffledQueueItemId(currentItemId) ?: playQueueDao.getLastShuffledItem()
-        } else {
-            playQueueDao.getPreviousQueueItemId(currentItemId) ?: playQueueDao.getLastItem()
-        }
-    }
-
     fun getItemAtPosition(position: Int, isShuffled: Boolean): Long? {
         return if (isShuffled) {
             playQueueDao.getItemIdAtShuffledPosition(position)
@@ -254,16 +190,33 @@ class PlayQueueDaoWrapper(
 
     fun getPlayQueueSize() = playQueueDao.getPlayQueueSize()
 
-    fun getPlayQueueSizeObservable() = playQueueDao.getPlayQueueSizeObservable()
+    fun getPositionEntries() = playQueueDao.getPositionEntries()
+
+    fun getPlayQueueChangesObservable(): Observable<Any> {
+        return RxRoom.createObservable(
+            libraryDatabase,
+            "play_queue",
+            "play_queue_shuffle",
+            "compositions"
+        )
+    }
 
-    fun insertTrackPosition(itemId: Long, trackPosition: Long) {
+    /**
+     * Writes positions in one transaction and keeps only [TRACK_POSITIONS_LIMIT] latest of them.
+     */
+    fun insertTrackPositions(positions: List<TrackPositionEntity>) {
+        if (positions.isEmpty()) {
+            return
+        }
         libraryDatabase.runInTransaction {
-            val currentPosition = playQueueDao.getTrackPosition(itemId)
-            if (currentPosition == trackPosition) {
-                return@runInTransaction
+            for (position in positions) {
+                playQueueDao.insertTrackPosition(
+                    position.queueItemId,
+                    position.trackPosition,
+                    position.writeTime
+                )
             }
-            playQueueDao.insertTrackPosition(itemId, trackPosition, System.currentTimeMillis())
-            playQueueDao.deleteOldestTrackPosition()
+            playQueueDao.deleteOldTrackPositions(TRACK_POSITIONS_LIMIT)
         }
     }
 
@@ -271,20 +224,111 @@ class PlayQueueDaoWrapper(
         return playQueueDao.getTrackPosition(itemId)
     }
 
+    /**
+     * Takes [count] free position keys right after [afterPosition]. When keys between neighbours
+     * are exhausted, the nearest following items are respaced. Respaced window is doubled until
+     * it has sparse enough key range or reaches the end of queue, so a usual insert doesn't
+     * touch existing items at all.
+     */
+    private fun allocatePositions(afterPosition: Int, count: Int, isShuffled: Boolean): IntArray {
+        var window = 0
+        while (true) {
+            val items = getItemsAfter(afterPosition, window + 1, isShuffled)
+            if (items.size <= window) {
+                //reached the end of queue, following items are placed after the new ones
+                val lastPosition = afterPosition.toLong() + (items.size + count).toLong() * POSITION_GAP
+                if (lastPosition > Int.MAX_VALUE) {
+                    return renormalizeAndAllocatePositions(afterPosition, count, isShuffled)
+                }
+                return placePositions(afterPosition, POSITION_GAP, count, items, isShuffled)
+            }
+            val bound = getEntityPosition(items[window], isShuffled)
+            val step = (bound.toLong() - afterPosition) / (window + count + 1)
+            val minStep = if (window == 0) 1 else MIN_RESPACE_STEP
+            if (step >= minStep) {
+                val itemsToRespace = items.subList(0, window)
+                return placePositions(afterPosition, step.toInt(), count, itemsToRespace, isShuffled)
+            }
+            window = max(1, window * 2)
+        }
+    }
+
+    private fun renormalizeAndAllocatePositions(
+        afterPosition: Int,
+        count: Int,
+        isShuffled: Boolean
+    ): IntArray {
+        var afterItemId: Long? = null
+        if (afterPosition != NO_POSITION) {
+            afterItemId = getItemAtPosition(afterPosition, isShuffled)
+        }
+        val items = getItemsAfter(NO_POSITION, Int.MAX_VALUE, isShuffled)
+        placePositions(NO_POSITION, POSITION_GAP, 0, items, isShuffled)
+        val newAfterPosition = afterItemId?.let { id -> getPosition(id, isShuffled) } ?: NO_POSITION
+        return allocatePositions(newAfterPosition, count, isShuffled)
+    }
+
+    /**
+     * Places [items] after [count] new keys with [step] between each key.
+     *
+     * @return new keys
+     */
+    private fun placePositions(
+        afterPosition: Int,
+        step: Int,
+        count: Int,
+        items: List<PlayQueueEntity>,
+        isShuffled: Boolean
+    ): IntArray {
+        if (items.isNotEmpty()) {
+            val lastPosition = getEntityPosition(items.last(), isShuffled)
+            if (isShuffled) {
+                playQueueDao.invertShuffledPositions(afterPosition, lastPosition)
+            } else {
+                playQueueDao.invertPositions(afterPosition, lastPosition)
+            }
+            for (i in items.indices) {
+                val position = afterPosition + step * (count + i + 1)
+                updatePosition(items[i].id, position, isShuffled)
+            }
+        }
+        return IntArray(count) { i -> afterPosition + step * (i + 1) }
+    }
+
+    private fun getItemsAfter(position: Int, limit: Int, isShuffled: Boolean): List<PlayQueueEntity> {
+        return if (isShuffled) {
+            playQueueDao.getItemsAfterShuffledPosition(position, limit)
+        } else {
+            playQueueDao.getItemsAfterPosition(position, limit)
+        }
+    }
+
+    private fun updatePosition(id: Long, position: Int, isShuffled: Boolean) {
+        if (isShuffled) {
+            playQueueDao.updateShuffledPosition(id, position)
+        } else {
+            playQueueDao.updateItemPosition(id, position)
+        }
+    }
+
+    //shuffled positions of entities are selected with computed ones, so they are not null
+    private fun getEntityPosition(entity: PlayQueueEntity, isShuffled: Boolean): Int {
+        return if (isShuffled) entity.shuffledPosition!! else entity.position
+    }
+
+    private fun newShuffleSeed() = Random.nextInt(Int.MAX_VALUE)
+
     private fun toEntityList(
         compositions: List<Composition>,
-        position: Int,
-        shuffledPosition: Int
+        positions: IntArray,
+        shuffledPositions: IntArray
     ): List<PlayQueueEntity> {
-        var currentPosition = position
-        var currentShuffledPosition = shuffledPosition
         val entityList = ArrayList<PlayQueueEntity>(compositions.size)
-
-        for (composition in compositions) {
+        for (i in compositions.indices) {
             val playQueueEntity = PlayQueueEntity()
-            playQueueEntity.audioId = composition.id
-            playQueueEntity.position = currentPosition++
-            playQueueEntity.shuffledPosition = currentShuffledPosition++
+            playQueueEntity.audioId = compositions[i].id
+            playQueueEntity.position = positions[i]
+            playQueueEntity.shuffledPosition = shuffledPositions[i]
 
             entityList.add(playQueueEntity)
         }
@@ -293,5 +337,15 @@ class PlayQueueDaoWrapper(
 
     companion object {
         private const val DB_OBSERVABLE_RETRY_COUNT = 5
+
+        const val POSITION_GAP = 1024
+
+        const val TRACK_POSITIONS_LIMIT = 7
+
+        //respaced items get at least this step, so the next inserts find free keys again
+        private const val MIN_RESPACE_STEP = POSITION_GAP / 8
+
+        //position before the first item, queue positions are never negative
+        private const val NO_POSITION = -1
     }
 }
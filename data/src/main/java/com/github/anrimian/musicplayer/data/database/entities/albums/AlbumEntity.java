@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.albums;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -17,7 +18,8 @@ import javax.annotation.Nullable;
         },
         indices = {
                 @Index("artistId"),
-                @Index(value = {"artistId", "name"}, unique = true)
+                @Index(value = {"artistId", "name"}, unique = true),
+                @Index("compositionsCount")
         }
 )
 public class AlbumEntity {
@@ -30,6 +32,10 @@ public class AlbumEntity {
 
     private String name;
 
+    //count of compositions in album, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private int compositionsCount;
+
     public AlbumEntity(@Nullable Long artistId, String name) {
         this.artistId = artistId;
         this.name = name;
@@ -59,4 +65,12 @@ public class AlbumEntity {
     public void setName(String name) {
         this.name = name;
     }
+
+    public int getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(int compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
 }
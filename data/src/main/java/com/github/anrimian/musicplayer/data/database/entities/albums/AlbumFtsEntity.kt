@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.albums
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of album names, docid is equal to album id.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "albums_fts")
+class AlbumFtsEntity(
+    val name: String?
+)
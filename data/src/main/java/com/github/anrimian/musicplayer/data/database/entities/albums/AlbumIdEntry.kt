@@ -0,0 +1,7 @@
+package com.github.anrimian.musicplayer.data.database.entities.albums
+
+class AlbumIdEntry(
+    val id: Long,
+    val artistId: Long?,
+    val name: String
+)
@@ -1,5 +1,6 @@
 package com.github.anrimian.musicplayer.data.database.entities.artist;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
@@ -8,7 +9,8 @@ import javax.annotation.Nonnull;
 
 @Entity(tableName = "artists",
         indices = {
-                @Index(value = "name", unique = true)
+                @Index(value = "name", unique = true),
+                @Index(value = {"compositionsCount", "albumsCount"})
         })
 public class ArtistEntity {
 
@@ -18,6 +20,12 @@ public class ArtistEntity {
     @Nonnull
     private String name;
 
+    //counters of related rows, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    private int compositionsCount;
+    @ColumnInfo(defaultValue = "0")
+    private int albumsCount;
+
     public ArtistEntity(@Nonnull String name) {
         this.name = name;
     }
@@ -39,4 +47,20 @@ public class ArtistEntity {
         this.name = name;
     }
 
+    public int getCompositionsCount() {
+        return compositionsCount;
+    }
+
+    public void setCompositionsCount(int compositionsCount) {
+        this.compositionsCount = compositionsCount;
+    }
+
+    public int getAlbumsCount() {
+        return albumsCount;
+    }
+
+    public void setAlbumsCount(int albumsCount) {
+        this.albumsCount = albumsCount;
+    }
+
 }
@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.artist
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of artist names, docid is equal to artist id.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "artists_fts")
+class ArtistFtsEntity(
+    val name: String?
+)
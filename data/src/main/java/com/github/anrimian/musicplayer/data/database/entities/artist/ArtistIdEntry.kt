@@ -0,0 +1,6 @@
+package com.github.anrimian.musicplayer.data.database.entities.artist
+
+class ArtistIdEntry(
+    val id: Long,
+    val name: String
+)
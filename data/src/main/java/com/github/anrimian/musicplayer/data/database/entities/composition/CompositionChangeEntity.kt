@@ -0,0 +1,15 @@
+package com.github.anrimian.musicplayer.data.database.entities.composition
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Log of changed composition rows, filled by triggers. Observers remember the last seen [seq]
+ * and requery only data of compositions changed after it.
+ */
+@Entity(tableName = "composition_changes")
+class CompositionChangeEntity(
+    @PrimaryKey(autoGenerate = true)
+    val seq: Long,
+    val compositionId: Long
+)
@@ -91,6 +91,23 @@ public class CompositionEntity {
     @androidx.annotation.NonNull
     private final InitialSource initialSource;
 
+    //copies of artist and album names for list queries, kept actual by triggers
+    @Nullable
+    private String artistName;
+    @Nullable
+    private String albumName;
+    @Nullable
+    private String albumArtistName;
+
+    //replay gain in dB from file tags
+    @Nullable
+    private Float trackGain;
+    @Nullable
+    private Float albumGain;
+    //replay gain measured by loudness scanner for files without loudness tags
+    @Nullable
+    private Float analyzedGain;
+
     public CompositionEntity(@Nullable Long artistId,
                              @Nullable Long albumId,
                              @Nullable Long folderId,
@@ -233,4 +250,58 @@ public class CompositionEntity {
     public InitialSource getInitialSource() {
         return initialSource;
     }
+
+    @Nullable
+    public String getArtistName() {
+        return artistName;
+    }
+
+    public void setArtistName(@Nullable String artistName) {
+        this.artistName = artistName;
+    }
+
+    @Nullable
+    public String getAlbumName() {
+        return albumName;
+    }
+
+    public void setAlbumName(@Nullable String albumName) {
+        this.albumName = albumName;
+    }
+
+    @Nullable
+    public String getAlbumArtistName() {
+        return albumArtistName;
+    }
+
+    public void setAlbumArtistName(@Nullable String albumArtistName) {
+        this.albumArtistName = albumArtistName;
+    }
+
+    @Nullable
+    public Float getTrackGain() {
+        return trackGain;
+    }
+
+    public void setTrackGain(@Nullable Float trackGain) {
+        this.trackGain = trackGain;
+    }
+
+    @Nullable
+    public Float getAlbumGain() {
+        return albumGain;
+    }
+
+    public void setAlbumGain(@Nullable Float albumGain) {
+        this.albumGain = albumGain;
+    }
+
+    @Nullable
+    public Float getAnalyzedGain() {
+        return analyzedGain;
+    }
+
+    public void setAnalyzedGain(@Nullable Float analyzedGain) {
+        this.analyzedGain = analyzedGain;
+    }
 }
@@ -0,0 +1,10 @@
+package com.github.anrimian.musicplayer.data.database.entities.composition
+
+import com.github.anrimian.musicplayer.domain.models.composition.CorruptionType
+
+data class CompositionFileEntry(
+    val id: Long,
+    val fileName: String,
+    val storageId: Long?,
+    val corruptionType: CorruptionType?
+)
@@ -0,0 +1,21 @@
+package com.github.anrimian.musicplayer.data.database.entities.composition
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of compositions, docid is equal to composition id.
+ * Contains names of related artists, album, genres and folder, kept actual by triggers.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "compositions_fts")
+class CompositionFtsEntity(
+    val title: String?,
+    val fileName: String?,
+    val artist: String?,
+    val album: String?,
+    val albumArtist: String?,
+    val genres: String?,
+    val folder: String?
+)
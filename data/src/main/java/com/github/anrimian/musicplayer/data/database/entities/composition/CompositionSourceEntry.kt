@@ -0,0 +1,8 @@
+package com.github.anrimian.musicplayer.data.database.entities.composition
+
+data class CompositionSourceEntry(
+    val storageId: Long?,
+    val trackGain: Float?,
+    val albumGain: Float?,
+    val analyzedGain: Float?
+)
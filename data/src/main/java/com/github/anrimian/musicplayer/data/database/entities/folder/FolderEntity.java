@@ -30,6 +30,13 @@ public class FolderEntity {
     @Nonnull
     private String name;
 
+    //aggregates of all compositions in folder and its subfolders, maintained by triggers
+    private int filesCount;
+    private int storageFilesCount;
+    private long totalDuration;
+    private long totalSize;
+    private long lastAddTime;
+
     public FolderEntity(@Nullable Long parentId, @Nonnull String name) {
         this.parentId = parentId;
         this.name = name;
@@ -52,4 +59,44 @@ public class FolderEntity {
     public String getName() {
         return name;
     }
+
+    public int getFilesCount() {
+        return filesCount;
+    }
+
+    public void setFilesCount(int filesCount) {
+        this.filesCount = filesCount;
+    }
+
+    public int getStorageFilesCount() {
+        return storageFilesCount;
+    }
+
+    public void setStorageFilesCount(int storageFilesCount) {
+        this.storageFilesCount = storageFilesCount;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    public void setTotalDuration(long totalDuration) {
+        this.totalDuration = totalDuration;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public long getLastAddTime() {
+        return lastAddTime;
+    }
+
+    public void setLastAddTime(long lastAddTime) {
+        this.lastAddTime = lastAddTime;
+    }
 }
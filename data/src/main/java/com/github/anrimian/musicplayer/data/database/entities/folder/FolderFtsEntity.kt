@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.folder
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of folder names, docid is equal to folder id.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "folders_fts")
+class FolderFtsEntity(
+    val name: String?
+)
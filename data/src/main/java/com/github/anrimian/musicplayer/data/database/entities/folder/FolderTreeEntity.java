@@ -0,0 +1,51 @@
+package com.github.anrimian.musicplayer.data.database.entities.folder;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+/**
+ * Closure table of folders: one row for each ancestor-descendant pair, including
+ * the folder itself with zero depth. Maintained by triggers, see {@link
+ * com.github.anrimian.musicplayer.data.database.LibraryDatabaseTriggers}.
+ */
+@Entity(tableName = "folder_tree",
+        primaryKeys = { "ancestorId", "descendantId" },
+        foreignKeys = {
+                @ForeignKey(entity = FolderEntity.class,
+                        parentColumns = "id",
+                        childColumns = "ancestorId",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = FolderEntity.class,
+                        parentColumns = "id",
+                        childColumns = "descendantId",
+                        onDelete = ForeignKey.CASCADE)
+        },
+        indices = {
+                @Index({ "descendantId", "depth" })
+        }
+)
+public class FolderTreeEntity {
+
+    private final long ancestorId;
+    private final long descendantId;
+    private final int depth;
+
+    public FolderTreeEntity(long ancestorId, long descendantId, int depth) {
+        this.ancestorId = ancestorId;
+        this.descendantId = descendantId;
+        this.depth = depth;
+    }
+
+    public long getAncestorId() {
+        return ancestorId;
+    }
+
+    public long getDescendantId() {
+        return descendantId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
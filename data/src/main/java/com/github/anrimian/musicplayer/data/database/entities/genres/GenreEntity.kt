@@ -1,15 +1,22 @@
 package com.github.anrimian.musicplayer.data.database.entities.genres
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.Index
 import androidx.room.PrimaryKey
 
 @Entity(
     tableName = "genres",
-    indices = [ Index(value = [ "name" ], unique = true) ]
+    indices = [
+        Index(value = [ "name" ], unique = true),
+        Index(value = [ "compositionsCount" ])
+    ]
 )
 class GenreEntity(
     @PrimaryKey(autoGenerate = true)
     val id: Long,
-    val name: String
+    val name: String,
+    //count of genre entries, maintained by triggers
+    @ColumnInfo(defaultValue = "0")
+    val compositionsCount: Int
 )
\ No newline at end of file
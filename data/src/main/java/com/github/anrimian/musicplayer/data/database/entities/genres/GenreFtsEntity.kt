@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.genres
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of genre names, docid is equal to genre id.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "genres_fts")
+class GenreFtsEntity(
+    val name: String?
+)
@@ -8,6 +8,8 @@ import androidx.room.PrimaryKey;
 
 import com.github.anrimian.musicplayer.data.database.entities.composition.CompositionEntity;
 
+import javax.annotation.Nullable;
+
 @Entity(tableName = "play_queue",
         foreignKeys = {
                 @ForeignKey(entity = CompositionEntity.class,
@@ -28,8 +30,11 @@ public class PlayQueueEntity {
 
     private long audioId;
 
+    //sparse non negative order keys, see PlayQueueDaoWrapper
     private int position;
-    private int shuffledPosition;
+    //null means position computed from shuffle seed, see PlayQueueShuffleEntity
+    @Nullable
+    private Integer shuffledPosition;
 
     public long getId() {
         return id;
@@ -55,11 +60,12 @@ public class PlayQueueEntity {
         this.position = position;
     }
 
-    public int getShuffledPosition() {
+    @Nullable
+    public Integer getShuffledPosition() {
         return shuffledPosition;
     }
 
-    public void setShuffledPosition(int shuffledPosition) {
+    public void setShuffledPosition(@Nullable Integer shuffledPosition) {
         this.shuffledPosition = shuffledPosition;
     }
 
@@ -0,0 +1,8 @@
+package com.github.anrimian.musicplayer.data.database.entities.play_queue
+
+class PlayQueuePositionEntry(
+    val id: Long,
+    val position: Int,
+    val shuffledPosition: Int,
+    val isCorrupted: Boolean
+)
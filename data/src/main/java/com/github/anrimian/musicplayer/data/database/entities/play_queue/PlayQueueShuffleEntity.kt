@@ -0,0 +1,15 @@
+package com.github.anrimian.musicplayer.data.database.entities.play_queue
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Single row with seed of shuffled play queue order. Shuffled position of item without own
+ * shuffledPosition is computed from its id and [seed], see PlayQueueDao.SHUFFLED_POSITION.
+ */
+@Entity(tableName = "play_queue_shuffle")
+class PlayQueueShuffleEntity(
+    @PrimaryKey
+    val id: Long,
+    val seed: Int
+)
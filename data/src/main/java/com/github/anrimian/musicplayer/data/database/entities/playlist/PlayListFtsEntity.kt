@@ -0,0 +1,14 @@
+package com.github.anrimian.musicplayer.data.database.entities.playlist
+
+import androidx.room.Entity
+import androidx.room.Fts4
+import androidx.room.FtsOptions
+
+/**
+ * Search index of play list names, docid is equal to play list id.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "play_lists_fts")
+class PlayListFtsEntity(
+    val name: String?
+)
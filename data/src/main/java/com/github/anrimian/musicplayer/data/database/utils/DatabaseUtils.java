@@ -4,22 +4,38 @@ import static com.github.anrimian.musicplayer.domain.utils.TextUtils.isEmpty;
 
 public class DatabaseUtils {
 
-    public static String getSearchArg(String arg) {
-        return arg == null ? null : '%' + arg + '%';
-    }
+    //keep under sqlite variables limit
+    public static final int MAX_QUERY_ARGS = 500;
 
-    public static String[] getSearchArgs(String arg, int count) {
+    /**
+     * @return full text search expression which matches rows containing words
+     * with prefixes of all words from the search text, or null for empty search text
+     */
+    public static String getSearchArg(String arg) {
         if (isEmpty(arg)) {
-            arg = null;
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String word: arg.split("\\s+")) {
+            word = word.replace("\"", "").replace("*", "");
+            if (!hasLetterOrDigit(word)) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append('"');
+            sb.append(word);
+            sb.append("*\"");
         }
+        return sb.length() == 0 ? null : sb.toString();
+    }
 
+    public static String[] getSearchArgs(String arg, int count) {
+        String searchArg = getSearchArg(arg);
         String[] result = new String[count];
         for (int i = 0; i < count; i++) {
-            if (i == 0) {
-                result[i] = arg;
-            } else {
-                result[i] = arg == null? null : "%" + arg + "%";
-            }
+            result[i] = searchArg;
         }
         return result;
     }
@@ -31,4 +47,13 @@ public class DatabaseUtils {
         }
         return result;
     }
+
+    private static boolean hasLetterOrDigit(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,46 @@
+package com.github.anrimian.musicplayer.data.database.utils
+
+import androidx.sqlite.db.SimpleSQLiteQuery
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of dynamically built sql.
+ *
+ * Each query shape, like combination of order and useFileName, is built once by its key.
+ * Ids and search text are always bound as arguments, so the same shape gives the same sql text
+ * and sqlite connections reuse its compiled statement, see [STATEMENT_CACHE_SIZE].
+ * Hit and miss counters show how often shapes are reused.
+ */
+object QueryTemplates {
+
+    //compiled statements cache size of each connection, max value allowed by android sqlite
+    const val STATEMENT_CACHE_SIZE = 100
+
+    private val templates = ConcurrentHashMap<String, String>()
+
+    private val hitCount = AtomicLong()
+    private val missCount = AtomicLong()
+
+    @JvmStatic
+    fun get(key: String, builder: () -> String): String {
+        val template = templates[key]
+        if (template != null) {
+            hitCount.incrementAndGet()
+            return template
+        }
+        missCount.incrementAndGet()
+        return templates.getOrPut(key, builder)
+    }
+
+    @JvmStatic
+    fun query(key: String, args: Array<out Any?>?, builder: () -> String): SimpleSQLiteQuery {
+        return SimpleSQLiteQuery(get(key, builder), args)
+    }
+
+    @JvmStatic
+    fun getHitCount() = hitCount.get()
+
+    @JvmStatic
+    fun getMissCount() = missCount.get()
+}
@@ -3,4 +3,12 @@ package com.github.anrimian.musicplayer.data.models.composition.file
 import android.net.Uri
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource
 
-data class StorageCompositionSource(val uri: Uri): CompositionContentSource
\ No newline at end of file
+/**
+ * Gains are replay gain values in dB, null if they are not known.
+ */
+data class StorageCompositionSource(
+    val uri: Uri,
+    val trackGain: Float? = null,
+    val albumGain: Float? = null,
+    val analyzedGain: Float? = null,
+): CompositionContentSource
@@ -25,6 +25,7 @@ import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepositor
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.utils.ListUtils
 import com.github.anrimian.musicplayer.domain.utils.TextUtils
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import com.github.anrimian.musicplayer.domain.utils.rx.collectIntoList
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
@@ -53,7 +54,19 @@ class LibraryRepositoryImpl(
             .switchMap { order ->
                 settingsPreferences.displayFileNameObservable
                     .switchMap { useFileName ->
-                        compositionsDao.getAllObservable(order, useFileName, searchText)
+                        compositionsDao.getAllObservable(order, useFileName, searchText, true)
+                    }
+            }
+    }
+
+    override fun getAllCompositionsWindowedObservable(
+        searchText: String?
+    ): Observable<WindowedList<Composition>> {
+        return settingsPreferences.compositionsOrderObservable
+            .switchMap { order ->
+                settingsPreferences.displayFileNameObservable
+                    .switchMap { useFileName ->
+                        compositionsDao.getAllObservable(order, useFileName, searchText, false)
                     }
             }
     }
@@ -122,6 +135,24 @@ class LibraryRepositoryImpl(
             }
     }
 
+    override fun getFoldersInFolderWindowed(
+        folderId: Long?,
+        searchQuery: String?
+    ): Observable<WindowedList<FileSource>> {
+        return settingsPreferences.folderOrderObservable
+            .switchMap { order ->
+                settingsPreferences.displayFileNameObservable
+                    .switchMap { useFileName ->
+                        foldersDao.getFilesWindowedObservable(
+                            folderId,
+                            order,
+                            useFileName,
+                            searchQuery
+                        )
+                    }
+            }
+    }
+
     override fun getFolderObservable(folderId: Long): Observable<FolderInfo> {
         return foldersDao.getFolderObservable(folderId)
     }
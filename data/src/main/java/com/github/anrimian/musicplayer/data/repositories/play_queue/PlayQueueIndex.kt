@@ -0,0 +1,174 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueuePositionEntry
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.subjects.PublishSubject
+
+/**
+ * In memory copy of play queue order.
+ *
+ * Keeps item ids of both orders with their position keys and corruption flags, so navigation,
+ * index and size lookups don't query database. Swaps are applied here first and their new
+ * keys are taken later by [takePendingPositions] to be written in batches.
+ * [getChangesObservable] emits on invalidation and swaps.
+ */
+class PlayQueueIndex {
+
+    private val order = QueueOrder()
+    private val shuffledOrder = QueueOrder()
+    private val corruptedIds = HashSet<Long>()
+
+    private val changesSubject = PublishSubject.create<Unit>().toSerialized()
+
+    @Volatile
+    private var isValid = false
+
+    fun isValid() = isValid
+
+    /**
+     * Marks index as outdated, next [update] call will reload it.
+     */
+    fun invalidate() {
+        isValid = false
+        changesSubject.onNext(Unit)
+    }
+
+    fun getChangesObservable(): Observable<Unit> = changesSubject
+
+    /**
+     * Reloads index. Invalidation which happens during loading keeps index outdated.
+     * Not taken pending positions are dropped, so they should be written before.
+     */
+    @Synchronized
+    fun update(loader: () -> List<PlayQueuePositionEntry>) {
+        isValid = true
+        val entries = loader()
+        order.set(entries) { entry -> entry.position }
+        shuffledOrder.set(entries) { entry -> entry.shuffledPosition }
+        corruptedIds.clear()
+        for (entry in entries) {
+            if (entry.isCorrupted) {
+                corruptedIds.add(entry.id)
+            }
+        }
+    }
+
+    @Synchronized
+    fun size() = order.ids.size
+
+    /**
+     * @return index of item in queue or -1 if queue doesn't contain it
+     */
+    @Synchronized
+    fun indexOf(id: Long, isShuffled: Boolean) = getOrder(isShuffled).indexOf(id)
+
+    /**
+     * @return position key of item or null if queue doesn't contain it
+     */
+    @Synchronized
+    fun getPosition(id: Long, isShuffled: Boolean): Int? {
+        val order = getOrder(isShuffled)
+        val index = order.indexOf(id)
+        return if (index == -1) null else order.keys[index]
+    }
+
+    @Synchronized
+    fun isLastItem(id: Long, isShuffled: Boolean): Boolean {
+        val index = indexOf(id, isShuffled)
+        return index != -1 && index == size() - 1
+    }
+
+    /**
+     * @return item after given one, first item after the last one or when queue
+     * doesn't contain given item, null for empty queue
+     */
+    @Synchronized
+    fun getNextItemId(id: Long, isShuffled: Boolean): Long? {
+        val ids = getOrder(isShuffled).ids
+        if (ids.isEmpty()) {
+            return null
+        }
+        val index = indexOf(id, isShuffled)
+        return ids[(index + 1) % ids.size]
+    }
+
+    /**
+     * @return nearest not corrupted item before given one, otherwise the last item,
+     * null for empty queue
+     */
+    @Synchronized
+    fun getPreviousItemId(id: Long, isShuffled: Boolean): Long? {
+        val ids = getOrder(isShuffled).ids
+        if (ids.isEmpty()) {
+            return null
+        }
+        for (i in indexOf(id, isShuffled) - 1 downTo 0) {
+            if (!corruptedIds.contains(ids[i])) {
+                return ids[i]
+            }
+        }
+        return ids.last()
+    }
+
+    /**
+     * Exchanges items in given order. Keys stay in place, so items take keys of each other.
+     *
+     * @return false if queue doesn't contain any of items
+     */
+    @Synchronized
+    fun swap(firstId: Long, secondId: Long, isShuffled: Boolean): Boolean {
+        val result = getOrder(isShuffled).swap(firstId, secondId)
+        if (result) {
+            changesSubject.onNext(Unit)
+        }
+        return result
+    }
+
+    /**
+     * @return new position keys of swapped items which are not written yet
+     */
+    @Synchronized
+    fun takePendingPositions(isShuffled: Boolean): Map<Long, Int> {
+        val pendingKeys = getOrder(isShuffled).pendingKeys
+        val result = HashMap(pendingKeys)
+        pendingKeys.clear()
+        return result
+    }
+
+    private fun getOrder(isShuffled: Boolean) = if (isShuffled) shuffledOrder else order
+
+    private class QueueOrder {
+        var ids = LongArray(0)
+        var keys = IntArray(0)
+        val indexes = HashMap<Long, Int>()
+        val pendingKeys = HashMap<Long, Int>()
+
+        fun set(entries: List<PlayQueuePositionEntry>, keySelector: (PlayQueuePositionEntry) -> Int) {
+            val sortedEntries = entries.sortedBy(keySelector)
+            ids = LongArray(sortedEntries.size) { i -> sortedEntries[i].id }
+            keys = IntArray(sortedEntries.size) { i -> keySelector(sortedEntries[i]) }
+            indexes.clear()
+            for (i in ids.indices) {
+                indexes[ids[i]] = i
+            }
+            pendingKeys.clear()
+        }
+
+        fun indexOf(id: Long) = indexes[id] ?: -1
+
+        fun swap(firstId: Long, secondId: Long): Boolean {
+            val firstIndex = indexOf(firstId)
+            val secondIndex = indexOf(secondId)
+            if (firstIndex == -1 || secondIndex == -1) {
+                return false
+            }
+            ids[firstIndex] = secondId
+            ids[secondIndex] = firstId
+            indexes[firstId] = secondIndex
+            indexes[secondId] = firstIndex
+            pendingKeys[firstId] = keys[secondIndex]
+            pendingKeys[secondId] = keys[firstIndex]
+            return true
+        }
+    }
+}
@@ -15,6 +15,7 @@ import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
 import com.github.anrimian.musicplayer.domain.utils.functions.Opt
 import com.github.anrimian.musicplayer.domain.utils.rx.CacheFlowable
+import com.github.anrimian.musicplayer.domain.utils.rx.MaxLatencyDebounce
 import io.reactivex.rxjava3.core.BackpressureStrategy
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Flowable
@@ -22,6 +23,7 @@ import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.subjects.BehaviorSubject
+import io.reactivex.rxjava3.subjects.PublishSubject
 import java.util.concurrent.TimeUnit
 
 class PlayQueueRepositoryImpl(
@@ -54,6 +56,34 @@ class PlayQueueRepositoryImpl(
 
     private var consumeDeletedItemEvent = false
 
+    private val queueIndex = PlayQueueIndex()
+    private val pendingPositionsSubject = PublishSubject.create<Unit>()
+
+    private val trackPositions = TrackPositionsCache(PlayQueueDaoWrapper.TRACK_POSITIONS_LIMIT)
+    private val trackPositionsChangeSubject = PublishSubject.create<Unit>()
+
+    init {
+        playQueueDao.getPlayQueueChangesObservable()
+            .subscribeOn(scheduler)
+            .subscribe { queueIndex.invalidate() }
+        pendingPositionsSubject
+            .compose(MaxLatencyDebounce(
+                POSITIONS_WRITE_TIMEOUT_MILLIS,
+                POSITIONS_WRITE_MAX_LATENCY_MILLIS,
+                TimeUnit.MILLISECONDS,
+                scheduler
+            ))
+            .subscribe { writePendingPositions() }
+        trackPositionsChangeSubject
+            .compose(MaxLatencyDebounce(
+                TRACK_POSITIONS_WRITE_TIMEOUT_MILLIS,
+                TRACK_POSITIONS_WRITE_MAX_LATENCY_MILLIS,
+                TimeUnit.MILLISECONDS,
+                scheduler
+            ))
+            .subscribe { writeTrackPositions() }
+    }
+
     override fun setPlayQueue(compositionIds: List<Long>, startPosition: Int): Completable {
         return Completable.fromAction { insertNewQueue(compositionIds, startPosition) }
             .subscribeOn(scheduler)
@@ -63,8 +93,12 @@ class PlayQueueRepositoryImpl(
         return Observable.combineLatest(
             uiStatePreferences.currentItemIdObservable,
             settingsPreferences.randomPlayingObservable,
-            playQueueDao::getIndexPositionObservable
-        ).switchMap { observable -> observable }
+            queueIndex.getChangesObservable().startWithItem(Unit)
+        ) { id, isShuffled, _ -> Pair(id, isShuffled) }
+            .observeOn(scheduler)
+            .map { (id, isShuffled) -> getQueueIndex().indexOf(id, isShuffled) }
+            .filter { position -> position >= 0 }
+            .distinctUntilChanged()
             .toFlowable(BackpressureStrategy.LATEST)
     }
 
@@ -76,10 +110,36 @@ class PlayQueueRepositoryImpl(
         return Single.fromCallable {
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            playQueueDao.getNextQueueItemId(currentItemId, isShuffled)
+            getQueueIndex().getNextItemId(currentItemId, isShuffled)
+                ?: UiStateRepositoryImpl.NO_ITEM
         }.subscribeOn(scheduler)
     }
 
+    override fun getNextQueueItemObservable(wrapAround: Boolean): Observable<PlayQueueEvent> {
+        return Observable.combineLatest(
+            uiStatePreferences.currentItemIdObservable,
+            settingsPreferences.randomPlayingObservable,
+            queueIndex.getChangesObservable().startWithItem(Unit)
+        ) { id, isShuffled, _ -> Pair(id, isShuffled) }
+            .observeOn(scheduler)
+            .map { (id, isShuffled) ->
+                val queueIndex = getQueueIndex()
+                if (!wrapAround && queueIndex.isLastItem(id, isShuffled)) {
+                    return@map UiStateRepositoryImpl.NO_ITEM
+                }
+                queueIndex.getNextItemId(id, isShuffled) ?: UiStateRepositoryImpl.NO_ITEM
+            }
+            .distinctUntilChanged()
+            .switchMap { id ->
+                if (id == UiStateRepositoryImpl.NO_ITEM) {
+                    return@switchMap Observable.just(PlayQueueEvent(null))
+                }
+                settingsPreferences.displayFileNameObservable
+                    .switchMap { useFileName -> playQueueDao.getItemObservable(id, useFileName) }
+                    .map { itemOpt -> PlayQueueEvent(itemOpt.value) }
+            }
+    }
+
     override fun getPlayQueueObservable(): Flowable<List<PlayQueueItem>> {
         return playQueueObservable.getFlowable()
     }
@@ -89,7 +149,7 @@ class PlayQueueRepositoryImpl(
             playQueueObservable.clearCache()
             if (enabled) {
                 val itemId = uiStatePreferences.currentQueueItemId
-                playQueueDao.reshuffleQueue(itemId)
+                modifyQueue { playQueueDao.reshuffleQueue(itemId) }
             }
             settingsPreferences.isRandomPlayingEnabled = enabled
         }.subscribeOn(scheduler)
@@ -100,9 +160,10 @@ class PlayQueueRepositoryImpl(
         return Single.fromCallable {
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val nextQueueItemId = playQueueDao.getNextQueueItemId(currentItemId, isShuffled)
+            val queueIndex = getQueueIndex()
+            val nextQueueItemId = queueIndex.getNextItemId(currentItemId, isShuffled)
             setCurrentItem(nextQueueItemId)
-            playQueueDao.getPosition(nextQueueItemId, isShuffled)
+            nextQueueItemId?.let { id -> queueIndex.indexOf(id, isShuffled) } ?: 0
         }.subscribeOn(scheduler)
     }
 
@@ -110,7 +171,7 @@ class PlayQueueRepositoryImpl(
         Completable.fromAction {
             val currentItemId = uiStatePreferences.currentQueueItemId
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val nextQueueItemId = playQueueDao.getPreviousQueueItemId(currentItemId, isShuffled)
+            val nextQueueItemId = getQueueIndex().getPreviousItemId(currentItemId, isShuffled)
             setCurrentItem(nextQueueItemId)
         }.subscribeOn(scheduler)
             .subscribe()
@@ -121,13 +182,13 @@ class PlayQueueRepositoryImpl(
     }
 
     override fun removeQueueItem(item: PlayQueueItem): Completable {
-        return Completable.fromAction { playQueueDao.deleteItem(item.itemId) }
+        return Completable.fromAction { modifyQueue { playQueueDao.deleteItem(item.itemId) } }
             .subscribeOn(scheduler)
     }
 
     override fun restoreDeletedItem(): Completable {
         return Completable.fromAction {
-            val restoredId = playQueueDao.restoreDeletedItem()
+            val restoredId = modifyQueue(playQueueDao::restoreDeletedItem)
             if (uiStatePreferences.currentQueueItemId == UiStateRepositoryImpl.NO_ITEM && restoredId != null) {
                 setCurrentItem(restoredId)
             }
@@ -139,7 +200,10 @@ class PlayQueueRepositoryImpl(
         second: PlayQueueItem
     ): Completable {
         return Completable.fromRunnable {
-            playQueueDao.swapItems(first, second, settingsPreferences.isRandomPlayingEnabled)
+            val isShuffled = settingsPreferences.isRandomPlayingEnabled
+            if (getQueueIndex().swap(first.itemId, second.itemId, isShuffled)) {
+                pendingPositionsSubject.onNext(Unit)
+            }
         }.subscribeOn(scheduler)
     }
 
@@ -147,7 +211,7 @@ class PlayQueueRepositoryImpl(
         return Completable.fromRunnable {
             checkPlayQueueItemsCount(compositions.size)
             val id = uiStatePreferences.currentQueueItemId
-            val firstId = playQueueDao.addCompositionsToQueue(compositions, id)
+            val firstId = modifyQueue { playQueueDao.addCompositionsToQueue(compositions, id) }
             if (id == UiStateRepositoryImpl.NO_ITEM) {
                 setCurrentItem(firstId)
             }
@@ -158,7 +222,7 @@ class PlayQueueRepositoryImpl(
         return Completable.fromRunnable {
             checkPlayQueueItemsCount(compositions.size)
             val id = uiStatePreferences.currentQueueItemId
-            val firstId = playQueueDao.addCompositionsToEndQueue(compositions)
+            val firstId = modifyQueue { playQueueDao.addCompositionsToEndQueue(compositions) }
             if (id == UiStateRepositoryImpl.NO_ITEM) {
                 setCurrentItem(firstId)
             }
@@ -168,21 +232,21 @@ class PlayQueueRepositoryImpl(
     override fun isCurrentCompositionAtEndOfQueue(): Single<Boolean> {
         return Single.fromCallable {
             val isShuffled = settingsPreferences.isRandomPlayingEnabled
-            val currentPosition = playQueueDao.getPosition(
-                uiStatePreferences.currentQueueItemId,
-                isShuffled
-            )
-            currentPosition == playQueueDao.getLastPosition(isShuffled)
+            getQueueIndex().isLastItem(uiStatePreferences.currentQueueItemId, isShuffled)
         }.subscribeOn(scheduler)
     }
 
     override fun clearPlayQueue(): Completable {
-        return Completable.fromAction { playQueueDao.deletePlayQueue() }
+        return Completable.fromAction { modifyQueue(playQueueDao::deletePlayQueue) }
             .subscribeOn(scheduler)
     }
 
     override fun getPlayQueueSizeObservable(): Observable<Int> {
-        return playQueueDao.getPlayQueueSizeObservable()
+        return queueIndex.getChangesObservable()
+            .startWithItem(Unit)
+            .observeOn(scheduler)
+            .map { getQueueIndex().size() }
+            .distinctUntilChanged()
     }
 
     override fun getPlayQueueDataObservable(): Observable<PlayQueueData> {
@@ -196,25 +260,29 @@ class PlayQueueRepositoryImpl(
     override fun setCurrentItemTrackPosition(trackPosition: Long): Completable {
         return Completable.fromAction {
             val itemId = uiStatePreferences.currentQueueItemId
-            playQueueDao.insertTrackPosition(itemId, trackPosition)
+            saveTrackPosition(itemId, trackPosition)
         }.subscribeOn(scheduler)
     }
 
     override fun getCurrentItemTrackPosition(): Single<Long> {
         return Single.fromCallable {
             val itemId = uiStatePreferences.currentQueueItemId
-            playQueueDao.getTrackPosition(itemId)
+            getTrackPosition(itemId)
         }.subscribeOn(scheduler)
     }
 
     override fun setItemTrackPosition(itemId: Long, trackPosition: Long): Completable {
-        return Completable.fromAction {
-            playQueueDao.insertTrackPosition(itemId, trackPosition)
-        }.subscribeOn(scheduler)
+        return Completable.fromAction { saveTrackPosition(itemId, trackPosition) }
+            .subscribeOn(scheduler)
     }
 
     override fun getItemTrackPosition(itemId: Long): Single<Long> {
-        return Single.fromCallable { playQueueDao.getTrackPosition(itemId) }
+        return Single.fromCallable { getTrackPosition(itemId) }
+            .subscribeOn(scheduler)
+    }
+
+    override fun flushTrackPositions(): Completable {
+        return Completable.fromAction(this::writeTrackPositions)
             .subscribeOn(scheduler)
     }
 
@@ -222,11 +290,59 @@ class PlayQueueRepositoryImpl(
         if (itemsCountToInsert == 0) {
             throw NoCompositionsToInsertException()
         }
-        if (playQueueDao.getPlayQueueSize() + itemsCountToInsert > Constants.PLAY_QUEUE_MAX_ITEMS_COUNT) {
+        if (getQueueIndex().size() + itemsCountToInsert > Constants.PLAY_QUEUE_MAX_ITEMS_COUNT) {
             throw TooManyPlayQueueItemsException()
         }
     }
 
+    private fun getQueueIndex(): PlayQueueIndex {
+        synchronized(queueIndex) {
+            if (!queueIndex.isValid()) {
+                writePendingPositions()
+                queueIndex.update(playQueueDao::getPositionEntries)
+            }
+            return queueIndex
+        }
+    }
+
+    /**
+     * Writes swapped positions before modification, so database and index stay consistent.
+     * Index is reloaded after modification on the next access.
+     */
+    private fun <T> modifyQueue(action: () -> T): T {
+        writePendingPositions()
+        try {
+            return action()
+        } finally {
+            queueIndex.invalidate()
+        }
+    }
+
+    private fun saveTrackPosition(itemId: Long, trackPosition: Long) {
+        if (trackPositions.put(itemId, trackPosition, System.currentTimeMillis())) {
+            trackPositionsChangeSubject.onNext(Unit)
+        }
+    }
+
+    private fun getTrackPosition(itemId: Long): Long {
+        val cachedPosition = trackPositions.get(itemId)
+        if (cachedPosition != null) {
+            return cachedPosition
+        }
+        val position = playQueueDao.getTrackPosition(itemId)
+        trackPositions.putLoaded(itemId, position)
+        return position
+    }
+
+    private fun writeTrackPositions() {
+        playQueueDao.insertTrackPositions(trackPositions.takeChanges())
+    }
+
+    private fun writePendingPositions() {
+        playQueueDao.updatePositions(queueIndex.takePendingPositions(false), false)
+        playQueueDao.updatePositions(queueIndex.takePendingPositions(true), true)
+    }
+
     private fun setCurrentItem(itemId: Long?) {
         uiStatePreferences.currentQueueItemId = itemId ?: UiStateRepositoryImpl.NO_ITEM
     }
@@ -243,11 +359,13 @@ class PlayQueueRepositoryImpl(
         // time -> we clear queue in presenter
         // clear cache -> we don't receive old list as first event
         playQueueObservable.clearCache()
-        val itemId = playQueueDao.insertNewPlayQueue(
-            compositionIds,
-            settingsPreferences.isRandomPlayingEnabled,
-            startPosition
-        )
+        val itemId = modifyQueue {
+            playQueueDao.insertNewPlayQueue(
+                compositionIds,
+                settingsPreferences.isRandomPlayingEnabled,
+                startPosition
+            )
+        }
         playQueueCreateTimeSubject.onNext(System.currentTimeMillis())
         setCurrentItem(itemId)
         consumeDeletedItemEvent = false
@@ -290,4 +408,14 @@ class PlayQueueRepositoryImpl(
                 .map { item }
         }
     }
+
+    companion object {
+        //swapped positions are written after dragging pauses, but not later than max latency
+        private const val POSITIONS_WRITE_TIMEOUT_MILLIS = 500L
+        private const val POSITIONS_WRITE_MAX_LATENCY_MILLIS = 3000L
+
+        //track positions are also written on pause and stop, see flushTrackPositions()
+        private const val TRACK_POSITIONS_WRITE_TIMEOUT_MILLIS = 2000L
+        private const val TRACK_POSITIONS_WRITE_MAX_LATENCY_MILLIS = 20000L
+    }
 }
@@ -0,0 +1,58 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.TrackPositionEntity
+
+/**
+ * Latest track positions of play queue items.
+ *
+ * Keeps [capacity] recently used positions, so saving and restoring position of current item
+ * doesn't query database. Changed positions are kept until they are taken by [takeChanges]
+ * to be written in one batch.
+ */
+class TrackPositionsCache(private val capacity: Int) {
+
+    private val positions = object : LinkedHashMap<Long, Long>(capacity, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, Long>?): Boolean {
+            return size > capacity
+        }
+    }
+
+    private val changes = LinkedHashMap<Long, TrackPositionEntity>()
+
+    /**
+     * @return cached position or null if it should be read from database
+     */
+    @Synchronized
+    fun get(itemId: Long): Long? = positions[itemId]
+
+    /**
+     * Caches position read from database.
+     */
+    @Synchronized
+    fun putLoaded(itemId: Long, trackPosition: Long) {
+        positions[itemId] = trackPosition
+    }
+
+    /**
+     * @return false if item already has the same position
+     */
+    @Synchronized
+    fun put(itemId: Long, trackPosition: Long, writeTime: Long): Boolean {
+        if (positions.put(itemId, trackPosition) == trackPosition) {
+            return false
+        }
+        changes.remove(itemId)
+        changes[itemId] = TrackPositionEntity(itemId, trackPosition, writeTime)
+        return true
+    }
+
+    /**
+     * @return positions changed since the previous call in order of their changes
+     */
+    @Synchronized
+    fun takeChanges(): List<TrackPositionEntity> {
+        val result = ArrayList(changes.values)
+        changes.clear()
+        return result
+    }
+}
@@ -4,35 +4,50 @@ import android.database.sqlite.SQLiteCantOpenDatabaseException;
 import android.database.sqlite.SQLiteDiskIOException;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.collection.LongSparseArray;
 import androidx.core.util.Pair;
 
 import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper;
+import com.github.anrimian.musicplayer.data.database.dao.compositions.StorageCompositionsInserter;
 import com.github.anrimian.musicplayer.data.repositories.scanner.files.FileScanner;
+import com.github.anrimian.musicplayer.data.repositories.scanner.loudness.LoudnessScanner;
 import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlists.StoragePlaylistsAnalyzer;
 import com.github.anrimian.musicplayer.data.storage.exceptions.ContentResolverQueryException;
+import com.github.anrimian.musicplayer.data.storage.providers.music.MediaStoreWatermark;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayList;
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayListsProvider;
 import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics;
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState;
+import com.github.anrimian.musicplayer.domain.models.scanner.MediaStoreChangesStatistic;
+import com.github.anrimian.musicplayer.domain.models.scanner.StorageImportIdle;
+import com.github.anrimian.musicplayer.domain.models.scanner.StorageImportRunning;
+import com.github.anrimian.musicplayer.domain.models.scanner.StorageImportState;
 import com.github.anrimian.musicplayer.domain.repositories.LoggerRepository;
 import com.github.anrimian.musicplayer.domain.repositories.MediaScannerRepository;
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository;
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository;
+import com.github.anrimian.musicplayer.domain.utils.rx.MaxLatencyDebounce;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.CompletableEmitter;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Scheduler;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import io.reactivex.rxjava3.subjects.BehaviorSubject;
 
 public class MediaScannerRepositoryImpl implements MediaScannerRepository {
 
     private static final int RETRY_COUNT = 5;
+    private static final long CHANGES_DEBOUNCE_MILLIS = 1000;
+    private static final long CHANGES_MAX_LATENCY_MILLIS = 5000;
 
     private final StorageMusicProvider musicProvider;
     private final StoragePlayListsProvider playListsProvider;
@@ -42,12 +57,25 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
     private final StorageCompositionAnalyzer compositionAnalyzer;
     private final StoragePlaylistsAnalyzer playlistAnalyzer;
     private final FileScanner fileScanner;
+    private final LoudnessScanner loudnessScanner;
     private final LoggerRepository loggerRepository;
     private final Analytics analytics;
     private final Scheduler scheduler;
+    private final Scheduler timerScheduler;
 
     private final CompositeDisposable mediaStoreDisposable = new CompositeDisposable();
 
+    private final BehaviorSubject<StorageImportState> importStateSubject =
+            BehaviorSubject.createDefault(StorageImportIdle.INSTANCE);
+    private final StorageCompositionsInserter.ProgressListener importProgressListener =
+            (importedCount, totalCount) -> importStateSubject.onNext(
+                    new StorageImportRunning(importedCount, totalCount)
+            );
+
+    private final AtomicLong changeEventsReceived = new AtomicLong();
+    private final AtomicLong changeScansRun = new AtomicLong();
+    private final AtomicLong changeScansDropped = new AtomicLong();
+
     public MediaScannerRepositoryImpl(StorageMusicProvider musicProvider,
                                       StoragePlayListsProvider playListsProvider,
                                       CompositionsDaoWrapper compositionsDao,
@@ -56,9 +84,11 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
                                       StorageCompositionAnalyzer compositionAnalyzer,
                                       StoragePlaylistsAnalyzer playlistAnalyzer,
                                       FileScanner fileScanner,
+                                      LoudnessScanner loudnessScanner,
                                       LoggerRepository loggerRepository,
                                       Analytics analytics,
-                                      Scheduler scheduler) {
+                                      Scheduler scheduler,
+                                      Scheduler timerScheduler) {
         this.musicProvider = musicProvider;
         this.playListsProvider = playListsProvider;
         this.compositionsDao = compositionsDao;
@@ -67,9 +97,11 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
         this.compositionAnalyzer = compositionAnalyzer;
         this.playlistAnalyzer = playlistAnalyzer;
         this.fileScanner = fileScanner;
+        this.loudnessScanner = loudnessScanner;
         this.loggerRepository = loggerRepository;
         this.analytics = analytics;
         this.scheduler = scheduler;
+        this.timerScheduler = timerScheduler;
     }
 
     @Override
@@ -77,19 +109,19 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
         runRescanStorage()
                 .doOnComplete(this::subscribeOnMediaStoreChanges)
                 .subscribe();
+        loudnessScanner.runLoudnessScanner();
     }
 
     @Override
     public void rescanStorage() {
         try {
-            LongSparseArray<StorageFullComposition> compositions = musicProvider.getCompositions(
+            if (!applyAllCompositions(
                     settingsRepository.getAudioFileMinDurationMillis(),
-                    settingsRepository.isShowAllAudioFilesEnabled()
-            );
-            if (compositions == null) {
+                    settingsRepository.isShowAllAudioFilesEnabled(),
+                    null
+            )) {
                 return;
             }
-            compositionAnalyzer.applyCompositionsData(compositions);
 
             Map<String, StoragePlayList> playlists;
             if (stateRepository.isStoragePlaylistsImported()) {
@@ -149,27 +181,139 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
         return fileScanner.getStateObservable();
     }
 
+    @NonNull
+    @Override
+    public Observable<StorageImportState> getStorageImportStateObservable() {
+        return importStateSubject.distinctUntilChanged();
+    }
+
+    @NonNull
+    @Override
+    public MediaStoreChangesStatistic getMediaStoreChangesStatistic() {
+        long eventsReceived = changeEventsReceived.get();
+        long scansRun = changeScansRun.get();
+        return new MediaStoreChangesStatistic(eventsReceived,
+                scansRun,
+                Math.max(0, eventsReceived - scansRun),
+                changeScansDropped.get());
+    }
+
     private void subscribeOnMediaStoreChanges() {
-        mediaStoreDisposable.add(getCompositionsObservable()
+        mediaStoreDisposable.add(getStorageChangesObservable()
                 .subscribeOn(scheduler)
-                .observeOn(scheduler)
-                .doOnNext(compositionAnalyzer::applyCompositionsData)
-                .doOnNext(o -> fileScanner.scheduleFileScanner())
+                .doOnNext(o -> changeEventsReceived.incrementAndGet())
+                //timer is not on the scan scheduler, so it fires and cancels a scan while it runs
+                .compose(new MaxLatencyDebounce<>(
+                        CHANGES_DEBOUNCE_MILLIS,
+                        CHANGES_MAX_LATENCY_MILLIS,
+                        TimeUnit.MILLISECONDS,
+                        timerScheduler
+                ))
+                //newer event cancels in-flight scan, it will be read by the next scan anyway.
+                //Scan scheduler is single threaded, so the next scan starts after cancelled one returns
+                .switchMapCompletable(this::applyStorageChanges)
                 .retry(RETRY_COUNT, this::isStandardError)
                 .onErrorComplete(this::isStandardError)
-                .subscribe(o -> {}));
+                .subscribe());
     }
 
     //update on change settings not working
-    private Observable<LongSparseArray<StorageFullComposition>> getCompositionsObservable() {
+    private Observable<Pair<Long, Boolean>> getStorageChangesObservable() {
         return Observable.combineLatest(
                 settingsRepository.getAudioFileMinDurationMillisObservable(),
                 settingsRepository.getShowAllAudioFilesEnabledObservable(),
                 Pair::new
-        ).switchMap(settings -> musicProvider.getCompositionsObservable(
-                settings.first,
-                settings.second
-        ));
+        ).switchMap(settings -> musicProvider.getStorageChangesObservable().map(o -> settings));
+    }
+
+    private Completable applyStorageChanges(Pair<Long, Boolean> settings) {
+        return Completable.create(emitter -> {
+            if (applyStorageChanges(settings.first, settings.second, emitter)) {
+                changeScansRun.incrementAndGet();
+                fileScanner.scheduleFileScanner();
+            } else {
+                changeScansDropped.incrementAndGet();
+            }
+            emitter.onComplete();
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Reads only compositions changed since the last applied read.
+     * Falls back to full read when there is no stored watermark or it is not valid anymore.
+     *
+     * @return false if scan was cancelled or storage is not available
+     */
+    private boolean applyStorageChanges(long minAudioDurationMillis,
+                                        boolean showAllAudioFiles,
+                                        CompletableEmitter emitter) {
+        MediaStoreWatermark watermark = MediaStoreWatermark.parse(
+                stateRepository.getMediaStoreWatermark()
+        );
+        if (watermark == null) {
+            return applyAllCompositions(minAudioDurationMillis, showAllAudioFiles, emitter);
+        }
+        MediaStoreWatermark.Builder watermarkBuilder = new MediaStoreWatermark.Builder(
+                minAudioDurationMillis,
+                showAllAudioFiles
+        );
+        LongSparseArray<StorageFullComposition> changedCompositions = musicProvider.getChangedCompositions(
+                minAudioDurationMillis,
+                showAllAudioFiles,
+                watermark,
+                watermarkBuilder
+        );
+        if (changedCompositions == null) {
+            return applyAllCompositions(minAudioDurationMillis, showAllAudioFiles, emitter);
+        }
+        long[] storageIds = musicProvider.getCompositionIds(minAudioDurationMillis, showAllAudioFiles);
+        if (storageIds == null || emitter.isDisposed()) {
+            return false;
+        }
+        boolean isDeltaApplied;
+        try {
+            isDeltaApplied = compositionAnalyzer.applyCompositionsDelta(changedCompositions,
+                    storageIds,
+                    importProgressListener);
+        } finally {
+            importStateSubject.onNext(StorageImportIdle.INSTANCE);
+        }
+        if (!isDeltaApplied) {
+            return applyAllCompositions(minAudioDurationMillis, showAllAudioFiles, emitter);
+        }
+        //changes are applied, but cancelled scan must not move watermark over a newer scan
+        if (emitter.isDisposed()) {
+            return false;
+        }
+        stateRepository.setMediaStoreWatermark(watermarkBuilder.build().serialize());
+        return true;
+    }
+
+    private boolean applyAllCompositions(long minAudioDurationMillis,
+                                         boolean showAllAudioFiles,
+                                         @Nullable CompletableEmitter emitter) {
+        MediaStoreWatermark.Builder watermarkBuilder = new MediaStoreWatermark.Builder(
+                minAudioDurationMillis,
+                showAllAudioFiles
+        );
+        LongSparseArray<StorageFullComposition> compositions = musicProvider.getCompositions(
+                minAudioDurationMillis,
+                showAllAudioFiles,
+                watermarkBuilder
+        );
+        if (compositions == null || isDisposed(emitter)) {
+            return false;
+        }
+        try {
+            compositionAnalyzer.applyCompositionsData(compositions, importProgressListener);
+        } finally {
+            importStateSubject.onNext(StorageImportIdle.INSTANCE);
+        }
+        if (isDisposed(emitter)) {
+            return false;
+        }
+        stateRepository.setMediaStoreWatermark(watermarkBuilder.build().serialize());
+        return true;
     }
 
     private Completable runRescanStorage() {
@@ -186,6 +330,10 @@ public class MediaScannerRepositoryImpl implements MediaScannerRepository {
         stateRepository.setStoragePlaylistsImported(true);
     }
 
+    private boolean isDisposed(@Nullable CompletableEmitter emitter) {
+        return emitter != null && emitter.isDisposed();
+    }
+
     private boolean isStandardError(Throwable throwable) {
         return throwable instanceof SQLiteDiskIOException
                 || throwable instanceof SQLiteCantOpenDatabaseException
@@ -10,10 +10,11 @@ import com.github.anrimian.musicplayer.data.models.changes.Change
 import com.github.anrimian.musicplayer.data.repositories.scanner.folders.FolderNode
 import com.github.anrimian.musicplayer.data.repositories.scanner.folders.FolderTreeBuilder
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageComposition
+import com.github.anrimian.musicplayer.data.storage.providers.music.StorageCompositionsTable
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageFullComposition
 import com.github.anrimian.musicplayer.data.utils.collections.AndroidCollectionUtils
+import com.github.anrimian.musicplayer.data.utils.collections.SortedKeysDiff
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository
-import com.github.anrimian.musicplayer.domain.utils.DateUtils
 import com.github.anrimian.musicplayer.domain.utils.TextUtils
 import java.io.File
 import java.util.LinkedList
@@ -32,42 +33,146 @@ class StorageCompositionAnalyzer(
     )
 
     @Synchronized
-    fun applyCompositionsData(actualCompositions: LongSparseArray<StorageFullComposition>) {
+    fun applyCompositionsData(
+        actualCompositions: LongSparseArray<StorageFullComposition>,
+        progressListener: StorageCompositionsInserter.ProgressListener? = null,
+    ) {
         val currentCompositions = compositionsDao.selectAllAsStorageCompositions()
 
         actualTreeBuilder.createFileTree(actualCompositions)
             .cutCommonRoots(actualCompositions)
             .excludeCompositions(actualCompositions, ignoredFoldersDao.getIgnoredFolders())
 
+        val diff = SortedKeysDiff.diff(
+            currentCompositions.storageIds,
+            LongArray(actualCompositions.size(), actualCompositions::keyAt),
+            LongArray(currentCompositions.size()) { i ->
+                fileHash(currentCompositions.getParentPath(i), currentCompositions.getFileName(i))
+            },
+            LongArray(actualCompositions.size()) { i ->
+                val item = actualCompositions.valueAt(i)
+                fileHash(item.relativePath, item.fileName)
+            },
+        ) { oldIndex, newIndex ->
+            hasActualChanges(currentCompositions, oldIndex, actualCompositions.valueAt(newIndex))
+        }
+        if (!diff.hasChanges()) {
+            return
+        }
+
         val addedCompositions = ArrayList<StorageFullComposition>()
+        for (range in 0 until diff.addedRangesCount) {
+            for (i in diff.getAddedStart(range) until diff.getAddedEnd(range)) {
+                addedCompositions.add(actualCompositions.valueAt(i))
+            }
+        }
         val deletedCompositions = ArrayList<StorageComposition>()
+        for (range in 0 until diff.removedRangesCount) {
+            for (i in diff.getRemovedStart(range) until diff.getRemovedEnd(range)) {
+                deletedCompositions.add(currentCompositions.get(i))
+            }
+        }
         val changedCompositions = ArrayList<Change<StorageComposition, StorageFullComposition>>()
-        val hasChanges = AndroidCollectionUtils.processDiffChanges(
-            currentCompositions,
-            actualCompositions,
-            this::hasActualChanges,
-            deletedCompositions::add,
-            addedCompositions::add
-        ) { oldItem, newItem -> changedCompositions.add(Change(oldItem, newItem)) }
-        if (hasChanges) {
+        for (range in 0 until diff.changedRangesCount) {
+            val oldStart = diff.getChangedOldStart(range)
+            val newStart = diff.getChangedNewStart(range)
+            for (i in 0 until diff.getChangedCount(range)) {
+                changedCompositions.add(Change(
+                    currentCompositions.get(oldStart + i),
+                    actualCompositions.valueAt(newStart + i)
+                ))
+            }
+        }
+        compositionsInserter.applyChanges(
+            addedCompositions,
+            deletedCompositions,
+            changedCompositions,
+            progressListener
+        )
+    }
+
+    /**
+     * Applies only changed part of the storage.
+     *
+     * @param changedCompositions compositions added or modified since the last applied read
+     * @param actualStorageIds sorted ids of all compositions in storage, used to find deletions
+     * @param progressListener receives progress of added compositions import
+     * @return false if changes can not be applied incrementally and full rescan is required
+     */
+    @Synchronized
+    fun applyCompositionsDelta(
+        changedCompositions: LongSparseArray<StorageFullComposition>,
+        actualStorageIds: LongArray,
+        progressListener: StorageCompositionsInserter.ProgressListener? = null,
+    ): Boolean {
+        if (!cutRootPath(changedCompositions)) {
+            return false
+        }
+
+        val deletedIds = ArrayList<Long>()
+        for (storageId in compositionsDao.selectAllStorageIds()) {
+            if (actualStorageIds.binarySearch(storageId) < 0) {
+                deletedIds.add(storageId)
+            }
+        }
+
+        val ignoredFolders = ignoredFoldersDao.getIgnoredFolders()
+        val changedIds = ArrayList<Long>(changedCompositions.size())
+        for (i in changedCompositions.size() - 1 downTo 0) {
+            val composition = changedCompositions.valueAt(i)
+            if (isInIgnoredFolder(composition.relativePath, ignoredFolders)) {
+                deletedIds.add(composition.storageId)
+                changedCompositions.removeAt(i)
+            } else {
+                changedIds.add(composition.storageId)
+            }
+        }
+
+        if (changedIds.isEmpty() && deletedIds.isEmpty()) {
+            return true
+        }
+        val currentCompositions = compositionsDao.selectStorageCompositions(changedIds + deletedIds)
+
+        val addedCompositions = ArrayList<StorageFullComposition>()
+        val deletedCompositions = ArrayList<StorageComposition>()
+        val changes = ArrayList<Change<StorageComposition, StorageFullComposition>>()
+        AndroidCollectionUtils.forEach(changedCompositions) { newItem ->
+            val index = currentCompositions.indexOf(newItem.storageId)
+            if (index < 0) {
+                addedCompositions.add(newItem)
+            } else if (hasActualChanges(currentCompositions, index, newItem)) {
+                changes.add(Change(currentCompositions.get(index), newItem))
+            }
+        }
+        for (storageId in deletedIds) {
+            val index = currentCompositions.indexOf(storageId)
+            if (index >= 0) {
+                deletedCompositions.add(currentCompositions.get(index))
+            }
+        }
+        if (addedCompositions.isNotEmpty() || deletedCompositions.isNotEmpty() || changes.isNotEmpty()) {
             compositionsInserter.applyChanges(
                 addedCompositions,
                 deletedCompositions,
-                changedCompositions
+                changes,
+                progressListener
             )
         }
+        return true
     }
 
     private fun hasActualChanges(
-        first: StorageComposition,
+        current: StorageCompositionsTable,
+        index: Int,
         second: StorageFullComposition,
     ): Boolean {
-        val isPathEqual = first.parentPath == second.relativePath
-        val isFileNameEqual = first.fileName == second.fileName
+        val isPathEqual = current.getParentPath(index) == second.relativePath
+        val isFileNameEqual = current.getFileName(index) == second.fileName
+        val newDateModified = second.dateModified.time
         if (isPathEqual
             && isFileNameEqual
-            && (!DateUtils.isAfter(second.dateModified, first.dateModified)
-                    || !DateUtils.isAfter(second.dateModified, first.lastScanDate))
+            && (newDateModified <= current.getDateModified(index)
+                    || newDateModified <= current.getLastScanDate(index))
         ) {
             return false
         }
@@ -78,14 +183,22 @@ class StorageCompositionAnalyzer(
             newAlbumName = newAlbum.album
             newAlbumArtist = newAlbum.artist
         }
-        return first.duration != second.duration
+        return current.getDuration(index) != second.duration
                 || !isPathEqual
-                || first.size != second.size
-                || first.title != second.title
+                || current.getSize(index) != second.size
+                || current.getTitle(index) != second.title
                 || !isFileNameEqual
-                || first.artist != second.artist
-                || first.album != newAlbumName
-                || first.albumArtist != newAlbumArtist
+                || current.getArtist(index) != second.artist
+                || current.getAlbum(index) != newAlbumName
+                || current.getAlbumArtist(index) != newAlbumArtist
+    }
+
+    /**
+     * Different path or file name is always an actual change, see [hasActualChanges].
+     * String hash codes are cached, so this check is cheaper than string comparison.
+     */
+    private fun fileHash(path: String, fileName: String): Long {
+        return path.hashCode().toLong() shl 32 or (fileName.hashCode().toLong() and 0xffffffffL)
     }
 
     private fun FolderNode<Long>.excludeCompositions(
@@ -118,6 +231,36 @@ class StorageCompositionAnalyzer(
         return result
     }
 
+    private fun isInIgnoredFolder(path: String, ignoredFolders: Array<String>): Boolean {
+        for (ignoredFolder in ignoredFolders) {
+            if (path == ignoredFolder || path.startsWith("$ignoredFolder/")) {
+                return true
+            }
+        }
+        return false
+    }
+
+    //apply root path found by the last full scan, returns false if it is not applicable anymore
+    private fun cutRootPath(compositions: LongSparseArray<StorageFullComposition>): Boolean {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return true
+        }
+        val rootPath = stateRepository.rootFolderPath ?: return true
+        for (i in 0 until compositions.size()) {
+            val item = compositions.valueAt(i)
+            val path = item.relativePath.removePrefix("/")
+            if (!path.startsWith(rootPath)) {
+                return false
+            }
+            item.relativePath = when {
+                path.length == rootPath.length -> ""
+                path[rootPath.length] == '/' -> path.substring(rootPath.length + 1)
+                else -> return false
+            }
+        }
+        return true
+    }
+
     private fun FolderNode<Long>.cutCommonRoots(
         actualCompositions: LongSparseArray<StorageFullComposition>,
     ): FolderNode<Long> {
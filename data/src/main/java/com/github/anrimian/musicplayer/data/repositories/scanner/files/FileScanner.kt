@@ -12,6 +12,7 @@ import com.github.anrimian.musicplayer.domain.models.scanner.Idle
 import com.github.anrimian.musicplayer.domain.models.scanner.Running
 import com.github.anrimian.musicplayer.domain.repositories.StateRepository
 import com.github.anrimian.musicplayer.domain.repositories.StorageSourceRepository
+import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Maybe
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Scheduler
@@ -20,24 +21,41 @@ import io.reactivex.rxjava3.subjects.BehaviorSubject
 import java.io.FileNotFoundException
 import java.util.*
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.max
 
+/**
+ * Reads tags of library files. Files are read by a bounded count of parallel workers,
+ * results are written to the database in batches from the single [scheduler] thread.
+ * While playback is active files are read by one worker with pauses between files.
+ */
 class FileScanner(
     private val compositionsDao: CompositionsDaoWrapper,
     private val compositionSourceEditor: CompositionSourceEditor,
     private val stateRepository: StateRepository,
     private val storageSourceRepository: StorageSourceRepository,
     private val analytics: Analytics,
-    private val scheduler: Scheduler
+    private val isPlaybackActive: () -> Boolean,
+    private val workersScheduler: Scheduler,
+    private val scheduler: Scheduler,
+    private val workersCount: Int
 ) {
 
     private val stateSubject = BehaviorSubject.createDefault<FileScannerState>(Idle)
 
+    private val scannedCount = AtomicInteger()
+    @Volatile
+    private var totalCount = 0
+
+    private var isScanRunning = false
+
     @Synchronized
     fun scheduleFileScanner() {
-        if (stateSubject.value != Idle) {
+        if (isScanRunning) {
             return
         }
-        runFileScanner()
+        isScanRunning = true
+        startFileScanner()
     }
 
     fun runScanCompositionFile(composition: FullComposition): Boolean {
@@ -48,11 +66,21 @@ class FileScanner(
 
     fun getStateObservable(): Observable<FileScannerState> = stateSubject.distinctUntilChanged()
 
+    private fun startFileScanner() {
+        Single.fromCallable { compositionsDao.selectCompositionsToScanCount(getLastCompleteScanTime()) }
+            .doOnError(this::processError)
+            .onErrorReturnItem(0)
+            .doOnSuccess { count ->
+                scannedCount.set(0)
+                totalCount = count
+                runFileScanner()
+            }
+            .subscribeOn(scheduler)
+            .subscribe()
+    }
+
     private fun runFileScanner() {
-        val lastCompleteScanTime = if (
-            stateRepository.lastFileScannerVersion == stateRepository.currentFileScannerVersion
-        ) 0L else stateRepository.lastCompleteScanTime
-        compositionsDao.selectNextCompositionsToScan(lastCompleteScanTime, FILES_TO_SCAN_COUNT)
+        compositionsDao.selectNextCompositionsToScan(getLastCompleteScanTime(), FILES_TO_SCAN_COUNT)
             .retry(READ_RETRY_TIMES)
             .flatMap(this::scanCompositionFiles)
             .flatMapMaybe { compositions ->
@@ -65,20 +93,22 @@ class FileScanner(
             .doOnError(this::processError)
             .onErrorComplete()//represent db read error, in this case stop scan until next launch
             .doOnSuccess { runFileScanner() }
-            .doOnComplete { stateSubject.onNext(Idle) }
+            .doOnComplete(this::onScannerStopped)
             .subscribeOn(scheduler)
             .subscribe()
     }
 
     private fun scanCompositionFiles(compositions: List<FullComposition>): Single<List<FullComposition>> {
+        //concurrency is picked for each batch, so playback start takes effect on the next batch
+        val concurrency = if (isPlaybackActive()) 1 else workersCount
         return Observable.fromIterable(compositions)
-            .flatMapMaybe { composition ->
-                getCompositionSource(composition)
-                    .doOnSuccess { stateSubject.onNext(Running(composition)) }
-                    .flatMap(this::getAudioFileInfo)
-                    .map { info -> Pair(composition, info) }
-            }
+            .flatMap(
+                { composition -> readCompositionFile(composition).toObservable() },
+                false,
+                concurrency
+            )
             .collect(::ArrayList, ArrayList<Pair<FullComposition, AudioFileInfo>>::add)
+            .observeOn(scheduler)
             .doOnSuccess { scannedCompositions ->
                 compositionsDao.updateCompositionsByFileInfo(scannedCompositions, compositions)
             }
@@ -87,6 +117,51 @@ class FileScanner(
             .onErrorReturnItem(compositions)//represent db write error, in this case run again
     }
 
+    private fun readCompositionFile(
+        composition: FullComposition
+    ): Maybe<Pair<FullComposition, AudioFileInfo>> {
+        return waitForPlaybackPause()
+            .andThen(Maybe.defer { getCompositionSource(composition) })
+            .doOnSuccess { onFileScanStarted(composition) }
+            .flatMap(this::getAudioFileInfo)
+            .map { info -> Pair(composition, info) }
+            .doFinally { scannedCount.incrementAndGet() }
+            .subscribeOn(workersScheduler)
+    }
+
+    //give player priority on storage reads
+    private fun waitForPlaybackPause(): Completable {
+        return Completable.defer {
+            if (isPlaybackActive()) {
+                Completable.timer(PLAYBACK_READ_PAUSE_MILLIS, TimeUnit.MILLISECONDS, workersScheduler)
+            } else {
+                Completable.complete()
+            }
+        }
+    }
+
+    private fun onFileScanStarted(composition: FullComposition) {
+        val scanned = scannedCount.get()
+        //workers emit state concurrently, subject requires serial calls
+        synchronized(stateSubject) {
+            stateSubject.onNext(Running(composition, scanned, max(scanned, totalCount)))
+        }
+    }
+
+    @Synchronized
+    private fun onScannerStopped() {
+        isScanRunning = false
+        synchronized(stateSubject) {
+            stateSubject.onNext(Idle)
+        }
+    }
+
+    private fun getLastCompleteScanTime(): Long {
+        return if (
+            stateRepository.lastFileScannerVersion == stateRepository.currentFileScannerVersion
+        ) 0L else stateRepository.lastCompleteScanTime
+    }
+
     private fun onScanCompleted() {
         stateRepository.lastFileScannerVersion = stateRepository.currentFileScannerVersion
         stateRepository.lastCompleteScanTime = System.currentTimeMillis()
@@ -105,7 +180,7 @@ class FileScanner(
 
     private fun getAudioFileInfo(source: CompositionContentSource): Maybe<AudioFileInfo> {
         return compositionSourceEditor.getAudioFileInfo(source)
-            .timeout(READ_FILE_TIMEOUT_SECONDS, TimeUnit.SECONDS, scheduler)
+            .timeout(READ_FILE_TIMEOUT_SECONDS, TimeUnit.SECONDS, workersScheduler)
             .retry(READ_RETRY_TIMES)
             .doOnError(this::processError)
             .onErrorComplete()//if we can't read the file - ignore and set last scan time anyway
@@ -113,7 +188,7 @@ class FileScanner(
 
     private fun getCompositionSource(composition: FullComposition): Maybe<CompositionContentSource> {
         return storageSourceRepository.getStorageSource(composition.id)
-            .observeOn(scheduler)
+            .observeOn(workersScheduler)
     }
 
     private fun processError(throwable: Throwable) {
@@ -123,10 +198,19 @@ class FileScanner(
         analytics.processNonFatalError(throwable)
     }
 
-    private companion object {
-        const val FILES_TO_SCAN_COUNT = 150
-        const val READ_RETRY_TIMES = 2L
-        const val READ_FILE_TIMEOUT_SECONDS = 6L
+    companion object {
+        private const val FILES_TO_SCAN_COUNT = 150
+        private const val READ_RETRY_TIMES = 2L
+        private const val READ_FILE_TIMEOUT_SECONDS = 6L
+        private const val PLAYBACK_READ_PAUSE_MILLIS = 300L
+        private const val MAX_WORKERS_COUNT = 4
+
+        @JvmStatic
+        fun getDefaultWorkersCount(): Int {
+            //keep one core free for ui and playback
+            val processors = Runtime.getRuntime().availableProcessors()
+            return (processors - 1).coerceIn(1, MAX_WORKERS_COUNT)
+        }
     }
 
 }
\ No newline at end of file
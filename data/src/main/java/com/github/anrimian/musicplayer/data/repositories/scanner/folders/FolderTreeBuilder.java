@@ -2,15 +2,16 @@ package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
 
 import androidx.collection.LongSparseArray;
 
-import com.github.anrimian.musicplayer.domain.utils.ListUtils;
 import com.github.anrimian.musicplayer.domain.utils.TextUtils;
 import com.github.anrimian.musicplayer.domain.utils.functions.Mapper;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import io.reactivex.rxjava3.core.Observable;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Builds folder tree in a single pass over files. Nodes are cached by full path, so each
+ * distinct path is split only once, and equal folder names share one string instance.
+ */
 public class FolderTreeBuilder<F, N> {
 
     private final Mapper<F, String> pathFunc;
@@ -22,58 +23,79 @@ public class FolderTreeBuilder<F, N> {
     }
 
     public FolderNode<N> createFileTree(LongSparseArray<F> map) {
-        return createFileTree(fromSparseArray(map));
-    }
-
-    public FolderNode<N> createFileTree(Observable<F> objectsObservable) {
-        FolderNode<N> rootFolder = new FolderNode<>(null);
-        objectsObservable.groupBy(pathFunc::map)
-                .doOnNext(group -> group.collect(ArrayList<F>::new, List::add)
-                        .map(this::toValueList)
-                        .doOnSuccess(list -> addValuesToFolder(rootFolder, group.getKey(), list))
-                        .subscribe())
-                .subscribe();
-        return rootFolder;
-    }
-
-    private <T> Observable<T> fromSparseArray(LongSparseArray<T> sparseArray) {
-        return Observable.create(emitter -> {
-            for(int i = 0, size = sparseArray.size(); i < size; i++) {
-                T existValue = sparseArray.valueAt(i);
-                emitter.onNext(existValue);
-            }
-            emitter.onComplete();
-        });
+        TreeState<N> state = new TreeState<>();
+        for(int i = 0, size = map.size(); i < size; i++) {
+            addFile(state, map.valueAt(i));
+        }
+        return state.root;
     }
 
-    private List<N> toValueList(List<F> list) {
-        return ListUtils.mapList(list, valueFunc::map);
+    public FolderNode<N> createFileTree(Iterable<F> files) {
+        TreeState<N> state = new TreeState<>();
+        for (F file: files) {
+            addFile(state, file);
+        }
+        return state.root;
     }
 
-    private void addValuesToFolder(FolderNode<N> root,
-                                   String path,
-                                   List<N> values) {
-        FolderNode<N> parent = getNode(root, path);
-        parent.addFiles(values);
+    private void addFile(TreeState<N> state, F file) {
+        String path = pathFunc.map(file);
+        FolderNode<N> node;
+        //files of one folder usually go one after another
+        if (state.lastNode != null && path != null && path.equals(state.lastPath)) {
+            node = state.lastNode;
+        } else {
+            node = getNode(state, path);
+            state.lastPath = path;
+            state.lastNode = node;
+        }
+        node.addFile(valueFunc.map(file));
     }
 
-    private FolderNode<N> getNode(FolderNode<N> root, String path) {
+    private FolderNode<N> getNode(TreeState<N> state, String path) {
         if (TextUtils.isEmpty(path)) {
-            return root;
+            return state.root;
+        }
+        FolderNode<N> node = state.nodes.get(path);
+        if (node != null) {
+            return node;
+        }
+        int delimiterIndex = path.lastIndexOf('/');
+        FolderNode<N> parent;
+        String name;
+        if (delimiterIndex == -1) {
+            parent = state.root;
+            name = path;
+        } else {
+            parent = getNode(state, path.substring(0, delimiterIndex));
+            name = path.substring(delimiterIndex + 1);
         }
+        name = state.intern(name);
+        node = parent.getFolder(name);
+        if (node == null) {
+            node = new FolderNode<>(name);
+            parent.addFolder(node);
+        }
+        state.nodes.put(path, node);
+        return node;
+    }
+
+    private static class TreeState<N> {
+        final FolderNode<N> root = new FolderNode<>(null);
+        final Map<String, FolderNode<N>> nodes = new HashMap<>();
+        final Map<String, String> names = new HashMap<>();
 
-        FolderNode<N> target = root;
+        String lastPath;
+        FolderNode<N> lastNode;
 
-        String[] partialPaths = path.split("/");
-        for (String partialPath : partialPaths) {
-            FolderNode<N> child = target.getFolder(partialPath);
-            if (child == null) {
-                child = new FolderNode<>(partialPath);
-                target.addFolder(child);
+        String intern(String name) {
+            String existing = names.get(name);
+            if (existing == null) {
+                names.put(name, name);
+                return name;
             }
-            target = child;
+            return existing;
         }
-        return target;
     }
 
 }
@@ -0,0 +1,151 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.loudness
+
+import android.content.Context
+import android.media.AudioFormat
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.net.Uri
+import android.os.Build
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.CancellationException
+
+/**
+ * Decodes audio file and measures its replay gain with [LoudnessMeter].
+ */
+class LoudnessAnalyzer(private val context: Context) {
+
+    private var samples = FloatArray(INITIAL_SAMPLES_SIZE)
+
+    /**
+     * @return gain in dB to reach reference loudness or null if file has no audible audio
+     * @throws CancellationException if [isCancelled] returned true during decoding
+     */
+    fun measureGain(uri: Uri, isCancelled: () -> Boolean): Float? {
+        val extractor = MediaExtractor()
+        var codec: MediaCodec? = null
+        try {
+            extractor.setDataSource(context, uri, null)
+            val trackIndex = findAudioTrack(extractor) ?: return null
+            extractor.selectTrack(trackIndex)
+            val inputFormat = extractor.getTrackFormat(trackIndex)
+
+            codec = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME)!!)
+            codec.configure(inputFormat, null, null, 0)
+            codec.start()
+
+            val loudness = decode(extractor, codec, isCancelled) ?: return null
+            return (REFERENCE_LOUDNESS_LUFS - loudness).toFloat()
+        } finally {
+            codec?.release()
+            extractor.release()
+        }
+    }
+
+    private fun decode(
+        extractor: MediaExtractor,
+        codec: MediaCodec,
+        isCancelled: () -> Boolean
+    ): Double? {
+        val info = MediaCodec.BufferInfo()
+        var meter: LoudnessMeter? = null
+        var isFloat = false
+        var isInputEnded = false
+        while (true) {
+            if (isCancelled()) {
+                throw CancellationException()
+            }
+            if (!isInputEnded) {
+                val inputIndex = codec.dequeueInputBuffer(TIMEOUT_US)
+                if (inputIndex >= 0) {
+                    val inputBuffer = codec.getInputBuffer(inputIndex)!!
+                    val size = extractor.readSampleData(inputBuffer, 0)
+                    if (size < 0) {
+                        codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                        isInputEnded = true
+                    } else {
+                        codec.queueInputBuffer(inputIndex, 0, size, extractor.sampleTime, 0)
+                        extractor.advance()
+                    }
+                }
+            }
+
+            val outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US)
+            if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                val format = codec.outputFormat
+                meter = createMeter(format)
+                isFloat = isFloatEncoding(format)
+                continue
+            }
+            if (outputIndex < 0) {
+                continue
+            }
+            //decoder can skip format change event if output format is known from the start
+            if (meter == null) {
+                val format = codec.outputFormat
+                meter = createMeter(format)
+                isFloat = isFloatEncoding(format)
+            }
+            if (info.size > 0) {
+                val outputBuffer = codec.getOutputBuffer(outputIndex)!!
+                outputBuffer.position(info.offset)
+                outputBuffer.limit(info.offset + info.size)
+                addSamples(meter, outputBuffer.order(ByteOrder.nativeOrder()), isFloat)
+            }
+            codec.releaseOutputBuffer(outputIndex, false)
+            if (info.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) {
+                return meter.getIntegratedLoudness()
+            }
+        }
+    }
+
+    private fun addSamples(meter: LoudnessMeter, buffer: ByteBuffer, isFloat: Boolean) {
+        val count = if (isFloat) buffer.remaining() / 4 else buffer.remaining() / 2
+        if (samples.size < count) {
+            samples = FloatArray(count)
+        }
+        if (isFloat) {
+            buffer.asFloatBuffer().get(samples, 0, count)
+        } else {
+            val shorts = buffer.asShortBuffer()
+            for (i in 0 until count) {
+                samples[i] = shorts.get(i) / PCM_16BIT_SCALE
+            }
+        }
+        meter.addSamples(samples, count)
+    }
+
+    private fun createMeter(format: MediaFormat): LoudnessMeter {
+        return LoudnessMeter(
+            format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+            format.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+        )
+    }
+
+    private fun findAudioTrack(extractor: MediaExtractor): Int? {
+        for (i in 0 until extractor.trackCount) {
+            val mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME)
+            if (mime != null && mime.startsWith("audio/")) {
+                return i
+            }
+        }
+        return null
+    }
+
+    private fun isFloatEncoding(format: MediaFormat): Boolean {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                && format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                && format.getInteger(MediaFormat.KEY_PCM_ENCODING) == AudioFormat.ENCODING_PCM_FLOAT
+    }
+
+    private companion object {
+        //replay gain 2.0 reference level
+        const val REFERENCE_LOUDNESS_LUFS = -18.0
+
+        const val TIMEOUT_US = 10_000L
+        //~1 second of decoded stereo audio at 48kHz
+        const val INITIAL_SAMPLES_SIZE = 96_000
+        const val PCM_16BIT_SCALE = 32768f
+    }
+}
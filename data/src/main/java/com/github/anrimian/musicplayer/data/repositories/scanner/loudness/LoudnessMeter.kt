@@ -0,0 +1,160 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.loudness
+
+import kotlin.math.PI
+import kotlin.math.log10
+import kotlin.math.pow
+import kotlin.math.tan
+
+/**
+ * Integrated loudness of EBU R128 (ITU-R BS.1770): K-weighted mean square of 400ms blocks
+ * with 75% overlap, gated at -70 LUFS and at 10 LU below the ungated loudness.
+ *
+ * Blocks are built from 100ms sub-blocks, so each sample is filtered and summed once.
+ */
+class LoudnessMeter(sampleRate: Int, private val channelCount: Int) {
+
+    //high shelf of the head model and high pass stages of K-weighting, a0 is normalized to 1
+    private val shelf = DoubleArray(5)
+    private val highPass = DoubleArray(5)
+    //two state values of each stage for each channel
+    private val filterStates = DoubleArray(channelCount * 4)
+    private val channelWeights = DoubleArray(channelCount) { channel -> getChannelWeight(channel) }
+
+    private val subBlockFrames = sampleRate / SUB_BLOCKS_IN_SECOND
+    private var subBlockFrame = 0
+    private var subBlockChannel = 0
+    private var subBlockSum = 0.0
+    //sums of the last sub-blocks of the current block
+    private val subBlockSums = DoubleArray(SUB_BLOCKS_IN_BLOCK)
+    private var subBlocksCount = 0
+
+    private var blockEnergies = DoubleArray(INITIAL_BLOCKS_CAPACITY)
+    private var blocksCount = 0
+
+    init {
+        val k = tan(PI * SHELF_FREQUENCY / sampleRate)
+        val vh = 10.0.pow(SHELF_GAIN_DB / 20)
+        val vb = vh.pow(SHELF_VB_EXPONENT)
+        var a0 = 1 + k / SHELF_Q + k * k
+        shelf[0] = (vh + vb * k / SHELF_Q + k * k) / a0
+        shelf[1] = 2 * (k * k - vh) / a0
+        shelf[2] = (vh - vb * k / SHELF_Q + k * k) / a0
+        shelf[3] = 2 * (k * k - 1) / a0
+        shelf[4] = (1 - k / SHELF_Q + k * k) / a0
+
+        val kh = tan(PI * HIGH_PASS_FREQUENCY / sampleRate)
+        a0 = 1 + kh / HIGH_PASS_Q + kh * kh
+        highPass[0] = 1.0
+        highPass[1] = -2.0
+        highPass[2] = 1.0
+        highPass[3] = 2 * (kh * kh - 1) / a0
+        highPass[4] = (1 - kh / HIGH_PASS_Q + kh * kh) / a0
+    }
+
+    /**
+     * @param samples interleaved samples in -1..1 range
+     * @param count count of samples to take, of all channels
+     */
+    fun addSamples(samples: FloatArray, count: Int) {
+        for (i in 0 until count) {
+            val channel = subBlockChannel
+            val y = filter(samples[i].toDouble(), channel)
+            subBlockSum += channelWeights[channel] * y * y
+
+            if (++subBlockChannel == channelCount) {
+                subBlockChannel = 0
+                if (++subBlockFrame == subBlockFrames) {
+                    onSubBlockEnd()
+                }
+            }
+        }
+    }
+
+    /**
+     * @return loudness in LUFS or null if there is not enough audible audio
+     */
+    fun getIntegratedLoudness(): Double? {
+        val absoluteThreshold = toEnergy(ABSOLUTE_GATE_LUFS)
+        val ungatedEnergy = getMeanEnergy(absoluteThreshold) ?: return null
+        //relative gate is a ratio of energies
+        val relativeThreshold = ungatedEnergy * 10.0.pow(RELATIVE_GATE_LU / 10)
+        val gatedEnergy = getMeanEnergy(maxOf(absoluteThreshold, relativeThreshold)) ?: return null
+        return toLoudness(gatedEnergy)
+    }
+
+    private fun filter(x: Double, channel: Int): Double {
+        val state = channel * 4
+        //direct form II transposed
+        val s = shelf[0] * x + filterStates[state]
+        filterStates[state] = shelf[1] * x - shelf[3] * s + filterStates[state + 1]
+        filterStates[state + 1] = shelf[2] * x - shelf[4] * s
+
+        val y = highPass[0] * s + filterStates[state + 2]
+        filterStates[state + 2] = highPass[1] * s - highPass[3] * y + filterStates[state + 3]
+        filterStates[state + 3] = highPass[2] * s - highPass[4] * y
+        return y
+    }
+
+    private fun onSubBlockEnd() {
+        subBlockSums[subBlocksCount % SUB_BLOCKS_IN_BLOCK] = subBlockSum
+        subBlocksCount++
+        subBlockSum = 0.0
+        subBlockFrame = 0
+        if (subBlocksCount < SUB_BLOCKS_IN_BLOCK) {
+            return
+        }
+        if (blocksCount == blockEnergies.size) {
+            blockEnergies = blockEnergies.copyOf(blocksCount * 2)
+        }
+        blockEnergies[blocksCount++] = subBlockSums.sum() / (subBlockFrames * SUB_BLOCKS_IN_BLOCK)
+    }
+
+    private fun getMeanEnergy(threshold: Double): Double? {
+        var sum = 0.0
+        var count = 0
+        for (i in 0 until blocksCount) {
+            val energy = blockEnergies[i]
+            if (energy > threshold) {
+                sum += energy
+                count++
+            }
+        }
+        return if (count == 0) null else sum / count
+    }
+
+    //5.1 layout, surround channels are louder for listener and lfe is not counted
+    private fun getChannelWeight(channel: Int): Double {
+        if (channelCount != 6) {
+            return 1.0
+        }
+        return when (channel) {
+            3 -> 0.0
+            4, 5 -> SURROUND_CHANNEL_WEIGHT
+            else -> 1.0
+        }
+    }
+
+    private companion object {
+        const val SHELF_FREQUENCY = 1681.974450955533
+        const val SHELF_GAIN_DB = 3.999843853973347
+        const val SHELF_Q = 0.7071752369554196
+        const val SHELF_VB_EXPONENT = 0.4996667741545416
+        const val HIGH_PASS_FREQUENCY = 38.13547087602444
+        const val HIGH_PASS_Q = 0.5003270373238773
+
+        const val SURROUND_CHANNEL_WEIGHT = 1.41
+
+        const val SUB_BLOCKS_IN_SECOND = 10
+        const val SUB_BLOCKS_IN_BLOCK = 4
+        //~10 minutes of audio
+        const val INITIAL_BLOCKS_CAPACITY = 6000
+
+        const val LOUDNESS_OFFSET = -0.691
+        const val ABSOLUTE_GATE_LUFS = -70.0
+        const val RELATIVE_GATE_LU = -10.0
+
+        fun toLoudness(energy: Double) = LOUDNESS_OFFSET + 10 * log10(energy)
+
+        fun toEnergy(loudness: Double) = 10.0.pow((loudness - LOUDNESS_OFFSET) / 10)
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.loudness
+
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.models.composition.file.StorageCompositionSource
+import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics
+import com.github.anrimian.musicplayer.domain.models.player.modes.LoudnessNormalizationMode
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState
+import com.github.anrimian.musicplayer.domain.models.scanner.Idle
+import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
+import com.github.anrimian.musicplayer.domain.repositories.StorageSourceRepository
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Scheduler
+import io.reactivex.rxjava3.disposables.Disposable
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.util.concurrent.CancellationException
+
+/**
+ * Measures replay gain of library files without loudness tags, so they are normalized too.
+ * Runs while normalization is enabled and file scanner is idle, tags are read first.
+ * Files are decoded one by one on a low priority [scheduler] thread, with pauses between
+ * files during playback. Analysis in progress is cancelled when run conditions are lost.
+ */
+class LoudnessScanner(
+    private val compositionsDao: CompositionsDaoWrapper,
+    private val storageSourceRepository: StorageSourceRepository,
+    private val loudnessAnalyzer: LoudnessAnalyzer,
+    private val settingsRepository: SettingsRepository,
+    private val analytics: Analytics,
+    private val fileScannerStateObservable: Observable<FileScannerState>,
+    private val isPlaybackActive: () -> Boolean,
+    private val scheduler: Scheduler
+) {
+
+    private var scannerDisposable: Disposable? = null
+
+    @Synchronized
+    fun runLoudnessScanner() {
+        if (scannerDisposable != null) {
+            return
+        }
+        scannerDisposable = Observable.combineLatest(
+            settingsRepository.loudnessNormalizationModeObservable
+                .map { mode -> mode != LoudnessNormalizationMode.NONE },
+            fileScannerStateObservable.map { state -> state is Idle }
+        ) { isEnabled, isFileScannerIdle -> isEnabled && isFileScannerIdle }
+            .distinctUntilChanged()
+            //not observed on scheduler, so running analysis is cancelled without waiting for it
+            .switchMapCompletable { canRun ->
+                if (canRun) analyzeCompositions() else Completable.complete()
+            }
+            .subscribe()
+    }
+
+    private fun analyzeCompositions(): Completable {
+        return Completable.create { emitter ->
+            var lastId = 0L
+            while (!emitter.isDisposed) {
+                val ids = compositionsDao.selectCompositionsToAnalyze(lastId, BATCH_SIZE)
+                for (id in ids) {
+                    if (emitter.isDisposed) {
+                        return@create
+                    }
+                    //give player priority on storage reads
+                    if (isPlaybackActive()) {
+                        Thread.sleep(PLAYBACK_PAUSE_MILLIS)
+                    }
+                    analyzeComposition(id, emitter::isDisposed)
+                    lastId = id
+                }
+                if (ids.size < BATCH_SIZE) {
+                    break
+                }
+            }
+            emitter.onComplete()
+        }
+            .doOnError(this::processError)
+            .onErrorComplete()//represent db error, in this case stop until next run
+            .subscribeOn(scheduler)
+    }
+
+    private fun analyzeComposition(compositionId: Long, isCancelled: () -> Boolean) {
+        val source = storageSourceRepository.getStorageSource(compositionId)
+            .onErrorComplete()
+            .blockingGet() as? StorageCompositionSource ?: return
+        val gain = try {
+            loudnessAnalyzer.measureGain(source.uri, isCancelled)
+        } catch (e: CancellationException) {
+            return
+        } catch (e: FileNotFoundException) {
+            return//file can be available later
+        } catch (e: SecurityException) {
+            return
+        } catch (e: IOException) {
+            null//unsupported file
+        } catch (e: Exception) {
+            processError(e)
+            null
+        }
+        //files without audible audio or unreadable are kept as is and not analyzed again
+        compositionsDao.setAnalyzedGain(compositionId, gain ?: 0f)
+    }
+
+    private fun processError(throwable: Throwable) {
+        analytics.processNonFatalError(throwable)
+    }
+
+    private companion object {
+        const val BATCH_SIZE = 50
+        const val PLAYBACK_PAUSE_MILLIS = 1000L
+    }
+}
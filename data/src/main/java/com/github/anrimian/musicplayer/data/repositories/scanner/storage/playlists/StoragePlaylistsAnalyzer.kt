@@ -7,10 +7,12 @@ import com.github.anrimian.musicplayer.data.repositories.scanner.storage.playlis
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.AppPlayList
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayList
 import com.github.anrimian.musicplayer.data.storage.providers.playlists.StoragePlayListsProvider
+import com.github.anrimian.musicplayer.data.utils.collections.SortedKeysDiff
 import com.github.anrimian.musicplayer.domain.utils.DateUtils
 import com.github.anrimian.musicplayer.domain.utils.ListUtils
 import com.github.anrimian.musicplayer.domain.utils.Objects
-import com.github.anrimian.musicplayer.domain.utils.mergeMaps
+import java.util.SortedMap
+import java.util.TreeMap
 
 
 /**
@@ -88,17 +90,11 @@ class StoragePlaylistsAnalyzer(
         outNewCachePlaylists: ArrayList<AppPlayList>,
         outUpdateDbPlaylists: ArrayList<Pair<AppPlayList, PlayListFile>>,
     ) {
-        val dbPlayListsMap = ListUtils.mapToMap(
-            dbPlayLists,
-            HashMap(),
-            AppPlayList::getName
-        )
-        val cachePlayListsMap = ListUtils.mapToMap(
-            cachedPlayLists,
-            HashMap(),
-            PlayListFile::name
-        )
-        mergeMaps(
+        val dbPlayListsMap = TreeMap<String, AppPlayList>()
+        ListUtils.mapToMap(dbPlayLists, dbPlayListsMap, AppPlayList::getName)
+        val cachePlayListsMap = TreeMap<String, PlayListFile>()
+        ListUtils.mapToMap(cachedPlayLists, cachePlayListsMap, PlayListFile::name)
+        mergeSortedMaps(
             dbPlayListsMap,
             cachePlayListsMap,
             outNewCachePlaylists::add,
@@ -119,14 +115,12 @@ class StoragePlaylistsAnalyzer(
         dbPlayLists: List<AppPlayList>,
         outNewDbPlaylists: ArrayList<StoragePlayList>
     ) {
-        val dbPlayListsMap = ListUtils.mapToMap(
-            dbPlayLists,
-            HashMap(),
-            AppPlayList::getName
-        )
-        mergeMaps(
+        val dbPlayListsMap = TreeMap<String, AppPlayList>()
+        ListUtils.mapToMap(dbPlayLists, dbPlayListsMap, AppPlayList::getName)
+        val storagePlayListsMap = TreeMap(storagePlayLists)
+        mergeSortedMaps(
             dbPlayListsMap,
-            storagePlayLists,
+            storagePlayListsMap,
             {},
             outNewDbPlaylists::add,
             ::hasActualChanges,
@@ -136,6 +130,53 @@ class StoragePlaylistsAnalyzer(
         )
     }
 
+    /**
+     * Same as [com.github.anrimian.musicplayer.domain.utils.mergeMaps],
+     * but finds difference of maps sorted by name in one merge pass
+     */
+    private inline fun <V1, V2> mergeSortedMaps(
+        firstMap: SortedMap<String, V1>,
+        secondMap: SortedMap<String, V2>,
+        onSecondEntryAdded: (V1) -> Unit,
+        onFirstEntryAdded: (V2) -> Unit,
+        crossinline hasChanges: (V1, V2) -> Boolean,
+        isFirstEntryMoreActual: (V1, V2) -> Boolean,
+        onFirstEntryModified: (old: V1, new: V2) -> Unit,
+        onSecondEntryModified: (old: V2, new: V1) -> Unit,
+    ) {
+        val firstValues = ArrayList(firstMap.values)
+        val secondValues = ArrayList(secondMap.values)
+        val diff = SortedKeysDiff.diff(
+            ArrayList(firstMap.keys),
+            ArrayList(secondMap.keys),
+            naturalOrder()
+        ) { firstIndex, secondIndex -> hasChanges(firstValues[firstIndex], secondValues[secondIndex]) }
+
+        for (range in 0 until diff.removedRangesCount) {
+            for (i in diff.getRemovedStart(range) until diff.getRemovedEnd(range)) {
+                onSecondEntryAdded(firstValues[i])
+            }
+        }
+        for (range in 0 until diff.addedRangesCount) {
+            for (i in diff.getAddedStart(range) until diff.getAddedEnd(range)) {
+                onFirstEntryAdded(secondValues[i])
+            }
+        }
+        for (range in 0 until diff.changedRangesCount) {
+            val firstStart = diff.getChangedOldStart(range)
+            val secondStart = diff.getChangedNewStart(range)
+            for (i in 0 until diff.getChangedCount(range)) {
+                val firstValue = firstValues[firstStart + i]
+                val secondValue = secondValues[secondStart + i]
+                if (isFirstEntryMoreActual(firstValue, secondValue)) {
+                    onSecondEntryModified(secondValue, firstValue)
+                } else {
+                    onFirstEntryModified(firstValue, secondValue)
+                }
+            }
+        }
+    }
+
     private fun hasActualChanges(first: AppPlayList, second: StoragePlayList): Boolean {
         return !Objects.equals(first.name, second.name)
                 && DateUtils.isAfter(first.dateModified, second.dateModified)
@@ -14,6 +14,7 @@ import com.github.anrimian.musicplayer.domain.models.order.Order;
 import com.github.anrimian.musicplayer.domain.models.order.OrderType;
 import com.github.anrimian.musicplayer.domain.models.player.MediaPlayers;
 import com.github.anrimian.musicplayer.domain.models.player.SoundBalance;
+import com.github.anrimian.musicplayer.domain.models.player.modes.LoudnessNormalizationMode;
 import com.github.anrimian.musicplayer.domain.models.player.modes.RepeatMode;
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository;
 
@@ -67,6 +68,10 @@ public class SettingsRepositoryImpl implements SettingsRepository {
 
     private static final String BLUETOOTH_CONNECT_AUTO_PLAY_DELAY = "bluetooth_connect_auto_play_delay";
 
+    private static final String NEXT_SOURCE_PREPARE_TIME = "next_source_prepare_time";
+    private static final String CROSSFADE_TIME = "crossfade_time";
+    private static final String LOUDNESS_NORMALIZATION_MODE = "loudness_normalization_mode";
+
     private final BehaviorSubject<Integer> repeatModeSubject = BehaviorSubject.create();
     private final BehaviorSubject<Boolean> randomModeSubject = BehaviorSubject.create();
     private final BehaviorSubject<Order> compositionsOrderSubject = BehaviorSubject.create();
@@ -88,6 +93,7 @@ public class SettingsRepositoryImpl implements SettingsRepository {
     private final BehaviorSubject<Long> audioFileMinDurationSubject = BehaviorSubject.create();
 
     private final BehaviorSubject<Integer> externalPlayerRepeatModeSubject = BehaviorSubject.create();
+    private final BehaviorSubject<Integer> loudnessNormalizationModeSubject = BehaviorSubject.create();
 
     private final SharedPreferencesHelper preferences;
 
@@ -586,6 +592,42 @@ public class SettingsRepositoryImpl implements SettingsRepository {
         preferences.putLong(BLUETOOTH_CONNECT_AUTO_PLAY_DELAY, millis);
     }
 
+    @Override
+    public long getNextSourcePrepareTime() {
+        return preferences.getLong(NEXT_SOURCE_PREPARE_TIME, 10000);
+    }
+
+    @Override
+    public void setNextSourcePrepareTime(long millis) {
+        preferences.putLong(NEXT_SOURCE_PREPARE_TIME, millis);
+    }
+
+    @Override
+    public long getCrossfadeTime() {
+        return preferences.getLong(CROSSFADE_TIME, 0);
+    }
+
+    @Override
+    public void setCrossfadeTime(long millis) {
+        preferences.putLong(CROSSFADE_TIME, millis);
+    }
+
+    @Override
+    public int getLoudnessNormalizationMode() {
+        return preferences.getInt(LOUDNESS_NORMALIZATION_MODE, LoudnessNormalizationMode.NONE);
+    }
+
+    @Override
+    public Observable<Integer> getLoudnessNormalizationModeObservable() {
+        return withDefaultValue(loudnessNormalizationModeSubject, this::getLoudnessNormalizationMode);
+    }
+
+    @Override
+    public void setLoudnessNormalizationMode(int mode) {
+        preferences.putInt(LOUDNESS_NORMALIZATION_MODE, mode);
+        loudnessNormalizationModeSubject.onNext(mode);
+    }
+
     private Order orderFromInt(int order) {
         boolean reversed = false;
         if (order % 2 == 0) {
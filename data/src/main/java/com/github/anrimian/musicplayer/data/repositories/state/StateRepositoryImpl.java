@@ -3,6 +3,7 @@ package com.github.anrimian.musicplayer.data.repositories.state;
 import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.IS_STORAGE_PLAYLISTS_IMPORTED;
 import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.LAST_COMPLETE_SCAN_TIME;
 import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.LAST_FILE_SCANNER_VERSION;
+import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.MEDIA_STORE_WATERMARK;
 import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.PREFERENCES_NAME;
 import static com.github.anrimian.musicplayer.data.repositories.state.StateRepositoryImpl.Constants.ROOT_FOLDER_PATH;
 
@@ -22,6 +23,7 @@ public class StateRepositoryImpl implements StateRepository {
         String LAST_FILE_SCANNER_VERSION = "last_file_scanner_version";
         String LAST_COMPLETE_SCAN_TIME = "last_complete_scan_time";
         String IS_STORAGE_PLAYLISTS_IMPORTED = "is_storage_playlists_imported";
+        String MEDIA_STORE_WATERMARK = "media_store_watermark";
     }
 
     private final SharedPreferencesHelper preferences;
@@ -50,7 +52,7 @@ public class StateRepositoryImpl implements StateRepository {
 
     @Override
     public int getCurrentFileScannerVersion() {
-        return 7;
+        return 8;
     }
 
     @Override
@@ -83,4 +85,14 @@ public class StateRepositoryImpl implements StateRepository {
         preferences.putBoolean(IS_STORAGE_PLAYLISTS_IMPORTED, isImported);
     }
 
+    @Override
+    public String getMediaStoreWatermark() {
+        return preferences.getString(MEDIA_STORE_WATERMARK);
+    }
+
+    @Override
+    public void setMediaStoreWatermark(String watermark) {
+        preferences.putString(MEDIA_STORE_WATERMARK, watermark);
+    }
+
 }
@@ -0,0 +1,187 @@
+package com.github.anrimian.musicplayer.data.storage.providers.music;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Position in media store from which the next incremental read can be started.
+ * On android 11+ it is a generation counter per volume, on older versions it is
+ * the highest seen modify date and id.
+ */
+public class MediaStoreWatermark {
+
+    private static final char ENTRY_DIVIDER = ';';
+    private static final char FIELD_DIVIDER = '|';
+
+    @Nonnull
+    private final String filterKey;
+    @Nonnull
+    private final Map<String, VolumeWatermark> volumes;
+
+    MediaStoreWatermark(@Nonnull String filterKey, @Nonnull Map<String, VolumeWatermark> volumes) {
+        this.filterKey = filterKey;
+        this.volumes = volumes;
+    }
+
+    public static String createFilterKey(long minAudioDurationMillis, boolean showAllAudioFiles) {
+        return minAudioDurationMillis + ":" + showAllAudioFiles;
+    }
+
+    @Nullable
+    public static MediaStoreWatermark parse(@Nullable String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String[] entries = value.split(String.valueOf(ENTRY_DIVIDER), -1);
+        Map<String, VolumeWatermark> volumes = new LinkedHashMap<>();
+        try {
+            for (int i = 1; i < entries.length; i++) {
+                String[] fields = entries[i].split("\\" + FIELD_DIVIDER, -1);
+                if (fields.length != 5) {
+                    return null;
+                }
+                String version = fields[1].isEmpty() ? null : fields[1];
+                volumes.put(fields[0], new VolumeWatermark(
+                        version,
+                        Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]),
+                        Long.parseLong(fields[4])
+                ));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new MediaStoreWatermark(entries[0], volumes);
+    }
+
+    public boolean hasSameFilter(long minAudioDurationMillis, boolean showAllAudioFiles) {
+        return filterKey.equals(createFilterKey(minAudioDurationMillis, showAllAudioFiles));
+    }
+
+    @Nullable
+    VolumeWatermark getVolume(String volumeName) {
+        return volumes.get(volumeName);
+    }
+
+    int getVolumesCount() {
+        return volumes.size();
+    }
+
+    @Nonnull
+    public String serialize() {
+        StringBuilder sb = new StringBuilder(filterKey);
+        for (Map.Entry<String, VolumeWatermark> entry: volumes.entrySet()) {
+            VolumeWatermark volume = entry.getValue();
+            sb.append(ENTRY_DIVIDER)
+                    .append(entry.getKey())
+                    .append(FIELD_DIVIDER)
+                    .append(volume.version == null ? "" : volume.version)
+                    .append(FIELD_DIVIDER)
+                    .append(volume.generation)
+                    .append(FIELD_DIVIDER)
+                    .append(volume.maxDateModified)
+                    .append(FIELD_DIVIDER)
+                    .append(volume.maxId);
+        }
+        return sb.toString();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MediaStoreWatermark{" + serialize() + '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MediaStoreWatermark that = (MediaStoreWatermark) o;
+        return filterKey.equals(that.filterKey) && volumes.equals(that.volumes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filterKey, volumes);
+    }
+
+    static class VolumeWatermark {
+
+        @Nullable
+        final String version;
+        final long generation;
+        final long maxDateModified;
+        final long maxId;
+
+        VolumeWatermark(@Nullable String version,
+                        long generation,
+                        long maxDateModified,
+                        long maxId) {
+            this.version = version;
+            this.generation = generation;
+            this.maxDateModified = maxDateModified;
+            this.maxId = maxId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            VolumeWatermark that = (VolumeWatermark) o;
+            return generation == that.generation
+                    && maxDateModified == that.maxDateModified
+                    && maxId == that.maxId
+                    && Objects.equals(version, that.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(version, generation, maxDateModified, maxId);
+        }
+    }
+
+    /**
+     * Collects watermark values while media store rows are read.
+     */
+    public static class Builder {
+
+        private final String filterKey;
+        private final Map<String, VolumeWatermark> volumes = new LinkedHashMap<>();
+
+        public Builder(long minAudioDurationMillis, boolean showAllAudioFiles) {
+            this.filterKey = createFilterKey(minAudioDurationMillis, showAllAudioFiles);
+        }
+
+        void putGeneration(String volumeName, @Nullable String version, long generation) {
+            volumes.put(volumeName, new VolumeWatermark(version, generation, 0, 0));
+        }
+
+        void putMaxValues(String volumeName, long dateModified, long id) {
+            VolumeWatermark current = volumes.get(volumeName);
+            if (current == null) {
+                volumes.put(volumeName, new VolumeWatermark(null, 0, dateModified, id));
+                return;
+            }
+            if (dateModified <= current.maxDateModified && id <= current.maxId) {
+                return;
+            }
+            volumes.put(volumeName, new VolumeWatermark(
+                    current.version,
+                    current.generation,
+                    Math.max(current.maxDateModified, dateModified),
+                    Math.max(current.maxId, id)
+            ));
+        }
+
+        @Nonnull
+        public MediaStoreWatermark build() {
+            return new MediaStoreWatermark(filterKey, new LinkedHashMap<>(volumes));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.anrimian.musicplayer.data.storage.providers.music;
+
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource;
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSourceKt;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Columnar snapshot of compositions linked to media storage, sorted by storage id.
+ * Equal names and paths share string instances, {@link StorageComposition} objects
+ * are created only on request.
+ */
+public class StorageCompositionsTable {
+
+    private static final long NO_FOLDER = 0;
+
+    private final int size;
+    private final long[] storageIds;
+    private final long[] ids;
+    private final String[] titles;
+    private final String[] fileNames;
+    private final String[] parentPaths;
+    private final String[] artists;
+    private final String[] albums;
+    private final String[] albumArtists;
+    private final long[] durations;
+    private final long[] sizes;
+    private final int[] initialSources;
+    private final long[] folderIds;
+    private final long[] datesAdded;
+    private final long[] datesModified;
+    private final long[] lastScanDates;
+
+    private StorageCompositionsTable(Builder builder) {
+        size = builder.size;
+        storageIds = Arrays.copyOf(builder.storageIds, size);
+        ids = Arrays.copyOf(builder.ids, size);
+        titles = Arrays.copyOf(builder.titles, size);
+        fileNames = Arrays.copyOf(builder.fileNames, size);
+        parentPaths = Arrays.copyOf(builder.parentPaths, size);
+        artists = Arrays.copyOf(builder.artists, size);
+        albums = Arrays.copyOf(builder.albums, size);
+        albumArtists = Arrays.copyOf(builder.albumArtists, size);
+        durations = Arrays.copyOf(builder.durations, size);
+        sizes = Arrays.copyOf(builder.sizes, size);
+        initialSources = Arrays.copyOf(builder.initialSources, size);
+        folderIds = Arrays.copyOf(builder.folderIds, size);
+        datesAdded = Arrays.copyOf(builder.datesAdded, size);
+        datesModified = Arrays.copyOf(builder.datesModified, size);
+        lastScanDates = Arrays.copyOf(builder.lastScanDates, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return sorted storage ids, array must not be modified
+     */
+    public long[] getStorageIds() {
+        return storageIds;
+    }
+
+    /**
+     * @return index of composition or negative value if not found
+     */
+    public int indexOf(long storageId) {
+        return Arrays.binarySearch(storageIds, storageId);
+    }
+
+    public long getStorageId(int index) {
+        return storageIds[index];
+    }
+
+    @Nullable
+    public String getTitle(int index) {
+        return titles[index];
+    }
+
+    @Nonnull
+    public String getFileName(int index) {
+        return fileNames[index];
+    }
+
+    @Nonnull
+    public String getParentPath(int index) {
+        return parentPaths[index];
+    }
+
+    @Nullable
+    public String getArtist(int index) {
+        return artists[index];
+    }
+
+    @Nullable
+    public String getAlbum(int index) {
+        return albums[index];
+    }
+
+    @Nullable
+    public String getAlbumArtist(int index) {
+        return albumArtists[index];
+    }
+
+    public long getDuration(int index) {
+        return durations[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getDateModified(int index) {
+        return datesModified[index];
+    }
+
+    public long getLastScanDate(int index) {
+        return lastScanDates[index];
+    }
+
+    @Nonnull
+    public StorageComposition get(int index) {
+        long folderId = folderIds[index];
+        return new StorageComposition(artists[index],
+                albumArtists[index],
+                titles[index],
+                fileNames[index],
+                albums[index],
+                parentPaths[index],
+                durations[index],
+                sizes[index],
+                ids[index],
+                storageIds[index],
+                InitialSourceKt.fromId(initialSources[index]),
+                folderId == NO_FOLDER ? null : folderId,
+                new Date(datesAdded[index]),
+                new Date(datesModified[index]),
+                new Date(lastScanDates[index]));
+    }
+
+    /**
+     * Rows must be added in storage id order, a row with the same storage id replaces previous one.
+     */
+    public static class Builder {
+
+        private int size;
+        private long[] storageIds;
+        private long[] ids;
+        private String[] titles;
+        private String[] fileNames;
+        private String[] parentPaths;
+        private String[] artists;
+        private String[] albums;
+        private String[] albumArtists;
+        private long[] durations;
+        private long[] sizes;
+        private int[] initialSources;
+        private long[] folderIds;
+        private long[] datesAdded;
+        private long[] datesModified;
+        private long[] lastScanDates;
+
+        public Builder(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            storageIds = new long[capacity];
+            ids = new long[capacity];
+            titles = new String[capacity];
+            fileNames = new String[capacity];
+            parentPaths = new String[capacity];
+            artists = new String[capacity];
+            albums = new String[capacity];
+            albumArtists = new String[capacity];
+            durations = new long[capacity];
+            sizes = new long[capacity];
+            initialSources = new int[capacity];
+            folderIds = new long[capacity];
+            datesAdded = new long[capacity];
+            datesModified = new long[capacity];
+            lastScanDates = new long[capacity];
+        }
+
+        public void add(long storageId,
+                        long id,
+                        @Nullable String title,
+                        @Nonnull String fileName,
+                        @Nonnull String parentPath,
+                        @Nullable String artist,
+                        @Nullable String album,
+                        @Nullable String albumArtist,
+                        long duration,
+                        long fileSize,
+                        InitialSource initialSource,
+                        @Nullable Long folderId,
+                        long dateAdded,
+                        long dateModified,
+                        long lastScanDate) {
+            int i;
+            if (size > 0 && storageIds[size - 1] == storageId) {
+                //storage id is not unique in database, keep the last row as map would do
+                i = size - 1;
+            } else {
+                if (size > 0 && storageIds[size - 1] > storageId) {
+                    throw new IllegalArgumentException("rows must be sorted by storage id");
+                }
+                if (size == storageIds.length) {
+                    grow();
+                }
+                i = size++;
+            }
+            storageIds[i] = storageId;
+            ids[i] = id;
+            titles[i] = title;
+            fileNames[i] = fileName;
+            parentPaths[i] = parentPath;
+            artists[i] = artist;
+            albums[i] = album;
+            albumArtists[i] = albumArtist;
+            durations[i] = duration;
+            sizes[i] = fileSize;
+            initialSources[i] = initialSource.getId();
+            folderIds[i] = folderId == null ? NO_FOLDER : folderId;
+            datesAdded[i] = dateAdded;
+            datesModified[i] = dateModified;
+            lastScanDates[i] = lastScanDate;
+        }
+
+        public StorageCompositionsTable build() {
+            return new StorageCompositionsTable(this);
+        }
+
+        private void grow() {
+            int capacity = storageIds.length * 2;
+            storageIds = Arrays.copyOf(storageIds, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            fileNames = Arrays.copyOf(fileNames, capacity);
+            parentPaths = Arrays.copyOf(parentPaths, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            albums = Arrays.copyOf(albums, capacity);
+            albumArtists = Arrays.copyOf(albumArtists, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            initialSources = Arrays.copyOf(initialSources, capacity);
+            folderIds = Arrays.copyOf(folderIds, capacity);
+            datesAdded = Arrays.copyOf(datesAdded, capacity);
+            datesModified = Arrays.copyOf(datesModified, capacity);
+            lastScanDates = Arrays.copyOf(lastScanDates, capacity);
+        }
+    }
+}
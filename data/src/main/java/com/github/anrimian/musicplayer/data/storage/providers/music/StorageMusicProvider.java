@@ -48,19 +48,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Observable;
-import io.reactivex.rxjava3.core.Single;
 
 public class StorageMusicProvider {
 
+    private static final String EXTERNAL_VOLUME_NAME = "external";
+
     private final ContentResolver contentResolver;
     private final Context context;
     private final StorageAlbumsProvider albumsProvider;
@@ -82,10 +83,7 @@ public class StorageMusicProvider {
         isContentObserverEnabled = enabled;
     }
 
-    public Observable<LongSparseArray<StorageFullComposition>> getCompositionsObservable(
-            long minAudioDurationMillis,
-            boolean showAllAudioFiles
-    ) {
+    public Observable<Object> getStorageChangesObservable() {
         Observable<Object> storageChangeObservable = RxContentObserver.getObservable(contentResolver, unsafeGetStorageUri());
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
             //on new composition content observer not called on android 10
@@ -96,12 +94,9 @@ public class StorageMusicProvider {
                     contentResolver,
                     MediaStore.Audio.Playlists.Members.getContentUri("external", 0)
             );
-            //maybe filter often events?
             storageChangeObservable = Observable.merge(storageChangeObservable, playListChangeObservable);
         }
-        return storageChangeObservable
-                .filter(o -> isContentObserverEnabled)
-                .flatMapSingle(o -> getCompositionsSingle(minAudioDurationMillis, showAllAudioFiles));
+        return storageChangeObservable.filter(o -> isContentObserverEnabled);
     }
 
     @Nullable
@@ -109,107 +104,150 @@ public class StorageMusicProvider {
             long minAudioDurationMillis,
             boolean showAllAudioFiles
     ) {
-        StringArrayBuilder queryBuilder = new StringArrayBuilder(new String[] {
-                Media.ARTIST,
-                Media.TITLE,
-                Media.DISPLAY_NAME,
-                Media.DURATION,
-                Media.SIZE,
-                Media._ID,
-                Media.ALBUM_ID,
-                Media.DATE_ADDED,
-                Media.DATE_MODIFIED
-        });
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            queryBuilder.append(Media.RELATIVE_PATH);
-        } else {
-            queryBuilder.append(Media.DATA);
-        }
-        String[] query = queryBuilder.build();
+        return getCompositions(minAudioDurationMillis, showAllAudioFiles, null);
+    }
 
-        //check how it works
-        List<Uri> uris = getStorageUris();
-        if (uris.isEmpty()) {
+    /**
+     * Reads all compositions. If watermark builder is passed, it receives position from which
+     * the next call of {@link #getChangedCompositions} can be started.
+     */
+    @Nullable
+    public LongSparseArray<StorageFullComposition> getCompositions(
+            long minAudioDurationMillis,
+            boolean showAllAudioFiles,
+            @Nullable MediaStoreWatermark.Builder watermarkBuilder
+    ) {
+        List<String> volumes = getStorageVolumes();
+        if (volumes.isEmpty()) {
             return null;
         }
+        if (watermarkBuilder != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            for (String volume: volumes) {
+                putVolumeGeneration(volume, MediaStore.getVersion(context, volume), watermarkBuilder);
+            }
+        }
 
-//        Uri uri;
-//        try {
-//            uri = getStorageUri();//try to select all uri's from all available volumes
-//        } catch (UnavailableMediaStoreException e) {
-//            return null;
-//        }
+        String selection = getCompositionsSelection(showAllAudioFiles);
+        String[] selectionArgs = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-        StringBuilder selectionBuilder = new StringBuilder();
-        //also display unsupported or corrupted compositions
-        selectionBuilder.append("(" + Media.DURATION + " >= ? OR " + Media.DURATION + " IS NULL)");
-        if (!showAllAudioFiles) {
-            selectionBuilder.append(" AND ");
-            selectionBuilder.append(Media.IS_MUSIC);
-            selectionBuilder.append(" = ?");
+        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
+        LongSparseArray<StorageAlbum> albums = null;
+        for (String volume: volumes) {
+            albums = readCompositions(volume,
+                    selection,
+                    selectionArgs,
+                    albums,
+                    compositions,
+                    watermarkBuilder);
         }
+        return compositions;
+    }
 
-        String selection = selectionBuilder.toString();
-        String[] projection;
-        if (showAllAudioFiles) {
-            projection = new String[] { String.valueOf(minAudioDurationMillis) };
-        } else {
-            projection = new String[] { String.valueOf(minAudioDurationMillis), String.valueOf(1) };
+    /**
+     * Reads only compositions which were added or modified after the given watermark.
+     *
+     * @return changed compositions or null if the watermark is not applicable anymore
+     * (media store was recreated, storage volumes were changed) and full read is required
+     */
+    @Nullable
+    public LongSparseArray<StorageFullComposition> getChangedCompositions(
+            long minAudioDurationMillis,
+            boolean showAllAudioFiles,
+            MediaStoreWatermark watermark,
+            MediaStoreWatermark.Builder watermarkBuilder
+    ) {
+        if (!watermark.hasSameFilter(minAudioDurationMillis, showAllAudioFiles)) {
+            return null;
         }
-
-        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
-        for (Uri uri: uris) {
-            try (Cursor cursor = query(uri, query, selection, projection, null)) {
-                if (cursor == null) {
-                    continue;
+        List<String> volumes = getStorageVolumes();
+        if (volumes.isEmpty() || volumes.size() != watermark.getVolumesCount()) {
+            return null;
+        }
+        for (String volume: volumes) {
+            MediaStoreWatermark.VolumeWatermark volumeWatermark = watermark.getVolume(volume);
+            if (volumeWatermark == null) {
+                return null;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                String version = MediaStore.getVersion(context, volume);
+                if (!version.equals(volumeWatermark.version)) {
+                    return null;
                 }
+                putVolumeGeneration(volume, version, watermarkBuilder);
+            }
+        }
+
+        String selection = getCompositionsSelection(showAllAudioFiles);
+        String[] selectionArgs = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-                LongSparseArray<StorageAlbum> albums = albumsProvider.getAlbums();
+        LongSparseArray<StorageFullComposition> compositions = new LongSparseArray<>();
+        LongSparseArray<StorageAlbum> albums = null;
+        for (String volume: volumes) {
+            MediaStoreWatermark.VolumeWatermark volumeWatermark = watermark.getVolume(volume);
+            StringArrayBuilder argsBuilder = new StringArrayBuilder(selectionArgs);
+            String changesSelection;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                changesSelection = selection + " AND " + MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+                argsBuilder.append(String.valueOf(volumeWatermark.generation));
+            } else {
+                //date modified has seconds precision, so re-read items from the last second too
+                changesSelection = selection
+                        + " AND (" + Media.DATE_MODIFIED + " >= ? OR " + Media._ID + " > ?)";
+                argsBuilder.append(String.valueOf(volumeWatermark.maxDateModified));
+                argsBuilder.append(String.valueOf(volumeWatermark.maxId));
+                watermarkBuilder.putMaxValues(volume,
+                        volumeWatermark.maxDateModified,
+                        volumeWatermark.maxId);
+            }
+            albums = readCompositions(volume,
+                    changesSelection,
+                    argsBuilder.build(),
+                    albums,
+                    compositions,
+                    watermarkBuilder);
+        }
+        return compositions;
+    }
 
-                CursorWrapper cursorWrapper = new CursorWrapper(cursor);
+    /**
+     * Cheap read of media store ids only, used to find deleted compositions.
+     *
+     * @return sorted ids of all compositions or null if media store is not available
+     */
+    @Nullable
+    public long[] getCompositionIds(long minAudioDurationMillis, boolean showAllAudioFiles) {
+        List<String> volumes = getStorageVolumes();
+        if (volumes.isEmpty()) {
+            return null;
+        }
+        String[] query = { Media._ID };
+        String selection = getCompositionsSelection(showAllAudioFiles);
+        String[] selectionArgs = getCompositionsSelectionArgs(minAudioDurationMillis, showAllAudioFiles);
 
-                int artistIndex = getColumnIndex(cursor, Media.ARTIST);
-                int titleIndex = getColumnIndex(cursor, Media.TITLE);
-                int relativePathIndex = -1;
-                int filePathIndex = -1;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-                    relativePathIndex = getColumnIndex(cursor, Media.RELATIVE_PATH);
-                } else {
-                    filePathIndex = getColumnIndex(cursor, Media.DATA);
+        long[] ids = new long[0];
+        int count = 0;
+        for (String volume: volumes) {
+            try (Cursor cursor = query(getStorageUri(volume), query, selection, selectionArgs, null)) {
+                if (cursor == null) {
+                    continue;
                 }
-                int displayNameIndex = getColumnIndex(cursor, Media.DISPLAY_NAME);
-                int durationIndex = getColumnIndex(cursor, Media.DURATION);
-                int sizeIndex = getColumnIndex(cursor, Media.SIZE);
                 int idIndex = getColumnIndex(cursor, Media._ID);
-                int albumIdIndex = getColumnIndex(cursor, Media.ALBUM_ID);
-                int dateAddedIndex = getColumnIndex(cursor, Media.DATE_ADDED);
-                int dateModifiedIndex = getColumnIndex(cursor, Media.DATE_MODIFIED);
-
-                LongSparseArray<StorageFullComposition> volumeCompositions = new LongSparseArray<>(cursor.getCount());
+                if (ids.length < count + cursor.getCount()) {
+                    ids = Arrays.copyOf(ids, count + cursor.getCount());
+                }
                 while (MediaStoreUtils.moveToNext(cursor)) {
-                    StorageFullComposition composition = buildStorageComposition(
-                            artistIndex,
-                            titleIndex,
-                            relativePathIndex,
-                            filePathIndex,
-                            displayNameIndex,
-                            durationIndex,
-                            sizeIndex,
-                            idIndex,
-                            albumIdIndex,
-                            dateAddedIndex,
-                            dateModifiedIndex,
-                            cursorWrapper,
-                            albums
-                    );
-                    if (composition != null) {
-                        volumeCompositions.put(composition.getStorageId(), composition);
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2 + 1);
                     }
+                    ids[count++] = cursor.getLong(idIndex);
                 }
-                compositions.putAll(volumeCompositions);
             }
         }
-        return compositions;
+        if (count != ids.length) {
+            ids = Arrays.copyOf(ids, count);
+        }
+        Arrays.sort(ids);
+        return ids;
     }
 
     @Nullable
@@ -636,19 +674,122 @@ public class StorageMusicProvider {
         return uri;
     }
 
-    private Single<LongSparseArray<StorageFullComposition>> getCompositionsSingle(
-            long minAudioDurationMillis,
-            boolean showAllAudioFiles
+    private LongSparseArray<StorageAlbum> readCompositions(
+            String volume,
+            String selection,
+            String[] selectionArgs,
+            @Nullable LongSparseArray<StorageAlbum> albums,
+            LongSparseArray<StorageFullComposition> result,
+            @Nullable MediaStoreWatermark.Builder watermarkBuilder
     ) {
-        return Single.create(emitter -> {
-            LongSparseArray<StorageFullComposition> compositions = getCompositions(
-                    minAudioDurationMillis,
-                    showAllAudioFiles
-            );
-            if (compositions != null) {
-                emitter.onSuccess(compositions);
-            }
+        StringArrayBuilder queryBuilder = new StringArrayBuilder(new String[] {
+                Media.ARTIST,
+                Media.TITLE,
+                Media.DISPLAY_NAME,
+                Media.DURATION,
+                Media.SIZE,
+                Media._ID,
+                Media.ALBUM_ID,
+                Media.DATE_ADDED,
+                Media.DATE_MODIFIED
         });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            queryBuilder.append(Media.RELATIVE_PATH);
+        } else {
+            queryBuilder.append(Media.DATA);
+        }
+        String[] query = queryBuilder.build();
+
+        try (Cursor cursor = query(getStorageUri(volume), query, selection, selectionArgs, null)) {
+            if (cursor == null) {
+                return albums;
+            }
+
+            if (albums == null) {
+                albums = albumsProvider.getAlbums();
+            }
+
+            CursorWrapper cursorWrapper = new CursorWrapper(cursor);
+
+            int artistIndex = getColumnIndex(cursor, Media.ARTIST);
+            int titleIndex = getColumnIndex(cursor, Media.TITLE);
+            int relativePathIndex = -1;
+            int filePathIndex = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                relativePathIndex = getColumnIndex(cursor, Media.RELATIVE_PATH);
+            } else {
+                filePathIndex = getColumnIndex(cursor, Media.DATA);
+            }
+            int displayNameIndex = getColumnIndex(cursor, Media.DISPLAY_NAME);
+            int durationIndex = getColumnIndex(cursor, Media.DURATION);
+            int sizeIndex = getColumnIndex(cursor, Media.SIZE);
+            int idIndex = getColumnIndex(cursor, Media._ID);
+            int albumIdIndex = getColumnIndex(cursor, Media.ALBUM_ID);
+            int dateAddedIndex = getColumnIndex(cursor, Media.DATE_ADDED);
+            int dateModifiedIndex = getColumnIndex(cursor, Media.DATE_MODIFIED);
+
+            long maxDateModified = 0;
+            long maxId = 0;
+
+            LongSparseArray<StorageFullComposition> volumeCompositions = new LongSparseArray<>(cursor.getCount());
+            while (MediaStoreUtils.moveToNext(cursor)) {
+                StorageFullComposition composition = buildStorageComposition(
+                        artistIndex,
+                        titleIndex,
+                        relativePathIndex,
+                        filePathIndex,
+                        displayNameIndex,
+                        durationIndex,
+                        sizeIndex,
+                        idIndex,
+                        albumIdIndex,
+                        dateAddedIndex,
+                        dateModifiedIndex,
+                        cursorWrapper,
+                        albums
+                );
+                if (composition != null) {
+                    volumeCompositions.put(composition.getStorageId(), composition);
+                }
+                maxDateModified = Math.max(maxDateModified, cursorWrapper.getLong(dateModifiedIndex));
+                maxId = Math.max(maxId, cursorWrapper.getLong(idIndex));
+            }
+            result.putAll(volumeCompositions);
+
+            if (watermarkBuilder != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+                watermarkBuilder.putMaxValues(volume, maxDateModified, maxId);
+            }
+        }
+        return albums;
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.R)
+    private void putVolumeGeneration(String volume,
+                                     String version,
+                                     MediaStoreWatermark.Builder watermarkBuilder) {
+        //read generation before items to not miss changes made during the read
+        watermarkBuilder.putGeneration(volume, version, MediaStore.getGeneration(context, volume));
+    }
+
+    private String getCompositionsSelection(boolean showAllAudioFiles) {
+        StringBuilder selectionBuilder = new StringBuilder();
+        //also display unsupported or corrupted compositions
+        selectionBuilder.append("(" + Media.DURATION + " >= ? OR " + Media.DURATION + " IS NULL)");
+        if (!showAllAudioFiles) {
+            selectionBuilder.append(" AND ");
+            selectionBuilder.append(Media.IS_MUSIC);
+            selectionBuilder.append(" = ?");
+        }
+        return selectionBuilder.toString();
+    }
+
+    private String[] getCompositionsSelectionArgs(long minAudioDurationMillis,
+                                                  boolean showAllAudioFiles) {
+        if (showAllAudioFiles) {
+            return new String[] { String.valueOf(minAudioDurationMillis) };
+        } else {
+            return new String[] { String.valueOf(minAudioDurationMillis), String.valueOf(1) };
+        }
     }
 
     private void updateComposition(long id, String key, String value) {
@@ -811,14 +952,19 @@ public class StorageMusicProvider {
         }
     }
 
-    private List<Uri> getStorageUris() {
+    private List<String> getStorageVolumes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return new ArrayList<>(MediaStore.getExternalVolumeNames(context));
+        } else {
+            return asList(EXTERNAL_VOLUME_NAME);
+        }
+    }
+
+    private Uri getStorageUri(String volume) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            Set<String> volumes = MediaStore.getExternalVolumeNames(context);
-            List<Uri> uris = new ArrayList<>();
-            volumes.forEach(volume -> uris.add(MediaStore.Audio.Media.getContentUri(volume)));
-            return uris;
+            return MediaStore.Audio.Media.getContentUri(volume);
         } else {
-            return asList(Media.EXTERNAL_CONTENT_URI);
+            return Media.EXTERNAL_CONTENT_URI;
         }
     }
 
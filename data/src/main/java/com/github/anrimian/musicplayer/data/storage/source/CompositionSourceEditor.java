@@ -8,6 +8,8 @@ import com.github.anrimian.musicplayer.data.storage.exceptions.GenreAlreadyPrese
 import com.github.anrimian.musicplayer.data.storage.exceptions.IllegalInputException;
 import com.github.anrimian.musicplayer.data.storage.exceptions.TagReaderException;
 import com.github.anrimian.musicplayer.data.storage.providers.music.StorageMusicProvider;
+import com.github.anrimian.musicplayer.data.storage.source.tags.HeaderTagReader;
+import com.github.anrimian.musicplayer.data.storage.source.tags.LoudnessTagParser;
 import com.github.anrimian.musicplayer.data.utils.image.BitmapUtils;
 import com.github.anrimian.musicplayer.domain.Constants;
 import com.github.anrimian.musicplayer.domain.models.composition.content.CompositionContentSource;
@@ -61,6 +63,8 @@ public class CompositionSourceEditor {
     private final FileSourceProvider fileSourceProvider;
     private final ContentSourceHelper contentSourceHelper;
 
+    private final HeaderTagReader headerTagReader = new HeaderTagReader();
+
     public CompositionSourceEditor(StorageMusicProvider storageMusicProvider,
                                    FileSourceProvider fileSourceProvider,
                                    ContentSourceHelper contentSourceHelper) {
@@ -321,20 +325,11 @@ public class CompositionSourceEditor {
         return Single.fromCallable(() -> {
             try {
                 File file = contentSourceHelper.getAsFile(source);
-                AudioFile audioFile = readFile(file);
-                Tag tag = audioFile.getTagOrCreateDefault();
                 long fileSize = file.length();
-                int durationSeconds = audioFile.getAudioHeader().getTrackLength();
-                CompositionSourceTags tags = new CompositionSourceTags(tag.getFirst(FieldKey.TITLE),
-                        tag.getFirst(FieldKey.ARTIST),
-                        tag.getFirst(FieldKey.ALBUM),
-                        tag.getFirst(FieldKey.ALBUM_ARTIST),
-                        durationSeconds,
-                        TextUtils.safeParseLong(tag.getFirst(FieldKey.TRACK), null),
-                        TextUtils.safeParseLong(tag.getFirst(FieldKey.DISC_NO), null),
-                        tag.getFirst(FieldKey.COMMENT),
-                        tag.getFirst(FieldKey.LYRICS),
-                        splitGenres(tag.getFirst(FieldKey.GENRE)));
+                CompositionSourceTags tags = readHeaderTags(file);
+                if (tags == null) {
+                    tags = readFileTags(file);
+                }
                 return new AudioFileInfo(fileSize, tags);
             } catch (FileNotFoundException e) {
                 throw e;
@@ -344,6 +339,51 @@ public class CompositionSourceEditor {
         });
     }
 
+    /**
+     * Fast path for file scanner, returns null if format is not supported or tag is broken
+     */
+    @Nullable
+    private CompositionSourceTags readHeaderTags(File file) throws FileNotFoundException {
+        try {
+            return headerTagReader.readTags(file);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private CompositionSourceTags readFileTags(File file) throws Exception {
+        AudioFile audioFile = readFile(file);
+        Tag tag = audioFile.getTagOrCreateDefault();
+        int durationSeconds = audioFile.getAudioHeader().getTrackLength();
+        return new CompositionSourceTags(tag.getFirst(FieldKey.TITLE),
+                tag.getFirst(FieldKey.ARTIST),
+                tag.getFirst(FieldKey.ALBUM),
+                tag.getFirst(FieldKey.ALBUM_ARTIST),
+                durationSeconds,
+                TextUtils.safeParseLong(tag.getFirst(FieldKey.TRACK), null),
+                TextUtils.safeParseLong(tag.getFirst(FieldKey.DISC_NO), null),
+                tag.getFirst(FieldKey.COMMENT),
+                tag.getFirst(FieldKey.LYRICS),
+                splitGenres(tag.getFirst(FieldKey.GENRE)),
+                LoudnessTagParser.getGain(getUserField(tag, LoudnessTagParser.REPLAYGAIN_TRACK_GAIN),
+                        getUserField(tag, LoudnessTagParser.R128_TRACK_GAIN)),
+                LoudnessTagParser.getGain(getUserField(tag, LoudnessTagParser.REPLAYGAIN_ALBUM_GAIN),
+                        getUserField(tag, LoudnessTagParser.R128_ALBUM_GAIN)));
+    }
+
+    //found by key in vorbis comments, other formats have no such ids and return empty value
+    @Nullable
+    private static String getUserField(Tag tag, String key) {
+        try {
+            String value = tag.getFirst(key);
+            return TextUtils.isEmpty(value) ? null : value;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public Maybe<byte[]> getCompositionArtworkBinaryData(CompositionContentSource source) {
         return Maybe.fromCallable(() -> {
             Tag tag = getFileTag(source);
@@ -52,7 +52,14 @@ class StorageSourceRepositoryImpl(
     }
 
     private fun getStorageCompositionSource(compositionId: Long): Maybe<CompositionContentSource> {
-        return compositionsDao.selectStorageId(compositionId)
-            .map { id -> StorageCompositionSource(storageMusicProvider.getCompositionUri(id)) }
+        return compositionsDao.selectSourceEntry(compositionId)
+            .map { entry ->
+                StorageCompositionSource(
+                    storageMusicProvider.getCompositionUri(entry.storageId!!),
+                    entry.trackGain,
+                    entry.albumGain,
+                    entry.analyzedGain
+                )
+            }
     }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.intLE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.shortLE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.uintLE;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads monkey's audio header and APEv2 tag from the end of file.
+ * Binary items like cover art are skipped.
+ */
+class ApeParser {
+
+    private static final int APE_TAG_FOOTER_SIZE = 32;
+    private static final int ID3V1_SIZE = 128;
+
+    private static final int ITEM_TYPE_MASK = 0x6;
+
+    static boolean isApe(TagFileReader reader) throws IOException {
+        return reader.matches(0, "MAC ");
+    }
+
+    static boolean read(TagFileReader reader, TagValues values) throws IOException {
+        if (!readHeader(reader, values)) {
+            return false;
+        }
+        long footerPosition = reader.length() - APE_TAG_FOOTER_SIZE;
+        if (!reader.matches(footerPosition, "APETAGEX")) {
+            footerPosition -= ID3V1_SIZE;
+            if (!reader.matches(footerPosition, "APETAGEX")) {
+                return true;//no tag
+            }
+        }
+        readTag(reader, footerPosition, values);
+        return true;
+    }
+
+    private static boolean readHeader(TagFileReader reader, TagValues values) throws IOException {
+        byte[] b = reader.read(0, 32);
+        int version = shortLE(b, 4);
+        long blocksPerFrame;
+        long finalFrameBlocks;
+        long totalFrames;
+        long sampleRate;
+        if (version >= 3980) {
+            long descriptorSize = uintLE(b, 8);
+            b = reader.read(descriptorSize, 24);
+            blocksPerFrame = uintLE(b, 4);
+            finalFrameBlocks = uintLE(b, 8);
+            totalFrames = uintLE(b, 12);
+            sampleRate = uintLE(b, 20);
+        } else {
+            int compressionLevel = shortLE(b, 6);
+            sampleRate = uintLE(b, 12);
+            totalFrames = uintLE(b, 24);
+            finalFrameBlocks = uintLE(b, 28);
+            if (version >= 3950) {
+                blocksPerFrame = 73728 * 4;
+            } else if (version >= 3900 || (version >= 3800 && compressionLevel == 4000)) {
+                blocksPerFrame = 73728;
+            } else {
+                blocksPerFrame = 9216;
+            }
+        }
+        if (sampleRate <= 0) {
+            return false;
+        }
+        long totalBlocks = totalFrames == 0 ? 0 : (totalFrames - 1) * blocksPerFrame + finalFrameBlocks;
+        values.durationSeconds = (int) Math.round((double) totalBlocks / sampleRate);
+        return true;
+    }
+
+    /**
+     * Tag size in footer includes items and footer itself, but not the optional header.
+     */
+    private static void readTag(TagFileReader reader,
+                                long footerPosition,
+                                TagValues values) throws IOException {
+        byte[] b = reader.read(footerPosition, APE_TAG_FOOTER_SIZE);
+        long tagSize = uintLE(b, 12);
+        int itemsCount = intLE(b, 16);
+        long position = footerPosition + APE_TAG_FOOTER_SIZE - tagSize;
+        if (position < 0) {
+            return;
+        }
+        for (int i = 0; i < itemsCount && position + 8 < footerPosition; i++) {
+            b = reader.read(position, 8);
+            long valueSize = uintLE(b, 0);
+            int flags = intLE(b, 4);
+            long keyPosition = position + 8;
+
+            int keyLength = reader.readAvailable(keyPosition, 256);
+            b = reader.getBuffer();
+            int keyEnd = 0;
+            while (keyEnd < keyLength && b[keyEnd] != 0) {
+                keyEnd++;
+            }
+            if (keyEnd == keyLength) {
+                return;
+            }
+            String key = new String(b, 0, keyEnd, StandardCharsets.US_ASCII);
+            long valuePosition = keyPosition + keyEnd + 1;
+            position = valuePosition + valueSize;
+            if (position > footerPosition) {
+                return;
+            }
+            if ((flags & ITEM_TYPE_MASK) != 0) {
+                continue;//binary or external item
+            }
+            int field = getField(key);
+            if (field != 0) {
+                int size = (int) valueSize;
+                b = reader.read(valuePosition, size);
+                readItem(b, size, key, field, values);
+            }
+        }
+    }
+
+    private static void readItem(byte[] b, int size, String key, int field, TagValues values) {
+        //multiple values are separated with zero byte
+        int end = 0;
+        while (end < size && b[end] != 0) {
+            end++;
+        }
+        String value = new String(b, 0, end, StandardCharsets.UTF_8);
+        switch (field) {
+            case 'T': values.setTitle(value); break;
+            case 'A': values.setArtist(value); break;
+            case 'L': values.setAlbum(value); break;
+            case 'a': values.setAlbumArtist(value); break;
+            case 'N': values.setTrackNumber(value); break;
+            case 'D': values.setDiscNumber(value); break;
+            case 'C': values.setComment(value); break;
+            case 'Y': values.setLyrics(value); break;
+            case 'G': values.setGenre(value); break;
+            case 'R': values.setUserField(key, value); break;
+        }
+    }
+
+    private static int getField(String key) {
+        if (key.equalsIgnoreCase("Title")) return 'T';
+        if (key.equalsIgnoreCase("Artist")) return 'A';
+        if (key.equalsIgnoreCase("Album")) return 'L';
+        if (key.equalsIgnoreCase("Album Artist") || key.equalsIgnoreCase("AlbumArtist")) return 'a';
+        if (key.equalsIgnoreCase("Track")) return 'N';
+        if (key.equalsIgnoreCase("Disc")) return 'D';
+        if (key.equalsIgnoreCase("Comment")) return 'C';
+        if (key.equalsIgnoreCase("Lyrics")) return 'Y';
+        if (key.equalsIgnoreCase("Genre")) return 'G';
+        if (LoudnessTagParser.isLoudnessField(key)) return 'R';
+        return 0;
+    }
+}
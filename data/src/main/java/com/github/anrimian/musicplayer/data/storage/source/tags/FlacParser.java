@@ -0,0 +1,120 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.int24BE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.intLE;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads stream info and vorbis comment blocks of flac file, picture blocks are skipped.
+ */
+class FlacParser {
+
+    private static final int BLOCK_STREAM_INFO = 0;
+    private static final int BLOCK_VORBIS_COMMENT = 4;
+
+    static boolean isFlac(TagFileReader reader, long position) throws IOException {
+        return reader.matches(position, "fLaC");
+    }
+
+    static boolean read(TagFileReader reader, long start, TagValues values) throws IOException {
+        long position = start + 4;
+        boolean streamInfoFound = false;
+        boolean lastBlock = false;
+        while (!lastBlock && position + 4 <= reader.length()) {
+            byte[] b = reader.read(position, 4);
+            lastBlock = (b[0] & 0x80) != 0;
+            int type = b[0] & 0x7f;
+            int size = int24BE(b, 1);
+            long bodyPosition = position + 4;
+            position = bodyPosition + size;
+            switch (type) {
+                case BLOCK_STREAM_INFO: {
+                    if (size < 18) {
+                        return false;
+                    }
+                    readStreamInfo(reader.read(bodyPosition, 18), values);
+                    streamInfoFound = true;
+                    break;
+                }
+                case BLOCK_VORBIS_COMMENT: {
+                    readVorbisComment(reader.read(bodyPosition, size), size, values);
+                    break;
+                }
+            }
+        }
+        return streamInfoFound;
+    }
+
+    private static void readStreamInfo(byte[] b, TagValues values) {
+        int sampleRate = (b[10] & 0xff) << 12 | (b[11] & 0xff) << 4 | (b[12] & 0xf0) >> 4;
+        long totalSamples = (b[13] & 0x0fL) << 32
+                | (b[14] & 0xffL) << 24
+                | (b[15] & 0xffL) << 16
+                | (b[16] & 0xffL) << 8
+                | (b[17] & 0xffL);
+        if (sampleRate > 0) {
+            values.durationSeconds = (int) Math.round((double) totalSamples / sampleRate);
+        }
+    }
+
+    /**
+     * Vorbis comment: vendor string, count of comments, "KEY=value" comments.
+     * All lengths are little endian.
+     */
+    static void readVorbisComment(byte[] b, int size, TagValues values) {
+        int offset = 4 + intLE(b, 0);
+        if (offset + 4 > size) {
+            return;
+        }
+        int count = intLE(b, offset);
+        offset += 4;
+        for (int i = 0; i < count && offset + 4 <= size; i++) {
+            int length = intLE(b, offset);
+            offset += 4;
+            if (length < 0 || offset + length > size) {
+                return;
+            }
+            readComment(b, offset, length, values);
+            offset += length;
+        }
+    }
+
+    private static void readComment(byte[] b, int offset, int length, TagValues values) {
+        int separator = -1;
+        for (int i = offset; i < offset + length; i++) {
+            if (b[i] == '=') {
+                separator = i;
+                break;
+            }
+        }
+        if (separator == -1) {
+            return;
+        }
+        String key = new String(b, offset, separator - offset, StandardCharsets.US_ASCII);
+        int valueStart = separator + 1;
+        String value = new String(b, valueStart, offset + length - valueStart, StandardCharsets.UTF_8);
+        if (key.equalsIgnoreCase("TITLE")) {
+            values.setTitle(value);
+        } else if (key.equalsIgnoreCase("ARTIST")) {
+            values.setArtist(value);
+        } else if (key.equalsIgnoreCase("ALBUM")) {
+            values.setAlbum(value);
+        } else if (key.equalsIgnoreCase("ALBUMARTIST") || key.equalsIgnoreCase("ALBUM ARTIST")) {
+            values.setAlbumArtist(value);
+        } else if (key.equalsIgnoreCase("TRACKNUMBER")) {
+            values.setTrackNumber(value);
+        } else if (key.equalsIgnoreCase("DISCNUMBER")) {
+            values.setDiscNumber(value);
+        } else if (key.equalsIgnoreCase("COMMENT")) {
+            values.setComment(value);
+        } else if (key.equalsIgnoreCase("LYRICS")) {
+            values.setLyrics(value);
+        } else if (key.equalsIgnoreCase("GENRE")) {
+            values.setGenre(value);
+        } else {
+            values.setUserField(key, value);
+        }
+    }
+}
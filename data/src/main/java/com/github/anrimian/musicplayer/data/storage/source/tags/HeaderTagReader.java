@@ -0,0 +1,66 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import com.github.anrimian.musicplayer.domain.models.composition.tags.CompositionSourceTags;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Lightweight tag reader for file scanning. Reads only text metadata blocks and audio header
+ * of ID3v2 (mp3), flac, mp4 and monkey's audio files into a reusable per-thread buffer,
+ * artwork and audio data are skipped.
+ * Returns null for other formats, so they can be read by jaudiotagger.
+ */
+public class HeaderTagReader {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    //don't keep huge buffers from rare large tags
+    private static final int MAX_CACHED_BUFFER_SIZE = 256 * 1024;
+
+    private final ThreadLocal<byte[]> buffers = new ThreadLocal<>();
+
+    @Nullable
+    public CompositionSourceTags readTags(@Nonnull File file) throws IOException {
+        byte[] buffer = buffers.get();
+        if (buffer == null) {
+            buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+        TagValues values = new TagValues();
+        boolean result;
+        try (TagFileReader reader = new TagFileReader(file, buffer)) {
+            try {
+                result = read(reader, values);
+            } finally {
+                byte[] usedBuffer = reader.getBuffer();
+                if (usedBuffer.length <= MAX_CACHED_BUFFER_SIZE) {
+                    buffers.set(usedBuffer);
+                }
+            }
+        }
+        return result ? values.toSourceTags() : null;
+    }
+
+    private static boolean read(TagFileReader reader, TagValues values) throws IOException {
+        long tagEnd = Id3v2Parser.getTagEnd(reader);
+        if (tagEnd != -1) {
+            //some flac files start with id3 tag, it is ignored in this case
+            if (FlacParser.isFlac(reader, tagEnd)) {
+                return FlacParser.read(reader, tagEnd, values);
+            }
+            return Id3v2Parser.read(reader, values);
+        }
+        if (FlacParser.isFlac(reader, 0)) {
+            return FlacParser.read(reader, 0, values);
+        }
+        if (Mp4Parser.isMp4(reader)) {
+            return Mp4Parser.read(reader, values);
+        }
+        if (ApeParser.isApe(reader)) {
+            return ApeParser.read(reader, values);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,458 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.int24BE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.intBE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.matches;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.shortBE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.uintBE;
+
+import org.jaudiotagger.tag.id3.framebody.FrameBodyTCON;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads text frames of ID3v2.2-2.4 tag and duration of the following mpeg stream.
+ * Frames we don't need, including pictures, are skipped without reading.
+ */
+class Id3v2Parser {
+
+    private static final int HEADER_SIZE = 10;
+
+    private static final int MAX_SYNC_SEARCH_SIZE = 64 * 1024;
+    private static final int ID3V1_SIZE = 128;
+
+    private static final int TITLE = 1;
+    private static final int ARTIST = 2;
+    private static final int ALBUM = 3;
+    private static final int ALBUM_ARTIST = 4;
+    private static final int TRACK = 5;
+    private static final int DISC = 6;
+    private static final int COMMENT = 7;
+    private static final int LYRICS = 8;
+    private static final int GENRE = 9;
+    private static final int USER_TEXT = 10;
+
+    private static final int[][] BITRATES_MPEG1 = {
+            { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 },
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },
+            { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 }
+    };
+    private static final int[][] BITRATES_MPEG2 = {
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 }
+    };
+    private static final int[] SAMPLE_RATES_MPEG1 = { 44100, 48000, 32000 };
+
+    private static final Charset UTF_16 = StandardCharsets.UTF_16;
+
+    /**
+     * @return position after the tag or -1 if file doesn't start with ID3v2 tag
+     */
+    static long getTagEnd(TagFileReader reader) throws IOException {
+        if (reader.length() < HEADER_SIZE) {
+            return -1;
+        }
+        byte[] b = reader.read(0, HEADER_SIZE);
+        if (!matches(b, 0, "ID3")) {
+            return -1;
+        }
+        int footerSize = b[3] == 4 && (b[5] & 0x10) != 0 ? HEADER_SIZE : 0;
+        return HEADER_SIZE + syncSafeInt(b, 6) + footerSize;
+    }
+
+    /**
+     * @return false if tag or audio stream is not supported
+     */
+    static boolean read(TagFileReader reader, TagValues values) throws IOException {
+        byte[] b = reader.read(0, HEADER_SIZE);
+        int version = b[3];
+        int flags = b[5] & 0xff;
+        if (version < 2 || version > 4) {
+            return false;
+        }
+        //whole tag unsynchronisation and v2.2 compression are rare, leave them for full parser
+        if (version < 4 && (flags & 0x80) != 0) {
+            return false;
+        }
+        if (version == 2 && (flags & 0x40) != 0) {
+            return false;
+        }
+        long framesEnd = HEADER_SIZE + syncSafeInt(b, 6);
+        long position = HEADER_SIZE;
+        if ((flags & 0x40) != 0) {
+            b = reader.read(position, 4);
+            position += version == 3 ? intBE(b, 0) + 4 : syncSafeInt(b, 0);
+        }
+        readFrames(reader, values, version, position, framesEnd);
+
+        return readMpegDuration(reader, getTagEnd(reader), values);
+    }
+
+    private static void readFrames(TagFileReader reader,
+                                   TagValues values,
+                                   int version,
+                                   long position,
+                                   long framesEnd) throws IOException {
+        int headerSize = version == 2 ? 6 : 10;
+        while (position + headerSize <= framesEnd) {
+            byte[] b = reader.read(position, headerSize);
+            if (b[0] == 0) {
+                break;//padding
+            }
+            int size;
+            int frameFlags = 0;
+            int field;
+            if (version == 2) {
+                size = int24BE(b, 3);
+                field = getV22Field(b);
+            } else {
+                size = version == 4 && isSyncSafe(b, 4) ? syncSafeInt(b, 4) : intBE(b, 4);
+                frameFlags = shortBE(b, 8);
+                field = getField(b);
+            }
+            long bodyPosition = position + headerSize;
+            position = bodyPosition + size;
+            if (size <= 0 || position > framesEnd) {
+                break;
+            }
+            if (field == 0) {
+                continue;
+            }
+
+            int bodyOffset = 0;
+            boolean unsynchronized = false;
+            if (version == 3) {
+                if ((frameFlags & 0x00c0) != 0) {
+                    continue;//compressed or encrypted
+                }
+                if ((frameFlags & 0x0020) != 0) {
+                    bodyOffset++;
+                }
+            } else if (version == 4) {
+                if ((frameFlags & 0x000c) != 0) {
+                    continue;//compressed or encrypted
+                }
+                if ((frameFlags & 0x0040) != 0) {
+                    bodyOffset++;
+                }
+                if ((frameFlags & 0x0001) != 0) {
+                    bodyOffset += 4;
+                }
+                unsynchronized = (frameFlags & 0x0002) != 0;
+            }
+            if (size <= bodyOffset) {
+                continue;
+            }
+            b = reader.read(bodyPosition, size);
+            int bodyEnd = size;
+            if (unsynchronized) {
+                bodyEnd = removeUnsynchronisation(b, size);
+            }
+            readFrame(b, bodyOffset, bodyEnd, field, version, values);
+        }
+    }
+
+    private static void readFrame(byte[] b,
+                                  int offset,
+                                  int end,
+                                  int field,
+                                  int version,
+                                  TagValues values) {
+        switch (field) {
+            case TITLE: {
+                values.setTitle(readTextFrame(b, offset, end));
+                break;
+            }
+            case ARTIST: {
+                values.setArtist(readTextFrame(b, offset, end));
+                break;
+            }
+            case ALBUM: {
+                values.setAlbum(readTextFrame(b, offset, end));
+                break;
+            }
+            case ALBUM_ARTIST: {
+                values.setAlbumArtist(readTextFrame(b, offset, end));
+                break;
+            }
+            case TRACK: {
+                values.setTrackNumber(readTextFrame(b, offset, end));
+                break;
+            }
+            case DISC: {
+                values.setDiscNumber(readTextFrame(b, offset, end));
+                break;
+            }
+            case GENRE: {
+                String genre = readTextFrame(b, offset, end);
+                switch (version) {
+                    case 2: {
+                        values.setGenre(FrameBodyTCON.convertID3v22GenreToGeneric(genre));
+                        break;
+                    }
+                    case 3: {
+                        values.setGenre(FrameBodyTCON.convertID3v23GenreToGeneric(genre));
+                        break;
+                    }
+                    default: {
+                        values.setGenre(FrameBodyTCON.convertID3v24GenreToGeneric(genre));
+                    }
+                }
+                break;
+            }
+            case COMMENT: {
+                if (values.comment == null) {
+                    values.setComment(readCommentFrame(b, offset, end, true));
+                }
+                break;
+            }
+            case LYRICS: {
+                if (values.lyrics == null) {
+                    values.setLyrics(readCommentFrame(b, offset, end, false));
+                }
+                break;
+            }
+            case USER_TEXT: {
+                readUserTextFrame(b, offset, end, values);
+                break;
+            }
+        }
+    }
+
+    private static String readTextFrame(byte[] b, int offset, int end) {
+        int encoding = b[offset];
+        int textStart = offset + 1;
+        return decodeText(b, textStart, findTerminator(b, textStart, end, encoding), encoding);
+    }
+
+    //encoding, description, text
+    private static void readUserTextFrame(byte[] b, int offset, int end, TagValues values) {
+        int encoding = b[offset];
+        int descriptionStart = offset + 1;
+        int descriptionEnd = findTerminator(b, descriptionStart, end, encoding);
+        String description = decodeText(b, descriptionStart, descriptionEnd, encoding);
+        if (!LoudnessTagParser.isLoudnessField(description)) {
+            return;
+        }
+        int textStart = Math.min(end, descriptionEnd + getTerminatorSize(encoding));
+        String text = decodeText(b, textStart, findTerminator(b, textStart, end, encoding), encoding);
+        values.setUserField(description, text);
+    }
+
+    //encoding, language, description, text
+    private static String readCommentFrame(byte[] b, int offset, int end, boolean skipSpecial) {
+        int encoding = b[offset];
+        int descriptionStart = offset + 4;
+        if (descriptionStart > end) {
+            return null;
+        }
+        int descriptionEnd = findTerminator(b, descriptionStart, end, encoding);
+        if (skipSpecial) {
+            String description = decodeText(b, descriptionStart, descriptionEnd, encoding);
+            //service comments of itunes and media monkey, jaudiotagger ignores them too
+            if (description.startsWith("iTun") || description.startsWith("Songs-DB")) {
+                return null;
+            }
+        }
+        int textStart = Math.min(end, descriptionEnd + getTerminatorSize(encoding));
+        return decodeText(b, textStart, findTerminator(b, textStart, end, encoding), encoding);
+    }
+
+    private static int findTerminator(byte[] b, int start, int end, int encoding) {
+        if (getTerminatorSize(encoding) == 1) {
+            for (int i = start; i < end; i++) {
+                if (b[i] == 0) {
+                    return i;
+                }
+            }
+            return end;
+        }
+        for (int i = start; i + 1 < end; i += 2) {
+            if (b[i] == 0 && b[i + 1] == 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int getTerminatorSize(int encoding) {
+        return encoding == 1 || encoding == 2 ? 2 : 1;
+    }
+
+    private static String decodeText(byte[] b, int start, int end, int encoding) {
+        if (end <= start) {
+            return "";
+        }
+        switch (encoding) {
+            case 1: return new String(b, start, end - start, UTF_16);
+            case 2: return new String(b, start, end - start, StandardCharsets.UTF_16BE);
+            case 3: return new String(b, start, end - start, StandardCharsets.UTF_8);
+            default: return new String(b, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static int removeUnsynchronisation(byte[] b, int size) {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            b[j++] = b[i];
+            if (b[i] == (byte) 0xff && i + 1 < size && b[i + 1] == 0) {
+                i++;
+            }
+        }
+        return j;
+    }
+
+    private static int getField(byte[] b) {
+        if (b[0] == 'T') {
+            if (matches(b, 0, "TIT2")) return TITLE;
+            if (matches(b, 0, "TPE1")) return ARTIST;
+            if (matches(b, 0, "TALB")) return ALBUM;
+            if (matches(b, 0, "TPE2")) return ALBUM_ARTIST;
+            if (matches(b, 0, "TRCK")) return TRACK;
+            if (matches(b, 0, "TPOS")) return DISC;
+            if (matches(b, 0, "TCON")) return GENRE;
+            if (matches(b, 0, "TXXX")) return USER_TEXT;
+        }
+        if (matches(b, 0, "COMM")) return COMMENT;
+        if (matches(b, 0, "USLT")) return LYRICS;
+        return 0;
+    }
+
+    private static int getV22Field(byte[] b) {
+        if (b[0] == 'T') {
+            if (matches(b, 0, "TT2")) return TITLE;
+            if (matches(b, 0, "TP1")) return ARTIST;
+            if (matches(b, 0, "TAL")) return ALBUM;
+            if (matches(b, 0, "TP2")) return ALBUM_ARTIST;
+            if (matches(b, 0, "TRK")) return TRACK;
+            if (matches(b, 0, "TPA")) return DISC;
+            if (matches(b, 0, "TCO")) return GENRE;
+            if (matches(b, 0, "TXX")) return USER_TEXT;
+        }
+        if (matches(b, 0, "COM")) return COMMENT;
+        if (matches(b, 0, "ULT")) return LYRICS;
+        return 0;
+    }
+
+    private static boolean readMpegDuration(TagFileReader reader,
+                                            long audioStart,
+                                            TagValues values) throws IOException {
+        int count = reader.readAvailable(audioStart, MAX_SYNC_SEARCH_SIZE);
+        byte[] b = reader.getBuffer();
+        int frameOffset = -1;
+        for (int i = 0; i + 4 <= count; i++) {
+            if (isFrameHeader(b, i)) {
+                int frameLength = getFrameLength(b, i);
+                //check next frame to avoid false sync inside of garbage
+                int next = i + frameLength;
+                if (frameLength > 0 && (next + 4 > count || isFrameHeader(b, next))) {
+                    frameOffset = i;
+                    break;
+                }
+            }
+        }
+        if (frameOffset == -1) {
+            return false;
+        }
+        int header = intBE(b, frameOffset);
+        int versionBits = (header >> 19) & 0x3;
+        int layerBits = (header >> 17) & 0x3;
+        int bitrateIndex = (header >> 12) & 0xf;
+        int channelMode = (header >> 6) & 0x3;
+        int sampleRate = getSampleRate(header);
+        boolean mpeg1 = versionBits == 3;
+        int layer = 4 - layerBits;
+        int samplesPerFrame = layer == 1 ? 384 : (layer == 3 && !mpeg1 ? 576 : 1152);
+
+        long framesCount = -1;
+        if (layer == 3) {
+            int sideInfoSize = mpeg1
+                    ? (channelMode == 3 ? 17 : 32)
+                    : (channelMode == 3 ? 9 : 17);
+            int xingOffset = frameOffset + 4 + sideInfoSize;
+            int vbriOffset = frameOffset + 4 + 32;
+            if (xingOffset + 12 <= count
+                    && (matches(b, xingOffset, "Xing") || matches(b, xingOffset, "Info"))) {
+                if ((intBE(b, xingOffset + 4) & 0x1) != 0) {
+                    framesCount = uintBE(b, xingOffset + 8);
+                }
+            } else if (vbriOffset + 18 <= count && matches(b, vbriOffset, "VBRI")) {
+                framesCount = uintBE(b, vbriOffset + 14);
+            }
+        }
+        double durationSeconds;
+        if (framesCount > 0) {
+            durationSeconds = (double) framesCount * samplesPerFrame / sampleRate;
+        } else {
+            long audioEnd = reader.length();
+            if (audioEnd >= ID3V1_SIZE && reader.matches(audioEnd - ID3V1_SIZE, "TAG")) {
+                audioEnd -= ID3V1_SIZE;
+            }
+            long audioSize = audioEnd - (audioStart + frameOffset);
+            durationSeconds = audioSize * 8d / (getBitrate(header) * 1000d);
+        }
+        values.durationSeconds = (int) Math.round(durationSeconds);
+        return true;
+    }
+
+    private static boolean isFrameHeader(byte[] b, int offset) {
+        if ((b[offset] & 0xff) != 0xff || (b[offset + 1] & 0xe0) != 0xe0) {
+            return false;
+        }
+        int header = intBE(b, offset);
+        int versionBits = (header >> 19) & 0x3;
+        int layerBits = (header >> 17) & 0x3;
+        int bitrateIndex = (header >> 12) & 0xf;
+        int sampleRateIndex = (header >> 10) & 0x3;
+        return versionBits != 1
+                && layerBits != 0
+                && bitrateIndex != 0
+                && bitrateIndex != 0xf
+                && sampleRateIndex != 3;
+    }
+
+    private static int getFrameLength(byte[] b, int offset) {
+        int header = intBE(b, offset);
+        boolean mpeg1 = ((header >> 19) & 0x3) == 3;
+        int layer = 4 - ((header >> 17) & 0x3);
+        int padding = (header >> 9) & 0x1;
+        int bitrate = getBitrate(header) * 1000;
+        int sampleRate = getSampleRate(header);
+        if (layer == 1) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        int coefficient = layer == 3 && !mpeg1 ? 72 : 144;
+        return coefficient * bitrate / sampleRate + padding;
+    }
+
+    private static int getBitrate(int header) {
+        boolean mpeg1 = ((header >> 19) & 0x3) == 3;
+        int layer = 4 - ((header >> 17) & 0x3);
+        int bitrateIndex = (header >> 12) & 0xf;
+        return (mpeg1 ? BITRATES_MPEG1 : BITRATES_MPEG2)[layer - 1][bitrateIndex];
+    }
+
+    private static int getSampleRate(int header) {
+        int versionBits = (header >> 19) & 0x3;
+        int sampleRate = SAMPLE_RATES_MPEG1[(header >> 10) & 0x3];
+        switch (versionBits) {
+            case 2: return sampleRate / 2;//mpeg 2
+            case 0: return sampleRate / 4;//mpeg 2.5
+            default: return sampleRate;
+        }
+    }
+
+    private static boolean isSyncSafe(byte[] b, int offset) {
+        return ((b[offset] | b[offset + 1] | b[offset + 2] | b[offset + 3]) & 0x80) == 0;
+    }
+
+    private static int syncSafeInt(byte[] b, int offset) {
+        return (b[offset] & 0x7f) << 21
+                | (b[offset + 1] & 0x7f) << 14
+                | (b[offset + 2] & 0x7f) << 7
+                | (b[offset + 3] & 0x7f);
+    }
+}
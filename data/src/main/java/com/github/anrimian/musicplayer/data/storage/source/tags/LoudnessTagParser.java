@@ -0,0 +1,72 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import com.github.anrimian.musicplayer.domain.utils.TextUtils;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads replay gain and r128 loudness fields. All tag formats store them as user defined text.
+ */
+public class LoudnessTagParser {
+
+    public static final String REPLAYGAIN_TRACK_GAIN = "REPLAYGAIN_TRACK_GAIN";
+    public static final String REPLAYGAIN_ALBUM_GAIN = "REPLAYGAIN_ALBUM_GAIN";
+    public static final String R128_TRACK_GAIN = "R128_TRACK_GAIN";
+    public static final String R128_ALBUM_GAIN = "R128_ALBUM_GAIN";
+
+    //replay gain reference is -18 LUFS, r128 gain reference is -23 LUFS
+    private static final float R128_TO_REPLAYGAIN_OFFSET = 5f;
+
+    public static boolean isLoudnessField(String key) {
+        return key.equalsIgnoreCase(REPLAYGAIN_TRACK_GAIN)
+                || key.equalsIgnoreCase(REPLAYGAIN_ALBUM_GAIN)
+                || key.equalsIgnoreCase(R128_TRACK_GAIN)
+                || key.equalsIgnoreCase(R128_ALBUM_GAIN);
+    }
+
+    /**
+     * @return replay gain in dB, r128 value is used if replay gain is absent or broken
+     */
+    @Nullable
+    public static Float getGain(@Nullable String replayGain, @Nullable String r128Gain) {
+        Float gain = parseReplayGain(replayGain);
+        if (gain == null) {
+            gain = parseR128Gain(r128Gain);
+        }
+        return gain;
+    }
+
+    //"-6.54 dB" format
+    @Nullable
+    private static Float parseReplayGain(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        if (value.regionMatches(true, Math.max(0, value.length() - 2), "dB", 0, 2)) {
+            value = value.substring(0, value.length() - 2).trim();
+        }
+        try {
+            float gain = Float.parseFloat(value);
+            if (Float.isNaN(gain) || Float.isInfinite(gain)) {
+                return null;
+            }
+            return gain;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //Q7.8 fixed point number, like "-1536"
+    @Nullable
+    private static Float parseR128Gain(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        Long gain = TextUtils.safeParseLong(value.trim(), null);
+        if (gain == null) {
+            return null;
+        }
+        return gain / 256f + R128_TO_REPLAYGAIN_OFFSET;
+    }
+}
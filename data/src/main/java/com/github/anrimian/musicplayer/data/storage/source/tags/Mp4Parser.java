@@ -0,0 +1,266 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.longBE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.matches;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.shortBE;
+import static com.github.anrimian.musicplayer.data.storage.source.tags.TagFileReader.uintBE;
+
+import org.jaudiotagger.tag.reference.GenreTypes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads movie header and itunes metadata items of mp4 container.
+ * Media data and artwork atoms are skipped by their sizes.
+ */
+class Mp4Parser {
+
+    private static final int ATOM_HEADER_SIZE = 8;
+
+    static boolean isMp4(TagFileReader reader) throws IOException {
+        return reader.matches(4, "ftyp");
+    }
+
+    static boolean read(TagFileReader reader, TagValues values) throws IOException {
+        long[] moov = findAtom(reader, 0, reader.length(), "moov");
+        if (moov == null) {
+            return false;
+        }
+        boolean headerFound = false;
+        long position = moov[0];
+        long end = moov[1];
+        while (position + ATOM_HEADER_SIZE <= end) {
+            long[] atom = readAtomBounds(reader, position, end);
+            if (atom == null) {
+                break;
+            }
+            byte[] b = reader.read(position + 4, 4);
+            if (matches(b, 0, "mvhd")) {
+                headerFound = readMovieHeader(reader, atom[0], values);
+            } else if (matches(b, 0, "udta")) {
+                readUserData(reader, atom[0], atom[1], values);
+            }
+            position = atom[1];
+        }
+        return headerFound;
+    }
+
+    private static boolean readMovieHeader(TagFileReader reader,
+                                           long position,
+                                           TagValues values) throws IOException {
+        byte[] b = reader.read(position, 4);
+        long timeScale;
+        long duration;
+        if (b[0] == 1) {
+            b = reader.read(position + 4 + 16, 12);
+            timeScale = uintBE(b, 0);
+            duration = longBE(b, 4);
+        } else {
+            b = reader.read(position + 4 + 8, 8);
+            timeScale = uintBE(b, 0);
+            duration = uintBE(b, 4);
+        }
+        if (timeScale <= 0) {
+            return false;
+        }
+        values.durationSeconds = (int) (duration / timeScale);
+        return true;
+    }
+
+    private static void readUserData(TagFileReader reader,
+                                     long start,
+                                     long end,
+                                     TagValues values) throws IOException {
+        long[] meta = findAtom(reader, start, end, "meta");
+        if (meta == null) {
+            return;
+        }
+        long metaStart = meta[0];
+        //meta is a full atom with version and flags, but some writers omit them
+        if (!reader.matches(metaStart + 4, "hdlr")) {
+            metaStart += 4;
+        }
+        long[] ilst = findAtom(reader, metaStart, meta[1], "ilst");
+        if (ilst == null) {
+            return;
+        }
+        long position = ilst[0];
+        while (position + ATOM_HEADER_SIZE <= ilst[1]) {
+            long[] item = readAtomBounds(reader, position, ilst[1]);
+            if (item == null) {
+                break;
+            }
+            byte[] b = reader.read(position + 4, 4);
+            int field = getField(b);
+            if (field == 'F') {
+                readFreeformItem(reader, item[0], item[1], values);
+            } else if (field != 0) {
+                readItem(reader, item[0], item[1], field, values);
+            }
+            position = item[1];
+        }
+    }
+
+    private static void readItem(TagFileReader reader,
+                                 long start,
+                                 long end,
+                                 int field,
+                                 TagValues values) throws IOException {
+        long[] data = findAtom(reader, start, end, "data");
+        if (data == null) {
+            return;
+        }
+        //type indicator and locale
+        long valueStart = data[0] + 8;
+        int size = (int) (data[1] - valueStart);
+        if (size < 0) {
+            return;
+        }
+        byte[] b = reader.read(valueStart, size);
+        switch (field) {
+            case 'T': {
+                values.setTitle(utf8(b, size));
+                break;
+            }
+            case 'A': {
+                values.setArtist(utf8(b, size));
+                break;
+            }
+            case 'L': {
+                values.setAlbum(utf8(b, size));
+                break;
+            }
+            case 'a': {
+                values.setAlbumArtist(utf8(b, size));
+                break;
+            }
+            case 'C': {
+                values.setComment(utf8(b, size));
+                break;
+            }
+            case 'Y': {
+                values.setLyrics(utf8(b, size));
+                break;
+            }
+            case 'G': {
+                values.setGenre(utf8(b, size));
+                break;
+            }
+            case 'g': {
+                if (size >= 2) {
+                    values.setGenre(GenreTypes.getInstanceOf().getValueForId(shortBE(b, 0) - 1));
+                }
+                break;
+            }
+            case 'N': {
+                if (size >= 4) {
+                    values.setTrackNumber(String.valueOf(shortBE(b, 2)));
+                }
+                break;
+            }
+            case 'D': {
+                if (size >= 4) {
+                    values.setDiscNumber(String.valueOf(shortBE(b, 2)));
+                }
+                break;
+            }
+        }
+    }
+
+    //"----" item with "mean", "name" and "data" atoms, like com.apple.iTunes:replaygain_track_gain
+    private static void readFreeformItem(TagFileReader reader,
+                                         long start,
+                                         long end,
+                                         TagValues values) throws IOException {
+        long[] name = findAtom(reader, start, end, "name");
+        if (name == null) {
+            return;
+        }
+        //version and flags
+        long nameStart = name[0] + 4;
+        int nameSize = (int) (name[1] - nameStart);
+        if (nameSize <= 0) {
+            return;
+        }
+        String key = utf8(reader.read(nameStart, nameSize), nameSize);
+        if (!LoudnessTagParser.isLoudnessField(key)) {
+            return;
+        }
+        long[] data = findAtom(reader, name[1], end, "data");
+        if (data == null) {
+            return;
+        }
+        long valueStart = data[0] + 8;
+        int size = (int) (data[1] - valueStart);
+        if (size < 0) {
+            return;
+        }
+        values.setUserField(key, utf8(reader.read(valueStart, size), size));
+    }
+
+    private static int getField(byte[] b) {
+        if ((b[0] & 0xff) == 0xa9) {
+            if (matches(b, 1, "nam")) return 'T';
+            if (matches(b, 1, "ART")) return 'A';
+            if (matches(b, 1, "alb")) return 'L';
+            if (matches(b, 1, "cmt")) return 'C';
+            if (matches(b, 1, "lyr")) return 'Y';
+            if (matches(b, 1, "gen")) return 'G';
+            return 0;
+        }
+        if (matches(b, 0, "aART")) return 'a';
+        if (matches(b, 0, "trkn")) return 'N';
+        if (matches(b, 0, "disk")) return 'D';
+        if (matches(b, 0, "gnre")) return 'g';
+        if (matches(b, 0, "----")) return 'F';
+        return 0;
+    }
+
+    private static String utf8(byte[] b, int size) {
+        return new String(b, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return body start and atom end positions or null if atom not found
+     */
+    private static long[] findAtom(TagFileReader reader,
+                                   long start,
+                                   long end,
+                                   String type) throws IOException {
+        long position = start;
+        while (position + ATOM_HEADER_SIZE <= end) {
+            long[] atom = readAtomBounds(reader, position, end);
+            if (atom == null) {
+                return null;
+            }
+            if (reader.matches(position + 4, type)) {
+                return atom;
+            }
+            position = atom[1];
+        }
+        return null;
+    }
+
+    private static long[] readAtomBounds(TagFileReader reader,
+                                         long position,
+                                         long end) throws IOException {
+        byte[] b = reader.read(position, ATOM_HEADER_SIZE);
+        long size = uintBE(b, 0);
+        long bodyStart = position + ATOM_HEADER_SIZE;
+        if (size == 1) {
+            if (bodyStart + 8 > end) {
+                return null;
+            }
+            size = longBE(reader.read(bodyStart, 8), 0);
+            bodyStart += 8;
+        } else if (size == 0) {
+            size = end - position;//atom lasts up to the end
+        }
+        long atomEnd = position + size;
+        if (atomEnd < bodyStart || atomEnd > end) {
+            return null;
+        }
+        return new long[] { bodyStart, atomEnd };
+    }
+}
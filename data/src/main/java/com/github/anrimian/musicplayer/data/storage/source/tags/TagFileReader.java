@@ -0,0 +1,118 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Random access file reader which reads requested ranges into one shared buffer.
+ * Returned buffer is valid until the next read call.
+ */
+class TagFileReader implements Closeable {
+
+    //protection from broken sizes, metadata blocks we read are far smaller
+    static final int MAX_READ_SIZE = 16 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final long length;
+
+    private byte[] buffer;
+
+    TagFileReader(File file, byte[] buffer) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.length = this.file.length();
+        this.buffer = buffer;
+    }
+
+    long length() {
+        return length;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    byte[] read(long position, int count) throws IOException {
+        if (count < 0 || count > MAX_READ_SIZE || position < 0 || position + count > length) {
+            throw new EOFException("can not read " + count + " bytes at " + position);
+        }
+        if (buffer.length < count) {
+            buffer = new byte[Math.max(count, buffer.length * 2)];
+        }
+        file.seek(position);
+        file.readFully(buffer, 0, count);
+        return buffer;
+    }
+
+    /**
+     * Reads up to count bytes, less if file ends earlier.
+     * @return count of read bytes
+     */
+    int readAvailable(long position, int count) throws IOException {
+        int available = (int) Math.max(0, Math.min(count, length - position));
+        read(position, available);
+        return available;
+    }
+
+    boolean matches(long position, String id) throws IOException {
+        if (position < 0 || position + id.length() > length) {
+            return false;
+        }
+        byte[] b = read(position, id.length());
+        return matches(b, 0, id);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    static boolean matches(byte[] b, int offset, String id) {
+        for (int i = 0; i < id.length(); i++) {
+            if (b[offset + i] != (byte) id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int intBE(byte[] b, int offset) {
+        return (b[offset] & 0xff) << 24
+                | (b[offset + 1] & 0xff) << 16
+                | (b[offset + 2] & 0xff) << 8
+                | (b[offset + 3] & 0xff);
+    }
+
+    static long uintBE(byte[] b, int offset) {
+        return intBE(b, offset) & 0xffffffffL;
+    }
+
+    static long longBE(byte[] b, int offset) {
+        return uintBE(b, offset) << 32 | uintBE(b, offset + 4);
+    }
+
+    static int shortBE(byte[] b, int offset) {
+        return (b[offset] & 0xff) << 8 | (b[offset + 1] & 0xff);
+    }
+
+    static int int24BE(byte[] b, int offset) {
+        return (b[offset] & 0xff) << 16 | (b[offset + 1] & 0xff) << 8 | (b[offset + 2] & 0xff);
+    }
+
+    static int intLE(byte[] b, int offset) {
+        return (b[offset] & 0xff)
+                | (b[offset + 1] & 0xff) << 8
+                | (b[offset + 2] & 0xff) << 16
+                | (b[offset + 3] & 0xff) << 24;
+    }
+
+    static long uintLE(byte[] b, int offset) {
+        return intLE(b, offset) & 0xffffffffL;
+    }
+
+    static int shortLE(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8;
+    }
+}
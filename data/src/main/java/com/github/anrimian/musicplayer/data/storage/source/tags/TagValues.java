@@ -0,0 +1,137 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags;
+
+import com.github.anrimian.musicplayer.domain.models.composition.tags.CompositionSourceTags;
+import com.github.anrimian.musicplayer.domain.models.utils.CompositionHelper;
+import com.github.anrimian.musicplayer.domain.utils.TextUtils;
+
+import javax.annotation.Nullable;
+
+/**
+ * Collects values of the first found tag fields, same as Tag.getFirst() of jaudiotagger.
+ */
+class TagValues {
+
+    String title;
+    String artist;
+    String album;
+    String albumArtist;
+    String trackNumber;
+    String discNumber;
+    String comment;
+    String lyrics;
+    String genre;
+    String trackGain;
+    String albumGain;
+    String r128TrackGain;
+    String r128AlbumGain;
+    int durationSeconds;
+
+    void setTitle(String title) {
+        if (this.title == null) {
+            this.title = title;
+        }
+    }
+
+    void setArtist(String artist) {
+        if (this.artist == null) {
+            this.artist = artist;
+        }
+    }
+
+    void setAlbum(String album) {
+        if (this.album == null) {
+            this.album = album;
+        }
+    }
+
+    void setAlbumArtist(String albumArtist) {
+        if (this.albumArtist == null) {
+            this.albumArtist = albumArtist;
+        }
+    }
+
+    void setTrackNumber(String trackNumber) {
+        if (this.trackNumber == null) {
+            this.trackNumber = trackNumber;
+        }
+    }
+
+    void setDiscNumber(String discNumber) {
+        if (this.discNumber == null) {
+            this.discNumber = discNumber;
+        }
+    }
+
+    void setComment(String comment) {
+        if (this.comment == null) {
+            this.comment = comment;
+        }
+    }
+
+    void setLyrics(String lyrics) {
+        if (this.lyrics == null) {
+            this.lyrics = lyrics;
+        }
+    }
+
+    void setGenre(String genre) {
+        if (this.genre == null) {
+            this.genre = genre;
+        }
+    }
+
+    /**
+     * Takes loudness values from user defined text fields, other fields are ignored.
+     */
+    void setUserField(String key, String value) {
+        if (key.equalsIgnoreCase(LoudnessTagParser.REPLAYGAIN_TRACK_GAIN)) {
+            if (trackGain == null) {
+                trackGain = value;
+            }
+        } else if (key.equalsIgnoreCase(LoudnessTagParser.REPLAYGAIN_ALBUM_GAIN)) {
+            if (albumGain == null) {
+                albumGain = value;
+            }
+        } else if (key.equalsIgnoreCase(LoudnessTagParser.R128_TRACK_GAIN)) {
+            if (r128TrackGain == null) {
+                r128TrackGain = value;
+            }
+        } else if (key.equalsIgnoreCase(LoudnessTagParser.R128_ALBUM_GAIN)) {
+            if (r128AlbumGain == null) {
+                r128AlbumGain = value;
+            }
+        }
+    }
+
+    CompositionSourceTags toSourceTags() {
+        return new CompositionSourceTags(nonNull(title),
+                nonNull(artist),
+                nonNull(album),
+                nonNull(albumArtist),
+                durationSeconds,
+                parseNumber(trackNumber),
+                parseNumber(discNumber),
+                nonNull(comment),
+                nonNull(lyrics),
+                CompositionHelper.splitGenres(genre),
+                LoudnessTagParser.getGain(trackGain, r128TrackGain),
+                LoudnessTagParser.getGain(albumGain, r128AlbumGain));
+    }
+
+    private static String nonNull(@Nullable String value) {
+        return value == null ? "" : value;
+    }
+
+    //"3/12" format
+    @Nullable
+    private static Long parseNumber(@Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+        int delimiterIndex = value.indexOf('/');
+        if (delimiterIndex != -1) {
+            value = value.substring(0, delimiterIndex);
+        }
+        return TextUtils.safeParseLong(value.trim(), null);
+    }
+}
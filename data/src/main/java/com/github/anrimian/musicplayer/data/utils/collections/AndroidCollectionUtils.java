@@ -38,74 +38,6 @@ public class AndroidCollectionUtils {
         }
     }
 
-    public static <V> boolean processChanges(LongSparseArray<V> oldMap,
-                                             LongSparseArray<V> newMap,
-                                             ChangeInspector<V, V> changeInspector,
-                                             Callback<V> onDeleteCallback,
-                                             Callback<V> onAddedCallback,
-                                             Callback<V> onModifyCallback) {
-        boolean hasChanges = false;
-
-        for(int i = 0, size = oldMap.size(); i < size; i++) {
-            V existValue = oldMap.valueAt(i);
-            long existKey = oldMap.keyAt(i);
-            V value = newMap.get(existKey);
-            if (value == null) {
-                onDeleteCallback.call(existValue);
-                hasChanges = true;
-            }
-        }
-
-        for(int i = 0, size = newMap.size(); i < size; i++) {
-            long newKey = newMap.keyAt(i);
-            V newValue = newMap.valueAt(i);
-
-            V existValue = oldMap.get(newKey);
-            if (existValue == null) {
-                onAddedCallback.call(newValue);
-                hasChanges = true;
-            } else if (changeInspector.hasChanges(newValue, existValue)) {
-                onModifyCallback.call(newValue);
-                hasChanges = true;
-            }
-        }
-        return hasChanges;
-    }
-
-    public static <V1, V2> boolean processDiffChanges(LongSparseArray<V1> oldMap,
-                                                      LongSparseArray<V2> newMap,
-                                                      ChangeInspector<V1, V2> changeInspector,
-                                                      Callback<V1> onDeleteCallback,
-                                                      Callback<V2> onAddedCallback,
-                                                      BiCallback<V1, V2> onModifyCallback) {
-        boolean hasChanges = false;
-
-        for(int i = 0, size = oldMap.size(); i < size; i++) {
-            V1 existValue = oldMap.valueAt(i);
-            long existKey = oldMap.keyAt(i);
-            V2 value = newMap.get(existKey);
-            if (value == null) {
-                onDeleteCallback.call(existValue);
-                hasChanges = true;
-            }
-        }
-
-        for(int i = 0, size = newMap.size(); i < size; i++) {
-            long newKey = newMap.keyAt(i);
-            V2 newValue = newMap.valueAt(i);
-
-            V1 existValue = oldMap.get(newKey);
-            if (existValue == null) {
-                onAddedCallback.call(newValue);
-                hasChanges = true;
-            } else if (changeInspector.hasChanges(existValue, newValue)) {
-                onModifyCallback.call(existValue, newValue);
-                hasChanges = true;
-            }
-        }
-        return hasChanges;
-    }
-
     public static <Old, New, NewKey> boolean processChanges(Set<Old> currentSet,
                                                             Map<NewKey, New> newMap,
                                                             Mapper<Old, NewKey> newKeyFetcher,
@@ -142,10 +74,6 @@ public class AndroidCollectionUtils {
         return hasChanges;
     }
 
-    public interface ChangeInspector<V1, V2> {
-        boolean hasChanges(V1 first, V2 second);
-    }
-
     public interface EqualComparator<T, K> {
         boolean areItemsTheSame(T first, K second);
     }
@@ -0,0 +1,199 @@
+package com.github.anrimian.musicplayer.data.utils.collections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Difference of two key sequences sorted in ascending order, found in one merge pass.
+ * Stores index ranges of removed (in old sequence), added (in new sequence) and
+ * changed (in both sequences) items instead of calling back for every item.
+ * <p>
+ * If hashes of mutable fields are given, items with different hashes are considered changed
+ * without field comparison, so change detector is called only for items with equal hashes.
+ */
+public class SortedKeysDiff {
+
+    //pairs of start and end
+    private final IntRanges removedRanges = new IntRanges(2);
+    private final IntRanges addedRanges = new IntRanges(2);
+    //triples of old start, new start and count
+    private final IntRanges changedRanges = new IntRanges(3);
+
+    private SortedKeysDiff() {}
+
+    public static SortedKeysDiff diff(long[] oldKeys,
+                                      long[] newKeys,
+                                      @Nullable long[] oldHashes,
+                                      @Nullable long[] newHashes,
+                                      ChangeDetector changeDetector) {
+        SortedKeysDiff diff = new SortedKeysDiff();
+        int oldCount = oldKeys.length;
+        int newCount = newKeys.length;
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldCount && newIndex < newCount) {
+            long oldKey = oldKeys[oldIndex];
+            long newKey = newKeys[newIndex];
+            if (oldKey < newKey) {
+                diff.removedRanges.addIndex(oldIndex++);
+            } else if (oldKey > newKey) {
+                diff.addedRanges.addIndex(newIndex++);
+            } else {
+                diff.compare(oldIndex++, newIndex++, oldHashes, newHashes, changeDetector);
+            }
+        }
+        diff.addTail(oldIndex, oldCount, newIndex, newCount);
+        return diff;
+    }
+
+    public static <K> SortedKeysDiff diff(List<K> oldKeys,
+                                          List<K> newKeys,
+                                          Comparator<? super K> comparator,
+                                          ChangeDetector changeDetector) {
+        SortedKeysDiff diff = new SortedKeysDiff();
+        int oldCount = oldKeys.size();
+        int newCount = newKeys.size();
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldCount && newIndex < newCount) {
+            int result = comparator.compare(oldKeys.get(oldIndex), newKeys.get(newIndex));
+            if (result < 0) {
+                diff.removedRanges.addIndex(oldIndex++);
+            } else if (result > 0) {
+                diff.addedRanges.addIndex(newIndex++);
+            } else {
+                diff.compare(oldIndex++, newIndex++, null, null, changeDetector);
+            }
+        }
+        diff.addTail(oldIndex, oldCount, newIndex, newCount);
+        return diff;
+    }
+
+    public boolean hasChanges() {
+        return removedRanges.count > 0 || addedRanges.count > 0 || changedRanges.count > 0;
+    }
+
+    public int getRemovedRangesCount() {
+        return removedRanges.count;
+    }
+
+    public int getRemovedStart(int range) {
+        return removedRanges.get(range, 0);
+    }
+
+    public int getRemovedEnd(int range) {
+        return removedRanges.get(range, 1);
+    }
+
+    public int getAddedRangesCount() {
+        return addedRanges.count;
+    }
+
+    public int getAddedStart(int range) {
+        return addedRanges.get(range, 0);
+    }
+
+    public int getAddedEnd(int range) {
+        return addedRanges.get(range, 1);
+    }
+
+    public int getChangedRangesCount() {
+        return changedRanges.count;
+    }
+
+    public int getChangedOldStart(int range) {
+        return changedRanges.get(range, 0);
+    }
+
+    public int getChangedNewStart(int range) {
+        return changedRanges.get(range, 1);
+    }
+
+    public int getChangedCount(int range) {
+        return changedRanges.get(range, 2);
+    }
+
+    private void compare(int oldIndex,
+                         int newIndex,
+                         @Nullable long[] oldHashes,
+                         @Nullable long[] newHashes,
+                         ChangeDetector changeDetector) {
+        if ((oldHashes != null && newHashes != null && oldHashes[oldIndex] != newHashes[newIndex])
+                || changeDetector.hasChanges(oldIndex, newIndex)) {
+            changedRanges.addPair(oldIndex, newIndex);
+        }
+    }
+
+    private void addTail(int oldIndex, int oldCount, int newIndex, int newCount) {
+        if (oldIndex < oldCount) {
+            removedRanges.addRange(oldIndex, oldCount);
+        }
+        if (newIndex < newCount) {
+            addedRanges.addRange(newIndex, newCount);
+        }
+    }
+
+    public interface ChangeDetector {
+        boolean hasChanges(int oldIndex, int newIndex);
+    }
+
+    /**
+     * Flat array of ranges, adjacent indexes are merged into the last range.
+     */
+    private static class IntRanges {
+
+        private final int width;
+
+        private int[] values = new int[0];
+        private int count;
+
+        IntRanges(int width) {
+            this.width = width;
+        }
+
+        int get(int range, int field) {
+            return values[range * width + field];
+        }
+
+        void addIndex(int index) {
+            addRange(index, index + 1);
+        }
+
+        void addRange(int start, int end) {
+            int last = (count - 1) * width;
+            if (count > 0 && values[last + 1] == start) {
+                values[last + 1] = end;
+                return;
+            }
+            int position = allocate();
+            values[position] = start;
+            values[position + 1] = end;
+        }
+
+        void addPair(int oldIndex, int newIndex) {
+            int last = (count - 1) * width;
+            if (count > 0
+                    && values[last] + values[last + 2] == oldIndex
+                    && values[last + 1] + values[last + 2] == newIndex) {
+                values[last + 2]++;
+                return;
+            }
+            int position = allocate();
+            values[position] = oldIndex;
+            values[position + 1] = newIndex;
+            values[position + 2] = 1;
+        }
+
+        private int allocate() {
+            int position = count * width;
+            if (position + width > values.length) {
+                values = Arrays.copyOf(values, Math.max(width * 8, values.length * 2));
+            }
+            count++;
+            return position;
+        }
+    }
+}
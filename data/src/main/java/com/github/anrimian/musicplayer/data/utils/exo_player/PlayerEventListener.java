@@ -1,6 +1,8 @@
 package com.github.anrimian.musicplayer.data.utils.exo_player;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.media3.common.MediaItem;
 import androidx.media3.common.PlaybackException;
 import androidx.media3.common.Player;
 
@@ -9,13 +11,33 @@ import com.github.anrimian.musicplayer.domain.utils.functions.Callback;
 public class PlayerEventListener implements Player.Listener {
 
     private final Runnable onEnded;
+    private final Runnable onNextItemStarted;
+    private final Runnable onPositionStateChanged;
     private final Callback<PlaybackException> errorCallback;
 
-    public PlayerEventListener(Runnable onEnded, Callback<PlaybackException> errorCallback) {
+    public PlayerEventListener(Runnable onEnded,
+                               Runnable onNextItemStarted,
+                               Runnable onPositionStateChanged,
+                               Callback<PlaybackException> errorCallback) {
         this.onEnded = onEnded;
+        this.onNextItemStarted = onNextItemStarted;
+        this.onPositionStateChanged = onPositionStateChanged;
         this.errorCallback = errorCallback;
     }
 
+    //called once for a batch of changes, after the individual callbacks
+    @Override
+    public void onEvents(@NonNull Player player, @NonNull Player.Events events) {
+        if (events.containsAny(Player.EVENT_IS_PLAYING_CHANGED,
+                Player.EVENT_POSITION_DISCONTINUITY,
+                Player.EVENT_PLAYBACK_PARAMETERS_CHANGED,
+                Player.EVENT_PLAYBACK_STATE_CHANGED,
+                Player.EVENT_MEDIA_ITEM_TRANSITION,
+                Player.EVENT_TIMELINE_CHANGED)) {
+            onPositionStateChanged.run();
+        }
+    }
+
     @Override
     public void onPlaybackStateChanged(int state) {
         //            case Player.STATE_BUFFERING: {
@@ -32,6 +54,13 @@ public class PlayerEventListener implements Player.Listener {
         }
     }
 
+    @Override
+    public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
+        if (reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO) {
+            onNextItemStarted.run();
+        }
+    }
+
     @Override
     public void onPlayerError(@NonNull PlaybackException error) {
         errorCallback.call(error);
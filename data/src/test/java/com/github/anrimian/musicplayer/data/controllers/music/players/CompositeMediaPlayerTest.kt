@@ -40,12 +40,12 @@ class CompositeMediaPlayerTest {
     @BeforeEach
     fun setUp() {
         whenever(player1.prepareToPlay(any(), anyOrNull())).thenReturn(Completable.complete())
-        whenever(player1.getTrackPositionObservable()).thenReturn(player1PositionSubject)
+        whenever(player1.getTrackPositionObservable(any())).thenReturn(player1PositionSubject)
         whenever(player1.getPlayerEventsObservable()).thenReturn(player1ErrorEventSubject)
         whenever(player1.getSpeedChangeAvailableObservable()).thenReturn(Observable.just(true))
 
         whenever(player2.prepareToPlay(any(), anyOrNull())).thenReturn(Completable.complete())
-        whenever(player2.getTrackPositionObservable()).thenReturn(player2PositionSubject)
+        whenever(player2.getTrackPositionObservable(any())).thenReturn(player2PositionSubject)
         whenever(player2.getPlayerEventsObservable()).thenReturn(player2ErrorEventSubject)
         whenever(player2.getSpeedChangeAvailableObservable()).thenReturn(Observable.just(true))
 
@@ -164,4 +164,38 @@ class CompositeMediaPlayerTest {
         inOrder.verify(player2, never()).release()
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `next source is kept on player switch`() {
+        val source: CompositionContentSource = mock()
+        val nextSource: CompositionContentSource = mock()
+
+        whenever(player1.prepareToPlay(any(), anyOrNull()))
+            .thenReturn(Completable.error(UnsupportedSourceException()))
+        compositeMediaPlayer.setNextSource(nextSource)
+        compositeMediaPlayer.prepareToPlay(source).subscribe()
+
+        inOrder.verify(player1).setNextSource(eq(nextSource))
+        inOrder.verify(player1).release()
+        inOrder.verify(player2).setNextSource(eq(nextSource))
+        inOrder.verify(player2).prepareToPlay(eq(source), anyOrNull())
+    }
+
+    @Test
+    fun `started next source becomes current`() {
+        val source: CompositionContentSource = mock()
+        val nextSource: CompositionContentSource = mock()
+        val exception = UnsupportedSourceException()
+
+        compositeMediaPlayer.prepareToPlay(source).subscribe()
+        compositeMediaPlayer.setNextSource(nextSource)
+        player1ErrorEventSubject.onNext(MediaPlayerEvent.NextSourceStarted)
+        player1ErrorEventSubject.onNext(MediaPlayerEvent.Error(exception))
+        compositeMediaPlayer.prepareToPlay(nextSource).subscribe()
+
+        //relaunch is applied to started source
+        inOrder.verify(player1).release()
+        inOrder.verify(player2).prepareToPlay(eq(nextSource), eq(exception))
+        textEventObserver.assertValueAt(0, MediaPlayerEvent.NextSourceStarted)
+    }
+
+}
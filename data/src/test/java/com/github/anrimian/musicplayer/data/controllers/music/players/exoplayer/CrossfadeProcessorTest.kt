@@ -0,0 +1,162 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer
+
+import androidx.media3.common.C
+import androidx.media3.common.audio.AudioProcessor
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.sqrt
+
+class CrossfadeProcessorTest {
+
+    private val fadeInProcessor = CrossfadeProcessor()
+    private val fadeOutProcessor = CrossfadeProcessor()
+
+    @BeforeEach
+    fun setUp() {
+        val format = AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_16BIT)
+        fadeInProcessor.setCrossfadeEnabled(true)
+        fadeOutProcessor.setCrossfadeEnabled(true)
+        fadeInProcessor.configure(format)
+        fadeOutProcessor.configure(format)
+    }
+
+    @Test
+    fun `equal power crossfade test`() {
+        //fade of 1000 frames
+        fadeInProcessor.fadeIn(1_000_000)
+        fadeOutProcessor.fadeOut(1_000_000)
+
+        val fadeIn = process(fadeInProcessor, 1500)
+        val fadeOut = process(fadeOutProcessor, 1500)
+
+        assertEquals(0, fadeIn[0].toInt())
+        assertEquals(SAMPLE.toInt(), fadeOut[0].toInt())
+        for (frame in 0 until 1000 step 100) {
+            val inGain = fadeIn[frame * 2] / SAMPLE.toDouble()
+            val outGain = fadeOut[frame * 2] / SAMPLE.toDouble()
+            assertEquals(1.0, sqrt(inGain * inGain + outGain * outGain), 0.01)
+            //both channels have the same gain
+            assertEquals(fadeIn[frame * 2], fadeIn[frame * 2 + 1])
+        }
+        assertEquals(SAMPLE.toInt(), fadeIn[1100 * 2].toInt())
+        assertEquals(0, fadeOut[1100 * 2].toInt())
+    }
+
+    @Test
+    fun `fade continues across inputs test`() {
+        fadeInProcessor.fadeIn(1_000_000)
+
+        val first = process(fadeInProcessor, 500)
+        val second = process(fadeInProcessor, 600)
+
+        assertEquals(first[499 * 2] + 0.0, second[0] + 0.0, SAMPLE * 0.01)
+        assertEquals(SAMPLE.toInt(), second[550 * 2].toInt())
+    }
+
+    @Test
+    fun `cancel fade test`() {
+        fadeOutProcessor.fadeOut(1_000_000)
+        process(fadeOutProcessor, 1500)
+
+        fadeOutProcessor.cancelFade()
+
+        assertEquals(SAMPLE.toInt(), process(fadeOutProcessor, 10)[0].toInt())
+    }
+
+    @Test
+    fun `pending fade is kept after reset test`() {
+        fadeInProcessor.fadeIn(1_000_000)
+        fadeInProcessor.reset()
+        fadeInProcessor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_16BIT))
+
+        assertEquals(0, process(fadeInProcessor, 10)[0].toInt())
+    }
+
+    @Test
+    fun `inactive without fade test`() {
+        val processor = CrossfadeProcessor()
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_FLOAT))
+
+        assertFalse(processor.isActive)
+
+        processor.fadeIn(1_000_000)
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_FLOAT))
+
+        assertTrue(processor.isActive)
+    }
+
+    @Test
+    fun `float fade out test`() {
+        val processor = CrossfadeProcessor()
+        processor.fadeOut(1_000_000)
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_FLOAT))
+
+        val input = ByteBuffer.allocateDirect(1500 * 8).order(ByteOrder.nativeOrder())
+        repeat(1500 * 2) { input.putFloat(0.5f) }
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput().asFloatBuffer()
+
+        assertEquals(0.5f, output[0], 0.001f)
+        assertEquals(0.5f * EQUAL_POWER_HALF_GAIN, output[500 * 2], 0.01f)
+        assertEquals(0f, output[1100 * 2])
+    }
+
+    @Test
+    fun `24-bit fade in test`() {
+        val processor = CrossfadeProcessor()
+        processor.fadeIn(1_000_000)
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_24BIT))
+
+        val input = ByteBuffer.allocateDirect(1500 * 6).order(ByteOrder.nativeOrder())
+        repeat(1500 * 2) { put24Bit(input, -SAMPLE_24BIT) }
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(0, read24Bit(output, 0))
+        assertEquals(
+            -SAMPLE_24BIT * EQUAL_POWER_HALF_GAIN,
+            read24Bit(output, 500 * 2).toFloat(),
+            SAMPLE_24BIT * 0.01f
+        )
+        assertEquals(-SAMPLE_24BIT, read24Bit(output, 1100 * 2))
+    }
+
+    private fun put24Bit(buffer: ByteBuffer, sample: Int) {
+        buffer.put(sample.toByte())
+        buffer.put((sample shr 8).toByte())
+        buffer.put((sample shr 16).toByte())
+    }
+
+    private fun read24Bit(buffer: ByteBuffer, sampleIndex: Int): Int {
+        val index = buffer.position() + sampleIndex * 3
+        return (buffer[index].toInt() and 0xff) or
+                (buffer[index + 1].toInt() and 0xff shl 8) or
+                (buffer[index + 2].toInt() shl 16)
+    }
+
+    private fun process(processor: CrossfadeProcessor, frames: Int): ShortArray {
+        val input = ByteBuffer.allocateDirect(frames * 4).order(ByteOrder.nativeOrder())
+        repeat(frames * 2) { input.putShort(SAMPLE) }
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+        val result = ShortArray(output.remaining() / 2)
+        output.asShortBuffer().get(result)
+        return result
+    }
+
+    private companion object {
+        const val SAMPLE_RATE = 1000
+        const val SAMPLE: Short = 10000
+        const val SAMPLE_24BIT = 0x400000
+        //gain in the middle of equal power fade
+        const val EQUAL_POWER_HALF_GAIN = 0.7071f
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer
+
+import androidx.media3.common.C
+import androidx.media3.common.audio.AudioProcessor
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class LoudnessNormalizationProcessorTest {
+
+    private val processor = LoudnessNormalizationProcessor()
+
+    @Test
+    fun `unchanged audio without gain test`() {
+        configure(C.ENCODING_PCM_16BIT)
+
+        val output = process16Bit(SAMPLE, 10)
+
+        assertEquals(SAMPLE.toInt(), output[0].toInt())
+        assertEquals(SAMPLE.toInt(), output[19].toInt())
+    }
+
+    @Test
+    fun `16-bit gain test`() {
+        configure(C.ENCODING_PCM_16BIT)
+        processor.setGain(-6.0206f)
+        processor.flush()
+
+        val output = process16Bit(SAMPLE, 10)
+
+        assertEquals(SAMPLE / 2.0, output[0].toDouble(), 1.0)
+    }
+
+    @Test
+    fun `16-bit clipping test`() {
+        configure(C.ENCODING_PCM_16BIT)
+        processor.setGain(12f)
+        processor.flush()
+
+        val output = process16Bit(30000, 10)
+
+        assertEquals(Short.MAX_VALUE.toInt(), output[0].toInt())
+    }
+
+    @Test
+    fun `24-bit gain test`() {
+        configure(C.ENCODING_PCM_24BIT)
+        processor.setGain(-6.0206f)
+        processor.flush()
+
+        val input = ByteBuffer.allocateDirect(3 * 2).order(ByteOrder.nativeOrder())
+        putInt24(input, 0x400000)
+        putInt24(input, -0x400000)
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(0x200000.toDouble(), getInt24(output, 0).toDouble(), 2.0)
+        assertEquals(-0x200000.toDouble(), getInt24(output, 3).toDouble(), 2.0)
+    }
+
+    @Test
+    fun `float gain is not clipped test`() {
+        configure(C.ENCODING_PCM_FLOAT)
+        processor.setGain(6.0206f)
+        processor.flush()
+
+        val input = ByteBuffer.allocateDirect(4 * 2).order(ByteOrder.nativeOrder())
+        input.putFloat(0.8f)
+        input.putFloat(-0.25f)
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(1.6f, output.getFloat(0), 0.001f)
+        assertEquals(-0.5f, output.getFloat(4), 0.001f)
+    }
+
+    @Test
+    fun `gain change is ramped test`() {
+        configure(C.ENCODING_PCM_16BIT)
+        //ramp of 20 frames
+        processor.setGain(-6.0206f)
+
+        val output = process16Bit(SAMPLE, 40)
+
+        assertEquals(SAMPLE.toDouble(), output[0].toDouble(), SAMPLE * 0.05)
+        assertEquals(SAMPLE * 0.75, output[10 * 2].toDouble(), SAMPLE * 0.05)
+        assertEquals(SAMPLE / 2.0, output[30 * 2].toDouble(), 1.0)
+        //both channels have the same gain
+        assertEquals(output[10 * 2], output[10 * 2 + 1])
+    }
+
+    @Test
+    fun `next stream gain is applied at its stream start test`() {
+        configure(C.ENCODING_PCM_16BIT)
+        processor.onOutputStreamStarted(FIRST_STREAM_OFFSET_US)
+        processor.addNextStreamGain(-6.0206f)
+
+        assertEquals(SAMPLE.toInt(), process16Bit(SAMPLE, 40)[0].toInt())
+        //renderer is re-enabled for the same item
+        processor.onOutputStreamStarted(FIRST_STREAM_OFFSET_US)
+        assertEquals(SAMPLE.toInt(), process16Bit(SAMPLE, 40)[79].toInt())
+
+        processor.onOutputStreamStarted(SECOND_STREAM_OFFSET_US)
+        val output = process16Bit(SAMPLE, 40)
+
+        assertEquals(SAMPLE / 2.0, output[79].toDouble(), 1.0)
+    }
+
+    @Test
+    fun `current gain drops queued gains test`() {
+        configure(C.ENCODING_PCM_16BIT)
+        processor.onOutputStreamStarted(FIRST_STREAM_OFFSET_US)
+        processor.addNextStreamGain(-6.0206f)
+
+        processor.setGain(0f)
+        processor.onOutputStreamStarted(SECOND_STREAM_OFFSET_US)
+        processor.onOutputStreamStarted(THIRD_STREAM_OFFSET_US)
+
+        assertEquals(SAMPLE.toInt(), process16Bit(SAMPLE, 40)[79].toInt())
+    }
+
+    @Test
+    fun `unsupported encoding test`() {
+        assertThrows(AudioProcessor.UnhandledAudioFormatException::class.java) {
+            configure(C.ENCODING_PCM_8BIT)
+        }
+    }
+
+    private fun configure(encoding: Int) {
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, encoding))
+    }
+
+    private fun process16Bit(sample: Short, frames: Int): ShortArray {
+        val input = ByteBuffer.allocateDirect(frames * 4).order(ByteOrder.nativeOrder())
+        repeat(frames * 2) { input.putShort(sample) }
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+        val result = ShortArray(output.remaining() / 2)
+        output.asShortBuffer().get(result)
+        return result
+    }
+
+    private fun putInt24(buffer: ByteBuffer, value: Int) {
+        buffer.put(value.toByte())
+        buffer.put((value shr 8).toByte())
+        buffer.put((value shr 16).toByte())
+    }
+
+    private fun getInt24(buffer: ByteBuffer, index: Int): Int {
+        return (buffer.get(index).toInt() and 0xff) or
+                ((buffer.get(index + 1).toInt() and 0xff) shl 8) or
+                (buffer.get(index + 2).toInt() shl 16)
+    }
+
+    private companion object {
+        const val SAMPLE_RATE = 1000
+        const val SAMPLE: Short = 10000
+
+        const val FIRST_STREAM_OFFSET_US = 1_000_000_000_000L
+        const val SECOND_STREAM_OFFSET_US = 1_000_180_000_000L
+        const val THIRD_STREAM_OFFSET_US = 1_000_360_000_000L
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import androidx.media3.common.C;
+import androidx.media3.common.audio.AudioProcessor;
+
+import com.github.anrimian.musicplayer.data.utils.benchmark.BenchmarkTest;
+import com.github.anrimian.musicplayer.data.utils.benchmark.Benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Compares current processor with the previous per sample implementation.
+ */
+public class StereoVolumeProcessorLegacyTest {
+
+    private static final int SAMPLE_RATE = 48000;
+    //~20ms of stereo audio, usual size of sink input
+    private static final int FRAMES = 1024;
+
+    private static final float LEFT_VOLUME = 0.7f;
+    private static final float RIGHT_VOLUME = 0.4f;
+
+    //~20s of audio
+    private static final int BENCHMARK_BUFFERS = 1000;
+
+    private final StereoVolumeProcessor processor = new StereoVolumeProcessor();
+    private final LegacyStereoVolumeProcessor legacyProcessor = new LegacyStereoVolumeProcessor();
+
+    @Test
+    public void sameOutputAsLegacyProcessorTest() throws Exception {
+        configureProcessor();
+
+        ByteBuffer input = createInput();
+
+        ByteBuffer expected = legacyProcessor.process(input);
+        input.position(0);
+        processor.queueInput(input);
+        assertEquals(expected, processor.getOutput());
+    }
+
+    @BenchmarkTest
+    public void processBenchmark(TestReporter reporter) throws Exception {
+        configureProcessor();
+        ByteBuffer input = createInput();
+
+        Benchmarks.compare(reporter,
+                "process " + BENCHMARK_BUFFERS + " buffers",
+                () -> {
+                    ByteBuffer output = null;
+                    for (int i = 0; i < BENCHMARK_BUFFERS; i++) {
+                        input.position(0);
+                        output = legacyProcessor.process(input);
+                    }
+                    return output;
+                },
+                () -> {
+                    ByteBuffer output = null;
+                    for (int i = 0; i < BENCHMARK_BUFFERS; i++) {
+                        input.position(0);
+                        processor.queueInput(input);
+                        output = processor.getOutput();
+                    }
+                    return output;
+                });
+    }
+
+    private void configureProcessor() throws Exception {
+        processor.setChannelMap(new int[] { 0, 1 });
+        processor.setVolume(LEFT_VOLUME, RIGHT_VOLUME);
+        processor.configure(new AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_16BIT));
+        processor.flush();
+    }
+
+    private static ByteBuffer createInput() {
+        Random random = new Random(1);
+        ByteBuffer input = ByteBuffer.allocateDirect(FRAMES * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < FRAMES * 2; i++) {
+            input.putShort((short) random.nextInt());
+        }
+        input.flip();
+        return input;
+    }
+
+    private static class LegacyStereoVolumeProcessor {
+
+        private final float[] volume = new float[] { LEFT_VOLUME, RIGHT_VOLUME };
+        private final int channelCount = 2;
+
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+
+        ByteBuffer process(ByteBuffer inputBuffer) {
+            int position = inputBuffer.position();
+            int limit = inputBuffer.limit();
+            int size = limit - position;
+
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            } else {
+                buffer.clear();
+            }
+
+            int ch = 0;
+            for (int i = position; i < limit; i += 2) {
+                short sample = (short) (inputBuffer.getShort(i) * volume[ch++]);
+                buffer.putShort(sample);
+                ch %= channelCount;
+            }
+
+            inputBuffer.position(limit);
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
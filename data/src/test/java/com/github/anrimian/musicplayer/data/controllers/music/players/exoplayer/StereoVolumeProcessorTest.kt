@@ -0,0 +1,174 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.exoplayer
+
+import androidx.media3.common.C
+import androidx.media3.common.audio.AudioProcessor
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class StereoVolumeProcessorTest {
+
+    private val processor = StereoVolumeProcessor().apply {
+        setChannelMap(intArrayOf(0, 1))
+    }
+
+    @Test
+    fun `16-bit stereo volume test`() {
+        configure(2, C.ENCODING_PCM_16BIT)
+        processor.setVolume(0.5f, 0.25f)
+        processor.flush()
+
+        val output = process16Bit(2, 10)
+
+        assertEquals(SAMPLE / 2, output[0].toInt())
+        assertEquals(SAMPLE / 4, output[1].toInt())
+        assertEquals(SAMPLE / 2, output[18].toInt())
+        assertEquals(SAMPLE / 4, output[19].toInt())
+    }
+
+    @Test
+    fun `full volume keeps audio unchanged test`() {
+        configure(2, C.ENCODING_PCM_16BIT)
+
+        val output = process16Bit(2, 10)
+
+        assertEquals(SAMPLE, output[0].toInt())
+        assertEquals(SAMPLE, output[19].toInt())
+    }
+
+    @Test
+    fun `multichannel volume test`() {
+        configure(6, C.ENCODING_PCM_16BIT)
+        processor.setVolume(1f, 0.5f)
+        processor.flush()
+
+        val output = process16Bit(6, 10)
+
+        //FL, FR, FC, LFE, BL, BR
+        assertEquals(SAMPLE, output[0].toInt())
+        assertEquals(SAMPLE / 2, output[1].toInt())
+        assertEquals(SAMPLE * 3 / 4, output[2].toInt())
+        assertEquals(SAMPLE * 3 / 4, output[3].toInt())
+        assertEquals(SAMPLE, output[4].toInt())
+        assertEquals(SAMPLE / 2, output[5].toInt())
+    }
+
+    @Test
+    fun `float volume test`() {
+        configure(2, C.ENCODING_PCM_FLOAT)
+        processor.setVolume(0.5f, 1f)
+        processor.flush()
+
+        val input = ByteBuffer.allocateDirect(4 * 2).order(ByteOrder.nativeOrder())
+        input.putFloat(0.8f)
+        input.putFloat(-0.8f)
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(0.4f, output.getFloat(0), 0.0001f)
+        assertEquals(-0.8f, output.getFloat(4), 0.0001f)
+        assertEquals(8, output.remaining())
+    }
+
+    @Test
+    fun `24-bit volume test`() {
+        configure(2, C.ENCODING_PCM_24BIT)
+        processor.setVolume(0.5f, 0.5f)
+        processor.flush()
+
+        val input = ByteBuffer.allocateDirect(3 * 2).order(ByteOrder.nativeOrder())
+        putInt24(input, 0x400000)
+        putInt24(input, -0x400000)
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(0x200000, getInt24(output, 0))
+        assertEquals(-0x200000, getInt24(output, 3))
+    }
+
+    @Test
+    fun `32-bit volume test`() {
+        configure(2, C.ENCODING_PCM_32BIT)
+        processor.setVolume(0.5f, 1f)
+        processor.flush()
+
+        val input = ByteBuffer.allocateDirect(4 * 2).order(ByteOrder.nativeOrder())
+        input.putInt(Int.MAX_VALUE)
+        input.putInt(Int.MIN_VALUE)
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+
+        assertEquals(Int.MAX_VALUE / 2, output.getInt(0))
+        assertEquals(Int.MIN_VALUE, output.getInt(4))
+    }
+
+    @Test
+    fun `volume change is ramped test`() {
+        configure(2, C.ENCODING_PCM_16BIT)
+        //ramp of 10 frames
+        processor.setVolume(0f, 1f)
+
+        val first = process16Bit(2, 5)
+        val second = process16Bit(2, 10)
+
+        assertEquals(SAMPLE * 0.9, first[0].toDouble(), SAMPLE * 0.01)
+        assertEquals(SAMPLE * 0.5, first[4 * 2].toDouble(), SAMPLE * 0.01)
+        assertEquals(SAMPLE * 0.4, second[0].toDouble(), SAMPLE * 0.01)
+        assertEquals(0, second[5 * 2].toInt())
+        assertEquals(SAMPLE, second[5 * 2 + 1].toInt())
+    }
+
+    @Test
+    fun `inactive without channel map test`() {
+        val processor = StereoVolumeProcessor()
+
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, 2, C.ENCODING_PCM_8BIT))
+
+        assertFalse(processor.isActive)
+    }
+
+    @Test
+    fun `unsupported encoding test`() {
+        assertThrows(AudioProcessor.UnhandledAudioFormatException::class.java) {
+            configure(2, C.ENCODING_PCM_8BIT)
+        }
+    }
+
+    private fun configure(channelCount: Int, encoding: Int) {
+        processor.configure(AudioProcessor.AudioFormat(SAMPLE_RATE, channelCount, encoding))
+    }
+
+    private fun process16Bit(channelCount: Int, frames: Int): ShortArray {
+        val input = ByteBuffer.allocateDirect(frames * channelCount * 2).order(ByteOrder.nativeOrder())
+        repeat(frames * channelCount) { input.putShort(SAMPLE.toShort()) }
+        input.flip()
+        processor.queueInput(input)
+        val output = processor.getOutput()
+        val result = ShortArray(output.remaining() / 2)
+        output.asShortBuffer().get(result)
+        return result
+    }
+
+    private fun putInt24(buffer: ByteBuffer, value: Int) {
+        buffer.put(value.toByte())
+        buffer.put((value shr 8).toByte())
+        buffer.put((value shr 16).toByte())
+    }
+
+    private fun getInt24(buffer: ByteBuffer, index: Int): Int {
+        return (buffer.get(index).toInt() and 0xff) or
+                ((buffer.get(index + 1).toInt() and 0xff) shl 8) or
+                (buffer.get(index + 2).toInt() shl 16)
+    }
+
+    private companion object {
+        const val SAMPLE_RATE = 1000
+        const val SAMPLE = 10000
+    }
+}
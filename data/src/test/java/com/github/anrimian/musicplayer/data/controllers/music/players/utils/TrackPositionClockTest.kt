@@ -0,0 +1,87 @@
+package com.github.anrimian.musicplayer.data.controllers.music.players.utils
+
+import io.reactivex.rxjava3.schedulers.TestScheduler
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class TrackPositionClockTest {
+
+    private val scheduler = TestScheduler()
+
+    private val clock = TrackPositionClock(scheduler)
+
+    @Test
+    fun `interpolate position while playing`() {
+        val observer = clock.getPositionObservable(1000).test()
+
+        clock.update(5000, 60000, true, 1f)
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(2000, TimeUnit.MILLISECONDS)
+
+        observer.assertValues(0, 5000, 6000, 7000)
+    }
+
+    @Test
+    fun `interpolate position with playback speed`() {
+        val observer = clock.getPositionObservable(1000).test()
+
+        clock.update(0, 60000, true, 2f)
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(2000, TimeUnit.MILLISECONDS)
+
+        observer.assertValues(0, 2000, 4000)
+    }
+
+    @Test
+    fun `no ticks while paused`() {
+        clock.update(1000, 60000, true, 1f)
+        val observer = clock.getPositionObservable(1000).test()
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        clock.update(2000, 60000, false, 1f)
+        scheduler.advanceTimeBy(10, TimeUnit.SECONDS)
+
+        observer.assertValues(1000, 2000)
+        assertEquals(2000L, clock.getPosition())
+    }
+
+    @Test
+    fun `each subscriber gets own interval`() {
+        clock.update(0, 60000, true, 1f)
+        val fastObserver = clock.getPositionObservable(250).test()
+        val slowObserver = clock.getPositionObservable(1000).test()
+        scheduler.triggerActions()
+
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        fastObserver.assertValues(0, 250, 500, 750, 1000)
+        slowObserver.assertValues(0, 1000)
+    }
+
+    @Test
+    fun `position is not interpolated past duration`() {
+        val observer = clock.getPositionObservable(1000).test()
+
+        clock.update(59000, 60000, true, 1f)
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(3000, TimeUnit.MILLISECONDS)
+
+        observer.assertValues(0, 59000, 60000)
+    }
+
+    @Test
+    fun `seek while playing restarts interpolation`() {
+        val observer = clock.getPositionObservable(1000).test()
+
+        clock.update(0, 60000, true, 1f)
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(1500, TimeUnit.MILLISECONDS)
+        clock.update(30000, 60000, true, 1f)
+        scheduler.triggerActions()
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS)
+
+        observer.assertValues(0, 1000, 30000, 31000)
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.anrimian.musicplayer.data.database.dao.compositions
+
+import android.database.Cursor
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteProgram
+import androidx.sqlite.db.SupportSQLiteQuery
+import com.github.anrimian.musicplayer.data.database.LibraryDatabase
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsWindowedList.Companion.MAX_ACTIVE_WINDOWS
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsWindowedList.Companion.WINDOW_SIZE
+import com.github.anrimian.musicplayer.domain.models.composition.Composition
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.argThat
+import org.mockito.kotlin.clearInvocations
+import org.mockito.kotlin.doAnswer
+import org.mockito.kotlin.doReturn
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.never
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import java.util.Date
+
+class CompositionsWindowedListTest {
+
+    private val libraryDatabase: LibraryDatabase = mock()
+    private val compositionsDao: CompositionsDao = mock()
+    private val idsQuery = SimpleSQLiteQuery("ids")
+
+    private val windowedList = CompositionsWindowedList(
+        libraryDatabase,
+        compositionsDao,
+        idsQuery,
+        false
+    )
+    private val fullList = CompositionsWindowedList(
+        libraryDatabase,
+        compositionsDao,
+        idsQuery,
+        false,
+        true
+    )
+
+    private var ids = LongArray(0)
+    private val deletedIds = HashSet<Long>()
+
+    @BeforeEach
+    fun setUp() {
+        whenever(libraryDatabase.query(any<SupportSQLiteQuery>(), anyOrNull()))
+            .thenAnswer { idsCursor(ids) }
+        whenever(compositionsDao.executeQuery(any())).thenAnswer { invocation ->
+            //rows order of IN query is not defined, return them reversed
+            readArgs(invocation.getArgument(0))
+                .filter { id -> !deletedIds.contains(id) }
+                .reversed()
+                .map(::composition)
+        }
+        whenever(compositionsDao.isChangesLogComplete(any())).thenReturn(true)
+        whenever(compositionsDao.getChangedCompositionIds(any())).thenReturn(emptyList())
+    }
+
+    @Test
+    fun `read only first window until other windows are requested`() {
+        ids = LongArray(WINDOW_SIZE * 3) { i -> i.toLong() }
+
+        val first = windowedList.load()
+
+        assertEquals(ids.toList(), first.map(Composition::id))
+        assertEquals("title 0", first[0].title)
+        assertEquals("", first[WINDOW_SIZE * 2].title)
+        verify(compositionsDao, times(1)).executeQuery(any())
+        clearInvocations(compositionsDao)
+
+        first.loadAround(WINDOW_SIZE * 2 + WINDOW_SIZE / 2)
+        val second = windowedList.load()
+
+        assertEquals("title ${WINDOW_SIZE * 2}", second[WINDOW_SIZE * 2].title)
+        verify(compositionsDao).executeQuery(argThat { readArgs(this).contains(WINDOW_SIZE * 2L) })
+        verify(compositionsDao, times(1)).executeQuery(any())
+        assertEquals(
+            listOf(WINDOW_SIZE * 2 until WINDOW_SIZE * 3),
+            second.getChangedRanges(first)
+        )
+    }
+
+    @Test
+    fun `request window load once`() {
+        ids = LongArray(WINDOW_SIZE * 3) { i -> i.toLong() }
+        val list = windowedList.load()
+        val observer = windowedList.getWindowRequestObservable().test()
+
+        list.loadAround(WINDOW_SIZE / 2)
+        list.loadAround(WINDOW_SIZE * 2 + WINDOW_SIZE / 2)
+        list.loadAround(WINDOW_SIZE * 2 + WINDOW_SIZE / 2 + 1)
+
+        observer.assertValueCount(1)
+    }
+
+    @Test
+    fun `unload least recently requested windows`() {
+        ids = LongArray(WINDOW_SIZE * (MAX_ACTIVE_WINDOWS + 1)) { i -> i.toLong() }
+        var list = windowedList.load()
+        for (window in 1..MAX_ACTIVE_WINDOWS) {
+            list.loadAround(window * WINDOW_SIZE + WINDOW_SIZE / 2)
+            list = windowedList.load()
+        }
+
+        assertEquals("", list[0].title)
+        assertEquals("title $WINDOW_SIZE", list[WINDOW_SIZE].title)
+    }
+
+    @Test
+    fun `read all windows in ids order`() {
+        ids = LongArray(WINDOW_SIZE + 10) { i -> (WINDOW_SIZE + 10 - i).toLong() }
+
+        val result = fullList.load()
+
+        assertEquals(ids.toList(), result.map(Composition::id))
+        assertEquals(ids.map { id -> "title $id" }, result.map(Composition::title))
+        verify(compositionsDao, times(2)).executeQuery(any())
+    }
+
+    @Test
+    fun `return previous list without changes`() {
+        ids = longArrayOf(1, 2, 3)
+        val first = windowedList.load()
+        clearInvocations(compositionsDao, libraryDatabase)
+
+        val second = windowedList.load()
+
+        assertSame(first, second)
+        verify(compositionsDao, never()).executeQuery(any())
+        verify(libraryDatabase, never()).query(any<SupportSQLiteQuery>(), anyOrNull())
+    }
+
+    @Test
+    fun `read only changed composition`() {
+        ids = LongArray(WINDOW_SIZE * 2) { i -> i.toLong() }
+        val first = fullList.load()
+        clearInvocations(compositionsDao)
+        whenever(compositionsDao.getChangedCompositionIds(any())).thenReturn(listOf(WINDOW_SIZE + 1L))
+
+        val second = fullList.load()
+
+        assertEquals(ids.toList(), second.map(Composition::id))
+        verify(compositionsDao).executeQuery(argThat { readArgs(this) == listOf(WINDOW_SIZE + 1L) })
+        verify(compositionsDao, times(1)).executeQuery(any())
+        assertEquals(listOf(WINDOW_SIZE + 1..WINDOW_SIZE + 1), second.getChangedRanges(first))
+    }
+
+    @Test
+    fun `read all windows when changes log is not complete`() {
+        ids = LongArray(WINDOW_SIZE * 2) { i -> i.toLong() }
+        fullList.load()
+        clearInvocations(compositionsDao)
+        whenever(compositionsDao.isChangesLogComplete(any())).thenReturn(false)
+
+        fullList.load()
+
+        verify(compositionsDao, times(2)).executeQuery(any())
+    }
+
+    @Test
+    fun `read only inserted composition`() {
+        ids = LongArray(WINDOW_SIZE * 2) { i -> i.toLong() + 1 }
+        val first = fullList.load()
+        clearInvocations(compositionsDao)
+        whenever(compositionsDao.getChangedCompositionIds(any())).thenReturn(listOf(0L))
+        ids = LongArray(WINDOW_SIZE * 2 + 1) { i -> i.toLong() }
+
+        val second = fullList.load()
+
+        assertEquals(ids.toList(), second.map(Composition::id))
+        verify(compositionsDao).executeQuery(argThat { readArgs(this) == listOf(0L) })
+        verify(compositionsDao, times(1)).executeQuery(any())
+        assertNull(second.getChangedRanges(first))
+    }
+
+    @Test
+    fun `skip composition deleted after ids read`() {
+        ids = longArrayOf(1, 2, 3)
+        deletedIds.add(2)
+
+        val result = windowedList.load()
+
+        assertEquals(listOf(1L, 3L), result.map(Composition::id))
+
+        whenever(compositionsDao.getChangedCompositionIds(any())).thenReturn(listOf(2L))
+        ids = longArrayOf(1, 3)
+        assertEquals(listOf(1L, 3L), windowedList.load().map(Composition::id))
+    }
+
+    private fun readArgs(query: SimpleSQLiteQuery): List<Long> {
+        val args = LongArray(query.argCount)
+        val program = mock<SupportSQLiteProgram> {
+            on { bindLong(any(), any()) } doAnswer { invocation ->
+                args[invocation.getArgument<Int>(0) - 1] = invocation.getArgument(1)
+            }
+        }
+        query.bindTo(program)
+        return args.toList()
+    }
+
+    private fun idsCursor(ids: LongArray): Cursor {
+        var position = -1
+        return mock {
+            on { count } doReturn ids.size
+            on { moveToNext() } doAnswer { ++position < ids.size }
+            on { getLong(0) } doAnswer { ids[position] }
+        }
+    }
+
+    private fun composition(id: Long) = Composition(
+        id,
+        "title $id",
+        null,
+        null,
+        0,
+        0,
+        null,
+        id,
+        Date(0),
+        Date(0),
+        Date(0),
+        null,
+        true,
+        InitialSource.LOCAL
+    )
+}
@@ -0,0 +1,30 @@
+package com.github.anrimian.musicplayer.data.database.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class DatabaseUtilsTest {
+
+    @Test
+    public void searchArgTest() {
+        assertEquals("\"abbey*\" \"road*\"", DatabaseUtils.getSearchArg(" abbey  road "));
+        assertEquals("\"ac/dc*\"", DatabaseUtils.getSearchArg("ac/dc"));
+    }
+
+    @Test
+    public void searchArgSpecialCharsTest() {
+        assertEquals("\"rock*\"", DatabaseUtils.getSearchArg("\"rock\"* - *"));
+        assertNull(DatabaseUtils.getSearchArg("\" -"));
+        assertNull(DatabaseUtils.getSearchArg(""));
+        assertNull(DatabaseUtils.getSearchArg(null));
+    }
+
+    @Test
+    public void searchArgsTest() {
+        assertArrayEquals(new String[] { "\"a*\"", "\"a*\"" }, DatabaseUtils.getSearchArgs("a", 2));
+        assertArrayEquals(new String[] { null, null, null }, DatabaseUtils.getSearchArgs(" ", 3));
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.anrimian.musicplayer.data.database.utils
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+class QueryTemplatesTest {
+
+    @Test
+    fun `template is built once per key test`() {
+        val builder = {
+            StringBuilder("SELECT id FROM test").append(" WHERE id = ?").toString()
+        }
+
+        val hitCount = QueryTemplates.getHitCount()
+        val missCount = QueryTemplates.getMissCount()
+
+        val first = QueryTemplates.get("test:first", builder)
+        val second = QueryTemplates.get("test:first", builder)
+        val other = QueryTemplates.get("test:second", builder)
+
+        assertSame(first, second)
+        assertEquals(first, other)
+        assertNotSame(first, other)
+        assertEquals(hitCount + 1, QueryTemplates.getHitCount())
+        assertEquals(missCount + 2, QueryTemplates.getMissCount())
+    }
+
+    @Test
+    fun `query uses cached template test`() {
+        val builder = { StringBuilder("SELECT id FROM test").append(" WHERE id = ?").toString() }
+
+        val first = QueryTemplates.query("test:query", arrayOf(1L), builder)
+        val second = QueryTemplates.query("test:query", arrayOf(2L), builder)
+
+        assertSame(first.sql, second.sql)
+        assertEquals(1, second.argCount)
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import com.github.anrimian.musicplayer.data.database.entities.play_queue.PlayQueuePositionEntry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+class PlayQueueIndexTest {
+
+    private val index = PlayQueueIndex()
+
+    @BeforeEach
+    fun setUp() {
+        index.update {
+            listOf(
+                PlayQueuePositionEntry(1, 0, 2048, false),
+                PlayQueuePositionEntry(2, 1024, 0, true),
+                PlayQueuePositionEntry(3, 1536, 3072, false),
+                PlayQueuePositionEntry(4, 2048, 1024, false),
+            )
+        }
+    }
+
+    @Test
+    fun `index of test`() {
+        assertEquals(4, index.size())
+        assertEquals(2, index.indexOf(3, false))
+        assertEquals(3, index.indexOf(3, true))
+        assertEquals(-1, index.indexOf(5, false))
+        assertEquals(1536, index.getPosition(3, false))
+        assertNull(index.getPosition(5, false))
+    }
+
+    @Test
+    fun `next item test`() {
+        assertEquals(2, index.getNextItemId(1, false))
+        assertEquals(1, index.getNextItemId(4, false))
+        assertEquals(1, index.getNextItemId(5, false))
+        assertEquals(4, index.getNextItemId(2, true))
+        assertTrue(index.isLastItem(4, false))
+        assertFalse(index.isLastItem(4, true))
+    }
+
+    @Test
+    fun `previous item skips corrupted items test`() {
+        assertEquals(1, index.getPreviousItemId(3, false))
+        assertEquals(4, index.getPreviousItemId(1, false))
+        assertEquals(3, index.getPreviousItemId(4, true))
+        assertEquals(3, index.getPreviousItemId(2, true))
+    }
+
+    @Test
+    fun `swap test`() {
+        assertTrue(index.swap(1, 3, false))
+        assertFalse(index.swap(1, 5, false))
+
+        assertEquals(2, index.indexOf(1, false))
+        assertEquals(0, index.indexOf(3, false))
+        assertEquals(0, index.getPosition(3, false))
+        assertEquals(1, index.getNextItemId(2, false))
+        assertEquals(mapOf(1L to 1536, 3L to 0), index.takePendingPositions(false))
+        assertTrue(index.takePendingPositions(false).isEmpty())
+        assertTrue(index.takePendingPositions(true).isEmpty())
+    }
+
+    @Test
+    fun `invalidation during update test`() {
+        index.update {
+            index.invalidate()
+            emptyList()
+        }
+
+        assertFalse(index.isValid())
+        assertEquals(0, index.size())
+        assertNull(index.getNextItemId(1, false))
+    }
+}
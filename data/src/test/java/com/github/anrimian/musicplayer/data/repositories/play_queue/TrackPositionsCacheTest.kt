@@ -0,0 +1,47 @@
+package com.github.anrimian.musicplayer.data.repositories.play_queue
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TrackPositionsCacheTest {
+
+    private val cache = TrackPositionsCache(2)
+
+    @Test
+    fun `changes are collapsed test`() {
+        assertTrue(cache.put(1, 100, 1))
+        assertTrue(cache.put(2, 200, 2))
+        assertTrue(cache.put(1, 300, 3))
+        assertFalse(cache.put(1, 300, 4))
+
+        val changes = cache.takeChanges()
+        assertEquals(listOf(2L, 1L), changes.map { entity -> entity.queueItemId })
+        assertEquals(listOf(200L, 300L), changes.map { entity -> entity.trackPosition })
+        assertEquals(3, changes[1].writeTime)
+        assertTrue(cache.takeChanges().isEmpty())
+    }
+
+    @Test
+    fun `loaded positions are not written test`() {
+        cache.putLoaded(1, 100)
+
+        assertEquals(100L, cache.get(1))
+        assertFalse(cache.put(1, 100, 1))
+        assertTrue(cache.takeChanges().isEmpty())
+    }
+
+    @Test
+    fun `least recently used position is evicted test`() {
+        cache.putLoaded(1, 100)
+        cache.putLoaded(2, 200)
+        cache.get(1)
+        cache.putLoaded(3, 300)
+
+        assertEquals(100L, cache.get(1))
+        assertNull(cache.get(2))
+        assertEquals(300L, cache.get(3))
+    }
+}
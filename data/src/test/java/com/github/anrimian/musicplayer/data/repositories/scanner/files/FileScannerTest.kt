@@ -25,6 +25,7 @@ class FileScannerTest {
     private val stateRepository: StateRepository = mock()
     private val storageSourceRepository: StorageSourceRepository = mock()
     private val analytics: Analytics = mock()
+    private var isPlaying = false
     private val scheduler = TestScheduler()
 
     private val fileScanner = FileScanner(
@@ -33,7 +34,10 @@ class FileScannerTest {
         stateRepository,
         storageSourceRepository,
         analytics,
-        scheduler
+        { isPlaying },
+        scheduler,
+        scheduler,
+        2
     )
 
     private val testStateObserver = fileScanner.getStateObservable().test()
@@ -53,6 +57,7 @@ class FileScannerTest {
 
         whenever(compositionSourceEditor.getAudioFileInfo(any())).thenReturn(Single.just(fileInfo))
 
+        whenever(compositionsDao.selectCompositionsToScanCount(any())).thenReturn(1)
 
     }
 
@@ -73,7 +78,7 @@ class FileScannerTest {
 
         testStateObserver.assertValues(
             Idle,
-            Running(composition),
+            Running(composition, 0, 1),
             Idle
         )
     }
@@ -121,7 +126,7 @@ class FileScannerTest {
 
         testStateObserver.assertValues(
             Idle,
-            Running(composition1),
+            Running(composition1, 0, 1),
             Idle
         )
     }
@@ -148,7 +153,7 @@ class FileScannerTest {
 
         testStateObserver.assertValues(
             Idle,
-            Running(composition),
+            Running(composition, 0, 1),
             Idle
         )
     }
@@ -179,9 +184,73 @@ class FileScannerTest {
 
         testStateObserver.assertValues(
             Idle,
-            Running(composition),
+            Running(composition, 0, 1),
             Idle
         )
 
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `scan files in parallel and report progress`() {
+        val composition2: FullComposition = mock {
+            on { id } doReturn 2
+        }
+        val composition3: FullComposition = mock {
+            on { id } doReturn 3
+        }
+        whenever(compositionsDao.selectCompositionsToScanCount(any())).thenReturn(3)
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any()))
+            .thenReturn(Single.just(listOf(composition1, composition2, composition3)))
+        whenever(compositionSourceEditor.getAudioFileInfo(any()))
+            .thenReturn(Single.just(fileInfo).delay(1, TimeUnit.SECONDS, scheduler))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.triggerActions()
+
+        verify(compositionSourceEditor, times(2)).getAudioFileInfo(any())
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        verify(compositionSourceEditor, times(3)).getAudioFileInfo(any())
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+        verify(compositionsDao).updateCompositionsByFileInfo(
+            argThat { size == 3 },
+            eq(listOf(composition1, composition2, composition3))
+        )
+        testStateObserver.assertValues(
+            Idle,
+            Running(composition1, 0, 3),
+            Running(composition2, 0, 3),
+            Running(composition3, 2, 3),
+            Idle
+        )
+    }
+
+    @Test
+    fun `throttle scan during playback`() {
+        isPlaying = true
+
+        val composition2: FullComposition = mock {
+            on { id } doReturn 2
+        }
+        whenever(compositionsDao.selectNextCompositionsToScan(any(), any()))
+            .thenReturn(Single.just(listOf(composition1, composition2)))
+
+        fileScanner.scheduleFileScanner()
+        scheduler.triggerActions()
+
+        verify(storageSourceRepository, never()).getStorageSource(any())
+
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS)
+
+        verify(storageSourceRepository).getStorageSource(eq(1L))
+        verify(storageSourceRepository, never()).getStorageSource(eq(2L))
+
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS)
+
+        verify(storageSourceRepository).getStorageSource(eq(2L))
+        verify(compositionsDao).updateCompositionsByFileInfo(any(), any())
+    }
+}
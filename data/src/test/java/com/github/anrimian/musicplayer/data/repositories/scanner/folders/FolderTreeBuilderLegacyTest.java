@@ -0,0 +1,126 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.folders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.github.anrimian.musicplayer.data.utils.benchmark.BenchmarkTest;
+import com.github.anrimian.musicplayer.data.utils.benchmark.Benchmarks;
+import com.github.anrimian.musicplayer.domain.utils.ListUtils;
+import com.github.anrimian.musicplayer.domain.utils.TextUtils;
+import com.github.anrimian.musicplayer.domain.utils.functions.Mapper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.reactivex.rxjava3.core.Observable;
+
+/**
+ * Compares current tree builder with the previous groupBy based implementation.
+ */
+public class FolderTreeBuilderLegacyTest {
+
+    private static final int PATHS_COUNT = 100_000;
+
+    private final FolderTreeBuilder<String, String> folderTreeBuilder
+            = FolderTreeBuilderTest.createPathTreeBuilder();
+    private final LegacyFolderTreeBuilder<String, String> legacyTreeBuilder
+            = new LegacyFolderTreeBuilder<>(s -> s, s -> s);
+
+    @Test
+    public void sameTreeAsLegacyBuilderTest() {
+        List<String> paths = createPaths();
+
+        assertTreesEquals(legacyTreeBuilder.createFileTree(Observable.fromIterable(paths)),
+                folderTreeBuilder.createFileTree(paths));
+    }
+
+    @BenchmarkTest
+    public void buildTreeBenchmark(TestReporter reporter) throws Exception {
+        List<String> paths = createPaths();
+
+        Benchmarks.compare(reporter,
+                "build tree of " + PATHS_COUNT + " paths",
+                () -> legacyTreeBuilder.createFileTree(Observable.fromIterable(paths)),
+                () -> folderTreeBuilder.createFileTree(paths));
+    }
+
+    //files of one folder are not always sequential, like in media store order
+    private static List<String> createPaths() {
+        Random random = new Random(1);
+        List<String> paths = new ArrayList<>(PATHS_COUNT);
+        for (int i = 0; i < PATHS_COUNT; i++) {
+            int artist = random.nextInt(2000);
+            switch (random.nextInt(4)) {
+                case 0: {
+                    paths.add("");
+                    break;
+                }
+                case 1: {
+                    paths.add("Music/Artist " + artist);
+                    break;
+                }
+                default: {
+                    paths.add("Music/Artist " + artist + "/Album " + random.nextInt(5) + "/CD 1");
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static void assertTreesEquals(FolderNode<String> expected, FolderNode<String> actual) {
+        assertEquals(expected.getKeyPath(), actual.getKeyPath());
+        assertEquals(expected.getFiles(), actual.getFiles());
+        assertEquals(expected.getFolders().size(), actual.getFolders().size());
+
+        //legacy builder adds folders in hash order of groups
+        for (FolderNode<String> expectedFolder: expected.getFolders()) {
+            FolderNode<String> actualFolder = actual.getFolder(expectedFolder.getKeyPath());
+            assertNotNull(actualFolder);
+            assertSame(actual, actualFolder.getParentFolder());
+            assertTreesEquals(expectedFolder, actualFolder);
+        }
+    }
+
+    private static class LegacyFolderTreeBuilder<F, N> {
+
+        private final Mapper<F, String> pathFunc;
+        private final Mapper<F, N> valueFunc;
+
+        LegacyFolderTreeBuilder(Mapper<F, String> pathFunc, Mapper<F, N> valueFunc) {
+            this.pathFunc = pathFunc;
+            this.valueFunc = valueFunc;
+        }
+
+        FolderNode<N> createFileTree(Observable<F> objectsObservable) {
+            FolderNode<N> rootFolder = new FolderNode<>(null);
+            objectsObservable.groupBy(pathFunc::map)
+                    .doOnNext(group -> group.collect(ArrayList<F>::new, List::add)
+                            .map(list -> ListUtils.mapList(list, valueFunc::map))
+                            .doOnSuccess(list -> getNode(rootFolder, group.getKey()).addFiles(list))
+                            .subscribe())
+                    .subscribe();
+            return rootFolder;
+        }
+
+        private FolderNode<N> getNode(FolderNode<N> root, String path) {
+            if (TextUtils.isEmpty(path)) {
+                return root;
+            }
+            FolderNode<N> target = root;
+            for (String partialPath : path.split("/")) {
+                FolderNode<N> child = target.getFolder(partialPath);
+                if (child == null) {
+                    child = new FolderNode<>(partialPath);
+                    target.addFolder(child);
+                }
+                target = child;
+            }
+            return target;
+        }
+    }
+}
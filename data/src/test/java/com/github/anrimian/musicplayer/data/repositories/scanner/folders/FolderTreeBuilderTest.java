@@ -5,19 +5,20 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import org.junit.jupiter.api.Test;
 
-import io.reactivex.rxjava3.core.Observable;
+import java.util.Arrays;
 
 
 public class FolderTreeBuilderTest {
 
-    private final FolderTreeBuilder<String, String> folderTreeBuilder = new FolderTreeBuilder<>(
-            s -> s,
-            s -> s
-    );
+    private final FolderTreeBuilder<String, String> folderTreeBuilder = createPathTreeBuilder();
+
+    static FolderTreeBuilder<String, String> createPathTreeBuilder() {
+        return new FolderTreeBuilder<>(s -> s, s -> s);
+    }
 
     @Test
     public void createFileTreeTest() {
-        FolderNode<String> root = folderTreeBuilder.createFileTree(Observable.fromArray(
+        FolderNode<String> root = folderTreeBuilder.createFileTree(Arrays.asList(
                 "music",
                 "music/new",
                 ""
@@ -0,0 +1,84 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.loudness
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+import kotlin.math.PI
+import kotlin.math.pow
+import kotlin.math.sin
+
+//test signals of EBU Tech 3341
+class LoudnessMeterTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = [44100, 48000])
+    fun `stereo sine at -23 dBFS has -23 LUFS loudness`(sampleRate: Int) {
+        val meter = LoudnessMeter(sampleRate, 2)
+
+        addSine(meter, sampleRate, -23.0, 20)
+
+        assertEquals(-23.0, meter.getIntegratedLoudness()!!, 0.1)
+    }
+
+    @Test
+    fun `quiet parts are gated`() {
+        val meter = LoudnessMeter(SAMPLE_RATE, 2)
+
+        addSine(meter, SAMPLE_RATE, -36.0, 10)
+        addSine(meter, SAMPLE_RATE, -23.0, 60)
+        addSine(meter, SAMPLE_RATE, -36.0, 10)
+
+        assertEquals(-23.0, meter.getIntegratedLoudness()!!, 0.1)
+    }
+
+    @Test
+    fun `silence has no loudness`() {
+        val meter = LoudnessMeter(SAMPLE_RATE, 2)
+
+        meter.addSamples(FloatArray(SAMPLE_RATE * 2 * 5), SAMPLE_RATE * 2 * 5)
+
+        assertNull(meter.getIntegratedLoudness())
+    }
+
+    @Test
+    fun `samples can be split between calls`() {
+        val meter = LoudnessMeter(SAMPLE_RATE, 2)
+        val samples = createSine(SAMPLE_RATE, -23.0, 5)
+
+        //odd count splits frames between calls
+        val part = 1001
+        var position = 0
+        val buffer = FloatArray(part)
+        while (position < samples.size) {
+            val count = minOf(part, samples.size - position)
+            samples.copyInto(buffer, 0, position, position + count)
+            meter.addSamples(buffer, count)
+            position += count
+        }
+
+        assertEquals(-23.0, meter.getIntegratedLoudness()!!, 0.1)
+    }
+
+    private fun addSine(meter: LoudnessMeter, sampleRate: Int, level: Double, seconds: Int) {
+        val samples = createSine(sampleRate, level, seconds)
+        meter.addSamples(samples, samples.size)
+    }
+
+    private fun createSine(sampleRate: Int, level: Double, seconds: Int): FloatArray {
+        val amplitude = 10.0.pow(level / 20)
+        val frames = sampleRate * seconds
+        val samples = FloatArray(frames * 2)
+        for (frame in 0 until frames) {
+            val sample = (amplitude * sin(2 * PI * 1000 * frame / sampleRate)).toFloat()
+            samples[frame * 2] = sample
+            samples[frame * 2 + 1] = sample
+        }
+        return samples
+    }
+
+    private companion object {
+        const val SAMPLE_RATE = 48000
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.anrimian.musicplayer.data.repositories.scanner.loudness
+
+import android.net.Uri
+import com.github.anrimian.musicplayer.data.database.dao.compositions.CompositionsDaoWrapper
+import com.github.anrimian.musicplayer.data.models.composition.file.StorageCompositionSource
+import com.github.anrimian.musicplayer.domain.interactors.analytics.Analytics
+import com.github.anrimian.musicplayer.domain.models.player.modes.LoudnessNormalizationMode
+import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState
+import com.github.anrimian.musicplayer.domain.models.scanner.Idle
+import com.github.anrimian.musicplayer.domain.models.scanner.Running
+import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
+import com.github.anrimian.musicplayer.domain.repositories.StorageSourceRepository
+import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.schedulers.TestScheduler
+import io.reactivex.rxjava3.subjects.BehaviorSubject
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.*
+import java.io.FileNotFoundException
+
+class LoudnessScannerTest {
+
+    private val compositionsDao: CompositionsDaoWrapper = mock()
+    private val storageSourceRepository: StorageSourceRepository = mock()
+    private val loudnessAnalyzer: LoudnessAnalyzer = mock()
+    private val settingsRepository: SettingsRepository = mock()
+    private val analytics: Analytics = mock()
+    private val modeSubject = BehaviorSubject.createDefault(LoudnessNormalizationMode.TRACK)
+    private val fileScannerStateSubject = BehaviorSubject.createDefault<FileScannerState>(Idle)
+    private var isPlaying = false
+    private val scheduler = TestScheduler()
+
+    private val uri: Uri = mock()
+
+    private val loudnessScanner = LoudnessScanner(
+        compositionsDao,
+        storageSourceRepository,
+        loudnessAnalyzer,
+        settingsRepository,
+        analytics,
+        fileScannerStateSubject,
+        { isPlaying },
+        scheduler
+    )
+
+    @BeforeEach
+    fun setUp() {
+        whenever(settingsRepository.loudnessNormalizationModeObservable).thenReturn(modeSubject)
+        whenever(storageSourceRepository.getStorageSource(any()))
+            .thenReturn(Maybe.just(StorageCompositionSource(uri)))
+        whenever(compositionsDao.selectCompositionsToAnalyze(eq(0), any())).thenReturn(listOf(1, 2))
+        whenever(compositionsDao.selectCompositionsToAnalyze(eq(2), any())).thenReturn(emptyList())
+    }
+
+    @Test
+    fun `analyze compositions`() {
+        whenever(loudnessAnalyzer.measureGain(eq(uri), any())).thenReturn(-3.5f)
+
+        loudnessScanner.runLoudnessScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao).setAnalyzedGain(1, -3.5f)
+        verify(compositionsDao).setAnalyzedGain(2, -3.5f)
+    }
+
+    @Test
+    fun `silent and unsupported files are not analyzed again`() {
+        whenever(loudnessAnalyzer.measureGain(eq(uri), any()))
+            .thenReturn(null)
+            .thenThrow(RuntimeException())
+
+        loudnessScanner.runLoudnessScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao).setAnalyzedGain(1, 0f)
+        verify(compositionsDao).setAnalyzedGain(2, 0f)
+        verify(analytics).processNonFatalError(any())
+    }
+
+    @Test
+    fun `unavailable files are skipped`() {
+        whenever(loudnessAnalyzer.measureGain(eq(uri), any())).doAnswer { throw FileNotFoundException() }
+
+        loudnessScanner.runLoudnessScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao, never()).setAnalyzedGain(any(), any())
+        verify(analytics, never()).processNonFatalError(any())
+    }
+
+    @Test
+    fun `do not analyze when normalization is disabled`() {
+        modeSubject.onNext(LoudnessNormalizationMode.NONE)
+
+        loudnessScanner.runLoudnessScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao, never()).selectCompositionsToAnalyze(any(), any())
+
+        modeSubject.onNext(LoudnessNormalizationMode.ALBUM)
+        scheduler.triggerActions()
+
+        verify(compositionsDao).selectCompositionsToAnalyze(eq(0), any())
+    }
+
+    @Test
+    fun `wait for file scanner`() {
+        fileScannerStateSubject.onNext(Running(mock(), 0, 1))
+
+        loudnessScanner.runLoudnessScanner()
+        scheduler.triggerActions()
+
+        verify(compositionsDao, never()).selectCompositionsToAnalyze(any(), any())
+
+        fileScannerStateSubject.onNext(Idle)
+        scheduler.triggerActions()
+
+        verify(compositionsDao).selectCompositionsToAnalyze(eq(0), any())
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.anrimian.musicplayer.data.storage.providers.music
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class MediaStoreWatermarkTest {
+
+    @Test
+    fun `serialize and parse test`() {
+        val builder = MediaStoreWatermark.Builder(3000, false)
+        builder.putGeneration("external_primary", "version1", 120)
+        builder.putGeneration("1234-ABCD", "version2", 5)
+        val watermark = builder.build()
+
+        val parsed = MediaStoreWatermark.parse(watermark.serialize())
+
+        assertEquals(watermark, parsed)
+        assertEquals(120, parsed!!.getVolume("external_primary")!!.generation)
+        assertEquals(2, parsed.volumesCount)
+    }
+
+    @Test
+    fun `max values test`() {
+        val builder = MediaStoreWatermark.Builder(0, true)
+        builder.putMaxValues("external", 100, 5)
+        builder.putMaxValues("external", 90, 7)
+        val volume = MediaStoreWatermark.parse(builder.build().serialize())!!.getVolume("external")!!
+
+        assertNull(volume.version)
+        assertEquals(100, volume.maxDateModified)
+        assertEquals(7, volume.maxId)
+    }
+
+    @Test
+    fun `filter change test`() {
+        val watermark = MediaStoreWatermark.Builder(3000, false).build()
+
+        assertTrue(watermark.hasSameFilter(3000, false))
+        assertFalse(watermark.hasSameFilter(3000, true))
+        assertFalse(watermark.hasSameFilter(0, false))
+    }
+
+    @Test
+    fun `parse invalid value test`() {
+        assertNull(MediaStoreWatermark.parse(null))
+        assertNull(MediaStoreWatermark.parse(""))
+        assertNull(MediaStoreWatermark.parse("0:false;external|v|a|0|0"))
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.anrimian.musicplayer.data.storage.providers.music
+
+import com.github.anrimian.musicplayer.domain.models.composition.InitialSource
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class StorageCompositionsTableTest {
+
+    @Test
+    fun `build and read test`() {
+        val builder = StorageCompositionsTable.Builder(0)
+        for (i in 1L..100L) {
+            builder.add(i * 2, i, "title $i", "file $i", "music/$i", null, "album", "artist",
+                1000, 2000, InitialSource.LOCAL, if (i % 2 == 0L) i else null, 1, 2, 3)
+        }
+        val table = builder.build()
+
+        assertEquals(100, table.size())
+        assertEquals(9, table.indexOf(20))
+        assertTrue(table.indexOf(21) < 0)
+
+        val composition = table.get(9)
+        assertEquals(20, composition.storageId)
+        assertEquals(10, composition.id)
+        assertEquals("music/10", composition.parentPath)
+        assertEquals("album", composition.album)
+        assertEquals(10L, composition.folderId)
+        assertEquals(2, composition.dateModified.time)
+        assertNull(table.get(0).folderId)
+    }
+
+    @Test
+    fun `same storage id replaces row test`() {
+        val builder = StorageCompositionsTable.Builder(0)
+        builder.add(1, 1, null, "a", "", null, null, null, 0, 0, InitialSource.LOCAL, null, 0, 0, 0)
+        builder.add(1, 2, null, "b", "", null, null, null, 0, 0, InitialSource.LOCAL, null, 0, 0, 0)
+        val table = builder.build()
+
+        assertEquals(1, table.size())
+        assertEquals("b", table.getFileName(0))
+    }
+
+    @Test
+    fun `unsorted rows test`() {
+        val builder = StorageCompositionsTable.Builder(0)
+        builder.add(2, 1, null, "a", "", null, null, null, 0, 0, InitialSource.LOCAL, null, 0, 0, 0)
+        assertThrows<IllegalArgumentException> {
+            builder.add(1, 2, null, "b", "", null, null, null, 0, 0, InitialSource.LOCAL, null, 0, 0, 0)
+        }
+    }
+}
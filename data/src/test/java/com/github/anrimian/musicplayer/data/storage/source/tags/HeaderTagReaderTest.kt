@@ -0,0 +1,226 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import com.github.anrimian.musicplayer.data.utils.benchmark.BenchmarkTest
+import com.github.anrimian.musicplayer.data.utils.benchmark.Benchmarks
+import com.github.anrimian.musicplayer.data.utils.files.TestFileUtils
+import com.github.anrimian.musicplayer.domain.models.utils.CompositionHelper.splitGenres
+import org.jaudiotagger.audio.AudioFileIO
+import org.jaudiotagger.tag.FieldKey
+import org.junit.jupiter.api.Assertions.assertArrayEquals
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestReporter
+import org.junit.jupiter.api.io.TempDir
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+import java.io.File
+
+class HeaderTagReaderTest {
+
+    private val reader = HeaderTagReader()
+
+    @TempDir
+    lateinit var dir: File
+
+    @ParameterizedTest
+    @ValueSource(strings = [
+        "src/test/resources/Кот Леопольд - Неприятность эту мы переживем.mp3",
+        "src/test/resources/VersuS - Warriors (Instrumental Kizomba).mp3"
+    ])
+    fun `read mp3 tags same as jaudiotagger`(path: String) {
+        val file = TestFileUtils.createTempCopy(dir, path)
+        val audioFile = AudioFileIO.read(file)
+        val expected = audioFile.tagOrCreateDefault
+
+        val tags = reader.readTags(file)!!
+
+        assertEquals(expected.getFirst(FieldKey.TITLE), tags.title)
+        assertEquals(expected.getFirst(FieldKey.ARTIST), tags.artist)
+        assertEquals(expected.getFirst(FieldKey.ALBUM), tags.album)
+        assertEquals(expected.getFirst(FieldKey.ALBUM_ARTIST), tags.albumArtist)
+        assertEquals(expected.getFirst(FieldKey.COMMENT), tags.comment)
+        assertEquals(expected.getFirst(FieldKey.LYRICS), tags.lyrics)
+        assertArrayEquals(splitGenres(expected.getFirst(FieldKey.GENRE)), tags.genres)
+        assertEquals(audioFile.audioHeader.trackLength, tags.durationSeconds)
+    }
+
+    @Test
+    fun `read flac tags`() {
+        val file = TestTagFiles.createFlac(
+            File(dir, "test.flac"),
+            listOf(
+                "TITLE=Title",
+                "artist=Artist",
+                "ALBUM=Album",
+                "ALBUMARTIST=Album artist",
+                "TRACKNUMBER=3/12",
+                "DISCNUMBER=1",
+                "GENRE=Rock",
+                "GENRE=Jazz",
+                "COMMENT=Comment",
+            ),
+            totalSamples = 44100L * 200,
+            pictureSize = 100_000
+        )
+
+        val tags = reader.readTags(file)!!
+
+        assertEquals("Title", tags.title)
+        assertEquals("Artist", tags.artist)
+        assertEquals("Album", tags.album)
+        assertEquals("Album artist", tags.albumArtist)
+        assertEquals(3L, tags.trackNumber)
+        assertEquals(1L, tags.discNumber)
+        assertEquals("Comment", tags.comment)
+        assertEquals("", tags.lyrics)
+        assertArrayEquals(arrayOf("Rock"), tags.genres)
+        assertEquals(200, tags.durationSeconds)
+    }
+
+    @Test
+    fun `read mp4 tags`() {
+        val file = TestTagFiles.createMp4(
+            File(dir, "test.m4a"),
+            listOf(
+                TestTagFiles.mp4TextItem("©nam", "Title"),
+                TestTagFiles.mp4TextItem("©ART", "Artist"),
+                TestTagFiles.mp4TextItem("©alb", "Album"),
+                TestTagFiles.mp4TextItem("aART", "Album artist"),
+                TestTagFiles.mp4Item("covr", 13, ByteArray(50_000)),
+                TestTagFiles.mp4Item("trkn", 0, byteArrayOf(0, 0, 0, 5, 0, 10, 0, 0)),
+                TestTagFiles.mp4Item("gnre", 0, byteArrayOf(0, 18)),
+            ),
+            timeScale = 44100,
+            duration = 44100 * 95
+        )
+
+        val tags = reader.readTags(file)!!
+
+        assertEquals("Title", tags.title)
+        assertEquals("Artist", tags.artist)
+        assertEquals("Album", tags.album)
+        assertEquals("Album artist", tags.albumArtist)
+        assertEquals(5L, tags.trackNumber)
+        assertNull(tags.discNumber)
+        assertArrayEquals(arrayOf("Rock"), tags.genres)
+        assertEquals(95, tags.durationSeconds)
+    }
+
+    @Test
+    fun `read ape tags`() {
+        val file = TestTagFiles.createApe(
+            File(dir, "test.ape"),
+            mapOf(
+                "Title" to "Title",
+                "Artist" to "Artist",
+                "Album Artist" to "Album artist",
+                "Track" to "7",
+                "Genre" to "Pop",
+            ),
+            binaryItemSize = 10_000
+        )
+
+        val tags = reader.readTags(file)!!
+
+        assertEquals("Title", tags.title)
+        assertEquals("Artist", tags.artist)
+        assertEquals("", tags.album)
+        assertEquals("Album artist", tags.albumArtist)
+        assertEquals(7L, tags.trackNumber)
+        assertArrayEquals(arrayOf("Pop"), tags.genres)
+        assertEquals(183, tags.durationSeconds)
+    }
+
+    @Test
+    fun `read loudness tags`() {
+        val flac = TestTagFiles.createFlac(
+            File(dir, "test.flac"),
+            listOf(
+                "TITLE=Title",
+                "replaygain_track_gain=-6.54 dB",
+                "R128_ALBUM_GAIN=-1280",
+            )
+        )
+        val mp4 = TestTagFiles.createMp4(
+            File(dir, "test.m4a"),
+            listOf(
+                TestTagFiles.mp4TextItem("©nam", "Title"),
+                TestTagFiles.mp4FreeformItem("iTunNORM", " 00000A2B"),
+                TestTagFiles.mp4FreeformItem("replaygain_track_gain", "+1.20 dB"),
+                TestTagFiles.mp4FreeformItem("replaygain_album_gain", "-2.5 dB"),
+            )
+        )
+        val ape = TestTagFiles.createApe(
+            File(dir, "test.ape"),
+            mapOf(
+                "Title" to "Title",
+                "REPLAYGAIN_TRACK_GAIN" to "-3.00 dB",
+            )
+        )
+
+        val flacTags = reader.readTags(flac)!!
+        val mp4Tags = reader.readTags(mp4)!!
+        val apeTags = reader.readTags(ape)!!
+
+        assertEquals(-6.54f, flacTags.trackGain)
+        //-5 LU in q7.8 format, shifted from -23 to -18 LUFS reference
+        assertEquals(0f, flacTags.albumGain)
+        assertEquals(1.2f, mp4Tags.trackGain)
+        assertEquals(-2.5f, mp4Tags.albumGain)
+        assertEquals("Title", mp4Tags.title)
+        assertEquals(-3f, apeTags.trackGain)
+        assertNull(apeTags.albumGain)
+    }
+
+    @Test
+    fun `return null for unsupported format`() {
+        val file = File(dir, "test.ogg")
+        file.writeBytes("OggS".toByteArray() + ByteArray(1000))
+
+        assertNull(reader.readTags(file))
+    }
+
+    @Test
+    fun `skip large picture block in flac`() {
+        val file = TestTagFiles.createFlac(
+            File(dir, "test.flac"),
+            listOf("TITLE=Title", "ARTIST=Artist"),
+            pictureSize = 3_000_000
+        )
+        val expected = AudioFileIO.read(file).tagOrCreateDefault
+
+        val tags = reader.readTags(file)!!
+
+        assertEquals("Title", tags.title)
+        assertEquals("Artist", tags.artist)
+        assertEquals(expected.getFirst(FieldKey.TITLE), tags.title)
+        assertEquals(expected.getFirst(FieldKey.ARTIST), tags.artist)
+    }
+
+    @BenchmarkTest
+    fun `read tags of flac files with pictures benchmark`(reporter: TestReporter) {
+        val files = (0 until BENCHMARK_FILES).map { i ->
+            TestTagFiles.createFlac(
+                File(dir, "test$i.flac"),
+                listOf("TITLE=Title $i", "ARTIST=Artist", "ALBUM=Album", "GENRE=Rock"),
+                pictureSize = 2_000_000
+            )
+        }
+
+        Benchmarks.compare(
+            reporter,
+            "read tags of $BENCHMARK_FILES flac files",
+            {
+                files.map { file ->
+                    AudioFileIO.read(file).tagOrCreateDefault.getFirst(FieldKey.TITLE)
+                }
+            },
+            { files.map { file -> reader.readTags(file)!!.title } }
+        )
+    }
+
+    private companion object {
+        const val BENCHMARK_FILES = 20
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.anrimian.musicplayer.data.storage.source.tags
+
+import java.io.ByteArrayOutputStream
+import java.io.File
+
+/**
+ * Builders of minimal valid audio files for tag reader tests.
+ */
+object TestTagFiles {
+
+    fun createFlac(
+        file: File,
+        comments: List<String>,
+        sampleRate: Int = 44100,
+        totalSamples: Long = 44100L * 180,
+        pictureSize: Int = 0,
+    ): File {
+        val out = ByteArrayOutputStream()
+        out.write("fLaC".toByteArray())
+
+        val streamInfo = ByteArray(34)
+        streamInfo[0] = 0x10 //min block size 4096
+        streamInfo[2] = 0x10 //max block size 4096
+        streamInfo[10] = (sampleRate shr 12).toByte()
+        streamInfo[11] = (sampleRate shr 4).toByte()
+        //2 channels, 16 bits per sample
+        streamInfo[12] = ((sampleRate and 0xf) shl 4 or (1 shl 1)).toByte()
+        streamInfo[13] = (0xf0 or (totalSamples shr 32).toInt()).toByte()
+        streamInfo[14] = (totalSamples shr 24).toByte()
+        streamInfo[15] = (totalSamples shr 16).toByte()
+        streamInfo[16] = (totalSamples shr 8).toByte()
+        streamInfo[17] = totalSamples.toByte()
+        writeFlacBlock(out, 0, streamInfo, false)
+
+        if (pictureSize > 0) {
+            val mime = "image/jpeg".toByteArray()
+            val picture = ByteArrayOutputStream()
+            picture.write(intBE(3))
+            picture.write(intBE(mime.size))
+            picture.write(mime)
+            picture.write(intBE(0))
+            picture.write(ByteArray(16))
+            picture.write(intBE(pictureSize))
+            picture.write(ByteArray(pictureSize))
+            writeFlacBlock(out, 6, picture.toByteArray(), false)
+        }
+
+        writeFlacBlock(out, 4, vorbisComment(comments), true)
+        out.write(ByteArray(4096))//audio frames stub
+        file.writeBytes(out.toByteArray())
+        return file
+    }
+
+    fun createMp4(
+        file: File,
+        items: List<ByteArray>,
+        timeScale: Int = 1000,
+        duration: Int = 180_000,
+    ): File {
+        val mvhd = ByteArrayOutputStream()
+        mvhd.write(ByteArray(4))//version and flags
+        mvhd.write(ByteArray(8))//creation and modification time
+        mvhd.write(intBE(timeScale))
+        mvhd.write(intBE(duration))
+        mvhd.write(ByteArray(80))
+
+        val hdlr = atom("hdlr", ByteArray(4) + ByteArray(4) + "mdir".toByteArray() + ByteArray(13))
+        val ilst = atom("ilst", items.fold(ByteArray(0)) { acc, item -> acc + item })
+        val meta = atom("meta", ByteArray(4) + hdlr + ilst)
+        val moov = atom("moov", atom("mvhd", mvhd.toByteArray()) + atom("udta", meta))
+
+        val ftyp = atom("ftyp", "M4A ".toByteArray() + intBE(0) + "M4A isom".toByteArray())
+        file.writeBytes(ftyp + atom("mdat", ByteArray(4096)) + moov)
+        return file
+    }
+
+    fun mp4TextItem(name: String, value: String): ByteArray {
+        return mp4Item(name, 1, value.toByteArray())
+    }
+
+    fun mp4Item(name: String, type: Int, value: ByteArray): ByteArray {
+        return atom(name, atom("data", intBE(type) + intBE(0) + value))
+    }
+
+    fun mp4FreeformItem(name: String, value: String): ByteArray {
+        return atom("----",
+            atom("mean", ByteArray(4) + "com.apple.iTunes".toByteArray())
+                    + atom("name", ByteArray(4) + name.toByteArray())
+                    + atom("data", intBE(1) + intBE(0) + value.toByteArray())
+        )
+    }
+
+    fun createApe(
+        file: File,
+        items: Map<String, String>,
+        sampleRate: Int = 44100,
+        totalFrames: Int = 28,
+        finalFrameBlocks: Int = 86400,
+        binaryItemSize: Int = 0,
+    ): File {
+        val out = ByteArrayOutputStream()
+        //descriptor
+        out.write("MAC ".toByteArray())
+        out.write(shortLE(3990))
+        out.write(ByteArray(2))
+        out.write(intLE(52))//descriptor bytes
+        out.write(intLE(24))//header bytes
+        out.write(ByteArray(52 - 16))
+        //header
+        out.write(shortLE(2000))
+        out.write(shortLE(0))
+        out.write(intLE(73728 * 4))
+        out.write(intLE(finalFrameBlocks))
+        out.write(intLE(totalFrames))
+        out.write(shortLE(16))
+        out.write(shortLE(2))
+        out.write(intLE(sampleRate))
+        out.write(ByteArray(4096))//audio frames stub
+
+        val tagItems = ByteArrayOutputStream()
+        for ((key, value) in items) {
+            writeApeItem(tagItems, key, 0, value.toByteArray())
+        }
+        if (binaryItemSize > 0) {
+            writeApeItem(tagItems, "Cover Art (Front)", 2, ByteArray(binaryItemSize))
+        }
+        val itemsCount = items.size + if (binaryItemSize > 0) 1 else 0
+        out.write(tagItems.toByteArray())
+        out.write("APETAGEX".toByteArray())
+        out.write(intLE(2000))
+        out.write(intLE(tagItems.size() + 32))
+        out.write(intLE(itemsCount))
+        out.write(intLE(0))
+        out.write(ByteArray(8))
+        file.writeBytes(out.toByteArray())
+        return file
+    }
+
+    private fun writeApeItem(out: ByteArrayOutputStream, key: String, flags: Int, value: ByteArray) {
+        out.write(intLE(value.size))
+        out.write(intLE(flags))
+        out.write(key.toByteArray())
+        out.write(0)
+        out.write(value)
+    }
+
+    private fun vorbisComment(comments: List<String>): ByteArray {
+        val out = ByteArrayOutputStream()
+        val vendor = "test".toByteArray()
+        out.write(intLE(vendor.size))
+        out.write(vendor)
+        out.write(intLE(comments.size))
+        for (comment in comments) {
+            val bytes = comment.toByteArray()
+            out.write(intLE(bytes.size))
+            out.write(bytes)
+        }
+        return out.toByteArray()
+    }
+
+    private fun writeFlacBlock(out: ByteArrayOutputStream, type: Int, body: ByteArray, last: Boolean) {
+        out.write(if (last) type or 0x80 else type)
+        out.write(body.size shr 16)
+        out.write(body.size shr 8)
+        out.write(body.size)
+        out.write(body)
+    }
+
+    private fun atom(type: String, body: ByteArray): ByteArray {
+        return intBE(body.size + 8) + type.toByteArray(Charsets.ISO_8859_1) + body
+    }
+
+    private fun intBE(value: Int) = byteArrayOf(
+        (value shr 24).toByte(),
+        (value shr 16).toByte(),
+        (value shr 8).toByte(),
+        value.toByte()
+    )
+
+    private fun intLE(value: Int) = byteArrayOf(
+        value.toByte(),
+        (value shr 8).toByte(),
+        (value shr 16).toByte(),
+        (value shr 24).toByte()
+    )
+
+    private fun shortLE(value: Int) = byteArrayOf(value.toByte(), (value shr 8).toByte())
+}
@@ -0,0 +1,23 @@
+package com.github.anrimian.musicplayer.data.utils.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Opt-in benchmark test, runs only with benchmark gradle property:
+ * {@code ./gradlew :data:testDebugUnitTest -Pbenchmark}
+ * Results are published with {@link org.junit.jupiter.api.TestReporter}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Test
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public @interface BenchmarkTest {
+}
@@ -0,0 +1,58 @@
+package com.github.anrimian.musicplayer.data.utils.benchmark;
+
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Measures median time of repeated runs and publishes it to test report.
+ */
+public class Benchmarks {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 15;
+
+    //keeps results of measured actions, so they are not optimized out
+    @SuppressWarnings({"FieldCanBeLocal", "unused"})
+    private static volatile Object blackhole;
+
+    /**
+     * @return median time in nanoseconds
+     */
+    public static long measure(TestReporter reporter, String name, Callable<?> action)
+            throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            blackhole = action.call();
+        }
+        long[] times = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            blackhole = action.call();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long median = times[RUNS / 2];
+        reporter.publishEntry(name, String.format(Locale.ROOT,
+                "median %.3f ms, min %.3f ms, %d runs",
+                toMillis(median),
+                toMillis(times[0]),
+                RUNS));
+        return median;
+    }
+
+    public static void compare(TestReporter reporter,
+                               String name,
+                               Callable<?> legacyAction,
+                               Callable<?> action) throws Exception {
+        long legacyTime = measure(reporter, name + " legacy", legacyAction);
+        long time = measure(reporter, name, action);
+        reporter.publishEntry(name + " speedup",
+                String.format(Locale.ROOT, "%.2fx", (double) legacyTime / time));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000d;
+    }
+}
@@ -0,0 +1,217 @@
+package com.github.anrimian.musicplayer.data.utils.collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import androidx.collection.LongSparseArray;
+
+import com.github.anrimian.musicplayer.data.utils.benchmark.BenchmarkTest;
+import com.github.anrimian.musicplayer.data.utils.benchmark.Benchmarks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class SortedKeysDiffTest {
+
+    private static final int ROWS_COUNT = 100_000;
+
+    @Test
+    public void diffRangesTest() {
+        long[] oldKeys = { 1, 2, 3, 5, 6, 7, 9 };
+        long[] newKeys = { 0, 2, 3, 4, 5, 6, 7, 10, 11 };
+        String[] oldValues = { "a", "b", "c", "e", "f", "g", "i" };
+        String[] newValues = { "0", "b", "C", "d", "E", "F", "g", "j", "k" };
+
+        SortedKeysDiff diff = SortedKeysDiff.diff(oldKeys, newKeys, null, null,
+                (oldIndex, newIndex) -> !oldValues[oldIndex].equals(newValues[newIndex]));
+
+        assertTrue(diff.hasChanges());
+        //removed: 1, 9
+        assertEquals(2, diff.getRemovedRangesCount());
+        assertEquals(0, diff.getRemovedStart(0));
+        assertEquals(1, diff.getRemovedEnd(0));
+        assertEquals(6, diff.getRemovedStart(1));
+        assertEquals(7, diff.getRemovedEnd(1));
+        //added: 0, 4, 10-11
+        assertEquals(3, diff.getAddedRangesCount());
+        assertEquals(0, diff.getAddedStart(0));
+        assertEquals(3, diff.getAddedStart(1));
+        assertEquals(4, diff.getAddedEnd(1));
+        assertEquals(7, diff.getAddedStart(2));
+        assertEquals(9, diff.getAddedEnd(2));
+        //changed: 3, 5-6
+        assertEquals(2, diff.getChangedRangesCount());
+        assertEquals(2, diff.getChangedOldStart(0));
+        assertEquals(2, diff.getChangedNewStart(0));
+        assertEquals(1, diff.getChangedCount(0));
+        assertEquals(3, diff.getChangedOldStart(1));
+        assertEquals(4, diff.getChangedNewStart(1));
+        assertEquals(2, diff.getChangedCount(1));
+    }
+
+    @Test
+    public void skipChangeDetectionForDifferentHashesTest() {
+        long[] keys = { 1, 2, 3 };
+        long[] oldHashes = { 10, 20, 30 };
+        long[] newHashes = { 10, 21, 30 };
+        List<Integer> comparedIndexes = new ArrayList<>();
+
+        SortedKeysDiff diff = SortedKeysDiff.diff(keys, keys, oldHashes, newHashes,
+                (oldIndex, newIndex) -> {
+                    comparedIndexes.add(oldIndex);
+                    return false;
+                });
+
+        assertEquals(Arrays.asList(0, 2), comparedIndexes);
+        assertEquals(1, diff.getChangedRangesCount());
+        assertEquals(1, diff.getChangedOldStart(0));
+        assertEquals(1, diff.getChangedCount(0));
+    }
+
+    @Test
+    public void noChangesTest() {
+        SortedKeysDiff diff = SortedKeysDiff.diff(new long[] { 1, 2 }, new long[] { 1, 2 },
+                null, null, (oldIndex, newIndex) -> false);
+        assertFalse(diff.hasChanges());
+
+        diff = SortedKeysDiff.diff(new long[0], new long[0], null, null, (o, n) -> true);
+        assertFalse(diff.hasChanges());
+    }
+
+    @Test
+    public void objectKeysDiffTest() {
+        SortedKeysDiff diff = SortedKeysDiff.diff(Arrays.asList("a", "b", "d"),
+                Arrays.asList("b", "c", "d"),
+                Comparator.naturalOrder(),
+                (oldIndex, newIndex) -> oldIndex == 2);
+
+        assertEquals(1, diff.getRemovedRangesCount());
+        assertEquals(0, diff.getRemovedStart(0));
+        assertEquals(1, diff.getAddedRangesCount());
+        assertEquals(1, diff.getAddedStart(0));
+        assertEquals(1, diff.getChangedRangesCount());
+        assertEquals(2, diff.getChangedNewStart(0));
+    }
+
+    @Test
+    public void sameChangesAsSparseArrayDiffTest() {
+        LongSparseArray<Row> oldRows = new LongSparseArray<>();
+        LongSparseArray<Row> newRows = new LongSparseArray<>();
+        createRows(oldRows, newRows);
+
+        assertEquals(sparseArrayDiff(oldRows, newRows), sortedDiff(oldRows, newRows));
+    }
+
+    @BenchmarkTest
+    public void diffBenchmark(TestReporter reporter) throws Exception {
+        LongSparseArray<Row> oldRows = new LongSparseArray<>();
+        LongSparseArray<Row> newRows = new LongSparseArray<>();
+        createRows(oldRows, newRows);
+
+        Benchmarks.compare(reporter,
+                "diff of " + ROWS_COUNT + " rows",
+                () -> sparseArrayDiff(oldRows, newRows),
+                () -> sortedDiff(oldRows, newRows));
+    }
+
+    private static void createRows(LongSparseArray<Row> oldRows, LongSparseArray<Row> newRows) {
+        Random random = new Random(1);
+        for (int i = 0; i < ROWS_COUNT; i++) {
+            long id = i * 2L;
+            Row row = new Row("Title " + i, "Artist " + i % 1000, "Music/Artist " + i % 1000, i * 1000L);
+            int action = random.nextInt(100);
+            if (action != 0) {
+                oldRows.put(id, row);
+            }
+            //copy strings, in real data they come from different sources
+            if (action == 1) {
+                newRows.put(id, new Row(row.title + " edited", row.artist, row.path, row.duration));
+            } else if (action == 2) {
+                newRows.put(id, new Row(row.title, row.artist, row.path + "/moved", row.duration));
+            } else if (action != 3) {
+                newRows.put(id, new Row(new String(row.title),
+                        new String(row.artist),
+                        new String(row.path),
+                        row.duration));
+            }
+        }
+    }
+
+    private static int sortedDiff(LongSparseArray<Row> oldRows, LongSparseArray<Row> newRows) {
+        long[] oldKeys = new long[oldRows.size()];
+        long[] oldHashes = new long[oldRows.size()];
+        for (int i = 0; i < oldKeys.length; i++) {
+            oldKeys[i] = oldRows.keyAt(i);
+            oldHashes[i] = oldRows.valueAt(i).hash();
+        }
+        long[] newKeys = new long[newRows.size()];
+        long[] newHashes = new long[newRows.size()];
+        for (int i = 0; i < newKeys.length; i++) {
+            newKeys[i] = newRows.keyAt(i);
+            newHashes[i] = newRows.valueAt(i).hash();
+        }
+        SortedKeysDiff diff = SortedKeysDiff.diff(oldKeys, newKeys, oldHashes, newHashes,
+                (oldIndex, newIndex) -> oldRows.valueAt(oldIndex).hasChanges(newRows.valueAt(newIndex)));
+        int count = 0;
+        for (int i = 0; i < diff.getRemovedRangesCount(); i++) {
+            count += diff.getRemovedEnd(i) - diff.getRemovedStart(i);
+        }
+        for (int i = 0; i < diff.getAddedRangesCount(); i++) {
+            count += diff.getAddedEnd(i) - diff.getAddedStart(i);
+        }
+        for (int i = 0; i < diff.getChangedRangesCount(); i++) {
+            count += diff.getChangedCount(i);
+        }
+        return count;
+    }
+
+    //previous AndroidCollectionUtils.processDiffChanges() implementation
+    private static int sparseArrayDiff(LongSparseArray<Row> oldRows, LongSparseArray<Row> newRows) {
+        List<Row> changes = new ArrayList<>();
+        for (int i = 0, size = oldRows.size(); i < size; i++) {
+            if (newRows.get(oldRows.keyAt(i)) == null) {
+                changes.add(oldRows.valueAt(i));
+            }
+        }
+        for (int i = 0, size = newRows.size(); i < size; i++) {
+            Row newValue = newRows.valueAt(i);
+            Row existValue = oldRows.get(newRows.keyAt(i));
+            if (existValue == null || existValue.hasChanges(newValue)) {
+                changes.add(newValue);
+            }
+        }
+        return changes.size();
+    }
+
+    private static class Row {
+        final String title;
+        final String artist;
+        final String path;
+        final long duration;
+
+        Row(String title, String artist, String path, long duration) {
+            this.title = title;
+            this.artist = artist;
+            this.path = path;
+            this.duration = duration;
+        }
+
+        boolean hasChanges(Row other) {
+            return !title.equals(other.title)
+                    || !artist.equals(other.artist)
+                    || !path.equals(other.path)
+                    || duration != other.duration;
+        }
+
+        long hash() {
+            return path.hashCode();
+        }
+    }
+}
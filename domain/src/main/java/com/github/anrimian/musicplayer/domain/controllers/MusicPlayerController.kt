@@ -11,6 +11,12 @@ interface MusicPlayerController {
 
     fun prepareToPlay(source: CompositionContentSource): Completable
 
+    /**
+     * Source to start right after the end of the current one without preparation gap,
+     * null removes it.
+     */
+    fun setNextSource(source: CompositionContentSource?)
+
     fun stop()
 
     fun pause()
@@ -29,7 +35,11 @@ interface MusicPlayerController {
 
     fun setPlaybackSpeed(speed: Float)
 
-    fun getTrackPositionObservable(): Observable<Long>
+    /**
+     * Emits position with given interval while playing and only its changes while paused,
+     * so each subscriber picks its own update rate.
+     */
+    fun getTrackPositionObservable(intervalMillis: Long): Observable<Long>
 
     fun getPlayerEventsObservable(): Observable<MediaPlayerEvent>
 
@@ -6,6 +6,7 @@ import com.github.anrimian.musicplayer.domain.models.utils.ListPosition
 import com.github.anrimian.musicplayer.domain.repositories.LibraryRepository
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import io.reactivex.rxjava3.core.Observable
 
 class LibraryCompositionsInteractor(
@@ -18,6 +19,12 @@ class LibraryCompositionsInteractor(
         return musicProviderRepository.getAllCompositionsObservable(searchText)
     }
 
+    fun getCompositionsWindowedObservable(
+        searchText: String?
+    ): Observable<WindowedList<Composition>> {
+        return musicProviderRepository.getAllCompositionsWindowedObservable(searchText)
+    }
+
     fun setOrder(order: Order) {
         settingsRepository.compositionsOrder = order
     }
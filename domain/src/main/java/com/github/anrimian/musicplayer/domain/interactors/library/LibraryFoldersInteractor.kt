@@ -19,6 +19,7 @@ import com.github.anrimian.musicplayer.domain.repositories.EditorRepository
 import com.github.anrimian.musicplayer.domain.repositories.LibraryRepository
 import com.github.anrimian.musicplayer.domain.repositories.SettingsRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Single
@@ -42,6 +43,13 @@ class LibraryFoldersInteractor(
         return libraryRepository.getFoldersInFolder(folderId, searchQuery)
     }
 
+    fun getFoldersInFolderWindowed(
+        folderId: Long?,
+        searchQuery: String?,
+    ): Observable<WindowedList<FileSource>> {
+        return libraryRepository.getFoldersInFolderWindowed(folderId, searchQuery)
+    }
+
     fun getFolderObservable(folderId: Long): Observable<FolderInfo> {
         return libraryRepository.getFolderObservable(folderId)
     }
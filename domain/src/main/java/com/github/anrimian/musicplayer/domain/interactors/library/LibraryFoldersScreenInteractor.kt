@@ -11,6 +11,7 @@ import com.github.anrimian.musicplayer.domain.models.order.Order
 import com.github.anrimian.musicplayer.domain.models.utils.ListPosition
 import com.github.anrimian.musicplayer.domain.repositories.LibraryRepository
 import com.github.anrimian.musicplayer.domain.repositories.UiStateRepository
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Single
@@ -35,9 +36,9 @@ class LibraryFoldersScreenInteractor(
     fun getFoldersInFolder(
         folderId: Long?,
         searchQuery: String?
-    ): Observable<List<FileSource>> {
+    ): Observable<WindowedList<FileSource>> {
         //on receive remove files from move/copy of they are not present in list
-        return foldersInteractor.getFoldersInFolder(folderId, searchQuery)
+        return foldersInteractor.getFoldersInFolderWindowed(folderId, searchQuery)
     }
 
     fun getFolderObservable(folderId: Long): Observable<FolderInfo> {
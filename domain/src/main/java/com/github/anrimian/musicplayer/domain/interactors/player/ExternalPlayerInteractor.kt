@@ -136,6 +136,11 @@ class ExternalPlayerInteractor(
             .mergeWith(trackPositionSubject)
     }
 
+    fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return playerCoordinatorInteractor.getTrackPositionObservable(PlayerType.EXTERNAL, intervalMillis)
+            .mergeWith(trackPositionSubject)
+    }
+
     fun getSpeedChangeAvailableObservable(): Observable<Boolean> {
         return playerCoordinatorInteractor.getSpeedChangeAvailableObservable()
     }
@@ -232,6 +232,17 @@ class LibraryPlayerInteractor(
         return trackPositionSubject.getObservable()
     }
 
+    /**
+     * Position which is updated with given interval while library player is playing.
+     */
+    fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return trackPositionSubject.getObservable()
+            .mergeWith(
+                playerCoordinatorInteractor.getTrackPositionObservable(PlayerType.LIBRARY, intervalMillis)
+            )
+            .distinctUntilChanged()
+    }
+
     fun getPlayerStateObservable(): Observable<PlayerState> {
         return playerCoordinatorInteractor.getPlayerStateObservable(PlayerType.LIBRARY)
     }
@@ -403,6 +414,57 @@ class LibraryPlayerInteractor(
             playerCoordinatorInteractor.getTrackPositionObservable(PlayerType.LIBRARY)
                 .subscribe(trackPositionSubject::onNext)
         )
+        playerEventsDisposable.add(
+            getNextSourceObservable().subscribe { sourceOpt ->
+                playerCoordinatorInteractor.setNextSource(sourceOpt.value, PlayerType.LIBRARY)
+            }
+        )
+    }
+
+    /**
+     * Next queue item is given to player when the current one is close to its end, so player
+     * buffers it ahead and starts without a gap. Only for repeat modes which move to the next item.
+     * With crossfade next item is given before the crossfade start.
+     */
+    private fun getNextSourceObservable(): Observable<Opt<LibraryCompositionSource>> {
+        var prepareTime = settingsRepository.nextSourcePrepareTime
+        if (prepareTime <= 0L) {
+            return Observable.just(Opt(null))
+        }
+        prepareTime += settingsRepository.crossfadeTime
+        return settingsRepository.repeatModeObservable
+            .switchMap<Opt<LibraryCompositionSource>> { repeatMode ->
+                when (repeatMode) {
+                    RepeatMode.NONE -> getNextItemSourceObservable(prepareTime, false)
+                    RepeatMode.REPEAT_PLAY_QUEUE -> getNextItemSourceObservable(prepareTime, true)
+                    else -> Observable.just(Opt(null))
+                }
+            }
+            .distinctUntilChanged()
+    }
+
+    private fun getNextItemSourceObservable(
+        prepareTime: Long,
+        wrapAround: Boolean
+    ): Observable<Opt<LibraryCompositionSource>> {
+        return isCurrentItemEndingObservable(prepareTime)
+            .switchMap { isEnding ->
+                if (!isEnding) {
+                    return@switchMap Observable.just(Opt(null))
+                }
+                playQueueRepository.getNextQueueItemObservable(wrapAround)
+                    .map { event -> Opt(event.playQueueItem?.let(::LibraryCompositionSource)) }
+            }
+    }
+
+    private fun isCurrentItemEndingObservable(prepareTime: Long): Observable<Boolean> {
+        return Observable.combineLatest(
+            playQueueRepository.getCurrentQueueItemObservable(),
+            playerCoordinatorInteractor.getTrackPositionObservable(PlayerType.LIBRARY)
+        ) { event, position ->
+            val item = event.playQueueItem
+            item != null && item.duration - position <= prepareTime
+        }.distinctUntilChanged()
     }
 
     private fun onQueueItemChanged(event: PlayQueueEvent): Single<Boolean> {
@@ -549,9 +611,11 @@ class LibraryPlayerInteractor(
             PlayerState.STOP -> {
                 trackPositionSubject.onNext(0)
                 saveCurrentItemTrackPosition(0)
+                    .andThen(flushTrackPositions())
             }
             PlayerState.PAUSE -> {
                 getActualTrackPosition().flatMapCompletable(this::saveCurrentItemTrackPosition)
+                    .andThen(flushTrackPositions())
             }
             else -> null
         }
@@ -585,6 +649,11 @@ class LibraryPlayerInteractor(
             .onErrorComplete()
     }
 
+    private fun flushTrackPositions(): Completable {
+        return playQueueRepository.flushTrackPositions()
+            .onErrorComplete()
+    }
+
     private fun toCorruptionType(throwable: Throwable): CorruptionType {
         return when (throwable) {
             is UnsupportedSourceException -> CorruptionType.UNSUPPORTED
@@ -16,6 +16,7 @@ class PlayerCoordinatorInteractor(
 ) {
 
     private val preparedSourcesMap = HashMap<PlayerType, SourceInfo>()
+    private val nextSourcesMap = HashMap<PlayerType, CompositionSource>()
     private val cleanupCallbacksMap = HashMap<PlayerType, () -> Unit>()
 
     private var activePlayerType: PlayerType? = null
@@ -71,6 +72,7 @@ class PlayerCoordinatorInteractor(
             return
         }
         preparedSourcesMap.remove(playerType)
+        nextSourcesMap.remove(playerType)
         if (activePlayerType == playerType) {
             playerActivationHistory.removeLast()
 
@@ -116,6 +118,17 @@ class PlayerCoordinatorInteractor(
         }
     }
 
+    fun setNextSource(compositionSource: CompositionSource?, playerType: PlayerType) {
+        if (compositionSource == null) {
+            nextSourcesMap.remove(playerType)
+        } else {
+            nextSourcesMap[playerType] = compositionSource
+        }
+        if (playerType == activePlayerType) {
+            playerInteractor.setNextSource(compositionSource)
+        }
+    }
+
     fun onSeekStarted(playerType: PlayerType) {
         if (activePlayerType == playerType) {
             playerInteractor.onSeekStarted()
@@ -150,6 +163,11 @@ class PlayerCoordinatorInteractor(
             .filter { isPlayerTypeActive(playerType) }
     }
 
+    fun getTrackPositionObservable(playerType: PlayerType, intervalMillis: Long): Observable<Long> {
+        return playerInteractor.getTrackPositionObservable(intervalMillis)
+            .filter { isPlayerTypeActive(playerType) }
+    }
+
     fun getTrackPositionChangeObservable(playerType: PlayerType): Observable<Long> {
         return playerInteractor.getTrackPositionChangeObservable()
             .filter { isPlayerTypeActive(playerType) }
@@ -217,6 +235,7 @@ class PlayerCoordinatorInteractor(
         playerActivationHistory.add(playerType)
         activePlayerTypeSubject.onNext(Opt(activePlayerType))
 
+        playerInteractor.setNextSource(nextSourcesMap[playerType])
         val sourceInfo = preparedSourcesMap[playerType]
         if (sourceInfo != null) {
             playerInteractor.prepareToPlay(sourceInfo.source, sourceInfo.trackPosition)
@@ -50,6 +50,11 @@ class PlayerInteractor(
     private var currentPosition = 0L
     private val trackPositionSubject = BehaviorSubject.create<Long>()
     private val trackPositionChangeSubject = PublishSubject.create<Long>()
+    private val isTracingPositionSubject = BehaviorSubject.createDefault(false)
+    //shared by default rate subscribers, player position is not traced without them
+    private val trackPositionObservable = getTrackPositionObservable(TRACK_POSITION_INTERVAL_MILLIS)
+        .replay(1)
+        .refCount()
 
     private var playAfterPrepare = false
     private var preparationDisposable: Disposable? = null
@@ -59,7 +64,6 @@ class PlayerInteractor(
     private var pausedTransient = false
 
     private val eventsDisposable = CompositeDisposable()
-    private var trackPositionDisposable: Disposable? = null
     private var playerEventsDisposable: Disposable? = null
     private var delayedResumeDisposable: Disposable? = null
 
@@ -67,15 +71,50 @@ class PlayerInteractor(
 
     private var rePrepareCount = 0
 
+    private var nextSource: CompositionSource? = null
+    private var startedNextSource: CompositionSource? = null
+    private var nextSourceDisposable: Disposable? = null
+
     fun prepareToPlay(compositionSource: CompositionSource, startPosition: Long) {
         rePrepareCount = 0
 
+        val isAlreadyStarted = compositionSource == startedNextSource && startPosition == 0L
+        startedNextSource = null
+
         this.currentSource = compositionSource
         currentSourceSubject.onNext(Opt(currentSource))
 
+        if (isAlreadyStarted) {
+            //player moved to this source by itself right after the end of the previous one
+            updateCurrentPosition(0L)
+            playerEventsSubject.onNext(PlayerEvent.PreparedEvent(compositionSource))
+            return
+        }
         prepareToPlayInternal(compositionSource, startPosition)
     }
 
+    /**
+     * Sets source which player buffers ahead and starts right after the end of the current one.
+     * Its [prepareToPlay] call then doesn't prepare it again. Null removes it.
+     */
+    fun setNextSource(source: CompositionSource?) {
+        if (source == nextSource) {
+            return
+        }
+        nextSource = source
+        RxUtils.dispose(nextSourceDisposable)
+        if (source == null) {
+            musicPlayerController.setNextSource(null)
+            return
+        }
+        nextSourceDisposable = compositionSourceInteractor.getCompositionSource(source)
+            .subscribe(
+                { contentSource -> musicPlayerController.setNextSource(contentSource) },
+                //next source will be prepared after the end of the current one and report error
+                { musicPlayerController.setNextSource(null) }
+            )
+    }
+
     fun updateSource(source: CompositionSource) {
         if (this.currentSource == source) {
             this.currentSource = source
@@ -89,6 +128,8 @@ class PlayerInteractor(
         RxUtils.dispose(preparationDisposable)
         currentSource = null
         currentSourceSubject.onNext(Opt(null))
+        startedNextSource = null
+        setNextSource(null)
         systemServiceController.stopMusicService(forceStop = true, hideUi = true)
         musicPlayerController.stop()
         playAfterPrepare = false
@@ -220,7 +261,23 @@ class PlayerInteractor(
     }
 
     fun getTrackPositionObservable(): Observable<Long> {
-        return trackPositionSubject.distinctUntilChanged()
+        return trackPositionObservable
+    }
+
+    /**
+     * Track position which is updated with given interval while playing, e.g. for a smooth
+     * progress. Player position is traced only while there are subscribers, the last traced
+     * position is used for preparation after error.
+     */
+    fun getTrackPositionObservable(intervalMillis: Long): Observable<Long> {
+        return isTracingPositionSubject.switchMap { isTracing ->
+            if (isTracing) {
+                musicPlayerController.getTrackPositionObservable(intervalMillis)
+                    .doOnNext { position -> currentPosition = position }
+            } else {
+                trackPositionSubject
+            }
+        }.distinctUntilChanged()
     }
 
     fun getTrackPositionChangeObservable(): Observable<Long> {
@@ -402,6 +459,11 @@ class PlayerInteractor(
         val currentSource = currentSource ?: return
         when(event) {
             MediaPlayerEvent.Finished -> playerEventsSubject.onNext(PlayerEvent.FinishedEvent(currentSource))
+            MediaPlayerEvent.NextSourceStarted -> {
+                startedNextSource = nextSource
+                nextSource = null
+                playerEventsSubject.onNext(PlayerEvent.FinishedEvent(currentSource))
+            }
             is MediaPlayerEvent.Error -> onPlayerErrorEventReceived(event.throwable, currentSource)
         }
     }
@@ -489,17 +551,20 @@ class PlayerInteractor(
     }
 
     private fun startTracingTrackPosition() {
-        stopTracingTrackPosition()
-        trackPositionDisposable = musicPlayerController.getTrackPositionObservable()
-            .doOnSubscribe { trackPositionSubject.onNext(currentPosition) }
-            .subscribe(this::updateCurrentPosition)
+        isTracingPositionSubject.onNext(true)
     }
 
+    //traced position is kept, so subscribers don't get an outdated one on switch back
     private fun stopTracingTrackPosition() {
-        if (trackPositionDisposable != null) {
-            trackPositionDisposable!!.dispose()
-            trackPositionDisposable = null
+        if (isTracingPositionSubject.value == true) {
+            trackPositionSubject.onNext(currentPosition)
+            isTracingPositionSubject.onNext(false)
         }
     }
 
+    private companion object {
+        //shared position is shown in seconds and used for next item preparation
+        const val TRACK_POSITION_INTERVAL_MILLIS = 1000L
+    }
+
 }
\ No newline at end of file
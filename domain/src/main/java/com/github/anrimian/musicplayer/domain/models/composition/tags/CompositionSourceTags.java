@@ -1,5 +1,7 @@
 package com.github.anrimian.musicplayer.domain.models.composition.tags;
 
+import javax.annotation.Nullable;
+
 public class CompositionSourceTags {
     private final String title;
     private final String artist;
@@ -11,6 +13,11 @@ public class CompositionSourceTags {
     private final String comment;
     private final String lyrics;
     private final String[] genres;
+    //replay gain in dB relative to -18 LUFS, null if file has no loudness tags
+    @Nullable
+    private final Float trackGain;
+    @Nullable
+    private final Float albumGain;
 
     public CompositionSourceTags(String title,
                                  String artist,
@@ -21,7 +28,9 @@ public class CompositionSourceTags {
                                  Long discNumber,
                                  String comment,
                                  String lyrics,
-                                 String[] genres) {
+                                 String[] genres,
+                                 @Nullable Float trackGain,
+                                 @Nullable Float albumGain) {
         this.title = title;
         this.artist = artist;
         this.album = album;
@@ -32,6 +41,8 @@ public class CompositionSourceTags {
         this.comment = comment;
         this.lyrics = lyrics;
         this.genres = genres;
+        this.trackGain = trackGain;
+        this.albumGain = albumGain;
     }
 
     public String getTitle() {
@@ -73,4 +84,14 @@ public class CompositionSourceTags {
     public String[] getGenres() {
         return genres;
     }
+
+    @Nullable
+    public Float getTrackGain() {
+        return trackGain;
+    }
+
+    @Nullable
+    public Float getAlbumGain() {
+        return albumGain;
+    }
 }
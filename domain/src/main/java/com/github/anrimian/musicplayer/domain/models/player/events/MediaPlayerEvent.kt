@@ -2,5 +2,7 @@ package com.github.anrimian.musicplayer.domain.models.player.events
 
 sealed interface MediaPlayerEvent {
     object Finished: MediaPlayerEvent
+    //player moved to the next source after the end of the current one
+    object NextSourceStarted: MediaPlayerEvent
     class Error(val throwable: Throwable): MediaPlayerEvent
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.github.anrimian.musicplayer.domain.models.player.modes;
+
+public interface LoudnessNormalizationMode {
+    int NONE = 0;
+    int TRACK = 1;
+    int ALBUM = 2;
+}
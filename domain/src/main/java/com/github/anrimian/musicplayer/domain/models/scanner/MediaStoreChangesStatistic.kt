@@ -0,0 +1,16 @@
+package com.github.anrimian.musicplayer.domain.models.scanner
+
+/**
+ * Counters of media store change events and storage scans caused by them.
+ *
+ * @param scansSkipped count of events which didn't cause own scan: merged into a burst or
+ * superseded by a newer event during the scan
+ * @param scansDropped count of scans which were cancelled or found storage unavailable
+ * and didn't apply any changes
+ */
+data class MediaStoreChangesStatistic(
+    val eventsReceived: Long,
+    val scansRun: Long,
+    val scansSkipped: Long,
+    val scansDropped: Long
+)
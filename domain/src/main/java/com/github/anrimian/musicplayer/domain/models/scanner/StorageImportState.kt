@@ -0,0 +1,8 @@
+package com.github.anrimian.musicplayer.domain.models.scanner
+
+sealed interface StorageImportState
+data object StorageImportIdle: StorageImportState
+data class StorageImportRunning(
+    val importedCount: Int,
+    val totalCount: Int
+): StorageImportState
@@ -13,6 +13,7 @@ import com.github.anrimian.musicplayer.domain.models.folders.FolderInfo
 import com.github.anrimian.musicplayer.domain.models.folders.IgnoredFolder
 import com.github.anrimian.musicplayer.domain.models.genres.Genre
 import com.github.anrimian.musicplayer.domain.models.sync.FileKey
+import com.github.anrimian.musicplayer.domain.utils.WindowedList
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.core.Single
@@ -25,6 +26,10 @@ interface LibraryRepository {
     //compositions
     fun getAllCompositionsObservable(searchText: String?): Observable<List<Composition>>
 
+    fun getAllCompositionsWindowedObservable(
+        searchText: String?
+    ): Observable<WindowedList<Composition>>
+
     fun getCompositionObservable(id: Long): Observable<Composition>
 
     fun getFullCompositionObservable(id: Long): Observable<FullComposition>
@@ -46,6 +51,11 @@ interface LibraryRepository {
         searchQuery: String?
     ): Observable<List<FileSource>>
 
+    fun getFoldersInFolderWindowed(
+        folderId: Long?,
+        searchQuery: String?
+    ): Observable<WindowedList<FileSource>>
+
     fun getFolderObservable(folderId: Long): Observable<FolderInfo>
 
     fun getAllCompositionsInFolder(folderId: Long?): Single<List<Composition>>
@@ -1,6 +1,8 @@
 package com.github.anrimian.musicplayer.domain.repositories
 
 import com.github.anrimian.musicplayer.domain.models.scanner.FileScannerState
+import com.github.anrimian.musicplayer.domain.models.scanner.MediaStoreChangesStatistic
+import com.github.anrimian.musicplayer.domain.models.scanner.StorageImportState
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Observable
 
@@ -20,4 +22,8 @@ interface MediaScannerRepository {
 
     fun getFileScannerStateObservable(): Observable<FileScannerState>
 
+    fun getStorageImportStateObservable(): Observable<StorageImportState>
+
+    fun getMediaStoreChangesStatistic(): MediaStoreChangesStatistic
+
 }
\ No newline at end of file
@@ -22,6 +22,11 @@ interface PlayQueueRepository {
 
     fun getNextQueueItemId(): Single<Long>
 
+    /**
+     * @param wrapAround if false, emits no item for the last item of queue
+     */
+    fun getNextQueueItemObservable(wrapAround: Boolean): Observable<PlayQueueEvent>
+
     fun getPlayQueueObservable(): Flowable<List<PlayQueueItem>>
 
     fun setRandomPlayingEnabled(enabled: Boolean)
@@ -58,4 +63,6 @@ interface PlayQueueRepository {
 
     fun getItemTrackPosition(itemId: Long): Single<Long>
 
+    fun flushTrackPositions(): Completable
+
 }
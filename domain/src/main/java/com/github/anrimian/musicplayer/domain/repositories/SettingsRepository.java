@@ -182,4 +182,28 @@ public interface SettingsRepository {
     long getBluetoothConnectAutoPlayDelay();
 
     void setBluetoothConnectAutoPlayDelay(long millis);
+
+    /**
+     * @return remaining time of the current composition when the next one starts buffering,
+     * 0 disables it
+     */
+    long getNextSourcePrepareTime();
+
+    void setNextSourcePrepareTime(long millis);
+
+    /**
+     * @return overlap time of the current and the next composition, 0 disables crossfade
+     */
+    long getCrossfadeTime();
+
+    void setCrossfadeTime(long millis);
+
+    /**
+     * @return one of LoudnessNormalizationMode values
+     */
+    int getLoudnessNormalizationMode();
+
+    Observable<Integer> getLoudnessNormalizationModeObservable();
+
+    void setLoudnessNormalizationMode(int mode);
 }
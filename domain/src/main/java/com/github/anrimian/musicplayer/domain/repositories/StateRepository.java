@@ -22,4 +22,10 @@ public interface StateRepository {
 
     void setStoragePlaylistsImported(boolean isImported);
 
+    //position of the last storage read, used for incremental storage updates
+
+    String getMediaStoreWatermark();
+
+    void setMediaStoreWatermark(String watermark);
+
 }
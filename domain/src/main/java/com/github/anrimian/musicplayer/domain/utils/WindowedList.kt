@@ -0,0 +1,84 @@
+package com.github.anrimian.musicplayer.domain.utils
+
+/**
+ * Read-only list snapshot in which only windows around displayed positions are loaded.
+ *
+ * Items outside of loaded windows are placeholders. [loadAround] requests load of a window,
+ * the source emits a new snapshot when it is loaded.
+ */
+abstract class WindowedList<T> : AbstractList<T>() {
+
+    /**
+     * Requests load of the window which contains [index], called for displayed positions.
+     */
+    abstract fun loadAround(index: Int)
+
+    /**
+     * Returns ranges of positions which items can differ from [previous] snapshot, or null
+     * if positions changed and lists must be compared by items.
+     */
+    abstract fun getChangedRanges(previous: List<*>): List<IntRange>?
+
+    fun <R> mapItems(transform: (T) -> R): WindowedList<R> {
+        return MappedWindowedList(this, transform)
+    }
+
+    fun withHeader(header: List<T>): WindowedList<T> {
+        return HeaderWindowedList(header, this)
+    }
+
+}
+
+private class MappedWindowedList<S, T>(
+    private val source: WindowedList<S>,
+    private val transform: (S) -> T
+) : WindowedList<T>() {
+
+    override val size: Int
+        get() = source.size
+
+    override fun get(index: Int) = transform(source[index])
+
+    override fun loadAround(index: Int) {
+        source.loadAround(index)
+    }
+
+    override fun getChangedRanges(previous: List<*>): List<IntRange>? {
+        if (previous !is MappedWindowedList<*, *>) {
+            return null
+        }
+        return source.getChangedRanges(previous.source)
+    }
+}
+
+//header items are compared by reference, any header change requires comparison by items
+private class HeaderWindowedList<T>(
+    private val header: List<T>,
+    private val source: WindowedList<T>
+) : WindowedList<T>() {
+
+    override val size: Int
+        get() = header.size + source.size
+
+    override fun get(index: Int): T {
+        if (index < header.size) {
+            return header[index]
+        }
+        return source[index - header.size]
+    }
+
+    override fun loadAround(index: Int) {
+        if (index >= header.size) {
+            source.loadAround(index - header.size)
+        }
+    }
+
+    override fun getChangedRanges(previous: List<*>): List<IntRange>? {
+        if (previous !is HeaderWindowedList<*> || previous.header !== header) {
+            return null
+        }
+        val offset = header.size
+        return source.getChangedRanges(previous.source)
+            ?.map { range -> (range.first + offset)..(range.last + offset) }
+    }
+}
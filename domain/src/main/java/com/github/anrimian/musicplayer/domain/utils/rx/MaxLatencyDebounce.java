@@ -0,0 +1,138 @@
+package com.github.anrimian.musicplayer.domain.utils.rx;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.core.Observable;
+import io.reactivex.rxjava3.core.ObservableEmitter;
+import io.reactivex.rxjava3.core.ObservableSource;
+import io.reactivex.rxjava3.core.ObservableTransformer;
+import io.reactivex.rxjava3.core.Observer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.disposables.Disposable;
+
+/**
+ * Debounce which emits the latest item after a quiet period, but never holds a burst of items
+ * longer than max latency. So endless stream of events still produces periodic emissions.
+ */
+public class MaxLatencyDebounce<T> implements ObservableTransformer<T, T> {
+
+    private final long timeoutMillis;
+    private final long maxLatencyMillis;
+    private final Scheduler scheduler;
+
+    public MaxLatencyDebounce(long timeout, long maxLatency, TimeUnit unit, Scheduler scheduler) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        this.maxLatencyMillis = unit.toMillis(maxLatency);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public ObservableSource<T> apply(Observable<T> upstream) {
+        return Observable.create(emitter -> {
+            DebounceObserver<T> observer = new DebounceObserver<>(
+                    emitter.serialize(),
+                    scheduler.createWorker(),
+                    timeoutMillis,
+                    maxLatencyMillis
+            );
+            emitter.setDisposable(observer);
+            upstream.subscribe(observer);
+        });
+    }
+
+    private static class DebounceObserver<T> implements Observer<T>, Disposable {
+
+        private final ObservableEmitter<T> emitter;
+        private final Scheduler.Worker worker;
+        private final long timeoutMillis;
+        private final long maxLatencyMillis;
+
+        private final Object lock = new Object();
+
+        private T pendingItem;
+        private long burstStartTime = -1;
+        private Disposable timerDisposable;
+        private Disposable upstreamDisposable;
+
+        private volatile boolean disposed;
+
+        DebounceObserver(ObservableEmitter<T> emitter,
+                         Scheduler.Worker worker,
+                         long timeoutMillis,
+                         long maxLatencyMillis) {
+            this.emitter = emitter;
+            this.worker = worker;
+            this.timeoutMillis = timeoutMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            upstreamDisposable = d;
+            if (disposed) {
+                d.dispose();
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            synchronized (lock) {
+                pendingItem = t;
+                long now = worker.now(TimeUnit.MILLISECONDS);
+                if (burstStartTime == -1) {
+                    burstStartTime = now;
+                }
+                long delay = Math.min(timeoutMillis, burstStartTime + maxLatencyMillis - now);
+                if (timerDisposable != null) {
+                    timerDisposable.dispose();
+                }
+                timerDisposable = worker.schedule(this::flush, Math.max(0, delay), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            worker.dispose();
+            emitter.onError(e);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (lock) {
+                if (timerDisposable != null) {
+                    timerDisposable.dispose();
+                }
+            }
+            flush();
+            worker.dispose();
+            emitter.onComplete();
+        }
+
+        @Override
+        public void dispose() {
+            disposed = true;
+            if (upstreamDisposable != null) {
+                upstreamDisposable.dispose();
+            }
+            worker.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return disposed;
+        }
+
+        private void flush() {
+            T item;
+            synchronized (lock) {
+                item = pendingItem;
+                pendingItem = null;
+                burstStartTime = -1;
+                timerDisposable = null;
+            }
+            if (item != null) {
+                emitter.onNext(item);
+            }
+        }
+    }
+}
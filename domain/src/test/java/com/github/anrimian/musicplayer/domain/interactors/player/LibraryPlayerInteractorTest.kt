@@ -86,6 +86,7 @@ class LibraryPlayerInteractorTest {
         whenever(playQueueRepository.getItemTrackPosition(any())).thenReturn(Single.just(0L))
         whenever(playQueueRepository.setItemTrackPosition(any(), any())).thenReturn(Completable.complete())
         whenever(playQueueRepository.setCurrentItemTrackPosition(any())).thenReturn(Completable.complete())
+        whenever(playQueueRepository.flushTrackPositions()).thenReturn(Completable.complete())
 
         whenever(playerCoordinatorInteractor.getPlayerEventsObservable(any())).thenReturn(playerEventSubject)
         whenever(playerCoordinatorInteractor.getPlayerStateObservable(any())).thenReturn(playerStateSubject)
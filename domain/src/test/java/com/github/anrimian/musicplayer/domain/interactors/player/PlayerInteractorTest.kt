@@ -18,6 +18,8 @@ import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.schedulers.TestScheduler
 import io.reactivex.rxjava3.subjects.PublishSubject
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.DisplayName
 import org.junit.jupiter.api.Nested
@@ -90,7 +92,7 @@ class PlayerInteractorTest {
         whenever(settingsRepository.isPauseOnAudioFocusLossEnabled).thenReturn(true)
 
         whenever(musicPlayerController.prepareToPlay(any())).thenReturn(Completable.complete())
-        whenever(musicPlayerController.getTrackPositionObservable()).thenReturn(positionSubject)
+        whenever(musicPlayerController.getTrackPositionObservable(any())).thenReturn(positionSubject)
 
         whenever(compositionSourceInteractor.getCompositionSource(any()))
             .thenReturn(Single.just(testContentSource))
@@ -152,6 +154,47 @@ class PlayerInteractorTest {
         isPlayingStateSubscriber.assertValues(false, true, false)
     }
 
+    @Test
+    fun `next source is started without preparing`() {
+        val nextSource: CompositionSource = mock()
+        val nextContentSource: CompositionContentSource = mock()
+        whenever(compositionSourceInteractor.getCompositionSource(nextSource))
+            .thenReturn(Single.just(nextContentSource))
+
+        playerInteractor.prepareToPlay(testSource, 0L)
+        playerInteractor.play()
+        playerInteractor.setNextSource(nextSource)
+
+        inOrder.verify(musicPlayerController).prepareToPlay(eq(testContentSource))
+        inOrder.verify(musicPlayerController).setNextSource(eq(nextContentSource))
+
+        playerEventSubject.onNext(MediaPlayerEvent.NextSourceStarted)
+        playerInteractor.prepareToPlay(nextSource, 0L)
+
+        verify(musicPlayerController, never()).prepareToPlay(eq(nextContentSource))
+        currentSourceSubscriber.assertValues(Opt(testSource), Opt(nextSource))
+        playerEventsSubscriber.assertValueAt(1) { event ->
+            event is PlayerEvent.FinishedEvent && event.source == testSource
+        }
+        playerEventsSubscriber.assertValueAt(2) { event ->
+            event is PlayerEvent.PreparedEvent && event.source == nextSource
+        }
+        isPlayingStateSubscriber.assertValues(false, true)
+    }
+
+    @Test
+    fun `next source is prepared again after manual change of current source`() {
+        val nextSource: CompositionSource = mock()
+        val otherSource: CompositionSource = mock()
+
+        playerInteractor.prepareToPlay(testSource, 0L)
+        playerInteractor.setNextSource(nextSource)
+        playerEventSubject.onNext(MediaPlayerEvent.NextSourceStarted)
+        playerInteractor.prepareToPlay(otherSource, 0L)
+
+        verify(musicPlayerController, times(2)).prepareToPlay(eq(testContentSource))
+    }
+
 
     @Nested
     @DisplayName("in prepare process")
@@ -717,6 +760,39 @@ class PlayerInteractorTest {
             isPlayingStateSubscriber.assertValues(false, true, false)
         }
 
+        @Test
+        fun `then trace position with subscriber interval`() {
+            val fastPositionSubject = PublishSubject.create<Long>()
+            whenever(musicPlayerController.getTrackPositionObservable(eq(16L)))
+                .thenReturn(fastPositionSubject)
+            val fastPositionSubscriber = playerInteractor.getTrackPositionObservable(16L).test()
+
+            fastPositionSubject.onNext(100L)
+            positionSubject.onNext(1000L)
+
+            fastPositionSubscriber.assertValues(100L)
+            positionSubscriber.assertValues(startPosition, 1000L)
+        }
+
+        @Test
+        fun `then stop position tracing without subscribers`() {
+            assertTrue(positionSubject.hasObservers())
+
+            positionSubscriber.dispose()
+
+            assertFalse(positionSubject.hasObservers())
+        }
+
+        @Test
+        fun `then pause and stop position tracing`() {
+            positionSubject.onNext(1000L)
+
+            playerInteractor.pause()
+
+            assertFalse(positionSubject.hasObservers())
+            positionSubscriber.assertValues(startPosition, 1000L)
+        }
+
         @Test
         fun `then prepare another source`() {
             playerInteractor.prepareToPlay(mock(), 0L)
@@ -0,0 +1,54 @@
+package com.github.anrimian.musicplayer.domain.utils.rx;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.rxjava3.observers.TestObserver;
+import io.reactivex.rxjava3.schedulers.TestScheduler;
+import io.reactivex.rxjava3.subjects.PublishSubject;
+
+public class MaxLatencyDebounceTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final PublishSubject<Integer> subject = PublishSubject.create();
+
+    private final TestObserver<Integer> testObserver = subject
+            .compose(new MaxLatencyDebounce<>(1000, 3000, TimeUnit.MILLISECONDS, scheduler))
+            .test();
+
+    @Test
+    public void emitAfterQuietPeriodTest() {
+        subject.onNext(1);
+        subject.onNext(2);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subject.onNext(3);
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        testObserver.assertNoValues();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        testObserver.assertValues(3);
+    }
+
+    @Test
+    public void emitOnMaxLatencyTest() {
+        for (int i = 0; i < 6; i++) {
+            subject.onNext(i);
+            scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        }
+        testObserver.assertValues(5);
+
+        subject.onNext(6);
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+        testObserver.assertValues(5, 6);
+    }
+
+    @Test
+    public void emitPendingItemOnCompleteTest() {
+        subject.onNext(1);
+        subject.onComplete();
+
+        testObserver.assertValues(1);
+        testObserver.assertComplete();
+    }
+}